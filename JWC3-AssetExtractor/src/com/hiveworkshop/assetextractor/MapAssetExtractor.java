@@ -1,6 +1,7 @@
 package com.hiveworkshop.assetextractor;
 
 import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Path;
 
 import com.hiveworkshop.wc3.mpq.MpqCodebase;
@@ -46,11 +47,13 @@ public final class MapAssetExtractor implements AutoCloseable {
 			try {
 				WTSFile wts = null;
 				if (codebase.has("war3map.wts")) {
-					wts = new WTSFile(codebase.getFile("war3map.wts").toPath());
+					wts = new WTSFile(codebase.getResourceAsBuffer("war3map.wts"));
 				}
 				if (codebase.has("war3map.w3u")) {
-					final W3UFile unitDataFile = wts == null ? new W3UFile(codebase.getFile("war3map.w3u").toPath())
-							: new W3UFile(codebase.getFile("war3map.w3u").toPath(), wts);
+					final W3UFile unitDataFile;
+					try (SeekableByteChannel unitDataChannel = codebase.getResourceAsChannel("war3map.w3u")) {
+						unitDataFile = new W3UFile(unitDataChannel, wts);
+					}
 					for (final Unit unit : unitDataFile.getEntries()) {
 						final String unitIdString = CharInt.toString(unit.getId());
 						if (unit.getParentId() != unit.getId()) {
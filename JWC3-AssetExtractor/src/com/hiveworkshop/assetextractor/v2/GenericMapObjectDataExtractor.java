@@ -10,8 +10,7 @@ import java.util.List;
 import java.util.function.Consumer;
 
 import com.hiveworkshop.wc3.mdx.AttachmentChunk;
-import com.hiveworkshop.wc3.mdx.MdxModel;
-import com.hiveworkshop.wc3.mdx.MdxUtils;
+import com.hiveworkshop.wc3.mdx.LazyMdxModel;
 import com.hiveworkshop.wc3.mdx.TextureChunk;
 import com.hiveworkshop.wc3.mpq.Codebase;
 import com.hiveworkshop.wc3.mpq.MpqCodebase;
@@ -22,8 +21,6 @@ import com.hiveworkshop.wc3.units.objectdata.War3ID;
 import com.hiveworkshop.wc3.util.IconUtils;
 import com.hiveworkshop.wc3.util.ModelUtils;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-
 public class GenericMapObjectDataExtractor {
 	private static final War3ID BUFF_MISSILE_ART = War3ID.fromString("fmat");
 	private static final War3ID BUFF_EFFECT_ART = War3ID.fromString("feat");
@@ -272,12 +269,14 @@ public class GenericMapObjectDataExtractor {
 		extract(codebase, outputDirectory, modelFile, false);
 		// Model Textures
 		if (codebase.has(modelFile)) {
-			final MdxModel mdxModel = MdxUtils
-					.loadModel(new BlizzardDataInputStream(codebase.getResourceAsStream(modelFile)));
+			// only the texture and attachment chunks are needed, so the rest is never decoded
+			final LazyMdxModel mdxModel = new LazyMdxModel(codebase.getResourceAsBuffer(modelFile));
+			final TextureChunk textureChunk = mdxModel.getTextureChunk();
+			final AttachmentChunk attachmentChunk = mdxModel.getAttachmentChunk();
 			// final MDL unitModel = new MDL(
 			// mdxModel);
-			if (mdxModel.textureChunk != null && mdxModel.textureChunk.texture != null) {
-				for (final TextureChunk.Texture texture : mdxModel.textureChunk.texture) {
+			if (textureChunk != null && textureChunk.texture != null) {
+				for (final TextureChunk.Texture texture : textureChunk.texture) {
 					if (texture.replaceableId > 0) {
 						// it's a team color
 					} else {
@@ -294,8 +293,8 @@ public class GenericMapObjectDataExtractor {
 			// extract(codebase, outputDirectory, path, settings, true);
 			// }
 			// }
-			if (mdxModel.attachmentChunk != null && mdxModel.attachmentChunk.attachment != null) {
-				for (final AttachmentChunk.Attachment attachment : mdxModel.attachmentChunk.attachment) {
+			if (attachmentChunk != null && attachmentChunk.attachment != null) {
+				for (final AttachmentChunk.Attachment attachment : attachmentChunk.attachment) {
 					if (attachment.unknownName_modelPath != null) {
 						extractModel(codebase, outputDirectory, asMdxExtension(attachment.unknownName_modelPath));
 					}
@@ -0,0 +1,50 @@
+package com.matrixeater.hacks;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.hiveworkshop.wc3.mpq.BulkExtractor;
+import com.hiveworkshop.wc3.mpq.MpqCodebase;
+
+public final class BulkExtractWar3 {
+	public static void main(final String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: <outputDirectory> [extension...]");
+			System.exit(-1);
+		}
+		final List<String> extensions = new ArrayList<>();
+		for (int i = 1; i < args.length; i++) {
+			extensions.add(args[i].toLowerCase());
+		}
+
+		final MpqCodebase codebase = MpqCodebase.get();
+		final List<String> paths = new ArrayList<>();
+		for (final String path : codebase.getMergedListfile()) {
+			if (extensions.isEmpty()) {
+				paths.add(path);
+				continue;
+			}
+			final String lowerPath = path.toLowerCase();
+			for (final String extension : extensions) {
+				if (lowerPath.endsWith(extension)) {
+					paths.add(path);
+					break;
+				}
+			}
+		}
+
+		System.out.println("Extracting " + paths.size() + " files");
+		final BulkExtractor extractor = new BulkExtractor(codebase);
+		final BulkExtractor.Result result = extractor.extract(paths, BulkExtractor.toDirectory(Paths.get(args[0])));
+		System.out.println(result);
+		if (!result.getFailures().isEmpty()) {
+			System.out.println("Fail list:");
+			for (final Map.Entry<String, Throwable> failure : result.getFailures().entrySet()) {
+				System.out.println(failure.getKey() + ": " + failure.getValue());
+			}
+		}
+		System.exit(0);
+	}
+}
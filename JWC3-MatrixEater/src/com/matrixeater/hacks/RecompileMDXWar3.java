@@ -1,48 +1,93 @@
 package com.matrixeater.hacks;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
+import com.hiveworkshop.wc3.mdl.MDL;
 import com.hiveworkshop.wc3.mdl.MDXHandler;
+import com.hiveworkshop.wc3.mdx.MdxModel;
+import com.hiveworkshop.wc3.mdx.MdxUtils;
+import com.hiveworkshop.wc3.util.BatchConverter;
 
-public final class RecompileMDXWar3 {
-	private static final List<String> failed = new ArrayList<>();
-	private static final List<String> passed = new ArrayList<>();
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
-	public static void main(final String[] args) {
-		if (args.length != 1) {
-			System.err.println("Usage: <mutableModelsDirectory>");
+public final class RecompileMDXWar3 {
+	public static void main(final String[] args) throws Exception {
+		final List<String> paths = new ArrayList<>();
+		boolean inProcess = false;
+		for (final String arg : args) {
+			if (arg.equals("-inprocess")) {
+				inProcess = true;
+			} else {
+				paths.add(arg);
+			}
+		}
+		if ((paths.size() < 1) || (paths.size() > 2)) {
+			System.err.println("Usage: <mutableModelsDirectory> [manifestFile] [-inprocess]");
 			System.exit(-1);
 		}
-		squish(new File(args[0]));
-		System.out.println("Passed: " + passed.size());
-		System.out.println("Failed: " + failed.size());
-		System.out.println("Fail list:");
-		for (final String failedName : failed) {
-			System.out.println(failedName);
+		final BatchConverter converter = new BatchConverter();
+		if (paths.size() > 1) {
+			converter.setManifest(Paths.get(paths.get(1)));
 		}
-	}
+		final boolean convertInProcess = inProcess;
+		final Path root = Paths.get(paths.get(0));
+		final BatchConverter.Result result = converter.convert(root, new BatchConverter.Conversion() {
+			@Override
+			public boolean accepts(final Path file) {
+				final String path = file.toString().toLowerCase();
+				return path.endsWith(".mdx") && (path.contains("units") || path.contains("buildings"))
+						&& !path.contains("portrait");
+			}
 
-	private static void squish(final File target) {
-		if (target.isDirectory()) {
-			for (final File file : target.listFiles()) {
-				squish(file);
+			@Override
+			public Path getTarget(final Path source) {
+				return source;
 			}
-		} else {
-			if (target.getName().toLowerCase().endsWith(".mdx")
-					&& (target.getPath().toLowerCase().contains("units")
-							|| target.getPath().toLowerCase().contains("buildings"))
-					&& !target.getPath().toLowerCase().contains("portrait")) {
-				try {
-					System.out.println(target.getPath());
-					MDXHandler.compile(MDXHandler.convert(target));
-					passed.add(target.getPath());
-				} catch (final Exception e) {
-					failed.add(target.getPath());
+
+			@Override
+			public ByteBuffer convert(final Path source, final ByteBuffer contents) throws Exception {
+				if (!convertInProcess) {
+					// Blizzard's converter writes the target itself, through an MDL next to it
+					final String name = source.getFileName().toString();
+					final File text = source.resolveSibling(name.substring(0, name.lastIndexOf('.')) + ".mdl")
+							.toFile();
+					final long textModified = text.lastModified();
+					final long modified = source.toFile().lastModified();
+					MDXHandler.convert(source.toFile());
+					checkWritten(text, textModified);
+					MDXHandler.compile(text);
+					checkWritten(source.toFile(), modified);
+					return null;
 				}
+				final MDL model = new MDL(MdxUtils.loadModel(contents));
+				final BlizzardDataOutputBuffer out = new BlizzardDataOutputBuffer(contents.capacity());
+				new MdxModel(model).save(out);
+				return out.getData();
+			}
+		});
+		System.out.println(result);
+		if (!result.getFailures().isEmpty()) {
+			System.out.println("Fail list:");
+			for (final Map.Entry<Path, Throwable> failure : result.getFailures().entrySet()) {
+				System.out.println(failure.getKey() + ": " + BatchConverter.Result.reason(failure.getValue()));
 			}
 		}
 	}
 
+	/**
+	 * @throws IOException
+	 *             unless the converter left a non-empty file that it wrote after the given time
+	 */
+	private static void checkWritten(final File file, final long previousModified) throws IOException {
+		if ((file.length() == 0) || (file.lastModified() == previousModified)) {
+			throw new IOException("converter.exe did not write " + file);
+		}
+	}
 }
@@ -0,0 +1,43 @@
+package com.matrixeater.hacks;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.hiveworkshop.wc3.mpq.BulkExtractor;
+import com.hiveworkshop.wc3.mpq.MpqCodebase;
+
+public final class SoundExtractWar3 {
+	public static void main(final String[] args) throws Exception {
+		if ((args.length < 1) || (args.length > 2)) {
+			System.err.println("Usage: <outputDirectory> [threads]");
+			System.exit(-1);
+		}
+
+		final MpqCodebase codebase = MpqCodebase.get();
+		final List<String> paths = new ArrayList<>();
+		for (final String path : codebase.getMergedListfile()) {
+			if (path.toLowerCase().endsWith(".wav")) {
+				paths.add(path);
+			}
+		}
+
+		// sounds are streamed sector by sector straight to disk rather than held whole in memory
+		System.out.println("Extracting " + paths.size() + " sounds");
+		final BulkExtractor extractor = new BulkExtractor(codebase);
+		if (args.length > 1) {
+			extractor.setThreadCount(Integer.parseInt(args[1]));
+		}
+		final BulkExtractor.Result result = extractor.extractStreaming(paths,
+				BulkExtractor.streamToDirectory(Paths.get(args[0])));
+		System.out.println("Passed: " + result.getFileCount());
+		System.out.println("Failed: " + result.getFailures().size());
+		System.out.println(result);
+		System.out.println("Fail list:");
+		for (final Map.Entry<String, Throwable> failure : result.getFailures().entrySet()) {
+			System.out.println(failure.getKey() + ": " + failure.getValue());
+		}
+		System.exit(0);
+	}
+}
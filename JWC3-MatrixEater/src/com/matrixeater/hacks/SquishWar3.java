@@ -1,70 +1,59 @@
 package com.matrixeater.hacks;
 
-import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
 
 import com.hiveworkshop.wc3.mdl.AnimFlag;
 import com.hiveworkshop.wc3.mdl.MDL;
 import com.hiveworkshop.wc3.mdx.MdxModel;
+import com.hiveworkshop.wc3.mdx.MdxUtils;
+import com.hiveworkshop.wc3.util.BatchConverter;
 
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 import de.wc3data.stream.SquishingBlizzardDataOutputStream;
 
 public final class SquishWar3 {
-	private static final List<String> failed = new ArrayList<>();
-	private static final List<String> passed = new ArrayList<>();
-	private static File root;
-	private static File texRoot;
-
-	public static void main(final String[] args) {
-		if (args.length != 1) {
-			System.err.println("Usage: <mutableModelsDirectory>");
+	public static void main(final String[] args) throws Exception {
+		if ((args.length < 1) || (args.length > 2)) {
+			System.err.println("Usage: <mutableModelsDirectory> [manifestFile]");
 			System.exit(-1);
 		}
-		final File target = new File(args[0]);
-		root = target;
-		texRoot = new File(target.getParent() + "/" + "CompressorStep2");
-		squish(target);
-		System.out.println("Passed: " + passed.size());
-		System.out.println("Failed: " + failed.size());
-		System.out.println("Fail list:");
-		for (final String failedName : failed) {
-			System.out.println(failedName);
+		final BatchConverter converter = new BatchConverter();
+		if (args.length > 1) {
+			converter.setManifest(Paths.get(args[1]));
 		}
-	}
+		final BatchConverter.Result result = converter.convert(Paths.get(args[0]), new BatchConverter.Conversion() {
+			@Override
+			public boolean accepts(final Path file) {
+				return file.getFileName().toString().toLowerCase().endsWith(".mdx");
+			}
 
-	private static void squish(final File target) {
-		if (target.isDirectory()) {
-			for (final File file : target.listFiles()) {
-				squish(file);
+			@Override
+			public Path getTarget(final Path source) {
+				return source;
 			}
-		} else {
-			if (target.getName().toLowerCase().endsWith(".mdx")) {
-				try {
-					// final String relativePath =
-					// target.getAbsolutePath().substring(root.getAbsolutePath().length());
-					// final File copiedTarget = new File(texRoot +
-					// relativePath);
-					// copiedTarget.getParentFile().mkdirs();
-					final MDL model = MDL.read(target);
-					for (final AnimFlag flag : model.getAllAnimFlags()) {
-						flag.linearize();
-					}
-					model.simplifyKeyframes();
-					// model.printTo(target);
-					try (BlizzardDataOutputStream out = new SquishingBlizzardDataOutputStream(target)) {
-						new MdxModel(model).save(out);
-					} catch (final Exception e) {
-						throw new RuntimeException(e);
-					}
-					passed.add(target.getPath());
-				} catch (final Exception e) {
-					failed.add(target.getPath());
-					throw new RuntimeException(target.getPath(), e);
+
+			@Override
+			public ByteBuffer convert(final Path source, final ByteBuffer contents) throws Exception {
+				final MDL model = new MDL(MdxUtils.loadModel(contents));
+				for (final AnimFlag flag : model.getAllAnimFlags()) {
+					flag.linearize();
 				}
+				model.simplifyKeyframes();
+				final BlizzardDataOutputBuffer out = new BlizzardDataOutputBuffer(contents.capacity());
+				out.setFloatBitMask(SquishingBlizzardDataOutputStream.FLOAT_BIT_MASK);
+				new MdxModel(model).save(out);
+				return out.getData();
+			}
+		});
+		System.out.println(result);
+		if (!result.getFailures().isEmpty()) {
+			System.out.println("Fail list:");
+			for (final Map.Entry<Path, Throwable> failure : result.getFailures().entrySet()) {
+				System.out.println(failure.getKey() + ": " + BatchConverter.Result.reason(failure.getValue()));
 			}
 		}
 	}
-
 }
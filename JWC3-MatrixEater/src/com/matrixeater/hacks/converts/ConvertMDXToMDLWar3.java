@@ -1,54 +1,87 @@
 package com.matrixeater.hacks.converts;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
+import com.hiveworkshop.wc3.mdl.MDL;
 import com.hiveworkshop.wc3.mdl.MDXHandler;
+import com.hiveworkshop.wc3.mdx.MdxUtils;
+import com.hiveworkshop.wc3.util.BatchConverter;
 
 public final class ConvertMDXToMDLWar3 {
-	private static final List<String> failed = new ArrayList<>();
-	private static final List<String> passed = new ArrayList<>();
-
-	public static void main(final String[] args) {
-		if (args.length != 1) {
-			System.err.println("Usage: <mutableModelsDirectory>");
+	public static void main(final String[] args) throws Exception {
+		final List<String> paths = new ArrayList<>();
+		boolean inProcess = false;
+		for (final String arg : args) {
+			if (arg.equals("-inprocess")) {
+				inProcess = true;
+			} else {
+				paths.add(arg);
+			}
+		}
+		if ((paths.size() < 1) || (paths.size() > 2)) {
+			System.err.println("Usage: <mutableModelsDirectory> [manifestFile] [-inprocess]");
 			System.exit(-1);
 		}
-		squish(new File(args[0]));
-		System.out.println("Passed: " + passed.size());
-		System.out.println("Failed: " + failed.size());
-		System.out.println("Fail list:");
-		for (final String failedName : failed) {
-			System.out.println(failedName);
+		final BatchConverter converter = new BatchConverter();
+		if (paths.size() > 1) {
+			converter.setManifest(Paths.get(paths.get(1)));
 		}
-	}
+		final boolean convertInProcess = inProcess;
+		final Path root = Paths.get(paths.get(0));
+		final BatchConverter.Result result = converter.convert(root, new BatchConverter.Conversion() {
+			@Override
+			public boolean accepts(final Path file) {
+				return file.getFileName().toString().toLowerCase().endsWith(".mdx");
+			}
 
-	private static void squish(final File target) {
-		if (target.isDirectory()) {
-			for (final File file : target.listFiles()) {
-				squish(file);
+			@Override
+			public Path getTarget(final Path source) {
+				final String name = source.getFileName().toString();
+				return source.resolveSibling(name.substring(0, name.lastIndexOf('.')) + ".mdl");
 			}
-		} else {
-			if (target.getName().toLowerCase()
-					.endsWith(".mdx") /*
-										 * && (target.getPath().toLowerCase().
-										 * contains("units") ||
-										 * target.getPath().toLowerCase().
-										 * contains("buildings")) &&
-										 * !target.getPath().toLowerCase().
-										 * contains("portrait")
-										 */) {
-				try {
-					System.out.println(target.getPath());
-					MDXHandler.convert(target);
-					// MDXHandler.compile(MDXHandler.convert(target));
-					passed.add(target.getPath());
-				} catch (final Exception e) {
-					failed.add(target.getPath());
+
+			@Override
+			public ByteBuffer convert(final Path source, final ByteBuffer contents) throws Exception {
+				if (!convertInProcess) {
+					// Blizzard's converter writes the target itself
+					final File target = getTarget(source).toFile();
+					final long modified = target.lastModified();
+					MDXHandler.convert(source.toFile());
+					checkWritten(target, modified);
+					return null;
 				}
+				final MDL model = new MDL(MdxUtils.loadModel(contents));
+				// text takes roughly three times the space of the binary model
+				final ByteArrayOutputStream out = new ByteArrayOutputStream(contents.capacity() * 3);
+				model.printTo(Channels.newChannel(out));
+				return ByteBuffer.wrap(out.toByteArray());
+			}
+		});
+		System.out.println(result);
+		if (!result.getFailures().isEmpty()) {
+			System.out.println("Fail list:");
+			for (final Map.Entry<Path, Throwable> failure : result.getFailures().entrySet()) {
+				System.out.println(failure.getKey() + ": " + BatchConverter.Result.reason(failure.getValue()));
 			}
 		}
 	}
 
+	/**
+	 * @throws IOException
+	 *             unless the converter left a non-empty file that it wrote after the given time
+	 */
+	private static void checkWritten(final File file, final long previousModified) throws IOException {
+		if ((file.length() == 0) || (file.lastModified() == previousModified)) {
+			throw new IOException("converter.exe did not write " + file);
+		}
+	}
 }
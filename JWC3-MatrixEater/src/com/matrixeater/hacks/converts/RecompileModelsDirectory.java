@@ -1,63 +1,75 @@
 package com.matrixeater.hacks.converts;
 
-import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
 
 import com.hiveworkshop.wc3.gui.BLPHandler;
 import com.hiveworkshop.wc3.mdl.MDL;
+import com.hiveworkshop.wc3.mdl.MdlTokenizer;
+import com.hiveworkshop.wc3.mdx.MdxModel;
+import com.hiveworkshop.wc3.util.BatchConverter;
 
-public final class RecompileModelsDirectory {
-	private static final List<String> failed = new ArrayList<>();
-	private static final List<String> passed = new ArrayList<>();
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
-	public static void main(final String[] args) {
+public final class RecompileModelsDirectory {
+	public static void main(final String[] args) throws Exception {
 		BLPHandler.WANT_DESTROY_SAVED_TGAS = false;
 		if (args.length != 1) {
 			System.err.println("Usage: <mutableModelsDirectory>");
 			System.exit(-1);
 		}
-		squish(new File(args[0]));
-		System.out.println("Passed: " + passed.size());
-		System.out.println("Failed: " + failed.size());
-		System.out.println("Fail list:");
-		for (final String failedName : failed) {
-			System.out.println(failedName);
-		}
-	}
+		// BLPHandler is not safe to share between threads, so textures are converted one at a time
+		final Object blpLock = new Object();
+		final BatchConverter converter = new BatchConverter();
+		// sources are deleted once converted, so a rerun resumes with whatever is left
+		converter.setDeleteSources(true);
+		final BatchConverter.Result result = converter.convert(Paths.get(args[0]), new BatchConverter.Conversion() {
+			@Override
+			public boolean accepts(final Path file) {
+				final String name = file.getFileName().toString().toLowerCase();
+				return name.endsWith(".tga") || name.endsWith(".mdl");
+			}
 
-	private static void squish(final File target) {
-		if (target.isDirectory()) {
-			for (final File file : target.listFiles()) {
-				squish(file);
+			@Override
+			public Path getTarget(final Path source) {
+				final String name = source.getFileName().toString();
+				final String extension = name.toLowerCase().endsWith(".tga") ? ".blp" : ".mdx";
+				return source.resolveSibling(name.substring(0, name.lastIndexOf('.')) + extension);
 			}
-		} else {
-			if (target.getName().toLowerCase().endsWith(".tga")) {
-				try {
-					System.out.println(target.getPath());
-					final File blpFile = new File(
-							target.getPath().substring(0, target.getPath().lastIndexOf('.')) + ".blp");
-					blpFile.delete();
-					BLPHandler.get().convertTGAtoBLP(target, blpFile);
-					passed.add(target.getPath());
-					target.delete();
-				} catch (final Exception e) {
-					failed.add(target.getPath());
-				}
-			} else if (target.getName().toLowerCase().endsWith(".mdl")) {
-				try {
-					System.out.println(target.getPath());
-					// MDXHandler.compile(target);
-					final File mdxFile = new File(
-							target.getPath().substring(0, target.getPath().lastIndexOf('.')) + ".mdx");
-					MDL.read(target).printTo(mdxFile);
-					passed.add(target.getPath());
-					target.delete();
-				} catch (final Exception e) {
-					failed.add(target.getPath());
+
+			@Override
+			public ByteBuffer convert(final Path source, final ByteBuffer contents) throws Exception {
+				final Path target = getTarget(source);
+				if (source.getFileName().toString().toLowerCase().endsWith(".tga")) {
+					synchronized (blpLock) {
+						Files.deleteIfExists(target);
+						BLPHandler.get().convertTGAtoBLP(source.toFile(), target.toFile());
+					}
+					if (!Files.exists(target)) {
+						throw new IOException("blplabcl did not write " + target);
+					}
+					return null;
 				}
+				final CharBuffer text = MdlTokenizer.CHARSET.decode(contents);
+				final MDL model = MDL.read(
+						new MdlTokenizer(new CharArrayReader(text.array(), text.arrayOffset(), text.remaining())));
+				final BlizzardDataOutputBuffer out = new BlizzardDataOutputBuffer(contents.capacity());
+				new MdxModel(model).save(out);
+				return out.getData();
+			}
+		});
+		System.out.println(result);
+		if (!result.getFailures().isEmpty()) {
+			System.out.println("Fail list:");
+			for (final Map.Entry<Path, Throwable> failure : result.getFailures().entrySet()) {
+				System.out.println(failure.getKey() + ": " + BatchConverter.Result.reason(failure.getValue()));
 			}
 		}
 	}
-
 }
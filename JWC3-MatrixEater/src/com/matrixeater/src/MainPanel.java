@@ -126,6 +126,7 @@ import com.hiveworkshop.wc3.mdl.Layer;
 import com.hiveworkshop.wc3.mdl.MDL;
 import com.hiveworkshop.wc3.mdl.MDXHandler;
 import com.hiveworkshop.wc3.mdl.Material;
+import com.hiveworkshop.wc3.mdl.ModelCache;
 import com.hiveworkshop.wc3.mdl.ParticleEmitter2;
 import com.hiveworkshop.wc3.mdl.TVertex;
 import com.hiveworkshop.wc3.mdl.Triangle;
@@ -135,7 +136,6 @@ import com.hiveworkshop.wc3.mdl.VisibilitySource;
 import com.hiveworkshop.wc3.mdl.v2.ModelView;
 import com.hiveworkshop.wc3.mdl.v2.ModelViewStateListener;
 import com.hiveworkshop.wc3.mdx.MdxModel;
-import com.hiveworkshop.wc3.mdx.MdxUtils;
 import com.hiveworkshop.wc3.mpq.MpqCodebase;
 import com.hiveworkshop.wc3.units.GameObject;
 import com.hiveworkshop.wc3.units.ModelOptionPane;
@@ -156,7 +156,6 @@ import com.matrixeater.src.viewer.AnimationViewer;
 import com.owens.oobjloader.builder.Build;
 import com.owens.oobjloader.parser.Parse;
 
-import de.wc3data.stream.BlizzardDataInputStream;
 import de.wc3data.stream.BlizzardDataOutputStream;
 import net.infonode.docking.DockingWindow;
 import net.infonode.docking.FloatingWindow;
@@ -3033,9 +3032,8 @@ public class MainPanel extends JPanel implements ActionListener, UndoHandler {
 		ModelPanel temp = null;
 		if (f.getPath().toLowerCase().endsWith("mdx")) {
 			if (prefs.isUseNativeMDXParser()) {
-				try (BlizzardDataInputStream in = new BlizzardDataInputStream(new FileInputStream(f))) {
-					final MDL model = new MDL(MdxUtils.loadModel(in));
-					model.setFile(f);
+				try {
+					final MDL model = ModelCache.getDefault().load(f);
 					temp = new ModelPanel(model, prefs, MainPanel.this, selectionItemTypeGroup, selectionModeGroup,
 							modelStructureChangeListener, coordDisplayListener, viewportTransferHandler, icon);
 				} catch (final FileNotFoundException e) {
@@ -3072,7 +3070,15 @@ public class MainPanel extends JPanel implements ActionListener, UndoHandler {
 				e.printStackTrace();
 			}
 		} else {
-			temp = new ModelPanel(MDL.read(f), prefs, MainPanel.this, selectionItemTypeGroup, selectionModeGroup,
+			final MDL model;
+			try {
+				model = ModelCache.getDefault().load(f);
+			} catch (final Exception e) {
+				e.printStackTrace();
+				ExceptionPopup.display(e);
+				throw new RuntimeException("Reading mdl failed");
+			}
+			temp = new ModelPanel(model, prefs, MainPanel.this, selectionItemTypeGroup, selectionModeGroup,
 					modelStructureChangeListener, coordDisplayListener, viewportTransferHandler, icon);
 			temp.setFile(f);
 		}
@@ -0,0 +1,92 @@
+package com.hiveworkshop.scripts;
+
+import java.io.BufferedWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import mpq.ArchivedFile;
+import mpq.ArchivedFileExtractor;
+import mpq.ArchivedFileStream;
+import mpq.HashLookup;
+import mpq.MPQArchive;
+import mpq.MappedArchiveChannel;
+
+/**
+ * Golden test for the sector decompressors. In record mode the size and CRC-32 of every file named by the
+ * archive listfile is written to a text file, in verify mode the files are extracted again and compared
+ * against such a record. Recording with a known good build and verifying after changing a codec shows
+ * whether any file now decompresses differently.
+ */
+public class ArchiveGoldenCheck {
+	public static void main(final String[] args) throws Exception {
+		if ((args.length < 3) || !(args[0].equals("record") || args[0].equals("verify"))) {
+			System.err.println("Usage: ArchiveGoldenCheck record|verify <archive> <golden file>");
+			System.exit(1);
+		}
+		final Path golden = Paths.get(args[2]);
+		final MappedArchiveChannel channel = MappedArchiveChannel.open(Paths.get(args[1]));
+		final MPQArchive archive = new MPQArchive(channel);
+		final ArchivedFileExtractor extractor = new ArchivedFileExtractor();
+
+		final Map<String, String> results = new LinkedHashMap<>();
+		for (final String path : new String(read(channel, archive, extractor, "(listfile)"), StandardCharsets.UTF_8)
+				.split("[\r\n;]+")) {
+			if (path.isEmpty()) {
+				continue;
+			}
+			try {
+				final byte[] contents = read(channel, archive, extractor, path);
+				final CRC32 crc = new CRC32();
+				crc.update(contents);
+				results.put(path, contents.length + " " + Long.toHexString(crc.getValue()));
+			} catch (final Exception e) {
+				results.put(path, "error " + e.getClass().getSimpleName());
+			}
+		}
+		channel.close();
+
+		if (args[0].equals("record")) {
+			try (BufferedWriter writer = Files.newBufferedWriter(golden, StandardCharsets.UTF_8)) {
+				for (final Map.Entry<String, String> result : results.entrySet()) {
+					writer.write(result.getValue() + "\t" + result.getKey());
+					writer.newLine();
+				}
+			}
+			System.out.println("Recorded " + results.size() + " files");
+			return;
+		}
+
+		final List<String> lines = Files.readAllLines(golden, StandardCharsets.UTF_8);
+		int mismatches = 0;
+		for (final String line : lines) {
+			final int tab = line.indexOf('\t');
+			final String path = line.substring(tab + 1);
+			final String expected = line.substring(0, tab);
+			final String actual = results.get(path);
+			if (!expected.equals(actual)) {
+				System.out.println(path + ": expected " + expected + ", got " + actual);
+				mismatches++;
+			}
+		}
+		System.out.println(lines.size() + " files checked, " + mismatches + " mismatches");
+		System.exit(mismatches == 0 ? 0 : 2);
+	}
+
+	private static byte[] read(final MappedArchiveChannel channel, final MPQArchive archive,
+			final ArchivedFileExtractor extractor, final String path) throws Exception {
+		final ArchivedFile file = archive.lookupHash2(new HashLookup(path));
+		try (ArchivedFileStream stream = new ArchivedFileStream(channel, extractor, file)) {
+			final ByteBuffer contents = stream.readFully();
+			final byte[] bytes = new byte[contents.remaining()];
+			contents.get(bytes);
+			return bytes;
+		}
+	}
+}
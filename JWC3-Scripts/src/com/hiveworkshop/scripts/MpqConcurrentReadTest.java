@@ -0,0 +1,108 @@
+package com.hiveworkshop.scripts;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.hiveworkshop.wc3.mpq.MpqCodebase;
+
+/**
+ * Stress test for concurrent reads from the game archives. Every file is first extracted on a single
+ * thread as a reference, then the same files are extracted again from many threads at once in random
+ * order and compared byte for byte.
+ */
+public class MpqConcurrentReadTest {
+	private static final String[] EXTENSIONS = { ".blp", ".mdx", ".slk", ".txt", ".wav" };
+
+	public static void main(final String[] args) throws Exception {
+		final int threadCount = args.length > 0 ? Integer.parseInt(args[0])
+				: Runtime.getRuntime().availableProcessors() * 2;
+		final int fileCount = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		final int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+		final MpqCodebase codebase = MpqCodebase.get();
+		final List<String> paths = new ArrayList<>();
+		for (final String path : codebase.getMergedListfile()) {
+			if (paths.size() >= fileCount) {
+				break;
+			}
+			final String lowerPath = path.toLowerCase();
+			for (final String extension : EXTENSIONS) {
+				if (lowerPath.endsWith(extension)) {
+					paths.add(path);
+					break;
+				}
+			}
+		}
+
+		System.out.println("Extracting " + paths.size() + " reference files");
+		final List<byte[]> expected = new ArrayList<>();
+		for (final String path : paths) {
+			expected.add(read(codebase, path));
+		}
+
+		System.out.println("Extracting on " + threadCount + " threads, " + rounds + " rounds");
+		final AtomicInteger mismatches = new AtomicInteger(0);
+		final AtomicInteger checked = new AtomicInteger(0);
+		final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		final List<Future<?>> futures = new ArrayList<>();
+		final long start = System.currentTimeMillis();
+		for (int thread = 0; thread < threadCount; thread++) {
+			final List<Integer> order = new ArrayList<>();
+			for (int round = 0; round < rounds; round++) {
+				for (int i = 0; i < paths.size(); i++) {
+					order.add(i);
+				}
+			}
+			Collections.shuffle(order, new Random(thread));
+			futures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					for (final int index : order) {
+						final byte[] actual = read(codebase, paths.get(index));
+						if (!Arrays.equals(expected.get(index), actual)) {
+							mismatches.incrementAndGet();
+							System.err.println("Mismatch: " + paths.get(index));
+						}
+						checked.incrementAndGet();
+					}
+					return null;
+				}
+			}));
+		}
+		for (final Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+		final long elapsed = System.currentTimeMillis() - start;
+
+		System.out.println("Checked: " + checked.get() + " in " + elapsed + " ms");
+		System.out.println("Mismatches: " + mismatches.get());
+		System.exit(mismatches.get() == 0 ? 0 : 1);
+	}
+
+	private static byte[] read(final MpqCodebase codebase, final String path) throws IOException {
+		try (InputStream stream = codebase.getResourceAsStream(path)) {
+			if (stream == null) {
+				return null;
+			}
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[8192];
+			int read;
+			while ((read = stream.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package com.hiveworkshop.scripts;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+import mpq.ArchivedFile;
+import mpq.ArchivedFileExtractor;
+import mpq.ArchivedFileStream;
+import mpq.BlockTable;
+import mpq.HashLookup;
+import mpq.MPQArchive;
+import mpq.MPQArchiveWriter;
+import mpq.MPQException;
+import mpq.MappedArchiveChannel;
+
+/**
+ * Rebuilds an archive or map by extracting every file named in its listfile and writing them to a new
+ * archive. Anything in front of the archive, such as the header of a Warcraft III map, is copied as is.
+ * Reports how long extracting and writing took.
+ */
+public class MpqRebuild {
+	public static void main(final String[] args) throws Exception {
+		if (args.length < 2) {
+			System.err.println("Usage: MpqRebuild <input archive> <output archive> [threads]");
+			System.exit(1);
+		}
+		final Path input = Paths.get(args[0]);
+		final Path output = Paths.get(args[1]);
+		final int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+		final MappedArchiveChannel channel = MappedArchiveChannel.open(input);
+		final MPQArchive archive = new MPQArchive(channel);
+		final ArchivedFileExtractor extractor = new ArchivedFileExtractor();
+		final MPQArchiveWriter writer = new MPQArchiveWriter();
+		writer.setBlockShift(archive.getBlockShift());
+		writer.setPool(new ForkJoinPool(threads));
+
+		final long extractStart = System.currentTimeMillis();
+		long totalSize = 0;
+		int fileCount = 0;
+		for (final String path : read(channel, archive, extractor, MPQArchiveWriter.LISTFILE)
+				.split("[\r\n;]+")) {
+			if (path.isEmpty() || path.equals(MPQArchiveWriter.LISTFILE) || path.equals(MPQArchiveWriter.ATTRIBUTES)) {
+				continue;
+			}
+			final ArchivedFile file;
+			try {
+				file = archive.lookupHash2(new HashLookup(path));
+			} catch (final MPQException e) {
+				System.err.println("Listed file not in archive: " + path);
+				continue;
+			}
+			try (ArchivedFileStream stream = new ArchivedFileStream(channel, extractor, file)) {
+				final ByteBuffer contents = stream.readFully();
+				// keep encryption as found so that files relying on it still load
+				writer.add(path, contents, BlockTable.FLAG_COMPRESS
+						| (file.flags & (BlockTable.FLAG_ENCRYPTED | BlockTable.FLAG_FIX_KEY)));
+				totalSize += contents.remaining();
+				fileCount++;
+			}
+		}
+		final long extractTime = System.currentTimeMillis() - extractStart;
+
+		final long writeStart = System.currentTimeMillis();
+		try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			if (archive.getArchiveOffset() > 0) {
+				final ByteBuffer prefix = ByteBuffer.allocate((int) archive.getArchiveOffset());
+				channel.read(prefix, 0);
+				prefix.flip();
+				while (prefix.hasRemaining()) {
+					out.write(prefix);
+				}
+			}
+			writer.write(out);
+		}
+		final long writeTime = System.currentTimeMillis() - writeStart;
+		channel.close();
+
+		System.out.println("Files: " + fileCount + " (" + totalSize + " bytes)");
+		System.out.println("Extracted in " + extractTime + " ms");
+		System.out.println("Written in " + writeTime + " ms on " + threads + " threads");
+	}
+
+	private static String read(final MappedArchiveChannel channel, final MPQArchive archive,
+			final ArchivedFileExtractor extractor, final String path) throws Exception {
+		final ArchivedFile file = archive.lookupHash2(new HashLookup(path));
+		try (ArchivedFileStream stream = new ArchivedFileStream(channel, extractor, file)) {
+			final ByteBuffer contents = stream.readFully();
+			final byte[] bytes = new byte[contents.remaining()];
+			contents.get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+	}
+}
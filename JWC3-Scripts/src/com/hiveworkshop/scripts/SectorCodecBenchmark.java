@@ -0,0 +1,204 @@
+package com.hiveworkshop.scripts;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import mpq.ArchivedFile;
+import mpq.ArchivedFileExtractor;
+import mpq.ArchivedFileStream;
+import mpq.HashLookup;
+import mpq.MPQArchive;
+import mpq.MPQException;
+import mpq.MappedArchiveChannel;
+import mpq.compression.Compression;
+import mpq.util.ChannelIO;
+import mpq.util.Cryption;
+
+/**
+ * Benchmarks sector decompression of an archive. Every compressed sector of the files named by the
+ * archive listfile is grouped by its compression mask and decompressed repeatedly. The decompressed
+ * sectors are then recompressed with zlib and inflated the same number of times so that each codec can
+ * be compared against zlib on identical data.
+ */
+public class SectorCodecBenchmark {
+	public static void main(final String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: SectorCodecBenchmark <archive> [rounds]");
+			System.exit(1);
+		}
+		final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+		final MappedArchiveChannel channel = MappedArchiveChannel.open(Paths.get(args[0]));
+		final MPQArchive archive = new MPQArchive(channel);
+		final Map<Integer, List<Sector>> sectorsByMask = new TreeMap<>();
+		for (final String path : readListfile(channel, archive)) {
+			final ArchivedFile file;
+			try {
+				file = archive.lookupHash2(new HashLookup(path));
+			} catch (final MPQException e) {
+				continue;
+			}
+			if ((file.compression < 2) || (file.blockOffsets == null) || (file.fileSize == 0)) {
+				continue;
+			}
+			if (!file.ready) {
+				file.loadOffsets(channel);
+			}
+			final int sectorSize = 512 << file.blockShift;
+			final int sectorCount = file.blockOffsets.length - 1;
+			for (int sector = 0; sector < sectorCount; sector++) {
+				final int size = Math.min(sectorSize, file.fileSize - (sector * sectorSize));
+				final ByteBuffer raw = ByteBuffer
+						.allocate(file.blockOffsets[sector + 1] - file.blockOffsets[sector]);
+				ChannelIO.readFully(channel, raw, file.fileOffset + file.blockOffsets[sector]);
+				raw.flip();
+				if (file.key != 0) {
+					Cryption.decryptData(raw, raw, file.key + sector);
+				}
+				if (raw.limit() >= size) {
+					// stored sector
+					continue;
+				}
+				final Sector entry = new Sector(raw, file.compression, file.blockShift, size);
+				List<Sector> sectors = sectorsByMask.get(entry.getMask());
+				if (sectors == null) {
+					sectors = new ArrayList<>();
+					sectorsByMask.put(entry.getMask(), sectors);
+				}
+				sectors.add(entry);
+			}
+		}
+
+		final Compression compression = new Compression();
+		final ByteBuffer[] scratch = new ByteBuffer[22];
+		final Inflater inflater = new Inflater();
+		System.out.println(String.format("%-6s %8s %12s %12s %12s %12s", "mask", "sectors", "packed", "unpacked",
+				"codec MB/s", "zlib MB/s"));
+		for (final Map.Entry<Integer, List<Sector>> group : sectorsByMask.entrySet()) {
+			final List<Sector> sectors = group.getValue();
+			long packed = 0;
+			long unpacked = 0;
+			for (final Sector sector : sectors) {
+				sector.prepare(compression, scratch);
+				packed += sector.compressed.length;
+				unpacked += sector.size;
+			}
+
+			// warm up both paths before timing
+			decompressAll(compression, scratch, sectors, 2);
+			inflateAll(inflater, sectors, 2);
+			final long codecTime = decompressAll(compression, scratch, sectors, rounds);
+			final long zlibTime = inflateAll(inflater, sectors, rounds);
+
+			System.out.println(String.format("0x%02X   %8d %12d %12d %12.1f %12.1f", group.getKey(), sectors.size(),
+					packed, unpacked, megabytesPerSecond(unpacked * rounds, codecTime),
+					megabytesPerSecond(unpacked * rounds, zlibTime)));
+		}
+		inflater.end();
+		channel.close();
+	}
+
+	private static List<String> readListfile(final MappedArchiveChannel channel, final MPQArchive archive)
+			throws Exception {
+		final List<String> paths = new ArrayList<>();
+		final ArchivedFile listfile = archive.lookupHash2(new HashLookup("(listfile)"));
+		try (ArchivedFileStream stream = new ArchivedFileStream(channel, new ArchivedFileExtractor(), listfile)) {
+			final ByteBuffer contents = stream.readFully();
+			final byte[] bytes = new byte[contents.remaining()];
+			contents.get(bytes);
+			for (final String line : new String(bytes, StandardCharsets.UTF_8).split("[\r\n;]+")) {
+				if (!line.isEmpty()) {
+					paths.add(line);
+				}
+			}
+		}
+		return paths;
+	}
+
+	private static long decompressAll(final Compression compression, final ByteBuffer[] scratch,
+			final List<Sector> sectors, final int rounds) throws MPQException {
+		final long start = System.nanoTime();
+		for (int round = 0; round < rounds; round++) {
+			for (final Sector sector : sectors) {
+				sector.decompress(compression, scratch);
+			}
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static long inflateAll(final Inflater inflater, final List<Sector> sectors, final int rounds)
+			throws Exception {
+		final byte[] out = new byte[1 << 21];
+		final long start = System.nanoTime();
+		for (int round = 0; round < rounds; round++) {
+			for (final Sector sector : sectors) {
+				inflater.reset();
+				inflater.setInput(sector.deflated);
+				inflater.inflate(out, 0, sector.size);
+			}
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static double megabytesPerSecond(final long bytes, final long nanos) {
+		return (bytes / (1024.0 * 1024.0)) / (nanos / 1e9);
+	}
+
+	private static final class Sector {
+		private final byte[] compressed;
+		private final byte compressionType;
+		private final int blockShift;
+		private final int size;
+		private byte[] deflated;
+
+		public Sector(final ByteBuffer raw, final byte compressionType, final int blockShift, final int size) {
+			compressed = new byte[raw.remaining()];
+			raw.get(compressed);
+			this.compressionType = compressionType;
+			this.blockShift = blockShift;
+			this.size = size;
+		}
+
+		public int getMask() {
+			return compressed[0] & 0xFF;
+		}
+
+		// the scratch buffer is swapped with a pooled one by the decompressor, as done by file streams
+		public ByteBuffer decompress(final Compression compression, final ByteBuffer[] scratch)
+				throws MPQException {
+			ByteBuffer buffer = scratch[blockShift];
+			if (buffer == null) {
+				buffer = ByteBuffer.allocate(512 << blockShift);
+			}
+			buffer.clear();
+			buffer.put(compressed);
+			buffer.flip();
+			final ByteBuffer result = compressionType >= 3 ? compression.blockDecompress3(buffer, blockShift)
+					: compression.blockDecompress2(buffer, blockShift);
+			scratch[blockShift] = result;
+			return result;
+		}
+
+		// decompresses once and keeps a zlib compressed copy of the result
+		public void prepare(final Compression compression, final ByteBuffer[] scratch) throws MPQException {
+			final ByteBuffer result = decompress(compression, scratch);
+			final byte[] plain = new byte[result.remaining()];
+			result.get(plain);
+			final Deflater deflater = new Deflater();
+			deflater.setInput(plain);
+			deflater.finish();
+			final byte[] out = new byte[plain.length + (plain.length >> 8) + 64];
+			final int length = deflater.deflate(out);
+			deflater.end();
+			deflated = new byte[length];
+			System.arraycopy(out, 0, deflated, 0, length);
+		}
+	}
+}
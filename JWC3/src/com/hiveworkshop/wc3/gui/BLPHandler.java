@@ -11,12 +11,28 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.imageio.ImageIO;
 
+import com.hiveworkshop.wc3.mpq.Codebase;
+import com.hiveworkshop.wc3.mpq.CodebaseChangeListener;
+import com.hiveworkshop.wc3.mpq.FolderCodebase;
+import com.hiveworkshop.wc3.mpq.LayeredCodebase;
 import com.hiveworkshop.wc3.mpq.MpqCodebase;
+import com.hiveworkshop.wc3.mpq.WatchedFolderCodebase;
 
 import de.wc3data.image.BlpFile;
 
@@ -27,25 +43,198 @@ public class BLPHandler {
 	}
 
 	/**
-	 * Caching here is dangerous, only works if you're not changing the underlying images.
+	 * Caching here is dangerous, only works if you're not changing the underlying images. Entries are
+	 * dropped when their file changes in a watched working directory.
 	 */
-	Map<String, BufferedImage> cache = new HashMap<>();
+	Map<String, BufferedImage> cache = new ConcurrentHashMap<>();
+
+	// working directories kept watched without anyone listening to them, as each watch holds a thread
+	private static final int MAX_UNLISTENED_SOURCES = 4;
+
+	/**
+	 * Game archives over the working directory, per working directory, least recently used first. Misses in
+	 * the folder are remembered so that game textures do not probe the disk every time.
+	 */
+	private final Map<String, LayeredCodebase> textureSources = new LinkedHashMap<>(16, 0.75f, true);
+	// number of texture change listeners per working directory, whose sources are never dropped
+	private final Map<String, Integer> listenerCounts = new HashMap<>();
+
+	private final CodebaseChangeListener cacheInvalidator = new CodebaseChangeListener() {
+		@Override
+		public void filesChanged(final Codebase source, final Set<String> filepaths) {
+			final List<String> keys = new ArrayList<>(filepaths);
+			// textures from the folder are cached under their full path
+			for (final Codebase layer : ((LayeredCodebase) source).getLayers()) {
+				if (layer instanceof FolderCodebase) {
+					for (final String filepath : filepaths) {
+						final Path path = ((FolderCodebase) layer).resolve(filepath);
+						if (path != null) {
+							keys.add(path.toString());
+						}
+					}
+				}
+			}
+			invalidate(keys);
+		}
+	};
+
+	private synchronized LayeredCodebase getTextureSources(final String workingDirectory) {
+		LayeredCodebase sources = textureSources.get(workingDirectory);
+		if (sources == null) {
+			dropUnlistenedSources(MAX_UNLISTENED_SOURCES - 1);
+			sources = new LayeredCodebase();
+			// the installation archives change as maps are loaded so must not remember misses
+			sources.addLayer(MpqCodebase.get(), 1, false);
+			if (workingDirectory != null) {
+				FolderCodebase folder;
+				try {
+					folder = new WatchedFolderCodebase(Paths.get(workingDirectory));
+				} catch (final IOException e) {
+					// still usable, just without noticing changes
+					folder = new FolderCodebase(Paths.get(workingDirectory));
+				}
+				sources.addLayer(folder, 0);
+			}
+			sources.addChangeListener(cacheInvalidator);
+			textureSources.put(workingDirectory, sources);
+		}
+		return sources;
+	}
+
+	/**
+	 * Tells a listener when textures change on disk in a working directory, so that views can reload just
+	 * those textures.
+	 */
+	public synchronized void addTextureChangeListener(final String workingDirectory,
+			final CodebaseChangeListener listener) {
+		getTextureSources(workingDirectory).addChangeListener(listener);
+		final Integer count = listenerCounts.get(workingDirectory);
+		listenerCounts.put(workingDirectory, count == null ? 1 : count + 1);
+	}
+
+	/**
+	 * Stops telling a listener of changes. Once nobody listens to a working directory it is only watched
+	 * until a few others have been used since.
+	 */
+	public synchronized void removeTextureChangeListener(final String workingDirectory,
+			final CodebaseChangeListener listener) {
+		getTextureSources(workingDirectory).removeChangeListener(listener);
+		final Integer count = listenerCounts.get(workingDirectory);
+		if ((count == null) || (count <= 1)) {
+			listenerCounts.remove(workingDirectory);
+		} else {
+			listenerCounts.put(workingDirectory, count - 1);
+		}
+		dropUnlistenedSources(MAX_UNLISTENED_SOURCES);
+	}
+
+	/**
+	 * Stops watching the least recently used working directories nobody listens to, until at most the given
+	 * number are left. Their cached textures are dropped too, since changes to them would go unnoticed.
+	 */
+	private void dropUnlistenedSources(final int keep) {
+		int unlistened = 0;
+		for (final String workingDirectory : textureSources.keySet()) {
+			if (!listenerCounts.containsKey(workingDirectory)) {
+				unlistened++;
+			}
+		}
+		final Iterator<Map.Entry<String, LayeredCodebase>> iterator = textureSources.entrySet().iterator();
+		while ((unlistened > keep) && iterator.hasNext()) {
+			final Map.Entry<String, LayeredCodebase> entry = iterator.next();
+			if (listenerCounts.containsKey(entry.getKey())) {
+				continue;
+			}
+			iterator.remove();
+			unlistened--;
+			entry.getValue().removeChangeListener(cacheInvalidator);
+			for (final Codebase layer : entry.getValue().getLayers()) {
+				if (layer instanceof FolderCodebase) {
+					final String root = ((FolderCodebase) layer).getRoot().toString();
+					final Iterator<String> keys = cache.keySet().iterator();
+					while (keys.hasNext()) {
+						if (keys.next().startsWith(root)) {
+							keys.remove();
+						}
+					}
+				}
+				if (layer instanceof WatchedFolderCodebase) {
+					try {
+						((WatchedFolderCodebase) layer).close();
+					} catch (final IOException e) {
+						e.printStackTrace();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Drops cached textures so that they are loaded again next time.
+	 *
+	 * @param filepaths
+	 *            paths of the textures, compared regardless of case and slash direction
+	 */
+	public void invalidate(final Collection<String> filepaths) {
+		final Set<String> keys = new HashSet<>();
+		for (final String filepath : filepaths) {
+			keys.add(LayeredCodebase.normalize(filepath).toLowerCase(Locale.ROOT));
+		}
+		final Iterator<String> iterator = cache.keySet().iterator();
+		while (iterator.hasNext()) {
+			if (keys.contains(LayeredCodebase.normalize(iterator.next()).toLowerCase(Locale.ROOT))) {
+				iterator.remove();
+			}
+		}
+	}
 
 	public BufferedImage getTexture(final String workingDirectory, final String filepath) {
-		final BufferedImage image = getGameTex(filepath);
-		if (image != null) {
-			return image;
+		final LayeredCodebase sources = getTextureSources(workingDirectory);
+		final Codebase winner = sources.findLayer(filepath);
+		Exception failure = null;
+		if (winner != null) {
+			// a copy that fails to decode falls back to the next layer that has the file
+			boolean reached = false;
+			for (final Codebase source : sources.getLayers()) {
+				if (source == winner) {
+					reached = true;
+				} else if (!reached || !source.has(filepath)) {
+					continue;
+				}
+				try {
+					final BufferedImage image = readTexture(source, filepath);
+					if (image != null) {
+						return image;
+					}
+				} catch (final Exception exc) {
+					failure = exc;
+				}
+			}
 		}
-		try {
-			final BufferedImage newImage2 = getCustomTex(workingDirectory + "\\" + filepath);
-			if (newImage2 != null) {
-				return newImage2;
+		throw new RuntimeException("Failed to load game texture: " + filepath + " (in " + workingDirectory + ")",
+				failure);
+	}
+
+	private BufferedImage readTexture(final Codebase source, final String filepath) {
+		if (source == MpqCodebase.get()) {
+			return getGameTex(filepath);
+		}
+		if (source instanceof WatchedFolderCodebase) {
+			// dropped by the folder's change listener when the file changes
+			final String path = ((FolderCodebase) source).resolve(filepath).toString();
+			BufferedImage image = cache.get(path);
+			if (image == null) {
+				image = getCustomTex(path);
+				if (image != null) {
+					cache.put(path, image);
+				}
 			}
-			throw new RuntimeException("Failed to load game texture: " + filepath + " (in " + workingDirectory + ")");
-		} catch (final Exception exc2) {
-			throw new RuntimeException("Failed to load game texture: " + filepath + " (in " + workingDirectory + ")",
-					exc2);
+			return image;
 		}
+		if (source instanceof FolderCodebase) {
+			return getCustomTex(source.getFile(filepath).getPath());
+		}
+		return null;
 	}
 
 	/**
@@ -0,0 +1,300 @@
+package com.hiveworkshop.wc3.gui.modeledit;
+
+import static org.lwjgl.opengl.GL11.GL_COLOR_BUFFER_BIT;
+import static org.lwjgl.opengl.GL11.GL_COLOR_MATERIAL;
+import static org.lwjgl.opengl.GL11.GL_DEPTH_BUFFER_BIT;
+import static org.lwjgl.opengl.GL11.GL_DEPTH_TEST;
+import static org.lwjgl.opengl.GL11.GL_DIFFUSE;
+import static org.lwjgl.opengl.GL11.GL_FILL;
+import static org.lwjgl.opengl.GL11.GL_FRONT_AND_BACK;
+import static org.lwjgl.opengl.GL11.GL_LIGHT0;
+import static org.lwjgl.opengl.GL11.GL_LIGHT1;
+import static org.lwjgl.opengl.GL11.GL_LIGHTING;
+import static org.lwjgl.opengl.GL11.GL_LIGHT_MODEL_AMBIENT;
+import static org.lwjgl.opengl.GL11.GL_MODELVIEW;
+import static org.lwjgl.opengl.GL11.GL_NORMALIZE;
+import static org.lwjgl.opengl.GL11.GL_POSITION;
+import static org.lwjgl.opengl.GL11.GL_PROJECTION;
+import static org.lwjgl.opengl.GL11.glBegin;
+import static org.lwjgl.opengl.GL11.glClear;
+import static org.lwjgl.opengl.GL11.glClearColor;
+import static org.lwjgl.opengl.GL11.glColor3f;
+import static org.lwjgl.opengl.GL11.glEnable;
+import static org.lwjgl.opengl.GL11.glEnd;
+import static org.lwjgl.opengl.GL11.glLight;
+import static org.lwjgl.opengl.GL11.glLightModel;
+import static org.lwjgl.opengl.GL11.glLoadIdentity;
+import static org.lwjgl.opengl.GL11.glMatrixMode;
+import static org.lwjgl.opengl.GL11.glPolygonMode;
+import static org.lwjgl.opengl.GL11.glRotatef;
+import static org.lwjgl.opengl.GL11.glScalef;
+import static org.lwjgl.opengl.GL11.glTranslatef;
+import static org.lwjgl.opengl.GL11.glViewport;
+import static org.lwjgl.util.glu.GLU.gluPerspective;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.Pbuffer;
+import org.lwjgl.opengl.PixelFormat;
+
+import com.hiveworkshop.wc3.gui.BLPHandler;
+import com.hiveworkshop.wc3.mdl.Layer.FilterMode;
+import com.hiveworkshop.wc3.mdl.Vertex;
+import com.hiveworkshop.wc3.mdx.MdxRenderModel;
+
+/**
+ * Renders an {@link MdxRenderModel} to an image offscreen, lit and textured the same way as
+ * {@link MDLSnapshot}. For thumbnails of models that are only looked at, which then never need the
+ * editable model.
+ */
+public class MdxPreviewSnapshot {
+	private final MdxRenderModel model;
+	private final int width;
+	private final int height;
+	private Vertex cameraPos = new Vertex(0, 0, 0);
+	private double zoom = 1;
+	private float xangle;
+	private float yangle;
+
+	public MdxPreviewSnapshot(final MdxRenderModel model, final int width, final int height) {
+		this.model = model;
+		this.width = width;
+		this.height = height;
+	}
+
+	public void setCameraPosition(final Vertex cameraPos) {
+		this.cameraPos = cameraPos;
+	}
+
+	public void setXangle(final float xangle) {
+		this.xangle = xangle;
+	}
+
+	public void setYangle(final float yangle) {
+		this.yangle = yangle;
+	}
+
+	public void setZoom(final double zoom) {
+		this.zoom = zoom;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Points the camera at the geosets that are not purely additive, as {@link MDLSnapshot#zoomToFit()}
+	 * does.
+	 */
+	public void zoomToFit() {
+		setYangle(35);
+		double centerX = 0;
+		double centerY = 0;
+		double centerZ = 0;
+		int vertexCount = 0;
+		for (final MdxRenderModel.Geoset geoset : model.getGeosets()) {
+			if (!geoset.isOnlyAdditive()) {
+				final float[] positions = geoset.getPositions();
+				for (int i = 0; i < positions.length; i += 3) {
+					centerX += positions[i];
+					centerY += positions[i + 1];
+					centerZ += positions[i + 2];
+				}
+				vertexCount += geoset.getVertexCount();
+			}
+		}
+		if (vertexCount == 0) {
+			return;
+		}
+		centerX /= vertexCount;
+		centerY /= vertexCount;
+		centerZ /= vertexCount;
+		double maxDistanceSquared = 0;
+		for (final MdxRenderModel.Geoset geoset : model.getGeosets()) {
+			if (!geoset.isOnlyAdditive()) {
+				final float[] positions = geoset.getPositions();
+				for (int i = 0; i < positions.length; i += 3) {
+					final double dx = positions[i] - centerX;
+					final double dy = positions[i + 1] - centerY;
+					final double dz = positions[i + 2] - centerZ;
+					maxDistanceSquared = Math.max(maxDistanceSquared, (dx * dx) + (dy * dy) + (dz * dz));
+				}
+			}
+		}
+		final double maxDistance = Math.sqrt(maxDistanceSquared);
+		setCameraPosition(new Vertex(0, -Math.sqrt(maxDistance) * 1.3, maxDistance));
+		setZoom(128 / maxDistance);
+	}
+
+	public BufferedImage getBufferedImage() throws Exception {
+		final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		final Pbuffer buffer = new Pbuffer(width, height, new PixelFormat(), null, null);
+		try {
+			buffer.makeCurrent();
+			paintGL(loadTextures());
+			final ByteBuffer pixels = BufferUtils.createByteBuffer(width * height * 4);
+			GL11.glReadPixels(0, 0, width, height, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, pixels);
+			final int[] data = new int[width * height];
+			pixels.asIntBuffer().get(data);
+			// rows come bottom up and as RGBA
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					final int rgba = data[((height - 1 - y) * width) + x];
+					image.setRGB(x, y, (rgba >>> 8) | ((rgba & 0xFF) << 24));
+				}
+			}
+		} finally {
+			buffer.destroy();
+		}
+		return image;
+	}
+
+	/**
+	 * @return texture ids by texture path, for the current context
+	 */
+	private Map<String, Integer> loadTextures() {
+		final Map<String, Integer> textures = new HashMap<>();
+		for (final MdxRenderModel.Geoset geoset : model.getGeosets()) {
+			for (final MdxRenderModel.Layer layer : geoset.getLayers()) {
+				final String path = texturePath(layer);
+				if (textures.containsKey(path)) {
+					continue;
+				}
+				Integer texture = null;
+				try {
+					texture = MDLSnapshot.loadTexture(BLPHandler.get().getGameTex(path + ".blp"));
+				} catch (final Exception exc) {
+					exc.printStackTrace();
+				}
+				textures.put(path, texture);
+			}
+		}
+		return textures;
+	}
+
+	private static String texturePath(final MdxRenderModel.Layer layer) {
+		final String path = layer.getTexturePath();
+		if (path.length() == 0) {
+			if (layer.getReplaceableId() == 1) {
+				return "ReplaceableTextures\\TeamColor\\TeamColor00";
+			} else if (layer.getReplaceableId() == 2) {
+				return "ReplaceableTextures\\TeamGlow\\TeamGlow00";
+			}
+			return "textures\\white";
+		}
+		// the extension is optional in the chunk, only strip one that is there
+		final int dot = path.lastIndexOf('.');
+		if ((dot > path.lastIndexOf('\\')) && (dot > path.lastIndexOf('/'))) {
+			return path.substring(0, dot);
+		}
+		return path;
+	}
+
+	private void paintGL(final Map<String, Integer> textures) {
+		glPolygonMode(GL_FRONT_AND_BACK, GL_FILL);
+		glViewport(0, 0, width, height);
+		glEnable(GL_DEPTH_TEST);
+		GL11.glDepthFunc(GL11.GL_LEQUAL);
+		GL11.glDepthMask(true);
+		glEnable(GL_COLOR_MATERIAL);
+		glEnable(GL_LIGHTING);
+		glEnable(GL_LIGHT0);
+		glEnable(GL_LIGHT1);
+		glEnable(GL_NORMALIZE);
+		GL11.glEnable(GL11.GL_BLEND);
+		glClearColor(0f, 0f, 0f, 0f);
+		glMatrixMode(GL_PROJECTION);
+		glLoadIdentity();
+		gluPerspective(45f, (float) width / (float) height, 1.0f, 1500.0f);
+		glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+		glMatrixMode(GL_MODELVIEW);
+		glLoadIdentity();
+
+		glTranslatef(0f + (float) cameraPos.x * (float) zoom, -70f - (float) cameraPos.y * (float) zoom,
+				-200f - (float) cameraPos.z * (float) zoom);
+		glRotatef(yangle, 1f, 0f, 0f);
+		glRotatef(xangle, 0f, 1f, 0f);
+		glScalef((float) zoom, (float) zoom, (float) zoom);
+
+		final FloatBuffer ambientColor = BufferUtils.createFloatBuffer(4);
+		ambientColor.put(0.2f).put(0.2f).put(0.2f).put(1f).flip();
+		glLightModel(GL_LIGHT_MODEL_AMBIENT, ambientColor);
+
+		final FloatBuffer lightColor0 = BufferUtils.createFloatBuffer(4);
+		lightColor0.put(0.5f).put(0.5f).put(0.5f).put(1f).flip();
+		final FloatBuffer lightPos0 = BufferUtils.createFloatBuffer(4);
+		lightPos0.put(40.0f).put(100.0f).put(80.0f).put(1f).flip();
+		glLight(GL_LIGHT0, GL_DIFFUSE, lightColor0);
+		glLight(GL_LIGHT0, GL_POSITION, lightPos0);
+
+		final FloatBuffer lightColor1 = BufferUtils.createFloatBuffer(4);
+		lightColor1.put(0.2f).put(0.2f).put(0.2f).put(1f).flip();
+		final FloatBuffer lightPos1 = BufferUtils.createFloatBuffer(4);
+		lightPos1.put(-100.0f).put(100.5f).put(0.5f).put(1f).flip();
+		glLight(GL_LIGHT1, GL_DIFFUSE, lightColor1);
+		glLight(GL_LIGHT1, GL_POSITION, lightPos1);
+
+		glColor3f(2f, 2f, 2f);
+		for (final MdxRenderModel.Geoset geoset : model.getGeosets()) {
+			final float[] positions = geoset.getPositions();
+			final float[] normals = geoset.getNormals();
+			final boolean hasNormals = normals.length == positions.length;
+			final int vertexCount = geoset.getVertexCount();
+			for (final MdxRenderModel.Layer layer : geoset.getLayers()) {
+				final Integer texture = textures.get(texturePath(layer));
+				if (texture != null) {
+					GL11.glTexEnvi(GL11.GL_TEXTURE_ENV, GL11.GL_TEXTURE_ENV_MODE, GL11.GL_MODULATE);
+					GL11.glEnable(GL11.GL_TEXTURE_2D);
+					GL11.glBindTexture(GL11.GL_TEXTURE_2D, texture);
+				} else {
+					GL11.glTexEnvi(GL11.GL_TEXTURE_ENV, GL11.GL_TEXTURE_ENV_MODE, GL11.GL_COLOR);
+					GL11.glDisable(GL11.GL_TEXTURE_2D);
+				}
+				if (layer.getFilterMode() == FilterMode.ADDITIVE.ordinal()) {
+					GL11.glDepthMask(false);
+					GL11.glBlendFunc(GL11.GL_ONE, GL11.GL_ONE);
+				} else if (layer.getFilterMode() == FilterMode.ADDALPHA.ordinal()) {
+					GL11.glDepthMask(false);
+					GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE);
+				} else {
+					GL11.glDepthMask(true);
+					GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+				}
+				float[] uvs = geoset.getUVs(layer.getCoordId());
+				if ((uvs != null) && (uvs.length < (vertexCount * 2))) {
+					uvs = null;
+				}
+				glBegin(GL11.GL_TRIANGLES);
+				for (int triangle = 0; triangle < geoset.getTriangleCount(); triangle++) {
+					final int first = triangle * 3;
+					if ((geoset.getIndex(first) >= vertexCount) || (geoset.getIndex(first + 1) >= vertexCount)
+							|| (geoset.getIndex(first + 2) >= vertexCount)) {
+						continue;
+					}
+					for (int i = first; i < (first + 3); i++) {
+						final int vertex = geoset.getIndex(i);
+						final int xyz = vertex * 3;
+						if (hasNormals) {
+							GL11.glNormal3f(normals[xyz + 1], normals[xyz + 2], normals[xyz]);
+						}
+						if (uvs != null) {
+							GL11.glTexCoord2f(uvs[vertex * 2], uvs[(vertex * 2) + 1]);
+						}
+						GL11.glVertex3f(positions[xyz + 1], positions[xyz + 2], positions[xyz]);
+					}
+				}
+				glEnd();
+			}
+		}
+	}
+}
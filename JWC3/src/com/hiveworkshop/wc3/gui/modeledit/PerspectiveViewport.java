@@ -50,7 +50,15 @@ import java.awt.image.BufferedImage;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 import javax.swing.JCheckBox;
 import javax.swing.JMenuItem;
@@ -77,6 +85,10 @@ import com.hiveworkshop.wc3.mdl.Material;
 import com.hiveworkshop.wc3.mdl.Triangle;
 import com.hiveworkshop.wc3.mdl.Vertex;
 import com.hiveworkshop.wc3.mdl.v2.ModelView;
+import com.hiveworkshop.wc3.mpq.Codebase;
+import com.hiveworkshop.wc3.mpq.CodebaseChangeListener;
+import com.hiveworkshop.wc3.mpq.LayeredCodebase;
+import com.hiveworkshop.wc3.mpq.MpqCodebase;
 
 public class PerspectiveViewport extends BetterAWTGLCanvas
 		implements MouseListener, ActionListener, MouseWheelListener {
@@ -97,6 +109,24 @@ public class PerspectiveViewport extends BetterAWTGLCanvas
 
 	JCheckBox wireframe;
 	HashMap<Bitmap, Integer> textureMap = new HashMap<>();
+	// textures being read and decoded in the background, uploaded by the render thread once done
+	private final Map<Bitmap, CompletableFuture<BufferedImage>> pendingTextures = new HashMap<>();
+	// lower case paths of texture files changed on disk, dropped from the texture map on the next reload
+	private final Set<String> staleTexturePaths = new HashSet<>();
+	// working directory the texture listener was added for, the model may move while it is shown
+	private String watchedDirectory;
+	private final CodebaseChangeListener textureChangeListener = new CodebaseChangeListener() {
+		@Override
+		public void filesChanged(final Codebase source, final Set<String> filepaths) {
+			synchronized (staleTexturePaths) {
+				for (final String filepath : filepaths) {
+					staleTexturePaths.add(filepath.toLowerCase(Locale.ROOT));
+				}
+			}
+			reloadTextures();
+			repaint();
+		}
+	};
 
 	Class<? extends Throwable> lastThrownErrorClass;
 	private final ProgramPreferences programPreferences;
@@ -128,6 +158,8 @@ public class PerspectiveViewport extends BetterAWTGLCanvas
 		cogBone = new JMenuItem("Auto-Center Bone(s)");
 		cogBone.addActionListener(this);
 		contextMenu.add(cogBone);
+		// start reading textures while the rest of the view is set up
+		requestTextures();
 	}
 
 	public void setWireframeHandler(final JCheckBox nwireframe) {
@@ -149,60 +181,128 @@ public class PerspectiveViewport extends BetterAWTGLCanvas
 		wantReloadAll = true;
 	}
 
+	@Override
+	public void addNotify() {
+		super.addNotify();
+		watchedDirectory = modelView.getModel().getWorkingDirectory() == null ? null
+				: modelView.getModel().getWorkingDirectory().getPath();
+		BLPHandler.get().addTextureChangeListener(watchedDirectory, textureChangeListener);
+	}
+
+	@Override
+	public void removeNotify() {
+		BLPHandler.get().removeTextureChangeListener(watchedDirectory, textureChangeListener);
+		super.removeNotify();
+	}
+
 	public void forceReloadTextures() {
 		texLoaded = true;
+		// drop textures whose files changed, so they are loaded again below
+		synchronized (staleTexturePaths) {
+			if (!staleTexturePaths.isEmpty()) {
+				final Iterator<Map.Entry<Bitmap, Integer>> iterator = textureMap.entrySet().iterator();
+				while (iterator.hasNext()) {
+					final Map.Entry<Bitmap, Integer> entry = iterator.next();
+					final String path = LayeredCodebase.normalize(getTexturePath(entry.getKey()) + ".blp");
+					if (staleTexturePaths.contains(path.toLowerCase(Locale.ROOT))) {
+						GL11.glDeleteTextures(entry.getValue());
+						iterator.remove();
+					}
+				}
+				synchronized (pendingTextures) {
+					final Iterator<Bitmap> pending = pendingTextures.keySet().iterator();
+					while (pending.hasNext()) {
+						final String path = LayeredCodebase.normalize(getTexturePath(pending.next()) + ".blp");
+						if (staleTexturePaths.contains(path.toLowerCase(Locale.ROOT))) {
+							pending.remove();
+						}
+					}
+				}
+				staleTexturePaths.clear();
+			}
+		}
 		// for( Bitmap tex: textureMap.keySet())
 		// {
 		// //GL11.glDeleteTextures(textureMap.get(tex));
 		// }
 		// initGL();
 
-		for (final Geoset geo : modelView.getEditableGeosets()) {// .getMDL().getGeosets()
-			for (int i = 0; i < geo.getMaterial().getLayers().size(); i++) {
-				final Bitmap tex = geo.getMaterial().getLayers().get(i).firstTexture();
-				if (textureMap.get(tex) == null) {
-					String path = tex.getPath();
-					if (path.length() == 0) {
-						if (tex.getReplaceableId() == 1) {
-							path = "ReplaceableTextures\\TeamColor\\TeamColor0" + Material.teamColor;
-						} else if (tex.getReplaceableId() == 2) {
-							path = "ReplaceableTextures\\TeamGlow\\TeamGlow0" + Material.teamColor;
-						}
-					} else {
-						path = path.substring(0, path.length() - 4);
-					}
-					Integer texture = null;
-					try {
-						texture = loadTexture(BLPHandler.get().getGameTex(path + ".blp"), tex);
-					} catch (final Exception exc) {
-						exc.printStackTrace();
-						texture = loadTexture(
-								BLPHandler.get().getCustomTex(
-										modelView.getModel().getWorkingDirectory().getPath() + "\\" + path + ".blp"),
-								tex);// TextureLoader.getTexture("TGA",
-						// new
-						// FileInputStream(new
-						// File(dispMDL.getMDL().getFile().getParent()+"\\"+path+".tga"))).getTextureID();
-
-						// try { } catch (FileNotFoundException e) {
-						// // Auto-generated catch block
-						// e.printStackTrace();
-						// } catch (IOException e) {
-						// // Auto-generated catch block
-						// e.printStackTrace();
-						// }
-					}
-					if (texture != null) {
-						textureMap.put(tex, texture);
-						// textureMapCID.put(tex,
-						// geo.getMaterial().getLayers().get(i).getCoordId());
-						// texture.bind();
+		requestTextures();
+		// upload the textures decoded so far, the rest trigger another reload when they are done. Failed
+		// ones stay pending so they are not read again until their file changes
+		synchronized (pendingTextures) {
+			final Iterator<Map.Entry<Bitmap, CompletableFuture<BufferedImage>>> iterator = pendingTextures
+					.entrySet().iterator();
+			while (iterator.hasNext()) {
+				final Map.Entry<Bitmap, CompletableFuture<BufferedImage>> entry = iterator.next();
+				if (!entry.getValue().isDone() || entry.getValue().isCompletedExceptionally()) {
+					continue;
+				}
+				final BufferedImage image = entry.getValue().join();
+				if (image != null) {
+					textureMap.put(entry.getKey(), loadTexture(image, entry.getKey()));
+					iterator.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Starts reading and decoding every texture of the shown geosets that is neither uploaded nor already
+	 * on its way, on background threads so the render thread never waits for the archives.
+	 */
+	private void requestTextures() {
+		final String workingDirectory = modelView.getModel().getWorkingDirectory() == null ? null
+				: modelView.getModel().getWorkingDirectory().getPath();
+		synchronized (pendingTextures) {
+			for (final Geoset geo : modelView.getEditableGeosets()) {
+				for (int i = 0; i < geo.getMaterial().getLayers().size(); i++) {
+					final Bitmap tex = geo.getMaterial().getLayers().get(i).firstTexture();
+					if ((textureMap.get(tex) == null) && !pendingTextures.containsKey(tex)) {
+						final String path = getTexturePath(tex) + ".blp";
+						final CompletableFuture<BufferedImage> image = MpqCodebase.get().fetch(path)
+								.thenApplyAsync(new Function<ByteBuffer, BufferedImage>() {
+									@Override
+									public BufferedImage apply(final ByteBuffer buffer) {
+										// the archive read above is cached, so only the decoding is left
+										return BLPHandler.get().getTexture(workingDirectory, path);
+									}
+								});
+						image.whenComplete(new BiConsumer<BufferedImage, Throwable>() {
+							@Override
+							public void accept(final BufferedImage result, final Throwable failure) {
+								if (failure != null) {
+									failure.printStackTrace();
+								}
+								reloadTextures();
+								repaint();
+							}
+						});
+						pendingTextures.put(tex, image);
 					}
 				}
 			}
 		}
 	}
 
+	/**
+	 * @return path of the texture without its extension, with replaceable textures resolved to the current team
+	 *         color
+	 */
+	private static String getTexturePath(final Bitmap tex) {
+		String path = tex.getPath();
+		if (path.length() == 0) {
+			if (tex.getReplaceableId() == 1) {
+				path = "ReplaceableTextures\\TeamColor\\TeamColor0" + Material.teamColor;
+			} else if (tex.getReplaceableId() == 2) {
+				path = "ReplaceableTextures\\TeamGlow\\TeamGlow0" + Material.teamColor;
+			}
+		} else {
+			path = path.substring(0, path.length() - 4);
+		}
+		return path;
+	}
+
 	public void addGeosets(final List<Geoset> geosets) {
 		for (final Geoset geo : geosets) {// .getMDL().getGeosets()
 			for (int i = 0; i < geo.getMaterial().getLayers().size(); i++) {
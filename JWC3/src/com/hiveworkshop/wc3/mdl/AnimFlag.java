@@ -1,8 +1,9 @@
 package com.hiveworkshop.wc3.mdl;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.List;
 
 import javax.swing.JOptionPane;
 
@@ -874,7 +875,7 @@ public class AnimFlag {
 
 	public AnimFlag(final AnimFlag af) {
 		title = af.title;
-		tags = af.tags;
+		tags = new ArrayList<>(af.tags);
 		globalSeq = af.globalSeq;
 		globalSeqId = af.globalSeqId;
 		hasGlobalSeq = af.hasGlobalSeq;
@@ -1022,10 +1023,10 @@ public class AnimFlag {
 			T toAdd = item;
 			if (item instanceof Vertex) {
 				final Vertex v = (Vertex) item;
-				toAdd = (T) v;
+				toAdd = (T) new Vertex(v);
 			} else if (item instanceof QuaternionRotation) {
 				final QuaternionRotation r = (QuaternionRotation) item;
-				toAdd = (T) r;
+				toAdd = (T) new QuaternionRotation(r.a, r.b, r.c, r.d);
 			}
 			copy.add(toAdd);
 		}
@@ -1133,15 +1134,18 @@ public class AnimFlag {
 		return aflg;
 	}
 
-	public static AnimFlag read(final BufferedReader mdl) {
+	public static AnimFlag read(final MdlTokenizer mdl) throws IOException {
 
 		final AnimFlag aflg = new AnimFlag();
-		aflg.title = MDLReader.readIntTitle(MDLReader.nextLine(mdl));
+		aflg.title = mdl.readWord();
 		// Types of AnimFlags:
 		// 0 Alpha
 		// 1 Scaling
 		// 2 Rotation
 		// 3 Translation
+		// 4 Color
+		// 5 TextureID
+		// Having BS random AnimFlags is okay, they all use double entries
 		int typeid = 0;
 		if (aflg.title.equals("Scaling")) {
 			typeid = 1;
@@ -1149,122 +1153,169 @@ public class AnimFlag {
 			typeid = 2;
 		} else if (aflg.title.equals("Translation")) {
 			typeid = 3;
-		} else if (aflg.title.equals("TextureID"))// aflg.title.equals("Visibility")
-													// || -- 100.088% visible in
-													// UndeadCampaign3D OutTans!
-													// Go look!
-		{
+		} else if (aflg.title.equals("TextureID")) {
 			typeid = 5;
 		} else if (aflg.title.contains("Color"))// AmbColor
 		{
 			typeid = 4;
-		} else if (!(aflg.title.equals("Alpha"))) {
-			// JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),"Unable
-			// to parse \""+aflg.title+"\": Missing or unrecognized open
-			// statement.");
-			// Having BS random AnimFlags is okay now, they all use double
-			// entries
 		}
 		aflg.typeid = typeid;
-		String line = "";
-		while (!(line = MDLReader.nextLine(mdl)).contains("\t}")) {
-			if (line.contains("Tan")) {
-				ArrayList target = null;
-				if (line.contains("In"))// InTan
-				{
-					target = aflg.inTans;
-				} else// OutTan
-				{
-					target = aflg.outTans;
-				}
-				switch (typeid) {
-				case 0: // Alpha
-					// A single double is used to store alpha data
-					target.add(new Double(MDLReader.readDouble(line)));
-					break;
-				case 1: // Scaling
-					// A vertex is used to store scaling data
-					target.add(Vertex.parseText(line));
-					break;
-				case 2: // Rotation
-					// A quaternion set of four values is used to store rotation
-					// data
-					try {
-						target.add(QuaternionRotation.parseText(line));
-					} catch (final Exception e) {
-						// typeid = 0;//Yay! random bad model.
-						target.add(new Double(MDLReader.readDouble(line)));
+		final double[] vector = new double[4];
+		mdl.openBlock();
+		while (!mdl.endBlock()) {
+			if (mdl.isNumber()) {
+				aflg.times.add(new Integer(mdl.readInt()));
+				mdl.expect(':');
+				aflg.values.add(readValue(mdl, typeid, vector));
+			} else {
+				final String keyword = mdl.peekWord();
+				if (keyword.equals("InTan")) {
+					mdl.readWord();
+					aflg.inTans.add(readValue(mdl, typeid, vector));
+				} else if (keyword.equals("OutTan")) {
+					mdl.readWord();
+					aflg.outTans.add(readValue(mdl, typeid, vector));
+				} else if (keyword.equals("GlobalSeqId")) {
+					mdl.readWord();
+					final int globalSeqId = mdl.readInt();
+					if (!aflg.hasGlobalSeq) {
+						aflg.globalSeqId = globalSeqId;
+						aflg.hasGlobalSeq = true;
+					} else {
+						JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(), "Error while parsing "
+								+ aflg.title + ": More than one Global Sequence Id is present in the same "
+								+ aflg.title + "!");
 					}
-					break;
-				case 3: // Translation
-					// A vertex is used to store translation data
-					target.add(Vertex.parseText(line));
-					break;
-				case 4: // Translation
-					// A vertex is used to store translation data
-					target.add(Vertex.parseText(line));
-					break;
-				case 5: // Alpha
-					// A single double is used to store alpha data
-					target.add(new Integer(MDLReader.readInt(line)));
-					break;
+				} else {
+					aflg.tags.add(mdl.readFlag());
 				}
-			} else if (line.contains(":")) {
-				switch (typeid) {
-				case 0: // Alpha
-					// A single double is used to store alpha data
-					aflg.times.add(new Integer(MDLReader.readBeforeColon(line)));
-					aflg.values.add(new Double(MDLReader.readDouble(line)));
-					break;
-				case 1: // Scaling
-					// A vertex is used to store scaling data
-					aflg.times.add(new Integer(MDLReader.readBeforeColon(line)));
-					aflg.values.add(Vertex.parseText(line));
-					break;
-				case 2: // Rotation
-					// A quaternion set of four values is used to store rotation
-					// data
-					try {
-
-						aflg.times.add(new Integer(MDLReader.readBeforeColon(line)));
-						aflg.values.add(QuaternionRotation.parseText(line));
-					} catch (final Exception e) {
-						// JOptionPane.showMessageDialog(null,e.getStackTrace());
-						// typeid = 0;
-						// aflg.times.add(new
-						// Integer(MDLReader.readBeforeColon(line)));
-						aflg.values.add(new Double(MDLReader.readDouble(line)));
-					}
+			}
+		}
+		return aflg;
+	}
+
+	/**
+	 * Reads a key or tangent by its shape, so that a bad model with a lone value in a Rotation still loads.
+	 */
+	private static Object readValue(final MdlTokenizer mdl, final int typeid, final double[] vector)
+			throws IOException {
+		if (mdl.isNext('{')) {
+			final int count = mdl.readVector(vector);
+			if (count == 4) {
+				return new QuaternionRotation(vector[0], vector[1], vector[2], vector[3]);
+			} else if (count == 3) {
+				return new Vertex(vector[0], vector[1], vector[2]);
+			}
+			throw new IOException("Line " + mdl.getLine() + ": Expected 3 or 4 values but found " + count);
+		} else if (typeid == 5) {
+			return new Integer(mdl.readInt());
+		}
+		return new Double(mdl.readDouble());
+	}
+
+	void writeTo(final MdlCacheWriter cache) throws IOException {
+		cache.writeString(title);
+		cache.writeStrings(tags);
+		cache.writeInt(typeid);
+		cache.writeBoolean(hasGlobalSeq);
+		cache.writeInt(globalSeqId);
+		cache.writeIntegers(times);
+		writeValues(cache, values);
+		writeValues(cache, inTans);
+		writeValues(cache, outTans);
+	}
+
+	static AnimFlag read(final MdlCacheReader cache) throws IOException {
+		final AnimFlag aflg = new AnimFlag();
+		aflg.title = cache.readString();
+		aflg.tags = cache.readStrings();
+		aflg.typeid = cache.readInt();
+		aflg.hasGlobalSeq = cache.readBoolean();
+		aflg.globalSeqId = cache.readInt();
+		aflg.times = cache.readIntegers();
+		aflg.values = readValues(cache);
+		aflg.inTans = readValues(cache);
+		aflg.outTans = readValues(cache);
+		return aflg;
+	}
+
+	/**
+	 * Writes the kind of every value followed by all of their numbers in one array.
+	 */
+	private static void writeValues(final MdlCacheWriter cache, final List<?> values) throws IOException {
+		final byte[] kinds = new byte[values.size()];
+		int numberCount = 0;
+		for (int i = 0; i < kinds.length; i++) {
+			final Object value = values.get(i);
+			if (value instanceof Integer) {
+				kinds[i] = 0;
+				numberCount += 1;
+			} else if (value instanceof Double) {
+				kinds[i] = 1;
+				numberCount += 1;
+			} else if ((value != null) && (value.getClass() == Vertex.class)) {
+				kinds[i] = 2;
+				numberCount += 3;
+			} else if (value instanceof QuaternionRotation) {
+				kinds[i] = 3;
+				numberCount += 4;
+			} else {
+				throw new IOException("Cannot cache a value of type "
+						+ (value == null ? null : value.getClass().getName()));
+			}
+		}
+		final double[] numbers = new double[numberCount];
+		int n = 0;
+		for (final Object value : values) {
+			if (value instanceof Integer) {
+				numbers[n++] = ((Integer) value).intValue();
+			} else if (value instanceof Double) {
+				numbers[n++] = ((Double) value).doubleValue();
+			} else if (value instanceof Vertex) {
+				final Vertex vertex = (Vertex) value;
+				numbers[n++] = vertex.x;
+				numbers[n++] = vertex.y;
+				numbers[n++] = vertex.z;
+			} else {
+				final QuaternionRotation rotation = (QuaternionRotation) value;
+				numbers[n++] = rotation.a;
+				numbers[n++] = rotation.b;
+				numbers[n++] = rotation.c;
+				numbers[n++] = rotation.d;
+			}
+		}
+		cache.writeBytes(kinds);
+		cache.writeNumbers(numbers);
+	}
+
+	private static ArrayList<Object> readValues(final MdlCacheReader cache) throws IOException {
+		final byte[] kinds = cache.readBytes();
+		final double[] numbers = cache.readNumbers();
+		final ArrayList<Object> values = new ArrayList<>(kinds.length);
+		int n = 0;
+		try {
+			for (final byte kind : kinds) {
+				switch (kind) {
+				case 0:
+					values.add(Integer.valueOf((int) numbers[n++]));
 					break;
-				case 3: // Translation
-					// A vertex is used to store translation data
-					aflg.times.add(new Integer(MDLReader.readBeforeColon(line)));
-					aflg.values.add(Vertex.parseText(line));
+				case 1:
+					values.add(Double.valueOf(numbers[n++]));
 					break;
-				case 4: // Color
-					// A vertex is used to store translation data
-					aflg.times.add(new Integer(MDLReader.readBeforeColon(line)));
-					aflg.values.add(Vertex.parseText(line));
+				case 2:
+					values.add(new Vertex(numbers[n++], numbers[n++], numbers[n++]));
 					break;
-				case 5: // Visibility
-					// A vertex is used to store translation data
-					aflg.times.add(new Integer(MDLReader.readBeforeColon(line)));
-					aflg.values.add(new Integer(MDLReader.readInt(line)));
+				case 3:
+					values.add(new QuaternionRotation(numbers[n++], numbers[n++], numbers[n++], numbers[n++]));
 					break;
+				default:
+					throw new IOException("Invalid value kind " + kind);
 				}
-			} else if (line.contains("GlobalSeqId")) {
-				if (!aflg.hasGlobalSeq) {
-					aflg.globalSeqId = MDLReader.readInt(line);
-					aflg.hasGlobalSeq = true;
-				} else {
-					JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(), "Error while parsing " + aflg.title
-							+ ": More than one Global Sequence Id is present in the same " + aflg.title + "!");
-				}
-			} else {
-				aflg.tags.add(MDLReader.readFlag(line));
 			}
+		} catch (final ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Too few numbers for " + kinds.length + " values", e);
 		}
-		return aflg;
+		return values;
 	}
 
 	public void updateGlobalSeqRef(final MDL mdlr) {
@@ -1289,6 +1340,21 @@ public class AnimFlag {
 		}
 	}
 
+	/**
+	 * Prints the same text as {@link #flagToString(Object)}, straight to the writer.
+	 */
+	private static void printValue(final PrintWriter writer, final Object o) {
+		if (o instanceof Double) {
+			MdlWriter.printNumber(writer, ((Double) o).doubleValue());
+		} else if (o instanceof Vertex) {
+			((Vertex) o).printTo(writer);
+		} else if (o instanceof QuaternionRotation) {
+			((QuaternionRotation) o).printTo(writer);
+		} else {
+			writer.print(o.toString());
+		}
+	}
+
 	public void flipOver(final byte axis) {
 		if (typeid == 2) {
 			// Rotation
@@ -1444,11 +1510,23 @@ public class AnimFlag {
 			if (inTans.size() > 0) {
 				tans = true;
 			}
+			final String keyTabs = tabs + "\t";
+			final String tanTabs = keyTabs + "\t";
 			for (int i = 0; i < times.size(); i++) {
-				writer.println(tabs + "\t" + times.get(i) + ": " + flagToString(values.get(i)) + ",");
+				writer.print(keyTabs);
+				writer.print(times.get(i).intValue());
+				writer.print(": ");
+				printValue(writer, values.get(i));
+				writer.println(",");
 				if (tans) {
-					writer.println(tabs + "\t\tInTan " + flagToString(inTans.get(i)) + ",");
-					writer.println(tabs + "\t\tOutTan " + flagToString(outTans.get(i)) + ",");
+					writer.print(tanTabs);
+					writer.print("InTan ");
+					printValue(writer, inTans.get(i));
+					writer.println(",");
+					writer.print(tanTabs);
+					writer.print("OutTan ");
+					printValue(writer, outTans.get(i));
+					writer.println(",");
 				}
 			}
 			// switch (typeid )
@@ -1,6 +1,6 @@
 package com.hiveworkshop.wc3.mdl;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
@@ -18,7 +18,7 @@ public class Animation {
 	private String name = "";
 	private int intervalStart = 0;
 	private int intervalEnd = -1;
-	private ArrayList tags = new ArrayList();// These are strings tags, i.e.
+	private ArrayList<String> tags = new ArrayList<>();// These are strings tags, i.e.
 												// "MoveSpeed X," "Rarity X,"
 												// "NonLooping," etc.
 	private ExtLog extents;
@@ -77,8 +77,10 @@ public class Animation {
 		this.name = other.name;
 		intervalStart = other.intervalStart;
 		intervalEnd = other.intervalEnd;
-		tags = new ArrayList(other.tags);
-		extents = new ExtLog(other.extents);
+		tags = new ArrayList<>(other.tags);
+		if (other.extents != null) {
+			extents = new ExtLog(other.extents);
+		}
 	}
 
 	public void addTag(final String tag) {
@@ -272,59 +274,55 @@ public class Animation {
 		return null;
 	}
 
-	public static Animation read(final BufferedReader mdl) {
+	/**
+	 * Reads an "Anim" block, which is named with an interval in the Sequences and nameless in a geoset.
+	 */
+	public static Animation read(final MdlTokenizer mdl) throws IOException {
 		final Animation anim = new Animation();
-		boolean limited = false;
-		String line = MDLReader.nextLine(mdl);
-		try {
-			anim.setName(line.split("\"")[1]);
+		mdl.readWord();
+		if (mdl.isNext('"')) {
+			anim.setName(mdl.readString());
 			if (anim.name.equals("")) {
 				anim.name = " ";
 			}
-		} catch (final Exception e) {
-			// System.out.println("Throwing nameless anim from:
-			// "+MDLReader.nextLine(mdl));//Read the word "Anim" from the top
-			limited = true;
 		}
-		if (!limited) {
-			// JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),"This
-			// popup means Anims were interpreted as outside geoset!");
-			// try
-			// {
-			// String [] entries = MDLReader.nextLine(mdl).split("Interval
-			// ")[1].split(",");//Split the line into pieces, forming two
-			// entries that are before and after the comma in "{ <number>,
-			// <number> }"
-			// entries[0] = entries[0].substring(2,entries[0].length());//Shave
-			// off first two chars "{ "
-			// entries[1] =
-			// entries[1].substring(0,entries[1].length()-2);//Shave off last
-			// two " }"
-			final int[] bits = MDLReader.splitToInts(MDLReader.nextLine(mdl));
-			anim.setInterval(bits[0], bits[1]);
-			// }
-			// catch (NumberFormatException e)
-			// {
-			// JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),"Unable
-			// to parse animation: Interval could not be interpreted
-			// numerically.\nThis may break lots of things.");
-			// }
-		}
-		MDLReader.mark(mdl);
-		line = MDLReader.nextLine(mdl);
-		while (!(line).startsWith("\t}")) {
-			if (line.contains("Extent") || (line).contains("BoundsRadius")) {
-				MDLReader.reset(mdl);
+		mdl.openBlock();
+		while (!mdl.endBlock()) {
+			final String keyword = mdl.peekWord();
+			if (keyword.equals("Interval")) {
+				mdl.readWord();
+				mdl.expect('{');
+				final int start = mdl.readInt();
+				final int end = mdl.readInt();
+				mdl.expect('}');
+				anim.setInterval(start, end);
+			} else if (ExtLog.isExtent(keyword)) {
 				anim.extents = ExtLog.read(mdl);
 			} else {
-				anim.tags.add(MDLReader.readFlag(line));
+				anim.tags.add(mdl.readFlag());
 			}
-			MDLReader.mark(mdl);
-			line = MDLReader.nextLine(mdl);
 		}
 		return anim;
 	}
 
+	void writeTo(final MdlCacheWriter cache) {
+		cache.writeString(name);
+		cache.writeInt(intervalStart);
+		cache.writeInt(intervalEnd);
+		cache.writeStrings(tags);
+		cache.writeExtLog(extents);
+	}
+
+	static Animation read(final MdlCacheReader cache) throws IOException {
+		final Animation anim = new Animation();
+		anim.name = cache.readString();
+		anim.intervalStart = cache.readInt();
+		anim.intervalEnd = cache.readInt();
+		anim.tags = cache.readStrings();
+		anim.extents = cache.readExtLog();
+		return anim;
+	}
+
 	public void printTo(final PrintWriter writer, final int tabHeight) {
 		String tabs = "";
 		for (int i = 0; i < tabHeight; i++) {
@@ -1,6 +1,6 @@
 package com.hiveworkshop.wc3.mdl;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 
@@ -70,50 +70,65 @@ public class Attachment extends IdObject implements VisibilitySource {
 		x.parent = parent;
 
 		x.path = path;
+		x.AttachmentID = AttachmentID;
 		for (final AnimFlag af : animFlags) {
 			x.animFlags.add(new AnimFlag(af));
 		}
-		flags = new ArrayList<>(x.flags);
+		x.flags = new ArrayList<>(flags);
 		return x;
 	}
 
-	public static Attachment read(final BufferedReader mdl) {
-		String line = MDLReader.nextLine(mdl);
-		if (line.contains("Attachment")) {
-			final Attachment at = new Attachment();
-			at.setName(MDLReader.readName(line));
-			MDLReader.mark(mdl);
-			line = MDLReader.nextLine(mdl);
-			while ((!line.contains("}") || line.contains("},") || line.contains("\t}"))
-					&& !line.equals("COMPLETED PARSING")) {
-				if (line.contains("ObjectId")) {
-					at.objectId = MDLReader.readInt(line);
-				} else if (line.contains("Parent")) {
-					at.parentId = MDLReader.splitToInts(line)[0];
-					// at.parent = mdlr.getIdObject(at.parentId);
-				} else if (line.contains("Path")) {
-					at.path = MDLReader.readName(line);
-				} else if (line.contains("AttachmentID ")) {
-					at.AttachmentID = MDLReader.readInt(line);
-				} else if ((line.contains("Visibility") || line.contains("Scaling") || line.contains("Translation")
-						|| line.contains("Rotation")) && !line.contains("DontInherit"))// Visibility,
-																						// Rotation,
-																						// etc
-				{
-					MDLReader.reset(mdl);
-					at.animFlags.add(AnimFlag.read(mdl));
-				} else {
-					at.flags.add(MDLReader.readFlag(line));
-				}
-				MDLReader.mark(mdl);
-				line = MDLReader.nextLine(mdl);
+	public static Attachment read(final MdlTokenizer mdl) throws IOException {
+		final Attachment at = new Attachment();
+		mdl.readWord();
+		at.setName(mdl.readString());
+		mdl.openBlock();
+		while (!mdl.endBlock()) {
+			final String keyword = mdl.peekWord();
+			if (keyword.equals("ObjectId")) {
+				mdl.readWord();
+				at.objectId = mdl.readInt();
+			} else if (keyword.equals("Parent")) {
+				mdl.readWord();
+				at.parentId = mdl.readInt();
+			} else if (keyword.equals("Path")) {
+				mdl.readWord();
+				at.path = mdl.readString();
+			} else if (keyword.equals("AttachmentID")) {
+				mdl.readWord();
+				at.AttachmentID = mdl.readInt();
+			} else if (mdl.isTrack())// Visibility, Rotation, etc
+			{
+				at.animFlags.add(AnimFlag.read(mdl));
+			} else {
+				at.flags.add(mdl.readFlag());
 			}
-			return at;
-		} else {
-			JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-					"Unable to parse Attachment: Missing or unrecognized open statement.");
 		}
-		return null;
+		return at;
+	}
+
+	@Override
+	void writeTo(final MdlCacheWriter cache) throws IOException {
+		super.writeTo(cache);
+		cache.writeString(path);
+		cache.writeInt(AttachmentID);
+		cache.writeAnimFlags(animFlags);
+		cache.writeStrings(flags);
+	}
+
+	@Override
+	void readFrom(final MdlCacheReader cache) throws IOException {
+		super.readFrom(cache);
+		path = cache.readString();
+		AttachmentID = cache.readInt();
+		animFlags = cache.readAnimFlags();
+		flags = cache.readStrings();
+	}
+
+	static Attachment read(final MdlCacheReader cache) throws IOException {
+		final Attachment at = new Attachment();
+		at.readFrom(cache);
+		return at;
 	}
 
 	@Override
@@ -1,6 +1,6 @@
 package com.hiveworkshop.wc3.mdl;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 
@@ -203,64 +203,56 @@ public class Bitmap {
 		return null;
 	}
 
-	public static Bitmap read(final BufferedReader mdl) {
-		String line = "";
-		if ((line = MDLReader.nextLine(mdl)).contains("Bitmap")) {
-			final Bitmap tex = new Bitmap();
-			while (!(line = MDLReader.nextLine(mdl)).contains("\t}")) {
-				if (line.contains("Image")) {
-					tex.imagePath = line.split("\"")[1];
-				} else if (line.contains("ReplaceableId ")) {
-					tex.replaceableId = MDLReader.readInt(line);
-					// try
-					// {
-					// tex.replaceableId =
-					// Integer.parseInt(line[i].substring(line[i].indexOf("ReplaceableId
-					// ")+"ReplaceableId ".length(),line[i].length()-2));
-					// }
-					// catch (NumberFormatException e)
-					// {
-					// JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),"Error
-					// while parsing bitmap: Could not interpret
-					// ReplaceableId.");
-					// }
-				} else if (line.contains("WrapWidth")) {
-					tex.setWrapWidth(true);
-				} else if (line.contains("WrapHeight")) {
-					tex.setWrapHeight(true);
-				} else {
-					JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-							"Error parsing Bitmap: Unrecognized statement '" + line + "'.");
-				}
+	public static Bitmap read(final MdlTokenizer mdl) throws IOException {
+		final Bitmap tex = new Bitmap();
+		mdl.readWord();
+		mdl.openBlock();
+		while (!mdl.endBlock()) {
+			final String keyword = mdl.peekWord();
+			if (keyword.equals("Image")) {
+				mdl.readWord();
+				tex.imagePath = mdl.readString();
+			} else if (keyword.equals("ReplaceableId")) {
+				mdl.readWord();
+				tex.replaceableId = mdl.readInt();
+			} else if (keyword.equals("WrapWidth")) {
+				mdl.readWord();
+				tex.setWrapWidth(true);
+			} else if (keyword.equals("WrapHeight")) {
+				mdl.readWord();
+				tex.setWrapHeight(true);
+			} else {
+				JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
+						"Error parsing Bitmap: Unrecognized statement '" + mdl.readFlag() + "'.");
 			}
-			return tex;
-		} else {
-			JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-					"Unable to parse Bitmap: Missing or unrecognized open statement.");
 		}
-		return null;
+		return tex;
 	}
 
-	public static ArrayList<Bitmap> readAll(final BufferedReader mdl) {
-		String line = "";
+	public static ArrayList<Bitmap> readAll(final MdlTokenizer mdl) throws IOException {
 		final ArrayList<Bitmap> outputs = new ArrayList<>();
-		MDLReader.mark(mdl);
-		if ((line = MDLReader.nextLine(mdl)).contains("Textures")) {
-			MDLReader.mark(mdl);
-			while (!(line = MDLReader.nextLine(mdl)).startsWith("}")) {
-				MDLReader.reset(mdl);
-				outputs.add(read(mdl));
-				MDLReader.mark(mdl);
-			}
-			return outputs;
-		} else {
-			MDLReader.reset(mdl);
-			// JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),"Unable
-			// to parse Textures: Missing or unrecognized open statement.");
+		mdl.readWord();
+		mdl.openBlock();
+		while (!mdl.endBlock()) {
+			outputs.add(read(mdl));
 		}
 		return outputs;
 	}
 
+	void writeTo(final MdlCacheWriter cache) {
+		cache.writeString(imagePath);
+		cache.writeInt(replaceableId);
+		cache.writeInt(wrapStyle);
+	}
+
+	static Bitmap read(final MdlCacheReader cache) throws IOException {
+		final Bitmap tex = new Bitmap();
+		tex.imagePath = cache.readString();
+		tex.replaceableId = cache.readInt();
+		tex.wrapStyle = cache.readInt();
+		return tex;
+	}
+
 	public void printTo(final PrintWriter writer, final int tabHeight) {
 		String tabs = "";
 		for (int i = 0; i < tabHeight; i++) {
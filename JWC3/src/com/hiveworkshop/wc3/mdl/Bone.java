@@ -1,6 +1,6 @@
 package com.hiveworkshop.wc3.mdl;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
@@ -71,64 +71,89 @@ public class Bone extends IdObject {
 		geosetAnimId = bone.geosetAnimationId;
 	}
 
-	public static Bone read(final BufferedReader mdl) {
-		String line = MDLReader.nextLine(mdl);
-		if (line.contains("Bone")) {
-			final Bone b = new Bone();
-			b.setName(MDLReader.readName(line));
-			MDLReader.mark(mdl);
-			line = MDLReader.nextLine(mdl);
-			while ((!line.contains("}") || line.contains("},") || line.contains("\t}"))
-					&& !line.equals("COMPLETED PARSING")) {
-				if (line.contains("ObjectId")) {
-					b.objectId = MDLReader.readInt(line);
-				} else if (line.contains("GeosetId")) {
-					final String field = MDLReader.readField(line);
-					try {
-						b.geosetId = Integer.parseInt(field);
-						// b.geoset = mdlr.getGeoset(b.geosetId);
-					} catch (final Exception e) {
-						if (field.equals("Multiple")) {
-							b.multiGeoId = true;
-						} else {
-							JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-									"Error while parsing: Could not interpret integer from: " + line);
-						}
+	public static Bone read(final MdlTokenizer mdl) throws IOException {
+		final Bone b = new Bone();
+		b.readBlock(mdl);
+		return b;
+	}
+
+	/**
+	 * Reads the name and block of a bone or helper, which are written the same.
+	 */
+	void readBlock(final MdlTokenizer mdl) throws IOException {
+		mdl.readWord();
+		setName(mdl.readString());
+		mdl.openBlock();
+		while (!mdl.endBlock()) {
+			final String keyword = mdl.peekWord();
+			if (keyword.equals("ObjectId")) {
+				mdl.readWord();
+				objectId = mdl.readInt();
+			} else if (keyword.equals("Parent")) {
+				mdl.readWord();
+				parentId = mdl.readInt();
+			} else if (keyword.equals("GeosetId")) {
+				mdl.readWord();
+				if (mdl.isNumber()) {
+					geosetId = mdl.readInt();
+				} else {
+					final String field = mdl.readWord();
+					if (field.equals("Multiple")) {
+						multiGeoId = true;
+					} else {
+						JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
+								"Error while parsing: Could not interpret integer from: GeosetId " + field);
 					}
-				} else if (line.contains("GeosetAnimId")) {
-					final String field = MDLReader.readField(line);
-					b.hasGeoAnim = true;
-					try {
-						b.geosetAnimId = Integer.parseInt(field);
-						// b.geosetAnim = mdlr.getGeosetAnim(b.geosetAnimId);
-					} catch (final Exception e) {
-						if (field.equals("None")) {
-							b.geosetAnim = null;
-						} else {
-							JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-									"Error while parsing: Could not interpret integer from: " + line);
-						}
+				}
+			} else if (keyword.equals("GeosetAnimId")) {
+				mdl.readWord();
+				hasGeoAnim = true;
+				if (mdl.isNumber()) {
+					geosetAnimId = mdl.readInt();
+				} else {
+					final String field = mdl.readWord();
+					if (field.equals("None")) {
+						geosetAnim = null;
+					} else {
+						JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
+								"Error while parsing: Could not interpret integer from: GeosetAnimId " + field);
 					}
-				} else if (line.contains("Parent")) {
-					b.parentId = MDLReader.splitToInts(line)[0];
-					// b.parent = mdlr.getIdObject(b.parentId);
-				} else if ((line.contains("Scaling") || line.contains("Rotation") || line.contains("Translation"))
-						&& !line.contains("DontInherit")) {
-					MDLReader.reset(mdl);
-					b.animFlags.add(AnimFlag.read(mdl));
-				} else// Flags like Billboarded
-				{
-					b.flags.add(MDLReader.readFlag(line));
 				}
-				MDLReader.mark(mdl);
-				line = MDLReader.nextLine(mdl);
+			} else if (mdl.isTrack()) {
+				animFlags.add(AnimFlag.read(mdl));
+			} else// Flags like Billboarded
+			{
+				flags.add(mdl.readFlag());
 			}
-			return b;
-		} else {
-			JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-					"Unable to parse Bone: Missing or unrecognized open statement.");
 		}
-		return null;
+	}
+
+	@Override
+	void writeTo(final MdlCacheWriter cache) throws IOException {
+		super.writeTo(cache);
+		cache.writeInt(geosetId);
+		cache.writeBoolean(multiGeoId);
+		cache.writeInt(geosetAnimId);
+		cache.writeBoolean(hasGeoAnim);
+		cache.writeAnimFlags(animFlags);
+		cache.writeStrings(flags);
+	}
+
+	@Override
+	void readFrom(final MdlCacheReader cache) throws IOException {
+		super.readFrom(cache);
+		geosetId = cache.readInt();
+		multiGeoId = cache.readBoolean();
+		geosetAnimId = cache.readInt();
+		hasGeoAnim = cache.readBoolean();
+		animFlags = cache.readAnimFlags();
+		flags = cache.readStrings();
+	}
+
+	static Bone read(final MdlCacheReader cache) throws IOException {
+		final Bone b = new Bone();
+		b.readFrom(cache);
+		return b;
 	}
 
 	@Override
@@ -1,6 +1,6 @@
 package com.hiveworkshop.wc3.mdl;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 
@@ -34,6 +34,25 @@ public class Camera implements Named {
 
 	}
 
+	public Camera(final Camera other) {
+		name = other.name;
+		if (other.Position != null) {
+			Position = new Vertex(other.Position);
+		}
+		FieldOfView = other.FieldOfView;
+		FarClip = other.FarClip;
+		NearClip = other.NearClip;
+		for (final AnimFlag af : other.animFlags) {
+			animFlags.add(new AnimFlag(af));
+		}
+		if (other.targetPosition != null) {
+			targetPosition = new Vertex(other.targetPosition);
+		}
+		for (final AnimFlag af : other.targetAnimFlags) {
+			targetAnimFlags.add(new AnimFlag(af));
+		}
+	}
+
 	public Camera(final CameraChunk.Camera mdxSource) {
 		this.name = mdxSource.name;
 		Position = new Vertex(mdxSource.position);
@@ -61,56 +80,71 @@ public class Camera implements Named {
 		return name;
 	}
 
-	public static Camera read(final BufferedReader mdl) {
-		String line = MDLReader.nextLine(mdl);
-		if (line.contains("Camera")) {
-			final Camera c = new Camera();
-			c.setName(MDLReader.readName(line));
-			MDLReader.mark(mdl);
-			line = MDLReader.nextLine(mdl);
-			while ((!line.contains("}") || line.contains("},") || line.contains("\t}"))
-					&& !line.equals("COMPLETED PARSING")) {
-				if (line.contains("Position")) {
-					c.Position = Vertex.parseText(line);
-				} else if (line.contains("Rotation") || line.contains("Translation")) {
-					MDLReader.reset(mdl);
-					c.animFlags.add(AnimFlag.read(mdl));
-				} else if (line.contains("FieldOfView")) {
-					c.FieldOfView = MDLReader.readDouble(line);
-				} else if (line.contains("FarClip")) {
-					c.FarClip = MDLReader.readDouble(line);
-				} else if (line.contains("NearClip")) {
-					c.NearClip = MDLReader.readDouble(line);
-				} else if (line.contains("Target")) {
-					MDLReader.mark(mdl);
-					line = MDLReader.nextLine(mdl);
-					while (!line.startsWith("\t}")) {
-						if (line.contains("Position")) {
-							c.targetPosition = Vertex.parseText(line);
-						} else if (line.contains("Translation")) {
-							MDLReader.reset(mdl);
-							c.targetAnimFlags.add(AnimFlag.read(mdl));
-						} else {
-							JOptionPane.showMessageDialog(null, "Camera target did not recognize data at: " + line
-									+ "\nThis is probably not a major issue?");
-						}
-						MDLReader.mark(mdl);
-						line = MDLReader.nextLine(mdl);
+	public static Camera read(final MdlTokenizer mdl) throws IOException {
+		final Camera c = new Camera();
+		mdl.readWord();
+		c.setName(mdl.readString());
+		mdl.openBlock();
+		while (!mdl.endBlock()) {
+			final String keyword = mdl.peekWord();
+			if (keyword.equals("Position")) {
+				mdl.readWord();
+				c.Position = Vertex.read(mdl);
+			} else if (mdl.isTrack()) {
+				c.animFlags.add(AnimFlag.read(mdl));
+			} else if (keyword.equals("FieldOfView")) {
+				mdl.readWord();
+				c.FieldOfView = mdl.readDouble();
+			} else if (keyword.equals("FarClip")) {
+				mdl.readWord();
+				c.FarClip = mdl.readDouble();
+			} else if (keyword.equals("NearClip")) {
+				mdl.readWord();
+				c.NearClip = mdl.readDouble();
+			} else if (keyword.equals("Target")) {
+				mdl.readWord();
+				mdl.openBlock();
+				while (!mdl.endBlock()) {
+					if (mdl.peekWord().equals("Position")) {
+						mdl.readWord();
+						c.targetPosition = Vertex.read(mdl);
+					} else if (mdl.isTrack()) {
+						c.targetAnimFlags.add(AnimFlag.read(mdl));
+					} else {
+						JOptionPane.showMessageDialog(null, "Camera target did not recognize data at: "
+								+ mdl.readFlag() + "\nThis is probably not a major issue?");
 					}
-				} else {
-					JOptionPane.showMessageDialog(null,
-							"Camera did not recognize data at: " + line + "\nThis is probably not a major issue?");
 				}
-
-				MDLReader.mark(mdl);
-				line = MDLReader.nextLine(mdl);
+			} else {
+				JOptionPane.showMessageDialog(null,
+						"Camera did not recognize data at: " + mdl.readFlag() + "\nThis is probably not a major issue?");
 			}
-			return c;
-		} else {
-			JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-					"Unable to parse Camera: Missing or unrecognized open statement.");
 		}
-		return null;
+		return c;
+	}
+
+	void writeTo(final MdlCacheWriter cache) throws IOException {
+		cache.writeString(name);
+		cache.writeVertex(Position);
+		cache.writeDouble(FieldOfView);
+		cache.writeDouble(FarClip);
+		cache.writeDouble(NearClip);
+		cache.writeAnimFlags(animFlags);
+		cache.writeVertex(targetPosition);
+		cache.writeAnimFlags(targetAnimFlags);
+	}
+
+	static Camera read(final MdlCacheReader cache) throws IOException {
+		final Camera c = new Camera();
+		c.name = cache.readString();
+		c.Position = cache.readVertex();
+		c.FieldOfView = cache.readDouble();
+		c.FarClip = cache.readDouble();
+		c.NearClip = cache.readDouble();
+		c.animFlags = cache.readAnimFlags();
+		c.targetPosition = cache.readVertex();
+		c.targetAnimFlags = cache.readAnimFlags();
+		return c;
 	}
 
 	public void printTo(final PrintWriter writer) {
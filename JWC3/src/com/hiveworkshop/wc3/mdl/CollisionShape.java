@@ -1,12 +1,10 @@
 package com.hiveworkshop.wc3.mdl;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
 
-import javax.swing.JOptionPane;
-
 import com.hiveworkshop.wc3.gui.modeledit.CoordinateSystem;
 import com.hiveworkshop.wc3.mdl.v2.visitor.IdObjectVisitor;
 import com.hiveworkshop.wc3.mdx.CollisionShapeChunk;
@@ -66,7 +64,9 @@ public class CollisionShape extends IdObject {
 		x.parent = parent;
 
 		x.flags = new ArrayList<>(flags);
-		x.vertices = new ArrayList<>(vertices);
+		for (final Vertex vertex : vertices) {
+			x.vertices.add(new Vertex(vertex));
+		}
 		if (extents != null) {
 			x.extents = new ExtLog(extents);
 		}
@@ -92,43 +92,58 @@ public class CollisionShape extends IdObject {
 
 	}
 
-	public static CollisionShape read(final BufferedReader mdl) {
-		String line = MDLReader.nextLine(mdl);
-		if (line.contains("CollisionShape")) {
-			final CollisionShape e = new CollisionShape();
-			e.setName(MDLReader.readName(line));
-			MDLReader.mark(mdl);
-			line = MDLReader.nextLine(mdl);
-			while ((!line.contains("}") || line.contains("},") || line.contains("\t}"))
-					&& !line.equals("COMPLETED PARSING")) {
-				if (line.contains("ObjectId")) {
-					e.objectId = MDLReader.readInt(line);
-				} else if (line.contains("Parent")) {
-					e.parentId = MDLReader.splitToInts(line)[0];
-					// e.parent = mdlr.getIdObject(e.parentId);
-				} else if (line.contains("Extent") || (line).contains("BoundsRadius")) {
-					MDLReader.reset(mdl);
-					e.extents = ExtLog.read(mdl);
-				} else if (line.contains("Vertices")) {
-					while (!((line = MDLReader.nextLine(mdl)).contains("\t}"))) {
-						e.addVertex(Vertex.parseText(line));
-					}
-				} else if ((line.contains("Scaling") || line.contains("Rotation") || line.contains("Translation"))
-						&& !line.contains("DontInherit")) {
-					MDLReader.reset(mdl);
-					e.animFlags.add(AnimFlag.read(mdl));
-				} else {
-					e.flags.add(MDLReader.readFlag(line));
+	public static CollisionShape read(final MdlTokenizer mdl) throws IOException {
+		final CollisionShape e = new CollisionShape();
+		mdl.readWord();
+		e.setName(mdl.readString());
+		mdl.openBlock();
+		while (!mdl.endBlock()) {
+			final String keyword = mdl.peekWord();
+			if (keyword.equals("ObjectId")) {
+				mdl.readWord();
+				e.objectId = mdl.readInt();
+			} else if (keyword.equals("Parent")) {
+				mdl.readWord();
+				e.parentId = mdl.readInt();
+			} else if (ExtLog.isExtent(keyword)) {
+				e.extents = ExtLog.read(mdl);
+			} else if (keyword.equals("Vertices")) {
+				mdl.readWord();
+				mdl.openBlock();
+				while (!mdl.endBlock()) {
+					e.addVertex(Vertex.read(mdl));
 				}
-				MDLReader.mark(mdl);
-				line = MDLReader.nextLine(mdl);
+			} else if (mdl.isTrack()) {
+				e.animFlags.add(AnimFlag.read(mdl));
+			} else {
+				e.flags.add(mdl.readFlag());
 			}
-			return e;
-		} else {
-			JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-					"Unable to parse CollisionShape: Missing or unrecognized open statement.");
 		}
-		return null;
+		return e;
+	}
+
+	@Override
+	void writeTo(final MdlCacheWriter cache) throws IOException {
+		super.writeTo(cache);
+		cache.writeStrings(flags);
+		cache.writeExtLog(extents);
+		cache.writeVertices(vertices);
+		cache.writeAnimFlags(animFlags);
+	}
+
+	@Override
+	void readFrom(final MdlCacheReader cache) throws IOException {
+		super.readFrom(cache);
+		flags = cache.readStrings();
+		extents = cache.readExtLog();
+		vertices = cache.readVertices();
+		animFlags = cache.readAnimFlags();
+	}
+
+	static CollisionShape read(final MdlCacheReader cache) throws IOException {
+		final CollisionShape e = new CollisionShape();
+		e.readFrom(cache);
+		return e;
 	}
 
 	@Override
@@ -1,6 +1,6 @@
 package com.hiveworkshop.wc3.mdl;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
@@ -83,6 +83,9 @@ public class EventObject extends IdObject {
 		x.parent = parent;
 
 		x.eventTrack = new ArrayList<>(eventTrack);
+		x.globalSeq = globalSeq;
+		x.globalSeqId = globalSeqId;
+		x.hasGlobalSeq = hasGlobalSeq;
 		for (final AnimFlag af : animFlags) {
 			x.animFlags.add(new AnimFlag(af));
 		}
@@ -102,44 +105,75 @@ public class EventObject extends IdObject {
 		eventTrack = source.eventTrack;
 	}
 
-	public static EventObject read(final BufferedReader mdl) {
-		String line = MDLReader.nextLine(mdl);
-		if (line.contains("EventObject")) {
-			final EventObject e = new EventObject();
-			e.setName(MDLReader.readName(line));
-			MDLReader.mark(mdl);
-			line = MDLReader.nextLine(mdl);
-			while ((!line.contains("}") || line.contains("},") || line.contains("\t}"))
-					&& !line.equals("COMPLETED PARSING")) {
-				if (line.contains("ObjectId")) {
-					e.objectId = MDLReader.readInt(line);
-				} else if (line.contains("Parent")) {
-					e.parentId = MDLReader.splitToInts(line)[0];
-					// e.parent = mdlr.getIdObject(e.parentId);
-				} else if ((line.contains("Visibility") || line.contains("Rotation") || line.contains("Translation")
-						|| line.contains("Scaling"))) {
-					MDLReader.reset(mdl);
-					e.animFlags.add(AnimFlag.read(mdl));
-				} else if (line.contains("GlobalSeqId")) {
-					if (!e.hasGlobalSeq) {
-						e.globalSeqId = MDLReader.readInt(line);
-						e.hasGlobalSeq = true;
+	public static EventObject read(final MdlTokenizer mdl) throws IOException {
+		final EventObject e = new EventObject();
+		mdl.readWord();
+		e.setName(mdl.readString());
+		mdl.openBlock();
+		while (!mdl.endBlock()) {
+			final String keyword = mdl.peekWord();
+			if (keyword.equals("ObjectId")) {
+				mdl.readWord();
+				e.objectId = mdl.readInt();
+			} else if (keyword.equals("Parent")) {
+				mdl.readWord();
+				e.parentId = mdl.readInt();
+			} else if (keyword.equals("EventTrack")) {
+				mdl.readWord();
+				mdl.openBlock();
+				while (!mdl.endBlock()) {
+					if (mdl.isNumber()) {
+						e.eventTrack.add(new Integer(mdl.readInt()));
 					} else {
-						JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-								"Error while parsing event object: More than one Global Sequence Id is present in the same object!");
+						e.readGlobalSeqId(mdl);
 					}
-				} else if (!line.contains("{") && !line.contains("}")) {
-					e.eventTrack.add(new Integer(MDLReader.readInt(line)));
 				}
-				MDLReader.mark(mdl);
-				line = MDLReader.nextLine(mdl);
+			} else if (keyword.equals("GlobalSeqId")) {
+				e.readGlobalSeqId(mdl);
+			} else if (mdl.isTrack()) {
+				e.animFlags.add(AnimFlag.read(mdl));
+			} else {
+				mdl.skipStatement();
 			}
-			return e;
+		}
+		return e;
+	}
+
+	@Override
+	void writeTo(final MdlCacheWriter cache) throws IOException {
+		super.writeTo(cache);
+		cache.writeIntegers(eventTrack);
+		cache.writeBoolean(hasGlobalSeq);
+		cache.writeInt(globalSeqId);
+		cache.writeAnimFlags(animFlags);
+	}
+
+	@Override
+	void readFrom(final MdlCacheReader cache) throws IOException {
+		super.readFrom(cache);
+		eventTrack = cache.readIntegers();
+		hasGlobalSeq = cache.readBoolean();
+		globalSeqId = cache.readInt();
+		animFlags = cache.readAnimFlags();
+	}
+
+	static EventObject read(final MdlCacheReader cache) throws IOException {
+		final EventObject e = new EventObject();
+		e.readFrom(cache);
+		return e;
+	}
+
+	private void readGlobalSeqId(final MdlTokenizer mdl) throws IOException {
+		if (!mdl.readWord().equals("GlobalSeqId")) {
+			mdl.skipStatement();
+		} else if (!hasGlobalSeq) {
+			globalSeqId = mdl.readInt();
+			hasGlobalSeq = true;
 		} else {
+			mdl.skipStatement();
 			JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-					"Unable to parse EventObject: Missing or unrecognized open statement.");
+					"Error while parsing event object: More than one Global Sequence Id is present in the same object!");
 		}
-		return null;
 	}
 
 	@Override
@@ -1,6 +1,6 @@
 package com.hiveworkshop.wc3.mdl;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.PrintWriter;
 
 import javax.swing.JOptionPane;
@@ -51,8 +51,12 @@ public class ExtLog {
 	}
 
 	public ExtLog(final ExtLog other) {
-		minimumExtent = other.minimumExtent;
-		maximumExtent = other.maximumExtent;
+		if (other.minimumExtent != null) {
+			minimumExtent = new Vertex(other.minimumExtent);
+		}
+		if (other.maximumExtent != null) {
+			maximumExtent = new Vertex(other.maximumExtent);
+		}
 		boundsRadius = other.boundsRadius;
 	}
 
@@ -98,40 +102,40 @@ public class ExtLog {
 		return null;
 	}
 
-	public static ExtLog read(final BufferedReader mdl) {
-		String line = MDLReader.nextLine(mdl);
-		// System.out.println("Starting ExtLog with :"+line);
-		if (line.contains("Extent") || line.contains("BoundsRadius")) {
-			final ExtLog extLog = new ExtLog();
-			MDLReader.mark(mdl);
-			while (!((line).contains("\t}")) && (line.contains("Extent") || line.contains("BoundsRadius"))) {
-				if (line.contains("MinimumExtent")) {
-					extLog.setMinExt(Vertex.parseText(line.split("MinimumExtent ")[1]));
-				} else if (line.contains("MaximumExtent")) {
-					extLog.setMaxExt(Vertex.parseText(line.split("MaximumExtent ")[1]));
-				} else if (line.contains("BoundsRadius")) {
-					String s = line.split("BoundsRadius ")[1];
-					s = s.substring(0, s.length() - 1);
-					try {
-						extLog.setBounds(Double.parseDouble(s));
-					} catch (final NumberFormatException e) {
-						JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-								"Error {" + s + "}: BoundsRadius could not be interpreted.");
-					}
-				} else {
-					JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-							"Unable to parse ExtLog; unrecognized input: " + line);
-				}
-				MDLReader.mark(mdl);
-				line = MDLReader.nextLine(mdl);
+	static boolean isExtent(final String keyword) {
+		return keyword.equals("MinimumExtent") || keyword.equals("MaximumExtent") || keyword.equals("BoundsRadius");
+	}
+
+	/**
+	 * Reads the extent statements that follow, which need not all be present.
+	 */
+	public static ExtLog read(final MdlTokenizer mdl) throws IOException {
+		final ExtLog extLog = new ExtLog();
+		while (mdl.isWord() && isExtent(mdl.peekWord())) {
+			final String keyword = mdl.readWord();
+			if (keyword.equals("MinimumExtent")) {
+				extLog.setMinExt(Vertex.read(mdl));
+			} else if (keyword.equals("MaximumExtent")) {
+				extLog.setMaxExt(Vertex.read(mdl));
+			} else {
+				extLog.setBounds(mdl.readDouble());
 			}
-			MDLReader.reset(mdl);
-			return extLog;
-		} else {
-			JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-					"Unable to parse ExtLog: Missing or unrecognized open statement: " + line);
 		}
-		return null;
+		return extLog;
+	}
+
+	void writeTo(final MdlCacheWriter cache) {
+		cache.writeVertex(minimumExtent);
+		cache.writeVertex(maximumExtent);
+		cache.writeDouble(boundsRadius);
+	}
+
+	static ExtLog read(final MdlCacheReader cache) throws IOException {
+		final ExtLog extLog = new ExtLog();
+		extLog.minimumExtent = cache.readVertex();
+		extLog.maximumExtent = cache.readVertex();
+		extLog.boundsRadius = cache.readDouble();
+		return extLog;
 	}
 
 	public void printTo(final PrintWriter writer, final int tabHeight) {
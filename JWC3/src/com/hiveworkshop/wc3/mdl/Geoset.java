@@ -1,9 +1,13 @@
 package com.hiveworkshop.wc3.mdl;
 
 import java.awt.geom.Rectangle2D;
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
 
 import javax.swing.JOptionPane;
 
@@ -136,6 +140,18 @@ public class Geoset implements Named, VisibilitySource {
 		return vertex.indexOf(v);
 	}
 
+	/**
+	 * @return the same ids as {@link #getVertexId(GeosetVertex)} for every vertex, for looking up many of them
+	 *         without searching the vertex list each time
+	 */
+	public Map<GeosetVertex, Integer> getVertexIds() {
+		final Map<GeosetVertex, Integer> ids = new IdentityHashMap<>(vertex.size() * 2);
+		for (int i = vertex.size() - 1; i >= 0; i--) {
+			ids.put(vertex.get(i), i);
+		}
+		return ids;
+	}
+
 	public void remove(final GeosetVertex v) {
 		vertex.remove(v);
 	}
@@ -320,91 +336,164 @@ public class Geoset implements Named, VisibilitySource {
 		return temp;
 	}
 
-	public static Geoset read(final BufferedReader mdl) {
-		String line = MDLReader.nextLine(mdl);
-		if (line.contains("Geoset")) {
-			line = MDLReader.nextLine(mdl);
-			final Geoset geo = new Geoset();
-			if (!line.contains("Vertices")) {
-				JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-						"Error: Vertices not found at beginning of Geoset!");
-			}
-			while (!((line = MDLReader.nextLine(mdl)).contains("\t}"))) {
-				geo.addVertex(GeosetVertex.parseText(line));
-			}
-			MDLReader.mark(mdl);
-			line = MDLReader.nextLine(mdl);
-			if (line.contains("Normals")) {
-				// If we have normals:
-				while (!((line = MDLReader.nextLine(mdl)).contains("\t}"))) {
-					geo.addNormal(Normal.parseText(line));
+	public static Geoset read(final MdlTokenizer mdl) throws IOException {
+		final Geoset geo = new Geoset();
+		mdl.readWord();
+		mdl.openBlock();
+		while (!mdl.endBlock()) {
+			final String keyword = mdl.peekWord();
+			if (keyword.equals("Vertices")) {
+				mdl.readWord();
+				mdl.openBlock();
+				while (!mdl.endBlock()) {
+					geo.addVertex(GeosetVertex.read(mdl));
 				}
-			} else {
-				MDLReader.reset(mdl);
-			}
-			while (((line = MDLReader.nextLine(mdl)).contains("TVertices"))) {
+			} else if (keyword.equals("Normals")) {
+				mdl.readWord();
+				mdl.openBlock();
+				while (!mdl.endBlock()) {
+					geo.addNormal(Normal.read(mdl));
+				}
+			} else if (keyword.equals("TVertices")) {
 				geo.addUVLayer(UVLayer.read(mdl));
-			}
-			if (!line.contains("VertexGroup")) {
-				JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-						"Error: VertexGroups missing or invalid!");
-			}
-			int i = 0;
-			while (!((line = MDLReader.nextLine(mdl)).contains("\t}"))) {
-				geo.getVertex(i).setVertexGroup(MDLReader.readInt(line));
-				i++;
-			}
-			line = MDLReader.nextLine(mdl);
-			if (!line.contains("Faces")) {
-				JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(), "Error: Faces missing or invalid!");
-			}
-			line = MDLReader.nextLine(mdl);
-			if (!line.contains("Triangles")) {
-				System.out.println("No triangles: " + line);
-				JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(), "Error: Triangles missing or invalid!");
-			}
-			geo.setTriangles(Triangle.read(mdl, geo));
-			line = MDLReader.nextLine(mdl);// Throw away the \t} closer for
-											// faces
-			line = MDLReader.nextLine(mdl);
-			if (!line.contains("Groups")) {
-				JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-						"Error: Groups (Matrices) missing or invalid!");
-			}
-			while (!((line = MDLReader.nextLine(mdl)).contains("\t}"))) {
-				geo.addMatrix(Matrix.parseText(line));
-			}
-			MDLReader.mark(mdl);
-			line = MDLReader.nextLine(mdl);
-			while (!line.contains("}") || line.contains("},")) {
-				if (line.contains("Extent") || line.contains("BoundsRadius")) {
-					MDLReader.reset(mdl);
-					geo.setExtLog(ExtLog.read(mdl));
-				} else if (line.contains("Anim")) {
-					MDLReader.reset(mdl);
-					geo.add(Animation.read(mdl));
-					MDLReader.mark(mdl);
-				} else if (line.contains("MaterialID")) {
-					geo.materialID = MDLReader.readInt(line);
-					MDLReader.mark(mdl);
-				} else if (line.contains("SelectionGroup")) {
-					geo.selectionGroup = MDLReader.readInt(line);
-					MDLReader.mark(mdl);
-				} else {
-					geo.addFlag(MDLReader.readFlag(line));
-					MDLReader.mark(mdl);
+			} else if (keyword.equals("VertexGroup")) {
+				mdl.readWord();
+				mdl.openBlock();
+				int i = 0;
+				while (!mdl.endBlock()) {
+					geo.getVertex(i).setVertexGroup(mdl.readInt());
+					i++;
 				}
-				line = MDLReader.nextLine(mdl);
+			} else if (keyword.equals("Faces")) {
+				mdl.readWord();
+				mdl.openBlock();
+				while (!mdl.endBlock()) {
+					if (mdl.peekWord().equals("Triangles")) {
+						geo.setTriangles(Triangle.read(mdl, geo));
+					} else {
+						JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
+								"Error: Faces of type " + mdl.peekWord() + " are not supported!");
+						mdl.skipStatement();
+					}
+				}
+			} else if (keyword.equals("Groups")) {
+				mdl.readWord();
+				mdl.openBlock();
+				while (!mdl.endBlock()) {
+					geo.addMatrix(Matrix.read(mdl));
+				}
+			} else if (ExtLog.isExtent(keyword)) {
+				geo.setExtLog(ExtLog.read(mdl));
+			} else if (keyword.equals("Anim")) {
+				geo.add(Animation.read(mdl));
+			} else if (keyword.equals("MaterialID")) {
+				mdl.readWord();
+				geo.materialID = mdl.readInt();
+			} else if (keyword.equals("SelectionGroup")) {
+				mdl.readWord();
+				geo.selectionGroup = mdl.readInt();
+			} else {
+				geo.addFlag(mdl.readFlag());
 			}
-			// JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),"Geoset
-			// reading completed!");
+		}
+		return geo;
+	}
 
-			return geo;
-		} else {
-			JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-					"Unable to parse Geoset: Missing or unrecognized open statement '" + line + "'.");
+	/**
+	 * Writes the geometry as one array each for positions, vertex groups, normals, texture coordinates and
+	 * triangle vertex ids, so that it is read back without a call per vertex.
+	 */
+	void writeTo(final MdlCacheWriter cache) throws IOException {
+		cache.writeExtLog(extents);
+		cache.writeVertices(vertex);
+		final int[] vertexGroups = new int[vertex.size()];
+		for (int i = 0; i < vertexGroups.length; i++) {
+			vertexGroups[i] = vertex.get(i).getVertexGroup();
+		}
+		cache.writeInts(vertexGroups);
+		cache.writeVertices(normals);
+		cache.writeInt(uvlayers.size());
+		for (final UVLayer layer : uvlayers) {
+			final double[] coords = new double[layer.numTVerteces() * 2];
+			for (int i = 0; i < layer.numTVerteces(); i++) {
+				final TVertex tvert = layer.getTVertex(i);
+				coords[i * 2] = tvert.x;
+				coords[(i * 2) + 1] = tvert.y;
+			}
+			cache.writeNumbers(coords);
+		}
+		final int[] triangleVertexIds = new int[triangles.size() * 3];
+		for (int i = 0; i < triangles.size(); i++) {
+			System.arraycopy(triangles.get(i).vertIds, 0, triangleVertexIds, i * 3, 3);
 		}
-		return null;
+		cache.writeInts(triangleVertexIds);
+		cache.writeInt(matrix.size());
+		for (final Matrix m : matrix) {
+			cache.writeIntegers(m.m_boneIds);
+		}
+		cache.writeInt(anims.size());
+		for (final Animation anim : anims) {
+			anim.writeTo(cache);
+		}
+		cache.writeStrings(flags);
+		cache.writeInt(materialID);
+		cache.writeInt(selectionGroup);
+	}
+
+	static Geoset read(final MdlCacheReader cache) throws IOException {
+		final Geoset geo = new Geoset();
+		geo.extents = cache.readExtLog();
+		final double[] positions = cache.readNumbers();
+		final int[] vertexGroups = cache.readInts();
+		if ((vertexGroups.length * 3) != positions.length) {
+			throw new IOException("Expected " + (positions.length / 3) + " vertex groups but found "
+					+ vertexGroups.length);
+		}
+		geo.vertex.ensureCapacity(vertexGroups.length);
+		for (int i = 0; i < vertexGroups.length; i++) {
+			final GeosetVertex gv = new GeosetVertex(positions[i * 3], positions[(i * 3) + 1],
+					positions[(i * 3) + 2]);
+			gv.setVertexGroup(vertexGroups[i]);
+			geo.vertex.add(gv);
+		}
+		final double[] normals = cache.readNumbers();
+		geo.normals.ensureCapacity(normals.length / 3);
+		for (int i = 0; (i + 2) < normals.length; i += 3) {
+			geo.normals.add(new Normal(normals[i], normals[i + 1], normals[i + 2]));
+		}
+		final int uvLayerCount = cache.readCount(5);
+		for (int l = 0; l < uvLayerCount; l++) {
+			final double[] coords = cache.readNumbers();
+			final UVLayer layer = new UVLayer();
+			layer.tverts.ensureCapacity(coords.length / 2);
+			for (int i = 0; (i + 1) < coords.length; i += 2) {
+				layer.addTVertex(new TVertex(coords[i], coords[i + 1]));
+			}
+			geo.uvlayers.add(layer);
+		}
+		final int[] triangleVertexIds = cache.readInts();
+		geo.triangles.ensureCapacity(triangleVertexIds.length / 3);
+		try {
+			for (int i = 0; (i + 2) < triangleVertexIds.length; i += 3) {
+				geo.triangles.add(new Triangle(triangleVertexIds[i], triangleVertexIds[i + 1],
+						triangleVertexIds[i + 2], geo));
+			}
+		} catch (final IndexOutOfBoundsException e) {
+			throw new IOException("Invalid triangle vertex id", e);
+		}
+		final int matrixCount = cache.readCount(4);
+		for (int i = 0; i < matrixCount; i++) {
+			final int[] boneIds = cache.readInts();
+			geo.matrix.add(boneIds.length > 0 ? new Matrix(boneIds) : new Matrix());
+		}
+		final int animCount = cache.readCount(4);
+		for (int i = 0; i < animCount; i++) {
+			geo.anims.add(Animation.read(cache));
+		}
+		geo.flags = cache.readStrings();
+		geo.materialID = cache.readInt();
+		geo.selectionGroup = cache.readInt();
+		return geo;
 	}
 
 	public void updateToObjects(final MDL mdlr) {
@@ -435,14 +524,21 @@ public class Geoset implements Named, VisibilitySource {
 			if (normals != null && normals.size() > 0) {
 				gv.setNormal(normals.get(i));
 			}
-			for (final Triangle t : triangles) {
-				if (t.containsRef(gv)) {
+			gv.geoset = this;
+			// gv.addBoneAttachment(null);//Why was this here?
+		}
+		// one pass over the triangles gives every vertex its triangles in the
+		// same order as checking every triangle for every vertex did
+		final Set<GeosetVertex> members = Collections.newSetFromMap(new IdentityHashMap<GeosetVertex, Boolean>());
+		members.addAll(vertex);
+		for (final Triangle t : triangles) {
+			for (int i = 0; i < 3; i++) {
+				final GeosetVertex gv = t.verts[i];
+				if (members.contains(gv) && (i == 0 || gv != t.verts[0]) && (i < 2 || gv != t.verts[1])) {
 					gv.triangles.add(t);
 				}
-				t.geoset = this;
 			}
-			gv.geoset = this;
-			// gv.addBoneAttachment(null);//Why was this here?
+			t.geoset = this;
 		}
 		try {
 			material = mdlr.getMaterial(materialID);
@@ -542,7 +638,9 @@ public class Geoset implements Named, VisibilitySource {
 			uvlayers.add(new UVLayer());
 		}
 		for (int i = 0; i < vertex.size(); i++) {
-			writer.println(tabs + vertex.get(i).toString() + ",");
+			writer.print(tabs);
+			vertex.get(i).printTo(writer);
+			writer.println(",");
 			if (vertex.get(i).getNormal() != null) {
 				normals.add(vertex.get(i).getNormal());
 			}
@@ -568,7 +666,9 @@ public class Geoset implements Named, VisibilitySource {
 			}
 			writer.println("\tNormals " + normals.size() + " {");
 			for (int i = 0; i < normals.size(); i++) {
-				writer.println(tabs + normals.get(i).toString() + ",");
+				writer.print(tabs);
+				normals.get(i).printTo(writer);
+				writer.println(",");
 			}
 			writer.println("\t}");
 		}
@@ -593,30 +693,36 @@ public class Geoset implements Named, VisibilitySource {
 			}
 			vertex.get(i).VertexGroup = matrix.indexOf(newTemp);
 			vertex.get(i).setMatrix(newTemp);
-			writer.println(tabs + vertex.get(i).VertexGroup + ",");
+			writer.print(tabs);
+			writer.print(vertex.get(i).VertexGroup);
+			writer.println(",");
 		}
 		writer.println("\t}");
+		final Map<GeosetVertex, Integer> vertexIds = getVertexIds();
 		if (trianglesTogether) {
 			writer.println("\tFaces 1 " + (triangles.size() * 3) + " {");
 			writer.println("\t\tTriangles {");
-			String triangleOut = "\t\t\t{ ";
+			writer.print("\t\t\t{ ");
 			for (int i = 0; i < triangles.size(); i++) {
-				triangles.get(i).updateVertexIds(this);
-				if (i != triangles.size() - 1) {
-					triangleOut = triangleOut + triangles.get(i).toString() + ", ";
-				} else {
-					triangleOut = triangleOut + triangles.get(i).toString() + " ";
+				triangles.get(i).updateVertexIds(this, vertexIds);
+				if (i != 0) {
+					writer.print(", ");
+				}
+				triangles.get(i).printTo(writer);
+				if (i == triangles.size() - 1) {
+					writer.print(" ");
 				}
 			}
-			writer.println(triangleOut + "},");
+			writer.println("},");
 			writer.println("\t\t}");
 		} else {
 			writer.println("\tFaces " + triangles.size() + " " + (triangles.size() * 3) + " {");
 			writer.println("\t\tTriangles {");
-			final String triangleOut = "\t\t\t{ ";
 			for (int i = 0; i < triangles.size(); i++) {
-				triangles.get(i).updateVertexIds(this);
-				writer.println(triangleOut + triangles.get(i).toString() + " },");
+				triangles.get(i).updateVertexIds(this, vertexIds);
+				writer.print("\t\t\t{ ");
+				triangles.get(i).printTo(writer);
+				writer.println(" },");
 			}
 			writer.println("\t\t}");
 		}
@@ -703,8 +809,9 @@ public class Geoset implements Named, VisibilitySource {
 			vertex.get(i).VertexGroup = matrix.indexOf(newTemp);
 			vertex.get(i).setMatrix(newTemp);
 		}
+		final Map<GeosetVertex, Integer> vertexIds = getVertexIds();
 		for (int i = 0; i < triangles.size(); i++) {
-			triangles.get(i).updateVertexIds(this);
+			triangles.get(i).updateVertexIds(this, vertexIds);
 		}
 		int boneRefCount = 0;
 		for (int i = 0; i < matrix.size(); i++) {
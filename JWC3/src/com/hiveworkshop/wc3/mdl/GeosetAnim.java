@@ -1,6 +1,6 @@
 package com.hiveworkshop.wc3.mdl;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 
@@ -78,33 +78,53 @@ public class GeosetAnim implements VisibilitySource, Named {
 
 	}
 
-	public static GeosetAnim read(final BufferedReader mdl) {
-		String line = MDLReader.nextLine(mdl);
-		if (line.contains("GeosetAnim")) {
-			final GeosetAnim geo = new GeosetAnim();
-			MDLReader.mark(mdl);
-			while (!(line = MDLReader.nextLine(mdl)).contains("}") || line.contains("},")) {
-				if (line.contains("static Alpha")) {
-					geo.staticAlpha = MDLReader.readDouble(line);
-				} else if (line.contains("static Color")) {
-					geo.staticColor = Vertex.parseText(line);
-				} else if (line.contains("GeosetId")) {
-					geo.geosetId = MDLReader.readInt(line);
-				} else if (line.contains("DropShadow")) {
-					geo.dropShadow = true;
+	public static GeosetAnim read(final MdlTokenizer mdl) throws IOException {
+		final GeosetAnim geo = new GeosetAnim();
+		mdl.readWord();
+		mdl.openBlock();
+		while (!mdl.endBlock()) {
+			final String keyword = mdl.peekWord();
+			if (keyword.equals("static")) {
+				mdl.readWord();
+				final String name = mdl.readWord();
+				if (name.equals("Alpha")) {
+					geo.staticAlpha = mdl.readDouble();
+				} else if (name.equals("Color")) {
+					geo.staticColor = Vertex.read(mdl);
 				} else {
-					MDLReader.reset(mdl);
-					geo.animFlags.add(AnimFlag.read(mdl));
+					mdl.skipStatement();
 				}
-				MDLReader.mark(mdl);
+			} else if (keyword.equals("GeosetId")) {
+				mdl.readWord();
+				geo.geosetId = mdl.readInt();
+			} else if (keyword.equals("DropShadow")) {
+				mdl.readWord();
+				geo.dropShadow = true;
+			} else if (mdl.isTrack()) {
+				geo.animFlags.add(AnimFlag.read(mdl));
+			} else {
+				mdl.skipStatement();
 			}
-			// MDLReader.reset(mdl);
-			return geo;
-		} else {
-			JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-					"Unable to parse GeosetAnim: Missing or unrecognized open statement.");
 		}
-		return null;
+		return geo;
+	}
+
+	void writeTo(final MdlCacheWriter cache) throws IOException {
+		cache.writeAnimFlags(animFlags);
+		cache.writeDouble(staticAlpha);
+		cache.writeVertex(staticColor);
+		cache.writeInt(geosetId);
+		cache.writeBoolean(dropShadow);
+	}
+
+	static GeosetAnim read(final MdlCacheReader cache) throws IOException {
+		final GeosetAnim geo = new GeosetAnim();
+		geo.animFlags = cache.readAnimFlags();
+		geo.staticAlpha = cache.readDouble();
+		geo.staticColor = cache.readVertex();
+		geo.geosetId = cache.readInt();
+		geo.dropShadow = cache.readBoolean();
+		return geo;
 	}
 
 	public void printTo(final PrintWriter writer, final int tabHeight) {
@@ -1,5 +1,6 @@
 package com.hiveworkshop.wc3.mdl;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -133,6 +134,15 @@ public class GeosetVertex extends Vertex {
 		return temp;
 	}
 
+	public static GeosetVertex read(final MdlTokenizer mdl) throws IOException {
+		mdl.expect('{');
+		final double x = mdl.readDouble();
+		final double y = mdl.readDouble();
+		final double z = mdl.readDouble();
+		mdl.expect('}');
+		return new GeosetVertex(x, y, z);
+	}
+
 	public List<TVertex> getTverts() {
 		return tverts;
 	}
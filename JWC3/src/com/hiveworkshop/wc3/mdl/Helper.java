@@ -1,8 +1,6 @@
 package com.hiveworkshop.wc3.mdl;
 
-import java.io.BufferedReader;
-
-import javax.swing.JOptionPane;
+import java.io.IOException;
 
 import com.hiveworkshop.wc3.mdl.v2.visitor.IdObjectVisitor;
 import com.hiveworkshop.wc3.mdx.HelperChunk;
@@ -45,64 +43,16 @@ public class Helper extends Bone// Haha blizz
 
 	}
 
-	public static Helper read(final BufferedReader mdl) {
-		String line = MDLReader.nextLine(mdl);
-		if (line.contains("Helper")) {
-			final Helper b = new Helper();
-			b.setName(MDLReader.readName(line));
-			MDLReader.mark(mdl);
-			line = MDLReader.nextLine(mdl);
-			while ((!line.contains("}") || line.contains("},") || line.contains("\t}"))
-					&& !line.equals("COMPLETED PARSING")) {
-				if (line.contains("ObjectId")) {
-					b.objectId = MDLReader.readInt(line);
-				} else if (line.contains("GeosetId")) {
-					final String field = MDLReader.readField(line);
-					try {
-						b.geosetId = Integer.parseInt(field);
-						// b.geoset = mdlr.getGeoset(b.geosetId);
-					} catch (final Exception e) {
-						if (field.equals("Multiple")) {
-							b.multiGeoId = true;
-						} else {
-							JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-									"Error while parsing: Could not interpret integer from: " + line);
-						}
-					}
-				} else if (line.contains("GeosetAnimId")) {
-					final String field = MDLReader.readField(line);
-					b.hasGeoAnim = true;
-					try {
-						b.geosetAnimId = Integer.parseInt(field);
-						// b.geosetAnim = mdlr.getGeosetAnim(b.geosetAnimId);
-					} catch (final Exception e) {
-						if (field.equals("None")) {
-							b.geosetAnim = null;
-						} else {
-							JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-									"Error while parsing: Could not interpret integer from: " + line);
-						}
-					}
-				} else if (line.contains("Parent")) {
-					b.parentId = MDLReader.splitToInts(line)[0];
-					// b.parent = mdlr.getIdObject(b.parentId);
-				} else if ((line.contains("Scaling") || line.contains("Rotation") || line.contains("Translation"))
-						&& !line.contains("DontInherit")) {
-					MDLReader.reset(mdl);
-					b.animFlags.add(AnimFlag.read(mdl));
-				} else// Flags like Billboarded
-				{
-					b.flags.add(MDLReader.readFlag(line));
-				}
-				MDLReader.mark(mdl);
-				line = MDLReader.nextLine(mdl);
-			}
-			return b;
-		} else {
-			JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-					"Unable to parse Bone: Missing or unrecognized open statement.");
-		}
-		return null;
+	public static Helper read(final MdlTokenizer mdl) throws IOException {
+		final Helper b = new Helper();
+		b.readBlock(mdl);
+		return b;
+	}
+
+	static Helper read(final MdlCacheReader cache) throws IOException {
+		final Helper b = new Helper();
+		b.readFrom(cache);
+		return b;
 	}
 
 	// printTo is already written as a part of bone; these two things are
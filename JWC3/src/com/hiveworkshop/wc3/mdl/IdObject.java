@@ -1,6 +1,6 @@
 package com.hiveworkshop.wc3.mdl;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -71,10 +71,26 @@ public abstract class IdObject implements Named {
 		parent = host.parent;
 	}
 
-	public static IdObject read(final BufferedReader mdl) {
+	public static IdObject read(final MdlTokenizer mdl) throws IOException {
 		return null;
 	}
 
+	/**
+	 * Writes the parts every node has for the {@link ModelCache}. Subclasses write their own parts after these
+	 * and read them back in {@link #readFrom(MdlCacheReader)} in the same order.
+	 */
+	void writeTo(final MdlCacheWriter cache) throws IOException {
+		cache.writeString(name);
+		cache.writeInt(objectId);
+		cache.writeInt(parentId);
+	}
+
+	void readFrom(final MdlCacheReader cache) throws IOException {
+		name = cache.readString();
+		objectId = cache.readInt();
+		parentId = cache.readInt();
+	}
+
 	public abstract void printTo(PrintWriter writer);
 
 	public void setPivotPoint(final Vertex p) {
@@ -1,6 +1,6 @@
 package com.hiveworkshop.wc3.mdl;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 
@@ -381,43 +381,78 @@ public class Layer implements Named, VisibilitySource, LayerView {
 		return null;
 	}
 
-	public static Layer read(final BufferedReader mdl, final MDL mdlr) {
-		String line = MDLReader.nextLine(mdl);
-		if (line.contains("Layer")) {
-			final Layer lay = new Layer();
-			MDLReader.mark(mdl);
-			while (!(line = MDLReader.nextLine(mdl)).contains("\t}")) {
-				if (line.contains("FilterMode")) {
-					lay.filterMode = MDLReader.readField(line);
-				} else if (line.contains("static TextureID")) {
-					lay.textureId = MDLReader.readInt(line);
+	public static Layer read(final MdlTokenizer mdl, final MDL mdlr) throws IOException {
+		final Layer lay = new Layer();
+		mdl.readWord();
+		mdl.openBlock();
+		while (!mdl.endBlock()) {
+			final String keyword = mdl.peekWord();
+			if (keyword.equals("FilterMode")) {
+				mdl.readWord();
+				lay.filterMode = mdl.readWord();
+			} else if (keyword.equals("static")) {
+				mdl.readWord();
+				final String name = mdl.peekWord();
+				if (name.equals("TextureID")) {
+					mdl.readWord();
+					lay.textureId = mdl.readInt();
 					lay.texture = mdlr.getTexture(lay.textureId);
-				} else if (line.contains("CoordId")) {
-					lay.CoordId = MDLReader.readInt(line);
-				} else if (line.contains("TVertexAnimId")) {
-					lay.TVertexAnimId = MDLReader.readInt(line);
-				} else if (line.contains("static Alpha")) {
-					lay.staticAlpha = MDLReader.readDouble(line);
-				} else if (line.contains("Alpha")) {
-					MDLReader.reset(mdl);
-					lay.anims.add(AnimFlag.read(mdl));
-				} else if (line.contains("TextureID")) {
-					MDLReader.reset(mdl);
-					lay.anims.add(AnimFlag.read(mdl));
-					lay.buildTextureList(mdlr);
+				} else if (name.equals("Alpha")) {
+					mdl.readWord();
+					lay.staticAlpha = mdl.readDouble();
 				} else {
-					lay.flags.add(MDLReader.readFlag(line));
-					// JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),"Error
-					// parsing Layer: Unrecognized statement '"+line[i]+"'.");
+					lay.flags.add("static " + mdl.readFlag());
+				}
+			} else if (keyword.equals("CoordId")) {
+				mdl.readWord();
+				lay.CoordId = mdl.readInt();
+			} else if (keyword.equals("TVertexAnimId")) {
+				mdl.readWord();
+				lay.TVertexAnimId = mdl.readInt();
+			} else if (mdl.isTrack()) {
+				lay.anims.add(AnimFlag.read(mdl));
+				if (keyword.equals("TextureID")) {
+					lay.buildTextureList(mdlr);
 				}
-				MDLReader.mark(mdl);
+			} else {
+				lay.flags.add(mdl.readFlag());
 			}
-			return lay;
-		} else {
-			JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-					"Unable to parse Layer: Missing or unrecognized open statement.");
 		}
-		return null;
+		return lay;
+	}
+
+	void writeTo(final MdlCacheWriter cache) throws IOException {
+		cache.writeString(filterMode);
+		cache.writeInt(textureId);
+		cache.writeBoolean(texture != null);
+		cache.writeInt(TVertexAnimId);
+		cache.writeInt(CoordId);
+		cache.writeDouble(staticAlpha);
+		cache.writeStrings(flags);
+		cache.writeAnimFlags(anims);
+		cache.writeBoolean((textures != null) && (getFlag("TextureID") != null));
+	}
+
+	/**
+	 * Reads a layer written by {@link #writeTo(MdlCacheWriter)}, taking its textures from the model the way
+	 * {@link #read(MdlTokenizer, MDL)} does.
+	 */
+	static Layer read(final MdlCacheReader cache, final MDL mdlr) throws IOException {
+		final Layer lay = new Layer();
+		lay.filterMode = cache.readString();
+		lay.textureId = cache.readInt();
+		if (cache.readBoolean()) {
+			lay.texture = mdlr.getTexture(lay.textureId);
+		}
+		lay.TVertexAnimId = cache.readInt();
+		lay.CoordId = cache.readInt();
+		lay.staticAlpha = cache.readDouble();
+		lay.flags = cache.readStrings();
+		lay.anims = cache.readAnimFlags();
+		if (cache.readBoolean()) {
+			lay.buildTextureList(mdlr);
+		}
+		return lay;
 	}
 
 	public boolean hasCoordId() {
@@ -1,6 +1,6 @@
 package com.hiveworkshop.wc3.mdl;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 
@@ -103,62 +103,99 @@ public class Light extends IdObject implements VisibilitySource {
 		x.AttenuationStart = AttenuationStart;
 		x.AttenuationEnd = AttenuationEnd;
 		x.Intensity = Intensity;
-		x.staticColor = staticColor;
+		if (staticColor != null) {
+			x.staticColor = new Vertex(staticColor);
+		}
 		x.AmbIntensity = AmbIntensity;
-		x.staticAmbColor = staticAmbColor;
+		if (staticAmbColor != null) {
+			x.staticAmbColor = new Vertex(staticAmbColor);
+		}
 		for (final AnimFlag af : animFlags) {
 			x.animFlags.add(new AnimFlag(af));
 		}
-		flags = new ArrayList<>(x.flags);
+		x.flags = new ArrayList<>(flags);
 		return x;
 	}
 
-	public static Light read(final BufferedReader mdl) {
-		String line = MDLReader.nextLine(mdl);
-		if (line.contains("Light")) {
-			final Light lit = new Light();
-			lit.setName(MDLReader.readName(line));
-			MDLReader.mark(mdl);
-			line = MDLReader.nextLine(mdl);
-			while ((!line.contains("}") || line.contains("},") || line.contains("\t}"))
-					&& !line.equals("COMPLETED PARSING")) {
-				if (line.contains("ObjectId")) {
-					lit.objectId = MDLReader.readInt(line);
-				} else if (line.contains("Parent")) {
-					lit.parentId = MDLReader.splitToInts(line)[0];
-					// lit.parent = mdlr.getIdObject(lit.parentId);
-				} else if (!line.contains("static") && line.contains("{")) {
-					MDLReader.reset(mdl);
-					lit.animFlags.add(AnimFlag.read(mdl));
-				} else if (line.contains("AttenuationStart"))// These are
-																// 'static'
-																// ones, the
-																// rest are
-				{ // saved in animFlags
-					lit.AttenuationStart = MDLReader.readInt(line);
-				} else if (line.contains("AttenuationEnd")) {
-					lit.AttenuationEnd = MDLReader.readInt(line);
-				} else if (line.contains("AmbIntensity")) {
-					lit.AmbIntensity = MDLReader.readDouble(line);
-				} else if (line.contains("AmbColor")) {
-					lit.staticAmbColor = Vertex.parseText(line);
-				} else if (line.contains("Intensity")) {
-					lit.Intensity = MDLReader.readDouble(line);
-				} else if (line.contains("Color")) {
-					lit.staticColor = Vertex.parseText(line);
-				} else// Flags like Omnidirectional
-				{
-					lit.flags.add(MDLReader.readFlag(line));
+	public static Light read(final MdlTokenizer mdl) throws IOException {
+		final Light lit = new Light();
+		mdl.readWord();
+		lit.setName(mdl.readString());
+		mdl.openBlock();
+		while (!mdl.endBlock()) {
+			final String keyword = mdl.peekWord();
+			if (keyword.equals("ObjectId")) {
+				mdl.readWord();
+				lit.objectId = mdl.readInt();
+			} else if (keyword.equals("Parent")) {
+				mdl.readWord();
+				lit.parentId = mdl.readInt();
+			} else if (mdl.isTrack()) {
+				lit.animFlags.add(AnimFlag.read(mdl));
+			} else if (keyword.equals("static"))// These are 'static' ones, the
+												// rest are saved in animFlags
+			{
+				mdl.readWord();
+				final String name = mdl.peekWord();
+				if (name.equals("AttenuationStart")) {
+					mdl.readWord();
+					lit.AttenuationStart = mdl.readInt();
+				} else if (name.equals("AttenuationEnd")) {
+					mdl.readWord();
+					lit.AttenuationEnd = mdl.readInt();
+				} else if (name.equals("AmbIntensity")) {
+					mdl.readWord();
+					lit.AmbIntensity = mdl.readDouble();
+				} else if (name.equals("AmbColor")) {
+					mdl.readWord();
+					lit.staticAmbColor = Vertex.read(mdl);
+				} else if (name.equals("Intensity")) {
+					mdl.readWord();
+					lit.Intensity = mdl.readDouble();
+				} else if (name.equals("Color")) {
+					mdl.readWord();
+					lit.staticColor = Vertex.read(mdl);
+				} else {
+					lit.flags.add("static " + mdl.readFlag());
 				}
-				MDLReader.mark(mdl);
-				line = MDLReader.nextLine(mdl);
+			} else// Flags like Omnidirectional
+			{
+				lit.flags.add(mdl.readFlag());
 			}
-			return lit;
-		} else {
-			JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-					"Unable to parse Light: Missing or unrecognized open statement.");
 		}
-		return null;
+		return lit;
+	}
+
+	@Override
+	void writeTo(final MdlCacheWriter cache) throws IOException {
+		super.writeTo(cache);
+		cache.writeInt(AttenuationStart);
+		cache.writeInt(AttenuationEnd);
+		cache.writeDouble(Intensity);
+		cache.writeVertex(staticColor);
+		cache.writeDouble(AmbIntensity);
+		cache.writeVertex(staticAmbColor);
+		cache.writeAnimFlags(animFlags);
+		cache.writeStrings(flags);
+	}
+
+	@Override
+	void readFrom(final MdlCacheReader cache) throws IOException {
+		super.readFrom(cache);
+		AttenuationStart = cache.readInt();
+		AttenuationEnd = cache.readInt();
+		Intensity = cache.readDouble();
+		staticColor = cache.readVertex();
+		AmbIntensity = cache.readDouble();
+		staticAmbColor = cache.readVertex();
+		animFlags = cache.readAnimFlags();
+		flags = cache.readStrings();
+	}
+
+	static Light read(final MdlCacheReader cache) throws IOException {
+		final Light lit = new Light();
+		lit.readFrom(cache);
+		return lit;
 	}
 
 	@Override
@@ -7,9 +7,11 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -43,7 +45,6 @@ import com.hiveworkshop.wc3.mdx.TextureAnimationChunk.TextureAnimation;
 import com.hiveworkshop.wc3.mdx.TextureChunk.Texture;
 import com.hiveworkshop.wc3.util.MathUtils;
 
-import de.wc3data.stream.BlizzardDataInputStream;
 import de.wc3data.stream.BlizzardDataOutputStream;
 
 /**
@@ -153,48 +154,14 @@ public class MDL implements Named {
 		return newModel;
 	}
 
+	/**
+	 * Copies the model and everything in it, keeping the references between its parts, without writing it out.
+	 */
 	public static MDL deepClone(final MDL what, final String newName) {
-		File temp;
-		try {
-			temp = File.createTempFile("model_clone", "mdl");
-			what.printTo(temp);
-			final MDL newModel = MDL.read(temp);
-
-			newModel.setName(newName);
-			newModel.setFile(what.getFile());
-			temp.deleteOnExit();
-
-			return newModel;
-		} catch (final IOException e) {
-			e.printStackTrace();
-			ExceptionPopup.display(e);
-		}
-		// Write some legit deep clone code later
-
-		// MDL newModel = new MDL(what);
-		//
-		// newModel.m_anims.clear();
-		// for( Animation anim: what.m_anims )
-		// {
-		// newModel.add(new Animation(anim));
-		// }
-		// newModel.m_textures.clear();
-		// for( Bitmap tex: what.m_textures )
-		// {
-		// newModel.add(new Bitmap(tex));
-		// }
-		// newModel.m_materials.clear();
-		// for(Material mat: what.m_materials)
-		// {
-		// newModel.add(new Material(mat));
-		// }
-		// m_geosets = new ArrayList(other.m_geosets);
-		// m_geosetanims = new ArrayList(other.m_geosetanims);
-		// m_idobjects = new ArrayList(other.m_idobjects);
-		// m_pivots = new ArrayList(other.m_pivots);
-		// m_cameras = new ArrayList(other.m_cameras);
-
-		return null;
+		final MDL newModel = new MdlCloner().copy(what);
+		newModel.setName(newName);
+		newModel.setFile(what.getFile());
+		return newModel;
 	}
 
 	public void clearToHeader() {
@@ -885,8 +852,8 @@ public class MDL implements Named {
 	public static MDL read(final File f) {
 		if (f.getPath().toLowerCase().endsWith(".mdx")) {
 			// f = MDXHandler.convert(f);
-			try (BlizzardDataInputStream in = new BlizzardDataInputStream(new FileInputStream(f))) {
-				final MDL mdl = new MDL(MdxUtils.loadModel(in));
+			try {
+				final MDL mdl = new MDL(MdxUtils.loadModel(ByteBuffer.wrap(Files.readAllBytes(f.toPath()))));
 				mdl.fileRef = f;
 				return mdl;
 			} catch (final FileNotFoundException e) {
@@ -915,187 +882,248 @@ public class MDL implements Named {
 
 	public static MDL read(final InputStream f) {
 		try {
-			MDLReader.clearLineId();
-			BufferedReader mdl;
-			// try
-			// {
-			mdl = new BufferedReader(new InputStreamReader(f));
-			// }
-			// catch (final IOException e)
-			// {
-			// JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),"Attempted
-			// to read file, but file was not found.");
-			// return null;
-			// }
-			final MDL mdlr = new MDL();
-			String line = "";
-			while ((line = MDLReader.nextLineSpecial(mdl)).startsWith("//")) {
-				if (!line.contains("// Saved by Retera's MDL Toolkit on ")) {
-					mdlr.addToHeader(line);
-				}
-			}
-			if (!line.contains("Version")) {
-				JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(), "The file version is missing!");
-			}
-			line = MDLReader.nextLine(mdl);
-			mdlr.formatVersion = MDLReader.readInt(line);
-			if (mdlr.formatVersion != 800) {
-				JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(), "The format version was confusing!");
-			}
-			line = MDLReader.nextLine(mdl);// this is "}" for format version
-			if (!line.startsWith("}")) // now I'll prove it
-			{ // gotta have that sense of humor, right?
-				JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-						"Model could not be understood. Program does not understand this type of file.");
-			}
-			line = MDLReader.nextLine(mdl);
-			mdlr.setName(MDLReader.readName(line));
-			MDLReader.mark(mdl);
-			while (!(line = MDLReader.nextLine(mdl)).startsWith("}")) {
-				if (line.contains("BlendTime")) {
-					mdlr.BlendTime = MDLReader.readInt(line);
-				} else if (line.contains("Extent")) {
-					MDLReader.reset(mdl);
-					mdlr.extents = ExtLog.read(mdl);
-				}
-				MDLReader.mark(mdl);
-			}
-			MDLReader.mark(mdl);
-			mdlr.anims = Sequences.read(mdl);
+			return read(new MdlTokenizer(f));
+		} catch (final Exception e) {
+			e.printStackTrace();
+			ExceptionPopup.display(e);
+			// pane.getStyledDocument().
+			// JOptionPane.showMessageDialog(null,newJTextPane(e));
+		}
+		return null;
+	}
 
-			// GlobalSequences
-			if (mdlr.anims.size() < 1) {
-				MDLReader.reset(mdl);
-			}
-			MDLReader.mark(mdl);
-			if ((line = MDLReader.nextLine(mdl)).contains("GlobalSequences")) {
-				while (!(line = MDLReader.nextLine(mdl)).startsWith("}")) {
-					if (line.contains("Duration")) {
-						mdlr.globalSeqs.add(new Integer(MDLReader.readInt(line)));
+	/**
+	 * Reads a model from MDL text in one pass, the blocks of the model may come in any order.
+	 *
+	 * @throws IOException
+	 *             if the text cannot be read or is not a model, naming the line the problem was found on
+	 */
+	public static MDL read(final MdlTokenizer mdl) throws IOException {
+		final MDL mdlr = new MDL();
+		String comment;
+		while ((comment = mdl.nextComment()) != null) {
+			if (!comment.contains("// Saved by Retera's MDL Toolkit on ")) {
+				mdlr.addToHeader(comment);
+			}
+		}
+		while (mdl.hasNext()) {
+			final String keyword = mdl.peekWord();
+			if (keyword.equals("Version")) {
+				mdl.readWord();
+				mdl.openBlock();
+				while (!mdl.endBlock()) {
+					if (mdl.readWord().equals("FormatVersion")) {
+						mdlr.formatVersion = mdl.readInt();
+						if (mdlr.formatVersion != 800) {
+							JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
+									"The format version was confusing!");
+						}
+					} else {
+						mdl.skipStatement();
 					}
 				}
-			} else {
-				MDLReader.reset(mdl);
-			}
-			mdlr.textures = Bitmap.readAll(mdl);
-			mdlr.materials = Material.readAll(mdl, mdlr);
-			mdlr.texAnims = TextureAnim.readAll(mdl);
-			if (mdlr.materials != null) {
-				final int sz = mdlr.materials.size();
-				for (int i = 0; i < sz; i++) {
-					mdlr.materials.get(i).updateTextureAnims(mdlr.texAnims);
-				}
-			}
-			MDLReader.mark(mdl);
-			boolean hadGeosets = false;
-			line = MDLReader.nextLine(mdl);
-			while ((line).contains("Geoset ")) {
-				hadGeosets = true;
-				MDLReader.reset(mdl);
-				mdlr.addGeoset(Geoset.read(mdl));
-				MDLReader.mark(mdl);
-				line = MDLReader.nextLine(mdl);
-			}
-			// if( hadGeosets )
-			MDLReader.reset(mdl);
-			MDLReader.mark(mdl);
-			boolean hadGeosetAnims = false;
-			while ((line = MDLReader.nextLine(mdl)).contains("GeosetAnim ")) {
-				hadGeosetAnims = true;
-				MDLReader.reset(mdl);
-				mdlr.addGeosetAnim(GeosetAnim.read(mdl));
-				MDLReader.mark(mdl);
-			}
-			// if( hadGeosetAnims )
-			MDLReader.reset(mdl);
-			line = MDLReader.nextLine(mdl);
-			while ((line).length() > 1 && !line.equals("COMPLETED PARSING")) {
-				if (line.startsWith("Bone ")) {
-					MDLReader.reset(mdl);
-					mdlr.addIdObject(Bone.read(mdl));
-					MDLReader.mark(mdl);
-				} else if (line.contains("Light ")) {
-					MDLReader.reset(mdl);
-					mdlr.addIdObject(Light.read(mdl));
-					MDLReader.mark(mdl);
-				} else if (line.contains("Helper ")) {
-					MDLReader.reset(mdl);
-					mdlr.addIdObject(Helper.read(mdl));
-					MDLReader.mark(mdl);
-				} else if (line.contains("Attachment ")) {
-					MDLReader.reset(mdl);
-					mdlr.addIdObject(Attachment.read(mdl));
-					MDLReader.mark(mdl);
-				} else if (line.contains("ParticleEmitter ")) {
-					MDLReader.reset(mdl);
-					mdlr.addIdObject(ParticleEmitter.read(mdl));
-					MDLReader.mark(mdl);
-				} else if (line.contains("ParticleEmitter2 ")) {
-					MDLReader.reset(mdl);
-					final ParticleEmitter2 temp = ParticleEmitter2.read(mdl);
-					mdlr.addIdObject(temp);
-					temp.updateTextureRef(mdlr.textures);
-					MDLReader.mark(mdl);
-				} else if (line.contains("RibbonEmitter ")) {
-					MDLReader.reset(mdl);
-					final RibbonEmitter temp = RibbonEmitter.read(mdl);
-					mdlr.addIdObject(temp);
-					temp.updateMaterialRef(mdlr.materials);
-					MDLReader.mark(mdl);
-				} else if (line.contains("Camera ")) {
-					MDLReader.reset(mdl);
-					mdlr.addCamera(Camera.read(mdl));
-					MDLReader.mark(mdl);
-				} else if (line.contains("EventObject ")) {
-					MDLReader.reset(mdl);
-					mdlr.addIdObject(EventObject.read(mdl));
-					MDLReader.mark(mdl);
-				} else if (line.contains("CollisionShape ")) {
-					MDLReader.reset(mdl);
-					mdlr.addIdObject(CollisionShape.read(mdl));
-					MDLReader.mark(mdl);
-				} else if (line.contains("PivotPoints ")) {
-					while (!(line = MDLReader.nextLine(mdl)).startsWith("}")) {
-						mdlr.addPivotPoint(Vertex.parseText(line));
+			} else if (keyword.equals("Model")) {
+				mdl.readWord();
+				mdlr.setName(mdl.readString());
+				mdl.openBlock();
+				while (!mdl.endBlock()) {
+					final String field = mdl.peekWord();
+					if (field.equals("BlendTime")) {
+						mdl.readWord();
+						mdlr.BlendTime = mdl.readInt();
+					} else if (ExtLog.isExtent(field)) {
+						mdlr.extents = ExtLog.read(mdl);
+					} else {
+						mdl.skipStatement();
 					}
-					MDLReader.mark(mdl);
 				}
-				line = MDLReader.nextLine(mdl);
-			}
-			mdlr.updateIdObjectReferences();
-			for (final Geoset geo : mdlr.geosets) {
-				geo.updateToObjects(mdlr);
-			}
-			for (final GeosetAnim geoAnim : mdlr.geosetAnims) {
-				if (geoAnim.geosetId != -1) {
-					geoAnim.geoset = mdlr.getGeoset(geoAnim.geosetId);
-					geoAnim.geoset.geosetAnim = geoAnim;// YEAH THIS MAKES SENSE
+			} else if (keyword.equals("Sequences")) {
+				mdlr.anims = Sequences.read(mdl);
+			} else if (keyword.equals("GlobalSequences")) {
+				mdl.readWord();
+				mdl.openBlock();
+				while (!mdl.endBlock()) {
+					if (mdl.readWord().equals("Duration")) {
+						mdlr.globalSeqs.add(new Integer(mdl.readInt()));
+					} else {
+						mdl.skipStatement();
+					}
 				}
-			}
-			final List<AnimFlag> animFlags = mdlr.getAllAnimFlags();// laggggg!
-			for (final AnimFlag af : animFlags) {
-				af.updateGlobalSeqRef(mdlr);
-				if (!af.getName().equals("Scaling") && !af.getName().equals("Translation")
-						&& !af.getName().equals("Rotation")) {
+			} else if (keyword.equals("Textures")) {
+				mdlr.textures = Bitmap.readAll(mdl);
+			} else if (keyword.equals("Materials")) {
+				mdlr.materials = Material.readAll(mdl, mdlr);
+			} else if (keyword.equals("TextureAnims")) {
+				mdlr.texAnims = TextureAnim.readAll(mdl);
+			} else if (keyword.equals("Geoset")) {
+				mdlr.addGeoset(Geoset.read(mdl));
+			} else if (keyword.equals("GeosetAnim")) {
+				mdlr.addGeosetAnim(GeosetAnim.read(mdl));
+			} else if (keyword.equals("Bone")) {
+				mdlr.addIdObject(Bone.read(mdl));
+			} else if (keyword.equals("Light")) {
+				mdlr.addIdObject(Light.read(mdl));
+			} else if (keyword.equals("Helper")) {
+				mdlr.addIdObject(Helper.read(mdl));
+			} else if (keyword.equals("Attachment")) {
+				mdlr.addIdObject(Attachment.read(mdl));
+			} else if (keyword.equals("ParticleEmitter")) {
+				mdlr.addIdObject(ParticleEmitter.read(mdl));
+			} else if (keyword.equals("ParticleEmitter2")) {
+				mdlr.addIdObject(ParticleEmitter2.read(mdl));
+			} else if (keyword.equals("RibbonEmitter")) {
+				mdlr.addIdObject(RibbonEmitter.read(mdl));
+			} else if (keyword.equals("Camera")) {
+				mdlr.addCamera(Camera.read(mdl));
+			} else if (keyword.equals("EventObject")) {
+				mdlr.addIdObject(EventObject.read(mdl));
+			} else if (keyword.equals("CollisionShape")) {
+				mdlr.addIdObject(CollisionShape.read(mdl));
+			} else if (keyword.equals("PivotPoints")) {
+				mdl.readWord();
+				mdl.openBlock();
+				while (!mdl.endBlock()) {
+					mdlr.addPivotPoint(Vertex.read(mdl));
 				}
+			} else {
+				mdl.skipStatement();
 			}
-			final List<EventObject> evtObjs = mdlr.sortedIdObjects(EventObject.class);
-			for (final EventObject af : evtObjs) {
-				af.updateGlobalSeqRef(mdlr);
-			}
-			try {
-				mdl.close();
-			} catch (final Exception e) {
+		}
+		for (final Material material : mdlr.materials) {
+			material.updateTextureAnims(mdlr.texAnims);
+		}
+		mdlr.doPostRead();
+		return mdlr;
+	}
+
+	/**
+	 * Writes everything {@link #read(MdlTokenizer)} reads for the {@link ModelCache}. References between parts
+	 * are written as the ids the files use and are resolved again by {@link #doPostRead()} when read.
+	 */
+	void writeTo(final MdlCacheWriter cache) throws IOException {
+		cache.writeStrings(header);
+		cache.writeInt(formatVersion);
+		cache.writeString(name);
+		cache.writeInt(BlendTime);
+		cache.writeExtLog(extents);
+		cache.writeInt(anims.size());
+		for (final Animation anim : anims) {
+			anim.writeTo(cache);
+		}
+		cache.writeIntegers(globalSeqs);
+		cache.writeInt(textures.size());
+		for (final Bitmap texture : textures) {
+			texture.writeTo(cache);
+		}
+		cache.writeInt(materials.size());
+		for (final Material material : materials) {
+			material.writeTo(cache);
+		}
+		cache.writeInt(texAnims.size());
+		for (final TextureAnim texAnim : texAnims) {
+			texAnim.writeTo(cache);
+		}
+		cache.writeInt(geosets.size());
+		for (final Geoset geoset : geosets) {
+			geoset.writeTo(cache);
+		}
+		cache.writeInt(geosetAnims.size());
+		for (final GeosetAnim geosetAnim : geosetAnims) {
+			geosetAnim.writeTo(cache);
+		}
+		cache.writeInt(idObjects.size());
+		for (final IdObject object : idObjects) {
+			final String keyword = MDLReader.getClassName(object.getClass());
+			if (!keyword.equals("Bone") && !keyword.equals("Light") && !keyword.equals("Helper")
+					&& !keyword.equals("Attachment") && !keyword.equals("ParticleEmitter")
+					&& !keyword.equals("ParticleEmitter2") && !keyword.equals("RibbonEmitter")
+					&& !keyword.equals("EventObject") && !keyword.equals("CollisionShape")) {
+				throw new IOException("Cannot cache an object of type " + object.getClass().getName());
+			}
+			cache.writeString(keyword);
+			object.writeTo(cache);
+		}
+		cache.writeVertices(pivots);
+		cache.writeInt(cameras.size());
+		for (final Camera camera : cameras) {
+			camera.writeTo(cache);
+		}
+	}
 
+	/**
+	 * Reads a model written by {@link #writeTo(MdlCacheWriter)}, finishing it as {@link #read(MdlTokenizer)}
+	 * does.
+	 */
+	static MDL read(final MdlCacheReader cache) throws IOException {
+		final MDL mdlr = new MDL();
+		mdlr.header = cache.readStrings();
+		mdlr.formatVersion = cache.readInt();
+		mdlr.name = cache.readString();
+		mdlr.BlendTime = cache.readInt();
+		mdlr.extents = cache.readExtLog();
+		final int animCount = cache.readCount(4);
+		for (int i = 0; i < animCount; i++) {
+			mdlr.anims.add(Animation.read(cache));
+		}
+		mdlr.globalSeqs = cache.readIntegers();
+		final int textureCount = cache.readCount(4);
+		for (int i = 0; i < textureCount; i++) {
+			mdlr.textures.add(Bitmap.read(cache));
+		}
+		final int materialCount = cache.readCount(4);
+		for (int i = 0; i < materialCount; i++) {
+			mdlr.materials.add(Material.read(cache, mdlr));
+		}
+		final int texAnimCount = cache.readCount(4);
+		for (int i = 0; i < texAnimCount; i++) {
+			mdlr.texAnims.add(TextureAnim.read(cache));
+		}
+		final int geosetCount = cache.readCount(4);
+		for (int i = 0; i < geosetCount; i++) {
+			mdlr.addGeoset(Geoset.read(cache));
+		}
+		final int geosetAnimCount = cache.readCount(4);
+		for (int i = 0; i < geosetAnimCount; i++) {
+			mdlr.addGeosetAnim(GeosetAnim.read(cache));
+		}
+		final int objectCount = cache.readCount(4);
+		for (int i = 0; i < objectCount; i++) {
+			final String keyword = cache.readString();
+			if ("Bone".equals(keyword)) {
+				mdlr.addIdObject(Bone.read(cache));
+			} else if ("Light".equals(keyword)) {
+				mdlr.addIdObject(Light.read(cache));
+			} else if ("Helper".equals(keyword)) {
+				mdlr.addIdObject(Helper.read(cache));
+			} else if ("Attachment".equals(keyword)) {
+				mdlr.addIdObject(Attachment.read(cache));
+			} else if ("ParticleEmitter".equals(keyword)) {
+				mdlr.addIdObject(ParticleEmitter.read(cache));
+			} else if ("ParticleEmitter2".equals(keyword)) {
+				mdlr.addIdObject(ParticleEmitter2.read(cache));
+			} else if ("RibbonEmitter".equals(keyword)) {
+				mdlr.addIdObject(RibbonEmitter.read(cache));
+			} else if ("EventObject".equals(keyword)) {
+				mdlr.addIdObject(EventObject.read(cache));
+			} else if ("CollisionShape".equals(keyword)) {
+				mdlr.addIdObject(CollisionShape.read(cache));
+			} else {
+				throw new IOException("Invalid object type " + keyword);
 			}
-			return mdlr;
-		} catch (final Exception e) {
-			e.printStackTrace();
-			ExceptionPopup.display(e);
-			// pane.getStyledDocument().
-			// JOptionPane.showMessageDialog(null,newJTextPane(e));
 		}
-		return null;
+		mdlr.pivots = cache.readVertices();
+		final int cameraCount = cache.readCount(4);
+		for (int i = 0; i < cameraCount; i++) {
+			mdlr.addCamera(Camera.read(cache));
+		}
+		if (!cache.isDone()) {
+			throw new IOException("Unexpected data after the model");
+		}
+		for (final Material material : mdlr.materials) {
+			material.updateTextureAnims(mdlr.texAnims);
+		}
+		mdlr.doPostRead();
+		return mdlr;
 	}
 
 	public void doPostRead() {
@@ -1166,17 +1194,44 @@ public class MDL implements Named {
 	}
 
 	public void printTo(final OutputStream outputStream) {
-		rebuildLists();
-		// If rebuilding the lists is to crash, then we want to crash the thread
-		// BEFORE clearing the file
-
 		PrintWriter writer = null;
 		try {
-			writer = new PrintWriter(outputStream);
+			writer = new MdlWriter(outputStream);
 		} catch (final Exception e) {
 			JOptionPane.showMessageDialog(null, "Unable to save MDL to file.");
 		}
 
+		printTo(writer);
+
+		try {
+			writer.close();
+		} catch (final Exception e) {
+			JOptionPane.showMessageDialog(null, "Unable to close MDL writer -- did you run out of hard drive space?");
+			ExceptionPopup.display(e);
+		}
+	}
+
+	/**
+	 * Writes the model as MDL text to a channel, such as that of a file, which is left open.
+	 */
+	public void printTo(final WritableByteChannel channel) throws IOException {
+		final PrintWriter writer = new MdlWriter(channel);
+		printTo(writer);
+		writer.flush();
+		if (writer.checkError()) {
+			throw new IOException("Unable to write MDL");
+		}
+	}
+
+	/**
+	 * Writes the model as MDL text, leaving the writer open. Numbers are formatted fastest when it is an
+	 * {@link MdlWriter}.
+	 */
+	public void printTo(final PrintWriter writer) {
+		rebuildLists();
+		// If rebuilding the lists is to crash, then we want to crash the thread
+		// BEFORE clearing the file
+
 		for (final String s : header) {
 			writer.println(s);
 		}
@@ -1347,7 +1402,9 @@ public class MDL implements Named {
 					|| obj.getClass() == CollisionShape.class)) {
 				writer.println("PivotPoints " + pivots.size() + " {");
 				for (int p = 0; p < pivots.size(); p++) {
-					writer.println("\t" + pivots.get(p).toString() + ",");
+					writer.print("\t");
+					pivots.get(p).printTo(writer);
+					writer.println(",");
 				}
 				writer.println("}");
 				pivotsPrinted = true;
@@ -1364,7 +1421,9 @@ public class MDL implements Named {
 		if (!pivotsPrinted) {
 			writer.println("PivotPoints " + pivots.size() + " {");
 			for (int p = 0; p < pivots.size(); p++) {
-				writer.println("\t" + pivots.get(p).toString() + ",");
+				writer.print("\t");
+				pivots.get(p).printTo(writer);
+				writer.println(",");
 			}
 			writer.println("}");
 		}
@@ -1374,13 +1433,6 @@ public class MDL implements Named {
 				cameras.get(i).printTo(writer);
 			}
 		}
-
-		try {
-			writer.close();
-		} catch (final Exception e) {
-			JOptionPane.showMessageDialog(null, "Unable to close MDL writer -- did you run out of hard drive space?");
-			ExceptionPopup.display(e);
-		}
 	}
 
 	public void doSavePreps() {
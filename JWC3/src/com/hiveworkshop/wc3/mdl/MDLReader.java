@@ -1,17 +1,11 @@
 package com.hiveworkshop.wc3.mdl;
 import java.awt.Component;
-import java.io.BufferedReader;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 
 import javax.swing.JOptionPane;
 public class MDLReader
 {
-    static int c = 0;
-    static int markc = 0;
-    static int lastMark = 0;
-    static int followMarks = 0;
     public static String readName(String line)
     {
         //Obtains quoted information from a line
@@ -201,104 +195,6 @@ public class MDLReader
         String name [] = what.getName().split("\\.");
         return name[name.length-1];
     }
-    public static String nextLineSpecial(BufferedReader reader)
-    {
-        c++;
-        String output = "";
-        try
-        {
-            output = reader.readLine();
-//             System.out.println(output);
-        }
-        catch (IOException e)
-        {
-            JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),"Error reading file.");
-        }
-        if( output == null )
-        {
-            output = "COMPLETED PARSING";
-        }
-        return output;
-    }
-    public static String nextLine(BufferedReader reader)
-    {
-        c++;
-        String output = "";
-        try
-        {
-            output = reader.readLine();
-//             System.out.println(output);
-        }
-        catch (IOException e)
-        {
-            JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),"Error reading file.");
-        }
-        if( output == null )
-        {
-            output = "COMPLETED PARSING";
-        }
-        else if( output.contains("//") )
-        {
-            output = output.split("//")[0];
-        }
-        return output;
-    }
-    public static void reset(BufferedReader reader)
-    {
-        //System.out.println("Line reset from line "+c+" back to line "+markc);
-        if( c == markc + 1 && markc == lastMark )
-        {
-        	lastMark = markc;
-        	followMarks ++;
-        }
-        else
-        {
-        	followMarks = 0;
-        }
-        if( followMarks > 30 )
-        {
-        	throw new RuntimeException("Program detected infinite loop in file reading sequence. Probably bad model, or error in interpreter!");
-        }
-        try
-        {
-            reader.reset();
-        }
-        catch (IOException e)
-        {
-            JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),"Critical error in IO: Maybe length between line "+markc+" and line "+c+" got longer than expected?\nPortions of model data will be lost.");
-            System.out.println("Line reset error: "+e);
-        }
-        c = markc;
-    }
-    public static void mark(BufferedReader reader, int m)
-    {
-        //System.out.println("Line mark at line "+c+" of size "+m);
-        markc = c;
-        try
-        {
-            reader.mark(m);
-        }
-        catch (IOException e)
-        {
-            JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),"Critical error: Read/write abilities lost. Loading will possibly be severely damaged and disfunctional.");
-            System.out.println("Mark error: "+e);
-//             System.out.println(e);
-//             System.out.println("did not mark "+nextLine(reader));
-//             JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),"Critical error: Read/write abilities lost. Loading will be severely damaged and disfunctional.");
-        }
-        
-//        lastMark = markc;
-    }
-    public static void mark(BufferedReader reader)
-    {
-        mark(reader,850);
-    }
-    public static void clearLineId()
-    {
-    	c = 0;
-    	markc = 0;
-    }
-    
     public static int [] splitToIntsMath(String s)
     {
         int lastIndex = 0;
@@ -4,13 +4,19 @@ import java.io.File;
 import java.io.IOException;
 
 public class MDXHandler {
+	// longest the converter may take on one file before it is given up on
+	private static final long CONVERTER_TIMEOUT_MILLIS = 60000;
+
 	public static File convert(final File mdxFile) {
 		try {
 			final File fileMDL = new File(mdxFile.getPath().substring(0, mdxFile.getPath().lastIndexOf(".")) + ".mdl");
 			try {
+				// an older output must be rewritten before it counts as done
+				final long previousModified = fileMDL.lastModified();
 				final Process jones = Runtime.getRuntime().exec(new String[] { "mdlx/converter.exe",
 						"\"" + mdxFile.getPath() + "\"", "\"" + fileMDL.getPath() + "\"" });// .waitFor();
 
+				final long deadline = System.currentTimeMillis() + CONVERTER_TIMEOUT_MILLIS;
 				boolean keepGoing = true;
 				long lastSize = 0;
 				int goodTicks = 0;
@@ -22,7 +28,11 @@ public class MDXHandler {
 					} else {
 						goodTicks = 0;
 					}
-					if (goodTicks > 3 && lastSize > 0) {
+					// also stops when the converter exited without writing, or never finishes
+					if (goodTicks > 3 && ((lastSize > 0 && fileMDL.lastModified() != previousModified)
+							|| !jones.isAlive())) {
+						keepGoing = false;
+					} else if (System.currentTimeMillis() > deadline) {
 						keepGoing = false;
 					}
 					lastSize = fileMDL.length();
@@ -49,9 +59,12 @@ public class MDXHandler {
 		try {
 			final File fileMDX = new File(mdlFile.getPath().substring(0, mdlFile.getPath().lastIndexOf(".")) + ".mdx");
 			try {
+				// an older output must be rewritten before it counts as done
+				final long previousModified = fileMDX.lastModified();
 				final Process jones = Runtime.getRuntime().exec(new String[] { "mdlx/converter.exe",
 						"\"" + mdlFile.getPath() + "\"", "\"" + fileMDX.getPath() + "\"" });// .waitFor();
 
+				final long deadline = System.currentTimeMillis() + CONVERTER_TIMEOUT_MILLIS;
 				boolean keepGoing = true;
 				long lastSize = 0;
 				int goodTicks = 0;
@@ -63,7 +76,11 @@ public class MDXHandler {
 					} else {
 						goodTicks = 0;
 					}
-					if (goodTicks > 3 && lastSize > 0) {
+					// also stops when the converter exited without writing, or never finishes
+					if (goodTicks > 3 && ((lastSize > 0 && fileMDX.lastModified() != previousModified)
+							|| !jones.isAlive())) {
+						keepGoing = false;
+					} else if (System.currentTimeMillis() > deadline) {
 						keepGoing = false;
 					}
 					lastSize = fileMDX.length();
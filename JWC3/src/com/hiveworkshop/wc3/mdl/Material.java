@@ -3,8 +3,8 @@ package com.hiveworkshop.wc3.mdl;
 import java.awt.Graphics;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -254,54 +254,54 @@ public class Material implements MaterialView {
 	// }
 	// return does;
 	// }
-	public static Material read(final BufferedReader mdl, final MDL mdlr) {
-		String line = MDLReader.nextLine(mdl);
-		if (line.contains("Material")) {
-			final Material mat = new Material();
-			MDLReader.mark(mdl);
-			while (!(line = MDLReader.nextLine(mdl)).contains("\t}")) {
-				if (line.contains("Layer")) {
-					MDLReader.reset(mdl);
-					mat.layers.add(Layer.read(mdl, mdlr));
-					MDLReader.mark(mdl);
-				} else if (line.contains("PriorityPlane")) {
-					mat.priorityPlane = MDLReader.readInt(line);
-				} else {
-					mat.flags.add(MDLReader.readFlag(line));
-					// JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),"Error
-					// parsing Material: Unrecognized statement
-					// '"+line[i]+"'.");
-				}
-				MDLReader.mark(mdl);
+	public static Material read(final MdlTokenizer mdl, final MDL mdlr) throws IOException {
+		final Material mat = new Material();
+		mdl.readWord();
+		mdl.openBlock();
+		while (!mdl.endBlock()) {
+			final String keyword = mdl.peekWord();
+			if (keyword.equals("Layer")) {
+				mat.layers.add(Layer.read(mdl, mdlr));
+			} else if (keyword.equals("PriorityPlane")) {
+				mdl.readWord();
+				mat.priorityPlane = mdl.readInt();
+			} else {
+				mat.flags.add(mdl.readFlag());
 			}
-			return mat;
-		} else {
-			JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-					"Unable to parse Material: Missing or unrecognized open statement.");
 		}
-		return null;
+		return mat;
 	}
 
-	public static ArrayList<Material> readAll(final BufferedReader mdl, final MDL mdlr) {
-		String line = "";
+	public static ArrayList<Material> readAll(final MdlTokenizer mdl, final MDL mdlr) throws IOException {
 		final ArrayList<Material> outputs = new ArrayList<>();
-		MDLReader.mark(mdl);
-		if ((line = MDLReader.nextLine(mdl)).contains("Materials")) {
-			MDLReader.mark(mdl);
-			while (!(line = MDLReader.nextLine(mdl)).startsWith("}")) {
-				MDLReader.reset(mdl);
-				outputs.add(read(mdl, mdlr));
-				MDLReader.mark(mdl);
-			}
-			return outputs;
-		} else {
-			MDLReader.reset(mdl);
-			// JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),"Unable
-			// to parse Materials: Missing or unrecognized open statement.");
+		mdl.readWord();
+		mdl.openBlock();
+		while (!mdl.endBlock()) {
+			outputs.add(read(mdl, mdlr));
 		}
 		return outputs;
 	}
 
+	void writeTo(final MdlCacheWriter cache) throws IOException {
+		cache.writeInt(layers.size());
+		for (final Layer layer : layers) {
+			layer.writeTo(cache);
+		}
+		cache.writeInt(priorityPlane);
+		cache.writeStrings(flags);
+	}
+
+	static Material read(final MdlCacheReader cache, final MDL mdlr) throws IOException {
+		final Material mat = new Material();
+		final int layerCount = cache.readCount(4);
+		for (int i = 0; i < layerCount; i++) {
+			mat.layers.add(Layer.read(cache, mdlr));
+		}
+		mat.priorityPlane = cache.readInt();
+		mat.flags = cache.readStrings();
+		return mat;
+	}
+
 	public void printTo(final PrintWriter writer, final int tabHeight) {
 		String tabs = "";
 		for (int i = 0; i < tabHeight; i++) {
@@ -1,7 +1,9 @@
 package com.hiveworkshop.wc3.mdl;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.swing.JOptionPane;
@@ -12,21 +14,24 @@ import javax.swing.JOptionPane;
  * Eric Theller 11/10/2011
  */
 public class Matrix {
-	ArrayList m_boneIds;
+	ArrayList<Integer> m_boneIds;
 	ArrayList<Bone> bones;
 
 	public Matrix() {
-		m_boneIds = new ArrayList();
+		m_boneIds = new ArrayList<>();
 	}
 
 	public Matrix(final int id) {
-		m_boneIds = new ArrayList();
+		m_boneIds = new ArrayList<>();
 		m_boneIds.add(id);
 	}
 
 	public Matrix(final ArrayList boneIds, final boolean useIds) {
 		if (useIds) {
-			m_boneIds = boneIds;
+			m_boneIds = new ArrayList<>(boneIds.size());
+			for (final Object id : boneIds) {
+				m_boneIds.add((Integer) id);
+			}
 		} else {
 			bones = boneIds;
 		}
@@ -59,7 +64,7 @@ public class Matrix {
 	public void updateIds(final MDL mdlr) {
 		final int sz1 = bones.size();
 		if (m_boneIds == null) {
-			m_boneIds = new ArrayList();
+			m_boneIds = new ArrayList<>();
 		} else {
 			m_boneIds.clear();
 		}
@@ -87,7 +92,7 @@ public class Matrix {
 			bones.clear();
 		}
 		for (int i = 0; i < m_boneIds.size(); i++) {
-			final Bone b = mdlr.getBone((Integer) m_boneIds.get(i));
+			final Bone b = mdlr.getBone(m_boneIds.get(i));
 			// if( b.getClass() == Helper.class )
 			// {
 			// JOptionPane.showMessageDialog(null,"Error: Holy fo shizzle my
@@ -107,7 +112,7 @@ public class Matrix {
 	}
 
 	public Matrix(final int[] boneIds) {
-		m_boneIds = new ArrayList();
+		m_boneIds = new ArrayList<>();
 		for (int i = 0; i < boneIds.length; i++) {
 			m_boneIds.add(boneIds[i]);
 		}
@@ -122,7 +127,7 @@ public class Matrix {
 	}
 
 	public int getBoneId(final int index) {
-		return (Integer) m_boneIds.get(index);
+		return m_boneIds.get(index);
 	}
 
 	public int size() {
@@ -175,6 +180,26 @@ public class Matrix {
 		return temp;
 	}
 
+	/**
+	 * Reads a "Matrices { 0, 1 }" statement of a geoset.
+	 */
+	public static Matrix read(final MdlTokenizer mdl) throws IOException {
+		mdl.readWord();
+		mdl.expect('{');
+		int[] boneIds = new int[4];
+		int size = 0;
+		while (!mdl.endBlock()) {
+			if (size == boneIds.length) {
+				boneIds = Arrays.copyOf(boneIds, size * 2);
+			}
+			boneIds[size++] = mdl.readInt();
+		}
+		if ((size > 0) && (boneIds[0] != -1)) {
+			return new Matrix(Arrays.copyOf(boneIds, size));
+		}
+		return new Matrix();
+	}
+
 	public void printTo(final PrintWriter writer, final int tabHeight) {
 		String tabs = "";
 		for (int i = 0; i < tabHeight; i++) {
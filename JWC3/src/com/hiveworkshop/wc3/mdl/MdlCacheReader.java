@@ -0,0 +1,193 @@
+package com.hiveworkshop.wc3.mdl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import de.wc3data.stream.BlizzardDataInputBuffer;
+
+/**
+ * Reads a model written by {@link MdlCacheWriter}. Counts are checked against the data left before anything
+ * is allocated for them, so a damaged file fails with an {@link IOException} instead of running out of
+ * memory.
+ */
+final class MdlCacheReader {
+	private final BlizzardDataInputBuffer data;
+	private final String[] strings;
+
+	/**
+	 * @param buffer
+	 *            the string table and the data after it, such as the contents of a cache file
+	 */
+	MdlCacheReader(final ByteBuffer buffer) throws IOException {
+		data = new BlizzardDataInputBuffer(buffer);
+		strings = new String[readCount(4)];
+		for (int i = 0; i < strings.length; i++) {
+			final byte[] bytes = new byte[readCount(1)];
+			data.readBytes(bytes);
+			strings[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * @return whether everything written has been read
+	 */
+	boolean isDone() {
+		return data.remaining() == 0;
+	}
+
+	int readInt() throws IOException {
+		return data.readInt();
+	}
+
+	boolean readBoolean() throws IOException {
+		return data.readByte() != 0;
+	}
+
+	double readDouble() throws IOException {
+		return data.readDouble();
+	}
+
+	/**
+	 * @return the string, the same instance for every place it was written, or null
+	 */
+	String readString() throws IOException {
+		final int id = data.readInt();
+		if (id == -1) {
+			return null;
+		}
+		if ((id < 0) || (id >= strings.length)) {
+			throw new IOException("Invalid string " + id + " at offset " + data.getOffset());
+		}
+		return strings[id];
+	}
+
+	ArrayList<String> readStrings() throws IOException {
+		final int count = readCount(4);
+		final ArrayList<String> values = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			values.add(readString());
+		}
+		return values;
+	}
+
+	byte[] readBytes() throws IOException {
+		final byte[] values = new byte[readCount(1)];
+		data.readBytes(values);
+		return values;
+	}
+
+	int[] readInts() throws IOException {
+		final int[] values = new int[readCount(4)];
+		data.readInts(values);
+		return values;
+	}
+
+	ArrayList<Integer> readIntegers() throws IOException {
+		final int[] array = readInts();
+		final ArrayList<Integer> values = new ArrayList<>(array.length);
+		for (final int value : array) {
+			values.add(value);
+		}
+		return values;
+	}
+
+	/**
+	 * Reads ints for an array that always has the given length, such as the values named by a list of keywords.
+	 */
+	int[] readInts(final int length) throws IOException {
+		final int[] values = readInts();
+		if (values.length != length) {
+			throw new IOException("Expected " + length + " values but found " + values.length);
+		}
+		return values;
+	}
+
+	double[] readNumbers() throws IOException {
+		final int count = data.readInt();
+		final byte kind = data.readByte();
+		if (kind == MdlCacheWriter.FLOATS) {
+			final float[] floats = new float[checkCount(count, 4)];
+			data.readFloats(floats);
+			final double[] values = new double[count];
+			for (int i = 0; i < count; i++) {
+				values[i] = floats[i];
+			}
+			return values;
+		} else if (kind == MdlCacheWriter.DOUBLES) {
+			final double[] values = new double[checkCount(count, 8)];
+			data.readDoubles(values);
+			return values;
+		}
+		throw new IOException("Invalid number array kind " + kind + " at offset " + data.getOffset());
+	}
+
+	/**
+	 * Reads numbers for an array that always has the given length, such as the values named by a list of
+	 * keywords.
+	 */
+	double[] readNumbers(final int length) throws IOException {
+		final double[] values = readNumbers();
+		if (values.length != length) {
+			throw new IOException("Expected " + length + " values but found " + values.length);
+		}
+		return values;
+	}
+
+	/**
+	 * @return the vertex, or null if null was written
+	 */
+	Vertex readVertex() throws IOException {
+		if (!readBoolean()) {
+			return null;
+		}
+		final double[] values = readNumbers();
+		if (values.length != 3) {
+			throw new IOException("Expected 3 values for a vertex but found " + values.length);
+		}
+		return new Vertex(values[0], values[1], values[2]);
+	}
+
+	ArrayList<Vertex> readVertices() throws IOException {
+		final double[] values = readNumbers();
+		final ArrayList<Vertex> vertices = new ArrayList<>(values.length / 3);
+		for (int i = 0; (i + 2) < values.length; i += 3) {
+			vertices.add(new Vertex(values[i], values[i + 1], values[i + 2]));
+		}
+		return vertices;
+	}
+
+	/**
+	 * @return the extents, or null if null was written
+	 */
+	ExtLog readExtLog() throws IOException {
+		if (!readBoolean()) {
+			return null;
+		}
+		return ExtLog.read(this);
+	}
+
+	ArrayList<AnimFlag> readAnimFlags() throws IOException {
+		final int count = readCount(4);
+		final ArrayList<AnimFlag> flags = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			flags.add(AnimFlag.read(this));
+		}
+		return flags;
+	}
+
+	/**
+	 * Reads a count of things that each take at least the given number of bytes.
+	 */
+	int readCount(final int minimumSize) throws IOException {
+		return checkCount(data.readInt(), minimumSize);
+	}
+
+	private int checkCount(final int count, final int minimumSize) throws IOException {
+		if ((count < 0) || (count > (data.remaining() / minimumSize))) {
+			throw new IOException("Invalid count " + count + " at offset " + data.getOffset());
+		}
+		return count;
+	}
+}
@@ -0,0 +1,160 @@
+package com.hiveworkshop.wc3.mdl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.wc3data.stream.BlizzardDataOutputBuffer;
+
+/**
+ * Writes a model in the binary form kept by the {@link ModelCache}, to be read back by {@link MdlCacheReader}.
+ * The model classes write their own parts, the same parts they read from MDL text.
+ *
+ * Strings are put once in a table in front of the data and written as their index in it, so the names,
+ * paths and flags repeated all over a model take four bytes each. Arrays of numbers are written in bulk, as
+ * floats when that loses nothing and as doubles otherwise.
+ */
+final class MdlCacheWriter {
+	static final byte FLOATS = 0;
+	static final byte DOUBLES = 1;
+
+	private final BlizzardDataOutputBuffer data = new BlizzardDataOutputBuffer(256 * 1024);
+	private final Map<String, Integer> stringIds = new HashMap<>();
+	private final List<String> strings = new ArrayList<>();
+
+	void writeInt(final int value) {
+		data.writeInt(value);
+	}
+
+	void writeBoolean(final boolean value) {
+		data.writeByte(value ? 1 : 0);
+	}
+
+	void writeDouble(final double value) {
+		data.writeDouble(value);
+	}
+
+	/**
+	 * @param value
+	 *            may be null
+	 */
+	void writeString(final String value) {
+		if (value == null) {
+			data.writeInt(-1);
+			return;
+		}
+		Integer id = stringIds.get(value);
+		if (id == null) {
+			id = strings.size();
+			stringIds.put(value, id);
+			strings.add(value);
+		}
+		data.writeInt(id);
+	}
+
+	void writeStrings(final List<String> values) {
+		data.writeInt(values.size());
+		for (final String value : values) {
+			writeString(value);
+		}
+	}
+
+	void writeBytes(final byte[] values) {
+		data.writeInt(values.length);
+		data.writeBytes(values);
+	}
+
+	void writeInts(final int[] values) {
+		data.writeInt(values.length);
+		data.writeInts(values);
+	}
+
+	void writeIntegers(final List<Integer> values) {
+		final int[] array = new int[values.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = values.get(i).intValue();
+		}
+		writeInts(array);
+	}
+
+	void writeNumbers(final double[] values) {
+		data.writeInt(values.length);
+		final float[] floats = new float[values.length];
+		for (int i = 0; i < values.length; i++) {
+			floats[i] = (float) values[i];
+			if (floats[i] != values[i]) {
+				data.writeByte(DOUBLES);
+				data.writeDoubles(values);
+				return;
+			}
+		}
+		data.writeByte(FLOATS);
+		data.writeFloats(floats);
+	}
+
+	/**
+	 * @param vertex
+	 *            may be null
+	 */
+	void writeVertex(final Vertex vertex) {
+		writeBoolean(vertex != null);
+		if (vertex != null) {
+			writeNumbers(new double[] { vertex.x, vertex.y, vertex.z });
+		}
+	}
+
+	/**
+	 * Writes many vertices as one array of numbers, read back with {@link MdlCacheReader#readNumbers()}.
+	 */
+	void writeVertices(final List<? extends Vertex> vertices) {
+		final double[] values = new double[vertices.size() * 3];
+		for (int i = 0; i < vertices.size(); i++) {
+			final Vertex vertex = vertices.get(i);
+			values[i * 3] = vertex.x;
+			values[(i * 3) + 1] = vertex.y;
+			values[(i * 3) + 2] = vertex.z;
+		}
+		writeNumbers(values);
+	}
+
+	/**
+	 * @param extents
+	 *            may be null
+	 */
+	void writeExtLog(final ExtLog extents) {
+		writeBoolean(extents != null);
+		if (extents != null) {
+			extents.writeTo(this);
+		}
+	}
+
+	void writeAnimFlags(final List<AnimFlag> flags) throws IOException {
+		data.writeInt(flags.size());
+		for (final AnimFlag flag : flags) {
+			flag.writeTo(this);
+		}
+	}
+
+	/**
+	 * @return the string table followed by everything written so far, as read by {@link MdlCacheReader}
+	 */
+	ByteBuffer getData() {
+		final BlizzardDataOutputBuffer table = new BlizzardDataOutputBuffer(strings.size() * 32);
+		table.writeInt(strings.size());
+		for (final String string : strings) {
+			final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+			table.writeInt(bytes.length);
+			table.write(bytes);
+		}
+		final ByteBuffer written = data.getData();
+		final ByteBuffer all = ByteBuffer.allocate(table.size() + written.remaining());
+		all.put(table.getData());
+		all.put(written);
+		all.flip();
+		return all;
+	}
+}
@@ -0,0 +1,349 @@
+package com.hiveworkshop.wc3.mdl;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copies a whole model in memory for {@link MDL#deepClone(MDL, String)}.
+ *
+ * Every object that the model can reach from more than one place, such as the textures of layers, the bones of
+ * vertices or the pivot points of nodes, is copied once and the copy is shared the same way the original was.
+ * Copies are kept by identity, since some of the model classes compare by value.
+ */
+final class MdlCloner {
+	private final Map<Object, Object> copies = new IdentityHashMap<>();
+	private final List<GeosetVertex> verticesWithoutTriangles = new ArrayList<>();
+
+	MDL copy(final MDL source) {
+		final MDL model = new MDL(source.getHeaderName());
+		copies.put(source, model);
+		model.setFileRef(source.getFileRef());
+		model.setBlendTime(source.getBlendTime());
+		model.setExtents(copy(source.getExtents()));
+		model.setFormatVersion(source.getFormatVersion());
+		model.header = new ArrayList<>(source.header);
+		for (final Animation anim : source.anims) {
+			model.anims.add(copy(anim));
+		}
+		model.globalSeqs = new ArrayList<>(source.globalSeqs);
+		for (final Bitmap texture : source.textures) {
+			model.textures.add(copy(texture));
+		}
+		for (final Material material : source.materials) {
+			model.materials.add(copy(material));
+		}
+		for (final TextureAnim texAnim : source.texAnims) {
+			model.texAnims.add(copy(texAnim));
+		}
+		for (final Geoset geoset : source.geosets) {
+			model.geosets.add(copy(geoset));
+		}
+		for (final GeosetAnim geosetAnim : source.geosetAnims) {
+			model.geosetAnims.add(copy(geosetAnim));
+		}
+		for (final IdObject object : source.idObjects) {
+			model.idObjects.add(copy(object));
+		}
+		for (final Vertex pivot : source.pivots) {
+			model.pivots.add(copyShared(pivot));
+		}
+		for (final Camera camera : source.cameras) {
+			model.cameras.add(new Camera(camera));
+		}
+		// Filled in last rather than as vertices are copied, which would walk the whole mesh recursively
+		for (int i = 0; i < verticesWithoutTriangles.size(); i++) {
+			final GeosetVertex vertex = verticesWithoutTriangles.get(i);
+			final GeosetVertex copy = copied(vertex);
+			for (final Triangle triangle : vertex.triangles) {
+				copy.triangles.add(copy(triangle));
+			}
+		}
+		return model;
+	}
+
+	/**
+	 * @return the copy already made of an object, or null if there is none yet
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> T copied(final T original) {
+		return (T) copies.get(original);
+	}
+
+	private static ExtLog copy(final ExtLog extents) {
+		if (extents == null) {
+			return null;
+		}
+		return new ExtLog(extents);
+	}
+
+	private static AnimFlag copy(final AnimFlag flag) {
+		return new AnimFlag(flag);
+	}
+
+	private static ArrayList<AnimFlag> copyFlags(final List<AnimFlag> flags) {
+		final ArrayList<AnimFlag> copy = new ArrayList<>(flags.size());
+		for (final AnimFlag flag : flags) {
+			copy.add(copy(flag));
+		}
+		return copy;
+	}
+
+	/**
+	 * Copies a vertex that can be shared between objects, such as a pivot point.
+	 */
+	private Vertex copyShared(final Vertex vertex) {
+		if (vertex == null) {
+			return null;
+		}
+		Vertex copy = copied(vertex);
+		if (copy == null) {
+			copy = new Vertex(vertex);
+			copies.put(vertex, copy);
+		}
+		return copy;
+	}
+
+	private Animation copy(final Animation anim) {
+		if (anim == null) {
+			return null;
+		}
+		Animation copy = copied(anim);
+		if (copy == null) {
+			copy = new Animation(anim);
+			copies.put(anim, copy);
+		}
+		return copy;
+	}
+
+	private Bitmap copy(final Bitmap texture) {
+		if (texture == null) {
+			return null;
+		}
+		Bitmap copy = copied(texture);
+		if (copy == null) {
+			copy = new Bitmap(texture);
+			copies.put(texture, copy);
+		}
+		return copy;
+	}
+
+	private TextureAnim copy(final TextureAnim texAnim) {
+		if (texAnim == null) {
+			return null;
+		}
+		TextureAnim copy = copied(texAnim);
+		if (copy == null) {
+			copy = new TextureAnim(copyFlags(texAnim.animFlags));
+			copies.put(texAnim, copy);
+		}
+		return copy;
+	}
+
+	private Material copy(final Material material) {
+		if (material == null) {
+			return null;
+		}
+		Material copy = copied(material);
+		if (copy == null) {
+			final List<Layer> layers = new ArrayList<>(material.layers.size());
+			for (final Layer layer : material.layers) {
+				layers.add(copy(layer));
+			}
+			copy = new Material(layers);
+			copies.put(material, copy);
+			copy.setFlags(new ArrayList<>(material.getFlags()));
+			copy.setPriorityPlane(material.getPriorityPlane());
+		}
+		return copy;
+	}
+
+	private Layer copy(final Layer layer) {
+		Layer copy = copied(layer);
+		if (copy == null) {
+			copy = new Layer(layer.getFilterModeString(), layer.textureId);
+			copies.put(layer, copy);
+			copy.TVertexAnimId = layer.TVertexAnimId;
+			copy.setCoordId(layer.getCoordId());
+			copy.texture = copy(layer.texture);
+			copy.textureAnim = copy(layer.textureAnim);
+			copy.setStaticAlpha(layer.getStaticAlpha());
+			copy.setFlags(new ArrayList<>(layer.getFlags()));
+			copy.anims = copyFlags(layer.anims);
+			if (layer.textures != null) {
+				copy.textures = new ArrayList<>(layer.textures.size());
+				for (final Bitmap texture : layer.textures) {
+					copy.textures.add(copy(texture));
+				}
+			}
+		}
+		return copy;
+	}
+
+	private Geoset copy(final Geoset geoset) {
+		if (geoset == null) {
+			return null;
+		}
+		Geoset copy = copied(geoset);
+		if (copy == null) {
+			copy = new Geoset();
+			copies.put(geoset, copy);
+			copy.extents = copy(geoset.extents);
+			for (final GeosetVertex vertex : geoset.vertex) {
+				copy.vertex.add(copy(vertex));
+			}
+			for (final Normal normal : geoset.normals) {
+				copy.normals.add(copy(normal));
+			}
+			for (final UVLayer uvLayer : geoset.uvlayers) {
+				final UVLayer layerCopy = new UVLayer();
+				for (final TVertex tvert : uvLayer.tverts) {
+					layerCopy.addTVertex(copy(tvert));
+				}
+				copy.uvlayers.add(layerCopy);
+			}
+			for (final Triangle triangle : geoset.triangles) {
+				copy.triangles.add(copy(triangle));
+			}
+			for (final Matrix matrix : geoset.matrix) {
+				copy.matrix.add(copy(matrix));
+			}
+			for (final Animation anim : geoset.anims) {
+				copy.anims.add(copy(anim));
+			}
+			copy.flags = new ArrayList<>(geoset.flags);
+			copy.materialID = geoset.materialID;
+			copy.material = copy(geoset.material);
+			copy.selectionGroup = geoset.selectionGroup;
+			final MDL parentModel = copied(geoset.parentModel);
+			copy.parentModel = parentModel == null ? geoset.parentModel : parentModel;
+			copy.geosetAnim = copy(geoset.geosetAnim);
+		}
+		return copy;
+	}
+
+	private GeosetVertex copy(final GeosetVertex vertex) {
+		if (vertex == null) {
+			return null;
+		}
+		GeosetVertex copy = copied(vertex);
+		if (copy == null) {
+			copy = new GeosetVertex(vertex.x, vertex.y, vertex.z, copy(vertex.getNormal()));
+			copies.put(vertex, copy);
+			copy.matrixRef = copy(vertex.matrixRef);
+			copy.VertexGroup = vertex.VertexGroup;
+			for (final TVertex tvert : vertex.tverts) {
+				copy.tverts.add(copy(tvert));
+			}
+			for (final Bone bone : vertex.bones) {
+				copy.bones.add((Bone) copy(bone));
+			}
+			copy.geoset = copy(vertex.geoset);
+			verticesWithoutTriangles.add(vertex);
+		}
+		return copy;
+	}
+
+	private Normal copy(final Normal normal) {
+		if (normal == null) {
+			return null;
+		}
+		Normal copy = copied(normal);
+		if (copy == null) {
+			copy = new Normal(normal);
+			copies.put(normal, copy);
+		}
+		return copy;
+	}
+
+	private TVertex copy(final TVertex tvert) {
+		if (tvert == null) {
+			return null;
+		}
+		TVertex copy = copied(tvert);
+		if (copy == null) {
+			copy = new TVertex(tvert);
+			copies.put(tvert, copy);
+			copy.parent = copy(tvert.parent);
+		}
+		return copy;
+	}
+
+	private Triangle copy(final Triangle triangle) {
+		Triangle copy = copied(triangle);
+		if (copy == null) {
+			copy = new Triangle((GeosetVertex) null, null, null);
+			copies.put(triangle, copy);
+			for (int i = 0; i < 3; i++) {
+				copy.verts[i] = copy(triangle.verts[i]);
+				copy.vertIds[i] = triangle.vertIds[i];
+			}
+			copy.geoset = copy(triangle.geoset);
+		}
+		return copy;
+	}
+
+	private Matrix copy(final Matrix matrix) {
+		if (matrix == null) {
+			return null;
+		}
+		Matrix copy = copied(matrix);
+		if (copy == null) {
+			copy = new Matrix();
+			copies.put(matrix, copy);
+			copy.m_boneIds = matrix.m_boneIds == null ? null : new ArrayList<>(matrix.m_boneIds);
+			if (matrix.bones != null) {
+				copy.bones = new ArrayList<>(matrix.bones.size());
+				for (final Bone bone : matrix.bones) {
+					copy.bones.add((Bone) copy(bone));
+				}
+			}
+		}
+		return copy;
+	}
+
+	private GeosetAnim copy(final GeosetAnim geosetAnim) {
+		if (geosetAnim == null) {
+			return null;
+		}
+		GeosetAnim copy = copied(geosetAnim);
+		if (copy == null) {
+			copy = new GeosetAnim(null, geosetAnim);
+			copies.put(geosetAnim, copy);
+			if (geosetAnim.staticColor != null) {
+				copy.staticColor = new Vertex(geosetAnim.staticColor);
+			}
+			copy.geoset = copy(geosetAnim.geoset);
+		}
+		return copy;
+	}
+
+	/**
+	 * Copies a node with {@link IdObject#copy()} and points the copy at the copies of whatever the node refers
+	 * to.
+	 */
+	private IdObject copy(final IdObject object) {
+		if (object == null) {
+			return null;
+		}
+		IdObject copy = copied(object);
+		if (copy == null) {
+			copy = object.copy();
+			copies.put(object, copy);
+			copy.pivotPoint = copyShared(object.pivotPoint);
+			copy.parent = copy(object.parent);
+			if (object instanceof Bone) {
+				final Bone bone = (Bone) object;
+				final Bone boneCopy = (Bone) copy;
+				boneCopy.geoset = copy(bone.geoset);
+				boneCopy.geosetAnim = copy(bone.geosetAnim);
+			} else if (object instanceof ParticleEmitter2) {
+				((ParticleEmitter2) copy).texture = copy(((ParticleEmitter2) object).texture);
+			} else if (object instanceof RibbonEmitter) {
+				((RibbonEmitter) copy).material = copy(((RibbonEmitter) object).material);
+			}
+		}
+		return copy;
+	}
+}
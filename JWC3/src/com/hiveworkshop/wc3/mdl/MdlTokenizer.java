@@ -0,0 +1,489 @@
+package com.hiveworkshop.wc3.mdl;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+/**
+ * Splits MDL text into the names, numbers, strings and braces the model readers are written against.
+ *
+ * Text is read once, front to back, through a buffer of its own, and all state lives in the instance, so any number
+ * of models can be read at the same time. Commas only separate values and are skipped together with whitespace and
+ * comments, except by {@link #readFlag()}, which needs them to know where a statement ends.
+ *
+ * Errors in the text are reported as an {@link IOException} naming the line they were found on.
+ */
+public class MdlTokenizer {
+	/**
+	 * Charset of MDL text read from bytes, the platform's as the text is written in it too.
+	 */
+	public static final Charset CHARSET = Charset.defaultCharset();
+
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+	private static final int MAX_DIGITS = 18;
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+	private final Reader reader;
+	private final char[] buffer = new char[8192];
+	private int position;
+	private int limit;
+	private int line = 1;
+	private String peekedWord;
+	private char[] number = new char[32];
+
+	public MdlTokenizer(final Reader reader) {
+		this.reader = reader;
+	}
+
+	public MdlTokenizer(final InputStream in) {
+		this(new InputStreamReader(in, CHARSET));
+	}
+
+	/**
+	 * @return line of the text the next token is on, counting from 1
+	 */
+	public int getLine() {
+		return line;
+	}
+
+	/**
+	 * Reads a comment if it is the next thing in the text, as the ones at the top of a model are kept.
+	 *
+	 * @return the comment from its leading slashes to the end of its line, or null if the next thing is not a
+	 *         comment
+	 */
+	public String nextComment() throws IOException {
+		skipWhitespace(false);
+		if ((peekChar(0) != '/') || (peekChar(1) != '/')) {
+			return null;
+		}
+		final StringBuilder comment = new StringBuilder();
+		int c;
+		while (((c = peekChar(0)) != -1) && (c != '\n') && (c != '\r')) {
+			comment.append((char) c);
+			position++;
+		}
+		return comment.toString();
+	}
+
+	/**
+	 * @return true if there is anything but whitespace and comments left
+	 */
+	public boolean hasNext() throws IOException {
+		return (peekedWord != null) || (skip() != -1);
+	}
+
+	/**
+	 * @return true if the next token is a name, such as a keyword or flag
+	 */
+	public boolean isWord() throws IOException {
+		return (peekedWord != null) || isWordStart(skip());
+	}
+
+	/**
+	 * @return true if the next token is a number
+	 */
+	public boolean isNumber() throws IOException {
+		if (peekedWord != null) {
+			return false;
+		}
+		final int c = skip();
+		return ((c >= '0') && (c <= '9')) || (c == '-') || (c == '+') || (c == '.');
+	}
+
+	/**
+	 * @return true if the next token is the given brace or other single character
+	 */
+	public boolean isNext(final char c) throws IOException {
+		return (peekedWord == null) && (skip() == c);
+	}
+
+	/**
+	 * @return true if a name, a count and a block follow, as they do for every animated value of a model
+	 */
+	public boolean isTrack() throws IOException {
+		if (!isWord()) {
+			return false;
+		}
+		int offset = 0;
+		if (peekedWord == null) {
+			while (isWordPart(peekChar(offset))) {
+				offset++;
+			}
+		}
+		while (isBlank(peekChar(offset))) {
+			offset++;
+		}
+		final int countStart = offset;
+		while ((peekChar(offset) >= '0') && (peekChar(offset) <= '9')) {
+			offset++;
+		}
+		if (offset == countStart) {
+			return false;
+		}
+		while (isBlank(peekChar(offset))) {
+			offset++;
+		}
+		return peekChar(offset) == '{';
+	}
+
+	/**
+	 * @return the next name without reading it
+	 */
+	public String peekWord() throws IOException {
+		if (peekedWord == null) {
+			peekedWord = scanWord();
+		}
+		return peekedWord;
+	}
+
+	public String readWord() throws IOException {
+		if (peekedWord != null) {
+			final String word = peekedWord;
+			peekedWord = null;
+			return word;
+		}
+		return scanWord();
+	}
+
+	/**
+	 * Reads a statement the readers keep as text, such as "Unshaded", "MoveSpeed 270" or "DontInherit { Rotation }",
+	 * up to the comma or line break that ends it.
+	 *
+	 * @return the statement as written, without the comma
+	 */
+	public String readFlag() throws IOException {
+		final StringBuilder flag = new StringBuilder(readWord());
+		readRest(flag);
+		int length = flag.length();
+		while ((length > 0) && isBlank(flag.charAt(length - 1))) {
+			length--;
+		}
+		flag.setLength(length);
+		return flag.toString();
+	}
+
+	/**
+	 * @return the text between the next pair of double quotes
+	 */
+	public String readString() throws IOException {
+		expect('"');
+		final StringBuilder string = new StringBuilder();
+		int c;
+		while ((c = peekChar(0)) != '"') {
+			if (c == -1) {
+				throw new EOFException("Line " + line + ": Unterminated string");
+			}
+			if (c == '\n') {
+				line++;
+			}
+			string.append((char) c);
+			position++;
+		}
+		position++;
+		return string.toString();
+	}
+
+	public double readDouble() throws IOException {
+		final int length = scanNumber();
+		int i = 0;
+		boolean negative = false;
+		if ((number[0] == '-') || (number[0] == '+')) {
+			negative = number[0] == '-';
+			i++;
+		}
+		// digits that fit a double exactly, scaled by a power of ten that does too, round the same as parseDouble
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean fraction = false;
+		for (; i < length; i++) {
+			final char c = number[i];
+			if ((c >= '0') && (c <= '9')) {
+				if ((mantissa != 0) || (c != '0')) {
+					digits++;
+				}
+				mantissa = (mantissa * 10) + (c - '0');
+				if (fraction) {
+					exponent--;
+				}
+			} else if ((c == '.') && !fraction) {
+				fraction = true;
+			} else {
+				break;
+			}
+			if (digits > MAX_DIGITS) {
+				break;
+			}
+		}
+		if ((i == length) && (mantissa <= MAX_EXACT_MANTISSA) && (exponent >= -22)) {
+			final double value = exponent == 0 ? mantissa : mantissa / POWERS_OF_TEN[-exponent];
+			return negative ? -value : value;
+		}
+		try {
+			return Double.parseDouble(new String(number, 0, length));
+		} catch (final NumberFormatException e) {
+			throw new IOException("Line " + line + ": Invalid number " + new String(number, 0, length));
+		}
+	}
+
+	/**
+	 * @return the next number as an integer, numbers with a fraction are cut off as the old reader did
+	 */
+	public int readInt() throws IOException {
+		final int length = scanNumber();
+		int i = (number[0] == '-') || (number[0] == '+') ? 1 : 0;
+		long value = 0;
+		for (; i < length; i++) {
+			final char c = number[i];
+			if ((c < '0') || (c > '9') || (i > 18)) {
+				break;
+			}
+			value = (value * 10) + (c - '0');
+		}
+		if (i == length) {
+			return (int) (number[0] == '-' ? -value : value);
+		}
+		try {
+			return (int) Double.parseDouble(new String(number, 0, length));
+		} catch (final NumberFormatException e) {
+			throw new IOException("Line " + line + ": Invalid number " + new String(number, 0, length));
+		}
+	}
+
+	/**
+	 * Reads a block of numbers, such as "{ 1, 0.5, -2 }".
+	 *
+	 * @return how many numbers the block held, at most the length of the given array
+	 */
+	public int readVector(final double[] values) throws IOException {
+		expect('{');
+		int count = 0;
+		while (!isNext('}')) {
+			if (count == values.length) {
+				throw new IOException("Line " + line + ": More than " + values.length + " values in block");
+			}
+			values[count++] = readDouble();
+		}
+		position++;
+		return count;
+	}
+
+	public void expect(final char c) throws IOException {
+		if (peekedWord != null) {
+			throw new IOException("Line " + line + ": Expected '" + c + "' but found " + peekedWord);
+		}
+		final int found = skip();
+		if (found != c) {
+			throw unexpected("'" + c + "'", found);
+		}
+		position++;
+	}
+
+	/**
+	 * Skips the counts that may come before a block, such as in "Vertices 120 {", and opens the block.
+	 */
+	public void openBlock() throws IOException {
+		while (isNumber()) {
+			scanNumber();
+		}
+		expect('{');
+	}
+
+	/**
+	 * Closes the current block if it ends here.
+	 *
+	 * @return true if the block was closed, false if there is more in it
+	 */
+	public boolean endBlock() throws IOException {
+		if (peekedWord != null) {
+			return false;
+		}
+		final int c = skip();
+		if (c == -1) {
+			throw new EOFException("Line " + line + ": Unexpected end of model, a block was not closed");
+		}
+		if (c == '}') {
+			position++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Skips one statement, together with any block that belongs to it, for parts of a model that are not kept.
+	 */
+	public void skipStatement() throws IOException {
+		if (peekedWord != null) {
+			peekedWord = null;
+		} else {
+			skip();
+		}
+		readRest(null);
+	}
+
+	/**
+	 * Reads the rest of a statement, up to the comma or line break that ends it, including any block it opens.
+	 *
+	 * @param text
+	 *            receives the text read, may be null
+	 */
+	private void readRest(final StringBuilder text) throws IOException {
+		int depth = 0;
+		boolean quoted = false;
+		int c;
+		while ((c = peekChar(0)) != -1) {
+			if ((depth == 0) && !quoted && ((c == ',') || (c == '\n') || (c == '\r') || (c == '}'))) {
+				break;
+			}
+			if (!quoted && (c == '/') && (peekChar(1) == '/')) {
+				if (depth == 0) {
+					break;
+				}
+				while (((c = peekChar(0)) != -1) && (c != '\n')) {
+					position++;
+				}
+				continue;
+			}
+			if (c == '"') {
+				quoted = !quoted;
+			} else if (quoted) {
+				// braces in names are text
+			} else if (c == '{') {
+				depth++;
+			} else if (c == '}') {
+				depth--;
+			}
+			if (c == '\n') {
+				line++;
+			}
+			if (text != null) {
+				text.append((char) c);
+			}
+			position++;
+		}
+		if (c == ',') {
+			position++;
+		}
+	}
+
+	private String scanWord() throws IOException {
+		final int c = skip();
+		if (!isWordStart(c)) {
+			throw unexpected("a name", c);
+		}
+		final StringBuilder word = new StringBuilder(16);
+		int next;
+		while (isWordPart(next = peekChar(0))) {
+			word.append((char) next);
+			position++;
+		}
+		return word.toString();
+	}
+
+	private int scanNumber() throws IOException {
+		if (!isNumber()) {
+			throw unexpected("a number", peekedWord != null ? 'a' : skip());
+		}
+		int length = 0;
+		int c;
+		while (isWordPart(c = peekChar(0))) {
+			if (length == number.length) {
+				final char[] grown = new char[length * 2];
+				System.arraycopy(number, 0, grown, 0, length);
+				number = grown;
+			}
+			number[length++] = (char) c;
+			position++;
+		}
+		return length;
+	}
+
+	/**
+	 * Skips whitespace, commas and comments.
+	 *
+	 * @return the next character without reading it, or -1 at the end of the text
+	 */
+	private int skip() throws IOException {
+		skipWhitespace(true);
+		return peekChar(0);
+	}
+
+	private void skipWhitespace(final boolean commentsAndCommas) throws IOException {
+		while (true) {
+			if (position == limit) {
+				if (!fill(1)) {
+					return;
+				}
+			}
+			final char c = buffer[position];
+			if (c == '\n') {
+				line++;
+			} else if ((c == ',') && commentsAndCommas) {
+				// separates values only
+			} else if ((c == '/') && commentsAndCommas && (peekChar(1) == '/')) {
+				int next;
+				while (((next = peekChar(0)) != -1) && (next != '\n')) {
+					position++;
+				}
+				continue;
+			} else if (!isBlank(c) && (c != '\r')) {
+				return;
+			}
+			position++;
+		}
+	}
+
+	private int peekChar(final int offset) throws IOException {
+		if ((position + offset) >= limit) {
+			if (!fill(offset + 1)) {
+				return -1;
+			}
+		}
+		return buffer[position + offset];
+	}
+
+	/**
+	 * Reads more text until at least the given number of characters are buffered.
+	 *
+	 * @return false if the text ends first
+	 */
+	private boolean fill(final int count) throws IOException {
+		if (position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			limit -= position;
+			position = 0;
+		}
+		while (limit < count) {
+			final int read = reader.read(buffer, limit, buffer.length - limit);
+			if (read == -1) {
+				return false;
+			}
+			limit += read;
+		}
+		return true;
+	}
+
+	private IOException unexpected(final String expected, final int found) {
+		if (found == -1) {
+			return new EOFException("Line " + line + ": Expected " + expected + " but the model ended");
+		}
+		return new IOException("Line " + line + ": Expected " + expected + " but found '" + (char) found + "'");
+	}
+
+	private static boolean isBlank(final int c) {
+		return (c == ' ') || (c == '\t');
+	}
+
+	private static boolean isWordStart(final int c) {
+		return isWordPart(c) && !((c >= '0') && (c <= '9')) && (c != '-') && (c != '+') && (c != '.');
+	}
+
+	private static boolean isWordPart(final int c) {
+		return (c > ' ') && (c != ',') && (c != '{') && (c != '}') && (c != ':') && (c != '"') && (c != -1);
+	}
+}
@@ -0,0 +1,284 @@
+package com.hiveworkshop.wc3.mdl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Writes MDL text through one large reusable buffer, encoded in the platform charset like a {@link PrintWriter}
+ * on a stream, and streamed out to a channel whenever the buffer fills.
+ *
+ * Numbers are printed with {@link #printNumber(double)}, which gives the same text as
+ * {@link MDLReader#doubleToString(double)} without building strings for it. Whole numbers are written digit by
+ * digit and the digits of other numbers still come from {@link Double#toString(double)}, so the output is the
+ * same as that of the old writer on any JVM.
+ */
+public class MdlWriter extends PrintWriter {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final double MAX_PLAIN_INTEGER = 1e7;
+
+	private final Sink sink;
+	private final StringBuilder number = new StringBuilder(32);
+
+	/**
+	 * Closing the writer closes the stream.
+	 */
+	public MdlWriter(final OutputStream out) {
+		super(new Sink(Channels.newChannel(out), out));
+		sink = (Sink) this.out;
+	}
+
+	/**
+	 * Closing the writer closes the channel.
+	 */
+	public MdlWriter(final WritableByteChannel channel) {
+		super(new Sink(channel, null));
+		sink = (Sink) out;
+	}
+
+	/**
+	 * Prints a number to any writer as {@link MDLReader#doubleToString(double)} formats it, without building a
+	 * string for it if the writer is an {@link MdlWriter}.
+	 */
+	public static void printNumber(final PrintWriter writer, final double n) {
+		if (writer instanceof MdlWriter) {
+			((MdlWriter) writer).printNumber(n);
+		} else {
+			writer.print(MDLReader.doubleToString(n));
+		}
+	}
+
+	/**
+	 * Prints a number as {@link MDLReader#doubleToString(double)} formats it.
+	 */
+	public void printNumber(final double n) {
+		if ((Math.abs(n) < MAX_PLAIN_INTEGER) && (n == (long) n)) {
+			print((long) n);
+			return;
+		}
+		if (Double.isNaN(n) || Double.isInfinite(n)) {
+			print(MDLReader.doubleToString(n));
+			return;
+		}
+		number.setLength(0);
+		number.append(n);
+		final int length = number.length();
+		int exponent = length;
+		for (int i = 0; i < length; i++) {
+			if (number.charAt(i) == 'E') {
+				exponent = i;
+				break;
+			}
+		}
+		// Trailing zeros of the mantissa go, and its point with them if nothing is left after it
+		int end = exponent;
+		while (end > 0) {
+			final char c = number.charAt(end - 1);
+			if (c == '0') {
+				end--;
+			} else {
+				if (c == '.') {
+					end--;
+				}
+				break;
+			}
+		}
+		synchronized (lock) {
+			try {
+				sink.write(number, 0, end);
+				if (exponent < length) {
+					// Exponents are signed and padded to three digits, those longer than that are written as 999
+					int digits = exponent + 1;
+					sink.write('e');
+					if (number.charAt(digits) == '-') {
+						sink.write('-');
+						digits++;
+					} else {
+						sink.write('+');
+					}
+					final int digitCount = length - digits;
+					if (digitCount > 3) {
+						sink.write("999", 0, 3);
+					} else {
+						for (int i = digitCount; i < 3; i++) {
+							sink.write('0');
+						}
+						sink.write(number, digits, length);
+					}
+				}
+			} catch (final IOException e) {
+				setError();
+			}
+		}
+	}
+
+	@Override
+	public void print(final int i) {
+		print((long) i);
+	}
+
+	@Override
+	public void print(final long l) {
+		synchronized (lock) {
+			try {
+				sink.writeDigits(l);
+			} catch (final IOException e) {
+				setError();
+			}
+		}
+	}
+
+	/**
+	 * Text written to this writer, encoded into bytes in fixed size buffers.
+	 */
+	private static final class Sink extends Writer {
+		private final WritableByteChannel channel;
+		private final OutputStream stream;
+		private final CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+		private final char[] chars = new char[BUFFER_SIZE];
+		private final CharBuffer text = CharBuffer.wrap(chars);
+		private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+		private final char[] digits = new char[20];
+		private int count;
+		private boolean closed;
+
+		/**
+		 * @param stream
+		 *            stream the channel writes to, flushed along with this, or null
+		 */
+		private Sink(final WritableByteChannel channel, final OutputStream stream) {
+			this.channel = channel;
+			this.stream = stream;
+		}
+
+		@Override
+		public void write(final int c) throws IOException {
+			if (count == chars.length) {
+				encode(false);
+			}
+			chars[count++] = (char) c;
+		}
+
+		@Override
+		public void write(final char[] cbuf, int off, int len) throws IOException {
+			while (len > 0) {
+				if (count == chars.length) {
+					encode(false);
+				}
+				final int length = Math.min(len, chars.length - count);
+				System.arraycopy(cbuf, off, chars, count, length);
+				count += length;
+				off += length;
+				len -= length;
+			}
+		}
+
+		@Override
+		public void write(final String str, int off, int len) throws IOException {
+			while (len > 0) {
+				if (count == chars.length) {
+					encode(false);
+				}
+				final int length = Math.min(len, chars.length - count);
+				str.getChars(off, off + length, chars, count);
+				count += length;
+				off += length;
+				len -= length;
+			}
+		}
+
+		/**
+		 * Writes the characters of a builder from start up to, not including, end.
+		 */
+		private void write(final StringBuilder str, int start, final int end) throws IOException {
+			while (start < end) {
+				if (count == chars.length) {
+					encode(false);
+				}
+				final int length = Math.min(end - start, chars.length - count);
+				str.getChars(start, start + length, chars, count);
+				count += length;
+				start += length;
+			}
+		}
+
+		private void writeDigits(long l) throws IOException {
+			if (l == Long.MIN_VALUE) {
+				write(Long.toString(l));
+				return;
+			}
+			final boolean negative = l < 0;
+			if (negative) {
+				l = -l;
+			}
+			int start = digits.length;
+			do {
+				digits[--start] = (char) ('0' + (l % 10));
+				l /= 10;
+			} while (l != 0);
+			if (negative) {
+				digits[--start] = '-';
+			}
+			write(digits, start, digits.length - start);
+		}
+
+		/**
+		 * Encodes the buffered text and writes it to the channel, keeping back half a surrogate pair unless this
+		 * is the end of the text.
+		 */
+		private void encode(final boolean endOfInput) throws IOException {
+			text.limit(count);
+			text.position(0);
+			while (encoder.encode(text, bytes, endOfInput).isOverflow()) {
+				drain();
+			}
+			if (endOfInput) {
+				while (encoder.flush(bytes).isOverflow()) {
+					drain();
+				}
+				encoder.reset();
+			}
+			count = text.remaining();
+			System.arraycopy(chars, text.position(), chars, 0, count);
+			drain();
+		}
+
+		private void drain() throws IOException {
+			bytes.flip();
+			while (bytes.hasRemaining()) {
+				channel.write(bytes);
+			}
+			bytes.clear();
+		}
+
+		@Override
+		public void flush() throws IOException {
+			encode(false);
+			if (stream != null) {
+				stream.flush();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				encode(true);
+			} finally {
+				channel.close();
+			}
+		}
+	}
+}
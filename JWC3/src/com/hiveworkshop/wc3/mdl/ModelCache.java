@@ -0,0 +1,231 @@
+package com.hiveworkshop.wc3.mdl;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import com.hiveworkshop.wc3.mdx.MdxUtils;
+import com.hiveworkshop.wc3.util.BatchConverter;
+
+/**
+ * On disk cache of opened models, so that opening a model again reads it back from a compact binary form
+ * instead of parsing its MDL text or converting its MDX again.
+ *
+ * Each cache file is named by the SHA-1 of the model file it was made from, which also stores that hash
+ * and the size of the model file. Opening a model hashes its contents and only uses a cache file written
+ * for exactly those contents, so any change to the model, however it was made, invalidates its cache. A
+ * checksum of the cached data catches cache files damaged on disk. Cache files that are unreadable or do
+ * not match are ignored and rewritten.
+ *
+ * The file is read in one go and parsed with bulk copies, see {@link MdlCacheWriter} for its layout. Only the
+ * most recently used cache files are kept, since every saved version of a model gets its own.
+ */
+public final class ModelCache {
+	private static final int MAGIC = 0x4A574D43; // JWMC
+	private static final int FORMAT_VERSION = 1;
+	private static final int HASH_LENGTH = 40;
+	// size of the header before the model
+	private static final int KEY_SIZE = 4 + 4 + 8 + HASH_LENGTH + 4;
+	private static final String EXTENSION = ".mdlc";
+	private static final int MAX_FILES = 64;
+
+	private final Path directory;
+
+	public ModelCache(final Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * @return cache in the profile folder that also holds the user profile
+	 */
+	public static ModelCache getDefault() {
+		final String homeProfile = System.getProperty("user.home");
+		String profilePath = "\\AppData\\Roaming\\JWC3\\modelcache";
+		if (!System.getProperty("os.name").toLowerCase().contains("win")) {
+			profilePath = "/.jwc3/modelcache";
+		}
+		return new ModelCache(Paths.get(homeProfile + profilePath));
+	}
+
+	/**
+	 * Loads a model from its cache file, or parses the model file and writes a new cache file when there is
+	 * no usable cache. Failing to use or write the cache is not an error since the model can always be parsed
+	 * directly.
+	 *
+	 * @param source
+	 *            MDL or MDX file
+	 * @return the model, with the source as its file
+	 */
+	public MDL load(final File source) throws IOException {
+		final byte[] contents = Files.readAllBytes(source.toPath());
+		final String hash = BatchConverter.hash(ByteBuffer.wrap(contents));
+		final Path cacheFile = directory.resolve(hash + EXTENSION);
+
+		try {
+			final MDL cached = read(cacheFile, contents.length, hash);
+			if (cached != null) {
+				cached.setFile(source);
+				return cached;
+			}
+		} catch (final IOException | RuntimeException e) {
+			System.err.println("Ignoring unreadable model cache " + cacheFile + ": " + e);
+		}
+
+		final MDL model;
+		if (source.getPath().toLowerCase().endsWith(".mdx")) {
+			model = new MDL(MdxUtils.loadModel(ByteBuffer.wrap(contents)));
+		} else {
+			model = MDL.read(new MdlTokenizer(new ByteArrayInputStream(contents)));
+		}
+		try {
+			write(cacheFile, contents.length, hash, model);
+		} catch (final IOException | RuntimeException e) {
+			System.err.println("Unable to write model cache " + cacheFile + ": " + e);
+		}
+		model.setFile(source);
+		return model;
+	}
+
+	private static MDL read(final Path cacheFile, final long size, final String hash) throws IOException {
+		if (!Files.isRegularFile(cacheFile)) {
+			return null;
+		}
+		final MDL model;
+		try (FileChannel in = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+			// check the key first, the rest is only read when it is for this model
+			final ByteBuffer key = ByteBuffer.allocate(KEY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			while (key.hasRemaining()) {
+				if (in.read(key) == -1) {
+					return null;
+				}
+			}
+			key.flip();
+			if ((key.getInt() != MAGIC) || (key.getInt() != FORMAT_VERSION) || (key.getLong() != size)) {
+				return null;
+			}
+			final byte[] hashBytes = new byte[HASH_LENGTH];
+			key.get(hashBytes);
+			if (!hash.equals(new String(hashBytes, StandardCharsets.US_ASCII))) {
+				return null;
+			}
+			final int checksum = key.getInt();
+
+			// read onto the heap rather than mapped, since a live mapping keeps the file from being replaced or
+			// deleted on Windows until it is garbage collected
+			final long dataSize = in.size() - KEY_SIZE;
+			if (dataSize > Integer.MAX_VALUE) {
+				return null;
+			}
+			final ByteBuffer data = ByteBuffer.allocate((int) dataSize);
+			while (data.hasRemaining()) {
+				if (in.read(data) == -1) {
+					return null;
+				}
+			}
+			data.flip();
+			if (checksum(data) != checksum) {
+				return null;
+			}
+			model = MDL.read(new MdlCacheReader(data));
+		}
+		// mark it as used so that it outlives older cache files
+		Files.setLastModifiedTime(cacheFile, FileTime.fromMillis(System.currentTimeMillis()));
+		return model;
+	}
+
+	private void write(final Path cacheFile, final long size, final String hash, final MDL model)
+			throws IOException {
+		final MdlCacheWriter cache = new MdlCacheWriter();
+		model.writeTo(cache);
+		final ByteBuffer data = cache.getData();
+
+		final ByteBuffer key = ByteBuffer.allocate(KEY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		key.putInt(MAGIC);
+		key.putInt(FORMAT_VERSION);
+		key.putLong(size);
+		key.put(hash.getBytes(StandardCharsets.US_ASCII));
+		key.putInt(checksum(data));
+		key.flip();
+
+		// write beside the cache file and move over it so that readers never see a partial file
+		Files.createDirectories(directory);
+		final Path temporary = Files.createTempFile(directory, cacheFile.getFileName().toString(), ".tmp");
+		try {
+			try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+				while (key.hasRemaining()) {
+					out.write(key);
+				}
+				while (data.hasRemaining()) {
+					out.write(data);
+				}
+			}
+			Files.move(temporary, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+		deleteOldest();
+	}
+
+	/**
+	 * @return CRC-32 of the remaining bytes of the buffer, leaving its position unchanged
+	 */
+	private static int checksum(final ByteBuffer data) {
+		final ByteBuffer bytes = data.duplicate();
+		final CRC32 crc = new CRC32();
+		final byte[] chunk = new byte[Math.min(bytes.remaining(), 64 * 1024)];
+		while (bytes.hasRemaining()) {
+			final int length = Math.min(chunk.length, bytes.remaining());
+			bytes.get(chunk, 0, length);
+			crc.update(chunk, 0, length);
+		}
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Deletes the least recently used cache files beyond {@link #MAX_FILES}.
+	 */
+	private void deleteOldest() throws IOException {
+		final List<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+			for (final Path file : stream) {
+				files.add(file);
+			}
+		}
+		if (files.size() <= MAX_FILES) {
+			return;
+		}
+		final List<FileTime> times = new ArrayList<>(files.size());
+		for (final Path file : files) {
+			times.add(Files.getLastModifiedTime(file));
+		}
+		final List<Integer> order = new ArrayList<>(files.size());
+		for (int i = 0; i < files.size(); i++) {
+			order.add(i);
+		}
+		Collections.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(final Integer a, final Integer b) {
+				return times.get(b).compareTo(times.get(a));
+			}
+		});
+		for (int i = MAX_FILES; i < order.size(); i++) {
+			Files.deleteIfExists(files.get(order.get(i)));
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package com.hiveworkshop.wc3.mdl;
 
+import java.io.IOException;
+
 import javax.swing.JOptionPane;
 
 public class Normal extends Vertex {
@@ -39,6 +41,15 @@ public class Normal extends Vertex {
 		return temp;
 	}
 
+	public static Normal read(final MdlTokenizer mdl) throws IOException {
+		mdl.expect('{');
+		final double x = mdl.readDouble();
+		final double y = mdl.readDouble();
+		final double z = mdl.readDouble();
+		mdl.expect('}');
+		return new Normal(x, y, z);
+	}
+
 	public void inverse() {
 		x = -x;
 		y = -y;
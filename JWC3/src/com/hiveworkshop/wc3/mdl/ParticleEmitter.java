@@ -1,6 +1,6 @@
 package com.hiveworkshop.wc3.mdl;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
@@ -98,61 +98,92 @@ public class ParticleEmitter extends IdObject implements VisibilitySource {
 		for (final AnimFlag af : animFlags) {
 			x.animFlags.add(new AnimFlag(af));
 		}
+		x.flags = new ArrayList<>(flags);
 		return x;
 	}
 
-	public static ParticleEmitter read(final BufferedReader mdl) {
-		String line = MDLReader.nextLine(mdl);
-		if (line.contains("ParticleEmitter")) {
-			final ParticleEmitter pe = new ParticleEmitter();
-			pe.setName(MDLReader.readName(line));
-			MDLReader.mark(mdl);
-			line = MDLReader.nextLine(mdl);
-			while ((!line.contains("}") || line.contains("},") || line.contains("\t}"))
-					&& !line.equals("COMPLETED PARSING")) {
-				boolean foundType = false;
-				if (line.contains("ObjectId")) {
-					pe.objectId = MDLReader.readInt(line);
-					foundType = true;
-				} else if (line.contains("Parent")) {
-					pe.parentId = MDLReader.splitToInts(line)[0];
-					foundType = true;
-					// pe.parent = mdlr.getIdObject(pe.parentId);
-				} else if (line.contains("EmitterUses")) {
-					pe.MDLEmitter = line.contains("MDL");
-					foundType = true;
-				} else if (line.contains("Path")) {
-					pe.path = MDLReader.readName(line);
-					foundType = true;
-				} else if (line.contains("Visibility") || line.contains("Rotation") || line.contains("Translation")
-						|| line.contains("Scaling")) {
-					MDLReader.reset(mdl);
-					pe.animFlags.add(AnimFlag.read(mdl));
-					foundType = true;
+	public static ParticleEmitter read(final MdlTokenizer mdl) throws IOException {
+		final ParticleEmitter pe = new ParticleEmitter();
+		mdl.readWord();
+		pe.setName(mdl.readString());
+		mdl.openBlock();
+		pe.readBlock(mdl);
+		return pe;
+	}
+
+	/**
+	 * Reads statements up to the end of the current block, including those of the nested "Particle" block, which
+	 * are kept together with the rest.
+	 */
+	private void readBlock(final MdlTokenizer mdl) throws IOException {
+		while (!mdl.endBlock()) {
+			final String keyword = mdl.peekWord();
+			if (keyword.equals("ObjectId")) {
+				mdl.readWord();
+				objectId = mdl.readInt();
+			} else if (keyword.equals("Parent")) {
+				mdl.readWord();
+				parentId = mdl.readInt();
+			} else if (keyword.equals("EmitterUsesMDL") || keyword.equals("EmitterUsesTGA")) {
+				mdl.readWord();
+				MDLEmitter = keyword.equals("EmitterUsesMDL");
+			} else if (keyword.equals("Path")) {
+				mdl.readWord();
+				path = mdl.readString();
+			} else if (keyword.equals("Particle")) {
+				mdl.readWord();
+				mdl.openBlock();
+				readBlock(mdl);
+			} else if (mdl.isTrack()) {
+				animFlags.add(AnimFlag.read(mdl));
+			} else if (keyword.equals("static")) {
+				mdl.readWord();
+				final int index = indexOf(timeDoubleNames, mdl.peekWord());
+				if (index != -1) {
+					mdl.readWord();
+					timeDoubleData[index] = mdl.readDouble();
+				} else {
+					flags.add("static " + mdl.readFlag());
 				}
-				for (int i = 0; i < timeDoubleNames.length && !foundType; i++) {
-					if (line.contains(timeDoubleNames[i])) {
-						foundType = true;
-						if (line.contains("static")) {
-							pe.timeDoubleData[i] = MDLReader.readDouble(line);
-						} else {
-							MDLReader.reset(mdl);
-							pe.animFlags.add(AnimFlag.read(mdl));
-						}
-					}
-				}
-				if (!foundType) {
-					pe.flags.add(MDLReader.readFlag(line));
-				}
-				MDLReader.mark(mdl);
-				line = MDLReader.nextLine(mdl);
+			} else {
+				flags.add(mdl.readFlag());
+			}
+		}
+	}
+
+	@Override
+	void writeTo(final MdlCacheWriter cache) throws IOException {
+		super.writeTo(cache);
+		cache.writeNumbers(timeDoubleData);
+		cache.writeBoolean(MDLEmitter);
+		cache.writeString(path);
+		cache.writeAnimFlags(animFlags);
+		cache.writeStrings(flags);
+	}
+
+	@Override
+	void readFrom(final MdlCacheReader cache) throws IOException {
+		super.readFrom(cache);
+		timeDoubleData = cache.readNumbers(timeDoubleNames.length);
+		MDLEmitter = cache.readBoolean();
+		path = cache.readString();
+		animFlags = cache.readAnimFlags();
+		flags = cache.readStrings();
+	}
+
+	static ParticleEmitter read(final MdlCacheReader cache) throws IOException {
+		final ParticleEmitter pe = new ParticleEmitter();
+		pe.readFrom(cache);
+		return pe;
+	}
+
+	private static int indexOf(final String[] names, final String name) {
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].equals(name)) {
+				return i;
 			}
-			return pe;
-		} else {
-			JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-					"Unable to parse ParticleEmitter: Missing or unrecognized open statement.");
 		}
-		return null;
+		return -1;
 	}
 
 	@Override
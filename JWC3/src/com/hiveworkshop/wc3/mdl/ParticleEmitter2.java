@@ -1,6 +1,6 @@
 package com.hiveworkshop.wc3.mdl;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
@@ -207,13 +207,21 @@ public class ParticleEmitter2 extends IdObject implements VisibilitySource {
 		x.loneDoubleData = loneDoubleData.clone();
 		x.loneIntData = loneIntData.clone();
 		x.knownFlags = knownFlags.clone();
-		x.vertexData = vertexData.clone();
-		x.segmentColor = segmentColor.clone();
+		for (int i = 0; i < vertexData.length; i++) {
+			if (vertexData[i] != null) {
+				x.vertexData[i] = new Vertex(vertexData[i]);
+			}
+		}
+		for (int i = 0; i < segmentColor.length; i++) {
+			if (segmentColor[i] != null) {
+				x.segmentColor[i] = new Vertex(segmentColor[i]);
+			}
+		}
 
 		for (final AnimFlag af : animFlags) {
 			x.animFlags.add(new AnimFlag(af));
 		}
-		unknownFlags = new ArrayList<>(x.unknownFlags);
+		x.unknownFlags = new ArrayList<>(unknownFlags);
 
 		x.texture = texture;
 		return x;
@@ -231,113 +239,120 @@ public class ParticleEmitter2 extends IdObject implements VisibilitySource {
 		loneIntData[2] = id;
 	}
 
-	public static ParticleEmitter2 read(final BufferedReader mdl) {
-		String line = MDLReader.nextLine(mdl);
-		if (line.contains("ParticleEmitter2")) {
-			final ParticleEmitter2 pe = new ParticleEmitter2();
-			pe.setName(MDLReader.readName(line));
-			MDLReader.mark(mdl);
-			line = MDLReader.nextLine(mdl);
-			while ((!line.contains("}") || line.contains("},") || line.contains("\t}"))
-					&& !line.equals("COMPLETED PARSING")) {
-				boolean foundType = false;
-				if (line.contains("ObjectId")) {
-					// JOptionPane.showMessageDialog(null,"Read an object id!");
-					pe.objectId = MDLReader.readInt(line);
-					foundType = true;
-					// JOptionPane.showMessageDialog(null,"ObjectId from line:
-					// "+line);
-				} else if (line.contains("Parent")) {
-					pe.parentId = MDLReader.splitToInts(line)[0];
-					foundType = true;
-					// JOptionPane.showMessageDialog(null,"Parent from line:
-					// "+line);
-					// lit.parent = mdlr.getIdObject(lit.parentId);
-				} else if (line.contains("SegmentColor")) {
-					boolean reading = true;
-					foundType = true;
-					// JOptionPane.showMessageDialog(null,"SegmentColor from
-					// line: "+line);
-					for (int i = 0; reading && i < 3; i++) {
-						line = MDLReader.nextLine(mdl);
-						if (line.contains("Color")) {
-							pe.segmentColor[i] = Vertex.parseText(line);
-						} else {
-							reading = false;
-							MDLReader.reset(mdl);
-							line = MDLReader.nextLine(mdl);
-						}
+	public static ParticleEmitter2 read(final MdlTokenizer mdl) throws IOException {
+		final ParticleEmitter2 pe = new ParticleEmitter2();
+		mdl.readWord();
+		pe.setName(mdl.readString());
+		mdl.openBlock();
+		while (!mdl.endBlock()) {
+			final String keyword = mdl.peekWord();
+			int index;
+			if (keyword.equals("ObjectId")) {
+				mdl.readWord();
+				pe.objectId = mdl.readInt();
+			} else if (keyword.equals("Parent")) {
+				mdl.readWord();
+				pe.parentId = mdl.readInt();
+			} else if (keyword.equals("SegmentColor")) {
+				mdl.readWord();
+				mdl.openBlock();
+				for (int i = 0; !mdl.endBlock(); i++) {
+					mdl.readWord();
+					final Vertex color = Vertex.read(mdl);
+					if (i < pe.segmentColor.length) {
+						pe.segmentColor[i] = color;
 					}
-					line = MDLReader.nextLine(mdl);
 				}
-				for (int i = 0; i < vertexDataNames.length && !foundType; i++) {
-					if (line.contains("\t" + vertexDataNames[i] + " ")) {
-						foundType = true;
-						pe.vertexData[i] = Vertex.parseText(line);
-						// JOptionPane.showMessageDialog(null,vertexDataNames[i]+"
-						// from line: "+line);
-					}
-				}
-				for (int i = 0; i < loneDoubleNames.length && !foundType; i++) {
-					if (line.contains(loneDoubleNames[i])) {
-						foundType = true;
-						pe.loneDoubleData[i] = MDLReader.readDouble(line);
-						// JOptionPane.showMessageDialog(null,loneDoubleNames[i]+"
-						// from line: "+line);
-					}
-				}
-				for (int i = 0; i < loneIntNames.length && !foundType; i++) {
-					if (line.contains(loneIntNames[i])) {
-						foundType = true;
-						pe.loneIntData[i] = MDLReader.readInt(line);
-						// JOptionPane.showMessageDialog(null,loneIntNames[i]+"
-						// from line: "+line);
-					}
+			} else if (keyword.equals("static")) {
+				mdl.readWord();
+				index = indexOf(timeDoubleNames, mdl.peekWord());
+				if (index != -1) {
+					mdl.readWord();
+					pe.timeDoubleData[index] = mdl.readDouble();
+				} else {
+					pe.unknownFlags.add("static " + mdl.readFlag());
 				}
-				for (int i = 0; i < knownFlagNames.length && !foundType; i++) {
-					if (line.contains(knownFlagNames[i])) {
-						foundType = true;
-						pe.knownFlags[i] = true;
-						// JOptionPane.showMessageDialog(null,knownFlagNames[i]+"
-						// from line: "+line);
-					}
-				}
-				for (int i = 0; i < timeDoubleNames.length && !foundType; i++) {
-					if (line.contains(timeDoubleNames[i])) {
-						foundType = true;
-						// JOptionPane.showMessageDialog(null,timeDoubleNames[i]+"
-						// from line: "+line);
-						if (line.contains("static")) {
-							pe.timeDoubleData[i] = MDLReader.readDouble(line);
-						} else {
-							MDLReader.reset(mdl);
-							pe.animFlags.add(AnimFlag.read(mdl));
-						}
-					}
-				}
-				if (!foundType && (line.contains("Visibility") || line.contains("Rotation")
-						|| line.contains("Translation") || line.contains("Scaling"))) {
-					MDLReader.reset(mdl);
-					pe.animFlags.add(AnimFlag.read(mdl));
-					foundType = true;
-					// JOptionPane.showMessageDialog(null,"AnimFlag from line:
-					// "+line);
-				}
-				if (!foundType) {
-					// JOptionPane.showMessageDialog(null,"Particle emitter 2
-					// did not recognize data at: "+line+"\nThis is probably not
-					// a major issue?");
-					pe.unknownFlags.add(MDLReader.readFlag(line));
+			} else if (mdl.isTrack()) {
+				pe.animFlags.add(AnimFlag.read(mdl));
+			} else if ((index = indexOf(vertexDataNames, keyword)) != -1) {
+				mdl.readWord();
+				pe.vertexData[index] = Vertex.read(mdl);
+			} else if ((index = indexOf(loneDoubleNames, keyword)) != -1) {
+				mdl.readWord();
+				pe.loneDoubleData[index] = mdl.readDouble();
+			} else if ((index = indexOf(loneIntNames, keyword)) != -1) {
+				mdl.readWord();
+				pe.loneIntData[index] = mdl.readInt();
+			} else {
+				final String flag = mdl.readFlag();
+				index = indexOf(knownFlagNames, flag);
+				if (index != -1) {
+					pe.knownFlags[index] = true;
+				} else {
+					pe.unknownFlags.add(flag);
 				}
-				MDLReader.mark(mdl);
-				line = MDLReader.nextLine(mdl);
 			}
-			return pe;
-		} else {
-			JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-					"Unable to parse ParticleEmitter2: Missing or unrecognized open statement.");
 		}
-		return null;
+		return pe;
+	}
+
+	@Override
+	void writeTo(final MdlCacheWriter cache) throws IOException {
+		super.writeTo(cache);
+		cache.writeNumbers(timeDoubleData);
+		cache.writeNumbers(loneDoubleData);
+		cache.writeInts(loneIntData);
+		final byte[] flagBytes = new byte[knownFlags.length];
+		for (int i = 0; i < knownFlags.length; i++) {
+			flagBytes[i] = (byte) (knownFlags[i] ? 1 : 0);
+		}
+		cache.writeBytes(flagBytes);
+		for (final Vertex vertex : vertexData) {
+			cache.writeVertex(vertex);
+		}
+		for (final Vertex color : segmentColor) {
+			cache.writeVertex(color);
+		}
+		cache.writeAnimFlags(animFlags);
+		cache.writeStrings(unknownFlags);
+	}
+
+	@Override
+	void readFrom(final MdlCacheReader cache) throws IOException {
+		super.readFrom(cache);
+		timeDoubleData = cache.readNumbers(timeDoubleNames.length);
+		loneDoubleData = cache.readNumbers(loneDoubleNames.length);
+		loneIntData = cache.readInts(loneIntNames.length);
+		final byte[] flagBytes = cache.readBytes();
+		if (flagBytes.length != knownFlagNames.length) {
+			throw new IOException("Expected " + knownFlagNames.length + " flags but found " + flagBytes.length);
+		}
+		for (int i = 0; i < knownFlags.length; i++) {
+			knownFlags[i] = flagBytes[i] != 0;
+		}
+		for (int i = 0; i < vertexData.length; i++) {
+			vertexData[i] = cache.readVertex();
+		}
+		for (int i = 0; i < segmentColor.length; i++) {
+			segmentColor[i] = cache.readVertex();
+		}
+		animFlags = cache.readAnimFlags();
+		unknownFlags = cache.readStrings();
+	}
+
+	static ParticleEmitter2 read(final MdlCacheReader cache) throws IOException {
+		final ParticleEmitter2 pe = new ParticleEmitter2();
+		pe.readFrom(cache);
+		return pe;
+	}
+
+	private static int indexOf(final String[] names, final String name) {
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].equals(name)) {
+				return i;
+			}
+		}
+		return -1;
 	}
 
 	@Override
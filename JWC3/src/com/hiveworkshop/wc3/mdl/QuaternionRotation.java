@@ -1,5 +1,8 @@
 package com.hiveworkshop.wc3.mdl;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+
 import javax.swing.JOptionPane;
 
 /**
@@ -262,6 +265,16 @@ public class QuaternionRotation {
 		return temp;
 	}
 
+	public static QuaternionRotation read(final MdlTokenizer mdl) throws IOException {
+		mdl.expect('{');
+		final double a = mdl.readDouble();
+		final double b = mdl.readDouble();
+		final double c = mdl.readDouble();
+		final double d = mdl.readDouble();
+		mdl.expect('}');
+		return new QuaternionRotation(a, b, c, d);
+	}
+
 	public static QuaternionRotation ghostwolfNlerp(final QuaternionRotation out,
 			final QuaternionRotation startingValue, final QuaternionRotation endingValue,
 			final float interpolationFactor) {
@@ -363,6 +376,21 @@ public class QuaternionRotation {
 				+ MDLReader.doubleToString(c) + ", " + MDLReader.doubleToString(d) + " }";
 	}
 
+	/**
+	 * Prints the same text as {@link #toString()}.
+	 */
+	public void printTo(final PrintWriter writer) {
+		writer.print("{ ");
+		MdlWriter.printNumber(writer, a);
+		writer.print(", ");
+		MdlWriter.printNumber(writer, b);
+		writer.print(", ");
+		MdlWriter.printNumber(writer, c);
+		writer.print(", ");
+		MdlWriter.printNumber(writer, d);
+		writer.print(" }");
+	}
+
 	public static void main(final String[] args) {
 		QuaternionRotation rot = new QuaternionRotation(0.241689, 0.152046, -0.372562, 0.882987);
 		Vertex euler = rot.toEuler();
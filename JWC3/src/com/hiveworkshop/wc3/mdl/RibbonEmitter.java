@@ -1,6 +1,6 @@
 package com.hiveworkshop.wc3.mdl;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
@@ -103,7 +103,9 @@ public class RibbonEmitter extends IdObject implements VisibilitySource {
 		x.loneDoubleData = loneDoubleData.clone();
 		x.loneIntData = loneIntData.clone();
 		x.material = material;
-		x.staticColor = new Vertex(staticColor);
+		if (staticColor != null) {
+			x.staticColor = new Vertex(staticColor);
+		}
 
 		for (final AnimFlag af : animFlags) {
 			x.animFlags.add(new AnimFlag(af));
@@ -127,73 +129,81 @@ public class RibbonEmitter extends IdObject implements VisibilitySource {
 		loneIntData[3] = i;
 	}
 
-	public static RibbonEmitter read(final BufferedReader mdl) {
-		String line = MDLReader.nextLine(mdl);
-		if (line.contains("RibbonEmitter")) {
-			final RibbonEmitter pe = new RibbonEmitter();
-			pe.setName(MDLReader.readName(line));
-			MDLReader.mark(mdl);
-			line = MDLReader.nextLine(mdl);
-			while ((!line.contains("}") || line.contains("},") || line.contains("\t}"))
-					&& !line.equals("COMPLETED PARSING")) {
-				boolean foundType = false;
-				if (line.contains("ObjectId")) {
-					pe.objectId = MDLReader.readInt(line);
-					foundType = true;
-				} else if (line.contains("Parent")) {
-					pe.parentId = MDLReader.splitToInts(line)[0];
-					foundType = true;
-				} else if (line.contains("Visibility") || line.contains("Rotation") || line.contains("Translation")
-						|| line.contains("Scaling")) {
-					MDLReader.reset(mdl);
-					pe.animFlags.add(AnimFlag.read(mdl));
-					foundType = true;
-				} else if (line.contains("Color")) {
-					foundType = true;
-					if (line.contains("static")) {
-						pe.staticColor = Vertex.parseText(line);
-					} else {
-						MDLReader.reset(mdl);
-						pe.animFlags.add(AnimFlag.read(mdl));
-					}
-				}
-				for (int i = 0; i < timeDoubleNames.length && !foundType; i++) {
-					if (line.contains(timeDoubleNames[i])) {
-						foundType = true;
-						if (line.contains("static")) {
-							pe.timeDoubleData[i] = MDLReader.readDouble(line);
-						} else {
-							MDLReader.reset(mdl);
-							pe.animFlags.add(AnimFlag.read(mdl));
-						}
-					}
-				}
-				for (int i = 0; i < loneDoubleNames.length && !foundType; i++) {
-					if (line.contains(loneDoubleNames[i])) {
-						foundType = true;
-						pe.loneDoubleData[i] = MDLReader.readDouble(line);
-					}
-				}
-				for (int i = 0; i < loneIntNames.length && !foundType; i++) {
-					if (line.contains(loneIntNames[i])) {
-						foundType = true;
-						pe.loneIntData[i] = MDLReader.readInt(line);
-					}
-				}
-				if (!foundType) {
-					JOptionPane.showMessageDialog(null, "Ribbon emitter did not recognize data at: " + line
+	public static RibbonEmitter read(final MdlTokenizer mdl) throws IOException {
+		final RibbonEmitter pe = new RibbonEmitter();
+		mdl.readWord();
+		pe.setName(mdl.readString());
+		mdl.openBlock();
+		while (!mdl.endBlock()) {
+			final String keyword = mdl.peekWord();
+			int index;
+			if (keyword.equals("ObjectId")) {
+				mdl.readWord();
+				pe.objectId = mdl.readInt();
+			} else if (keyword.equals("Parent")) {
+				mdl.readWord();
+				pe.parentId = mdl.readInt();
+			} else if (mdl.isTrack()) {
+				pe.animFlags.add(AnimFlag.read(mdl));
+			} else if (keyword.equals("static")) {
+				mdl.readWord();
+				final String name = mdl.readWord();
+				if (name.equals("Color")) {
+					pe.staticColor = Vertex.read(mdl);
+				} else if ((index = indexOf(timeDoubleNames, name)) != -1) {
+					pe.timeDoubleData[index] = mdl.readDouble();
+				} else {
+					JOptionPane.showMessageDialog(null, "Ribbon emitter did not recognize data at: static " + name
 							+ "\nThis is probably not a major issue?");
+					mdl.skipStatement();
 				}
+			} else if ((index = indexOf(loneDoubleNames, keyword)) != -1) {
+				mdl.readWord();
+				pe.loneDoubleData[index] = mdl.readDouble();
+			} else if ((index = indexOf(loneIntNames, keyword)) != -1) {
+				mdl.readWord();
+				pe.loneIntData[index] = mdl.readInt();
+			} else {
+				JOptionPane.showMessageDialog(null, "Ribbon emitter did not recognize data at: " + mdl.readFlag()
+						+ "\nThis is probably not a major issue?");
+			}
+		}
+		return pe;
+	}
+
+	@Override
+	void writeTo(final MdlCacheWriter cache) throws IOException {
+		super.writeTo(cache);
+		cache.writeNumbers(timeDoubleData);
+		cache.writeNumbers(loneDoubleData);
+		cache.writeInts(loneIntData);
+		cache.writeVertex(staticColor);
+		cache.writeAnimFlags(animFlags);
+	}
 
-				MDLReader.mark(mdl);
-				line = MDLReader.nextLine(mdl);
+	@Override
+	void readFrom(final MdlCacheReader cache) throws IOException {
+		super.readFrom(cache);
+		timeDoubleData = cache.readNumbers(timeDoubleNames.length);
+		loneDoubleData = cache.readNumbers(loneDoubleNames.length);
+		loneIntData = cache.readInts(loneIntNames.length);
+		staticColor = cache.readVertex();
+		animFlags = cache.readAnimFlags();
+	}
+
+	static RibbonEmitter read(final MdlCacheReader cache) throws IOException {
+		final RibbonEmitter pe = new RibbonEmitter();
+		pe.readFrom(cache);
+		return pe;
+	}
+
+	private static int indexOf(final String[] names, final String name) {
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].equals(name)) {
+				return i;
 			}
-			return pe;
-		} else {
-			JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-					"Unable to parse RibbonEmitter: Missing or unrecognized open statement.");
 		}
-		return null;
+		return -1;
 	}
 
 	@Override
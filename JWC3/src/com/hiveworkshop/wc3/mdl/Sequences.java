@@ -1,7 +1,7 @@
 package com.hiveworkshop.wc3.mdl;
 import java.util.ArrayList;
 import javax.swing.JOptionPane;
-import java.io.BufferedReader;
+import java.io.IOException;
 /**
  * The overarching sequence parser for Animations.
  * 
@@ -41,34 +41,21 @@ public class Sequences
         }
         return null;
     }
-    public static ArrayList<Animation> read(BufferedReader mdl)
+    public static ArrayList<Animation> read(MdlTokenizer mdl) throws IOException
     {
         ArrayList<Animation> seqs = new ArrayList<Animation>();
-        String line = "";
-        line = MDLReader.nextLine(mdl);
-        if( !line.contains("Sequences") || line.contains("Global") )
+        mdl.readWord();
+        mdl.openBlock();
+        while( !mdl.endBlock() )
         {
-            //JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),"Unable to parse sequences: Confused by opener line '"+line+"'.\nNo sequences?");
-            MDLReader.reset(mdl);
-        }
-        else
-        {
-            MDLReader.mark(mdl);
-            line = MDLReader.nextLine(mdl);
-            while( !(line).startsWith("}") )
+            if( mdl.peekWord().equals("Anim") )
             {
-                if( line.contains("Anim") )
-                {
-                    MDLReader.reset(mdl);
-                    Animation an = Animation.read(mdl);
-                    seqs.add(an);
-                }
-                else
-                {
-                    JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),"Unable to parse sequences: Confused by anim opener line '"+line+"'.");
-                }
-                MDLReader.mark(mdl);
-                line = MDLReader.nextLine(mdl);
+                seqs.add(Animation.read(mdl));
+            }
+            else
+            {
+                JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),"Unable to parse sequences: Confused by anim opener '"+mdl.peekWord()+"'.");
+                mdl.skipStatement();
             }
         }
         return seqs;
@@ -1,5 +1,7 @@
 package com.hiveworkshop.wc3.mdl;
 
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.List;
 
 import javax.swing.JOptionPane;
@@ -108,11 +110,30 @@ public class TVertex {
 		return temp;
 	}
 
+	public static TVertex read(final MdlTokenizer mdl) throws IOException {
+		mdl.expect('{');
+		final double x = mdl.readDouble();
+		final double y = mdl.readDouble();
+		mdl.expect('}');
+		return new TVertex(x, y);
+	}
+
 	@Override
 	public String toString() {
 		return "{ " + MDLReader.doubleToString(x) + ", " + MDLReader.doubleToString(y) + " }";
 	}
 
+	/**
+	 * Prints the same text as {@link #toString()}.
+	 */
+	public void printTo(final PrintWriter writer) {
+		writer.print("{ ");
+		MdlWriter.printNumber(writer, x);
+		writer.print(", ");
+		MdlWriter.printNumber(writer, y);
+		writer.print(" }");
+	}
+
 	public static TVertex centerOfGroup(final List<? extends TVertex> group) {
 		double xTot = 0;
 		double yTot = 0;
@@ -5,7 +5,7 @@ import javax.swing.JOptionPane;
 
 import com.hiveworkshop.wc3.mdx.TextureAnimationChunk;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.PrintWriter;
 /**
  * TextureAnims, inside them called TVertexAnims
@@ -71,50 +71,39 @@ public class TextureAnim
         }
         return null;
     }
-    public static TextureAnim read(BufferedReader mdl)
+    public static TextureAnim read(MdlTokenizer mdl) throws IOException
     {
-        String line = MDLReader.nextLine(mdl);
-        if( line.contains("TVertexAnim") )
+        TextureAnim tan = new TextureAnim();
+        mdl.readWord();
+        mdl.openBlock();
+        while( !mdl.endBlock() )
         {
-            TextureAnim tan = new TextureAnim();
-            MDLReader.mark(mdl);
-            while( !(line = MDLReader.nextLine(mdl)).contains("\t}") )
-            {
-                MDLReader.reset(mdl);
-                tan.animFlags.add(AnimFlag.read(mdl));
-                MDLReader.mark(mdl);
-            }
-            return tan;
-        }
-        else
-        {
-            JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),"Unable to parse TextureAnim: Missing or unrecognized open statement.");
+            tan.animFlags.add(AnimFlag.read(mdl));
         }
-        return null;
+        return tan;
     }
-    public static ArrayList<TextureAnim> readAll(BufferedReader mdl)
+    public static ArrayList<TextureAnim> readAll(MdlTokenizer mdl) throws IOException
     {
-        String line = "";
         ArrayList<TextureAnim> outputs = new ArrayList<TextureAnim>();
-        MDLReader.mark(mdl);
-        if( (line = MDLReader.nextLine(mdl)).contains("TextureAnims") )
+        mdl.readWord();
+        mdl.openBlock();
+        while( !mdl.endBlock() )
         {
-            MDLReader.mark(mdl);
-            while( !(line = MDLReader.nextLine(mdl)).startsWith("}") )
-            {
-                MDLReader.reset(mdl);
-                outputs.add(read(mdl));
-                MDLReader.mark(mdl);
-            }
-            return outputs;
-        }
-        else
-        {
-            MDLReader.reset(mdl);
-//             JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),"Unable to parse TextureAnims: Missing or unrecognized open statement.");
+            outputs.add(read(mdl));
         }
         return outputs;
     }
+
+    void writeTo(MdlCacheWriter cache) throws IOException
+    {
+        cache.writeAnimFlags(animFlags);
+    }
+    static TextureAnim read(MdlCacheReader cache) throws IOException
+    {
+        TextureAnim tan = new TextureAnim();
+        tan.animFlags = cache.readAnimFlags();
+        return tan;
+    }
     public void printTo(PrintWriter writer, int tabHeight)
     {
         String tabs = "";
@@ -1,7 +1,9 @@
 package com.hiveworkshop.wc3.mdl;
 
-import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Map;
 
 import javax.swing.JOptionPane;
 
@@ -82,6 +84,17 @@ public class Triangle {
 		updateVertexIds();
 	}
 
+	/**
+	 * Same as {@link #updateVertexIds(Geoset)}, with the ids looked up in {@link Geoset#getVertexIds()}.
+	 */
+	public void updateVertexIds(final Geoset geoRef, final Map<GeosetVertex, Integer> vertexIds) {
+		geoset = geoRef;
+		for (int i = 0; i < 3; i++) {
+			final Integer id = vertexIds.get(verts[i]);
+			vertIds[i] = id == null ? -1 : id.intValue();
+		}
+	}
+
 	public void updateVertexRefs(final ArrayList<GeosetVertex> list) {
 		verts[0] = list.get(vertIds[0]);
 		verts[1] = list.get(vertIds[1]);
@@ -224,60 +237,22 @@ public class Triangle {
 		return output;
 	}
 
-	public static ArrayList<Triangle> read(final BufferedReader mdl) {
-		// Usually triangles come in a single entry with all of them, so we
-		// parse the input into an ArrayList
-		final ArrayList<Triangle> output = new ArrayList<>();
-		String line = "";
-		while (!(line = MDLReader.nextLine(mdl)).contains("\t}")) {
-			// System.out.println("Interpreting "+line+" for Triangles");
-			final String[] s = line.split(",");
-			s[0] = s[0].substring(4, s[0].length());
-			final int s_size = MDLReader.occurrencesIn(",", line);
-			// System.out.println("We broke it into "+s_size+" parts.");
-			s[s_size - 1] = s[s_size - 1].substring(0, s[s_size - 1].length() - 2);
-			for (int t = 0; t < s_size - 1; t += 3)// s[t+3].equals("")||
-			{
-				for (int i = 0; i < 3; i++) {
-					s[t + i] = s[t + i].substring(1);
-				}
-				try {
-					output.add(new Triangle(Integer.parseInt(s[t]), Integer.parseInt(s[t + 1]),
-							Integer.parseInt(s[t + 2])));
-				} catch (final NumberFormatException e) {
-					JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-							"Error: Unable to interpret information in Triangles: " + s[t] + ", " + s[t + 1] + ", or "
-									+ s[t + 2]);
-				}
-			}
-		}
-		return output;
-	}
-
-	public static ArrayList<Triangle> read(final BufferedReader mdl, final Geoset geoRef) {
-		// Usually triangles come in a single entry with all of them, so we
-		// parse the input into an ArrayList
+	/**
+	 * Reads a "Triangles" block, whose vertex indices usually all come in a single entry.
+	 */
+	public static ArrayList<Triangle> read(final MdlTokenizer mdl, final Geoset geoRef) throws IOException {
 		final ArrayList<Triangle> output = new ArrayList<>();
-		String line = "";
-		while (!(line = MDLReader.nextLine(mdl)).contains("\t}")) {
-			// System.out.println("Interpreting "+line+" for Triangles");
-			final String[] s = line.split(",");
-			s[0] = s[0].substring(4, s[0].length());
-			final int s_size = MDLReader.occurrencesIn(",", line);
-			// System.out.println("We broke it into "+s_size+" parts.");
-			s[s_size - 1] = s[s_size - 1].substring(0, s[s_size - 1].length() - 2);
-			for (int t = 0; t < s_size - 1; t += 3)// s[t+3].equals("")||
-			{
-				for (int i = 0; i < 3; i++) {
-					s[t + i] = s[t + i].substring(1);
-				}
-				try {
-					output.add(new Triangle(Integer.parseInt(s[t]), Integer.parseInt(s[t + 1]),
-							Integer.parseInt(s[t + 2]), geoRef));
-				} catch (final NumberFormatException e) {
-					JOptionPane.showMessageDialog(MDLReader.getDefaultContainer(),
-							"Error: Unable to interpret information in Triangles: " + s[t] + ", " + s[t + 1] + ", or "
-									+ s[t + 2]);
+		final int[] indices = new int[3];
+		int count = 0;
+		mdl.readWord();
+		mdl.openBlock();
+		while (!mdl.endBlock()) {
+			mdl.expect('{');
+			while (!mdl.endBlock()) {
+				indices[count++] = mdl.readInt();
+				if (count == 3) {
+					output.add(new Triangle(indices[0], indices[1], indices[2], geoRef));
+					count = 0;
 				}
 			}
 		}
@@ -289,6 +264,17 @@ public class Triangle {
 		return vertIds[0] + ", " + vertIds[1] + ", " + vertIds[2];
 	}
 
+	/**
+	 * Prints the same text as {@link #toString()}.
+	 */
+	public void printTo(final PrintWriter writer) {
+		writer.print(vertIds[0]);
+		writer.print(", ");
+		writer.print(vertIds[1]);
+		writer.print(", ");
+		writer.print(vertIds[2]);
+	}
+
 	/**
 	 * Flips the triangle's orientation, and optionally the normal vectors for
 	 * all the triangle's components.
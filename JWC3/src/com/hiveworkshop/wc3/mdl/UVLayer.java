@@ -1,6 +1,6 @@
 package com.hiveworkshop.wc3.mdl;
 import java.util.ArrayList;
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.PrintWriter;
 /**
  * A layer of TVertices (UV Mapping)
@@ -27,13 +27,14 @@ public class UVLayer
     {
         return tverts.size();
     }
-    public static UVLayer read(BufferedReader mdl)
+    public static UVLayer read(MdlTokenizer mdl) throws IOException
     {
         UVLayer temp = new UVLayer();
-        String line = "";
-        while( !((line = MDLReader.nextLine(mdl)).contains("\t}") ) )
+        mdl.readWord();
+        mdl.openBlock();
+        while( !mdl.endBlock() )
         {
-            temp.addTVertex(TVertex.parseText(line));
+            temp.addTVertex(TVertex.read(mdl));
         }
         return temp;
     }
@@ -54,7 +55,9 @@ public class UVLayer
         }
         for( int i = 0; i < tverts.size(); i++ )
         {
-            writer.println(inTabs+tverts.get(i).toString()+",");
+            writer.print(inTabs);
+            tverts.get(i).printTo(writer);
+            writer.println(",");
         }
        
         if( addHeader )
@@ -1,5 +1,7 @@
 package com.hiveworkshop.wc3.mdl;
 
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.Collection;
 
 import javax.swing.JOptionPane;
@@ -120,12 +122,34 @@ public class Vertex {
 		return temp;
 	}
 
+	public static Vertex read(final MdlTokenizer mdl) throws IOException {
+		mdl.expect('{');
+		final double x = mdl.readDouble();
+		final double y = mdl.readDouble();
+		final double z = mdl.readDouble();
+		mdl.expect('}');
+		return new Vertex(x, y, z);
+	}
+
 	@Override
 	public String toString() {
 		return "{ " + MDLReader.doubleToString(x) + ", " + MDLReader.doubleToString(y) + ", "
 				+ MDLReader.doubleToString(z) + " }";
 	}
 
+	/**
+	 * Prints the same text as {@link #toString()}.
+	 */
+	public void printTo(final PrintWriter writer) {
+		writer.print("{ ");
+		MdlWriter.printNumber(writer, x);
+		writer.print(", ");
+		MdlWriter.printNumber(writer, y);
+		writer.print(", ");
+		MdlWriter.printNumber(writer, z);
+		writer.print(" }");
+	}
+
 	public String toStringLessSpace() {
 		return "{" + MDLReader.doubleToString(x) + ", " + MDLReader.doubleToString(y) + ", "
 				+ MDLReader.doubleToString(z) + "}";
@@ -6,15 +6,15 @@ import java.util.List;
 
 import com.hiveworkshop.wc3.mdl.AnimFlag;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class AttachmentChunk {
 	public Attachment[] attachment = new Attachment[0];
 
 	public static final String key = "ATCH";
 
-	public void load(final BlizzardDataInputStream in) throws IOException {
+	public void load(final BlizzardDataInputBuffer in) throws IOException {
 		MdxUtils.checkId(in, "ATCH");
 		final int chunkSize = in.readInt();
 		final List<Attachment> attachmentList = new ArrayList();
@@ -28,14 +28,14 @@ public class AttachmentChunk {
 		attachment = attachmentList.toArray(new Attachment[attachmentList.size()]);
 	}
 
-	public void save(final BlizzardDataOutputStream out) throws IOException {
+	public void save(final BlizzardDataOutputBuffer out) throws IOException {
 		final int nrOfAttachments = attachment.length;
 		out.writeNByteString("ATCH", 4);
-		out.writeInt(getSize() - 8);// ChunkSize
+		final int chunkSizePosition = out.beginSize();// ChunkSize
 		for (int i = 0; i < attachment.length; i++) {
 			attachment[i].save(out);
 		}
-
+		out.endChunkSize(chunkSizePosition);
 	}
 
 	public int getSize() {
@@ -56,7 +56,7 @@ public class AttachmentChunk {
 		public int attachmentId;
 		public AttachmentVisibility attachmentVisibility;
 
-		public void load(final BlizzardDataInputStream in) throws IOException {
+		public void load(final BlizzardDataInputBuffer in) throws IOException {
 			final int inclusiveSize = in.readInt();
 			node = new Node();
 			node.load(in);
@@ -70,8 +70,8 @@ public class AttachmentChunk {
 
 		}
 
-		public void save(final BlizzardDataOutputStream out) throws IOException {
-			out.writeInt(getSize());// InclusiveSize
+		public void save(final BlizzardDataOutputBuffer out) throws IOException {
+			final int inclusiveSizePosition = out.beginSize();// InclusiveSize
 			node.save(out);
 			out.writeNByteString(unknownName_modelPath, 256);
 			out.writeInt(unknownNull);
@@ -79,7 +79,7 @@ public class AttachmentChunk {
 			if (attachmentVisibility != null) {
 				attachmentVisibility.save(out);
 			}
-
+			out.endInclusiveSize(inclusiveSizePosition);
 		}
 
 		public int getSize() {
@@ -4,15 +4,15 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class BoneChunk {
 	public Bone[] bone = new Bone[0];
 
 	public static final String key = "BONE";
 
-	public void load(BlizzardDataInputStream in) throws IOException {
+	public void load(BlizzardDataInputBuffer in) throws IOException {
 		MdxUtils.checkId(in, "BONE");
 		int chunkSize = in.readInt();
 		List<Bone> boneList = new ArrayList();
@@ -26,14 +26,14 @@ public class BoneChunk {
 		bone = boneList.toArray(new Bone[boneList.size()]);
 	}
 
-	public void save(BlizzardDataOutputStream out) throws IOException {
+	public void save(BlizzardDataOutputBuffer out) throws IOException {
 		int nrOfBones = bone.length;
 		out.writeNByteString("BONE", 4);
-		out.writeInt(getSize() - 8);// ChunkSize
+		final int chunkSizePosition = out.beginSize();// ChunkSize
 		for (int i = 0; i < bone.length; i++) {
 			bone[i].save(out);
 		}
-
+		out.endChunkSize(chunkSizePosition);
 	}
 
 	public int getSize() {
@@ -52,14 +52,14 @@ public class BoneChunk {
 		public int geosetId;
 		public int geosetAnimationId;
 
-		public void load(BlizzardDataInputStream in) throws IOException {
+		public void load(BlizzardDataInputBuffer in) throws IOException {
 			node = new Node();
 			node.load(in);
 			geosetId = in.readInt();
 			geosetAnimationId = in.readInt();
 		}
 
-		public void save(BlizzardDataOutputStream out) throws IOException {
+		public void save(BlizzardDataOutputBuffer out) throws IOException {
 			node.save(out);
 			out.writeInt(geosetId);
 			out.writeInt(geosetAnimationId);
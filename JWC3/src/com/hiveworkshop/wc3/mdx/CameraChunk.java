@@ -7,15 +7,15 @@ import java.util.List;
 import com.hiveworkshop.wc3.mdl.AnimFlag;
 import com.hiveworkshop.wc3.mdl.Vertex;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class CameraChunk {
 	public Camera[] camera = new Camera[0];
 
 	public static final String key = "CAMS";
 
-	public void load(final BlizzardDataInputStream in) throws IOException {
+	public void load(final BlizzardDataInputBuffer in) throws IOException {
 		MdxUtils.checkId(in, "CAMS");
 		final int chunkSize = in.readInt();
 		final List<Camera> cameraList = new ArrayList();
@@ -29,14 +29,14 @@ public class CameraChunk {
 		camera = cameraList.toArray(new Camera[cameraList.size()]);
 	}
 
-	public void save(final BlizzardDataOutputStream out) throws IOException {
+	public void save(final BlizzardDataOutputBuffer out) throws IOException {
 		final int nrOfCameras = camera.length;
 		out.writeNByteString("CAMS", 4);
-		out.writeInt(getSize() - 8);// ChunkSize
+		final int chunkSizePosition = out.beginSize();// ChunkSize
 		for (int i = 0; i < camera.length; i++) {
 			camera[i].save(out);
 		}
-
+		out.endChunkSize(chunkSizePosition);
 	}
 
 	public int getSize() {
@@ -62,7 +62,7 @@ public class CameraChunk {
 		// TODO Needs rotation!
 		public CameraRotation cameraRotation;
 
-		public void load(final BlizzardDataInputStream in) throws IOException {
+		public void load(final BlizzardDataInputBuffer in) throws IOException {
 			final int inclusiveSize = in.readInt();
 			name = in.readCharsAsString(80);
 			position = MdxUtils.loadFloatArray(in, 3);
@@ -85,8 +85,8 @@ public class CameraChunk {
 			}
 		}
 
-		public void save(final BlizzardDataOutputStream out) throws IOException {
-			out.writeInt(getSize());// InclusiveSize
+		public void save(final BlizzardDataOutputBuffer out) throws IOException {
+			final int inclusiveSizePosition = out.beginSize();// InclusiveSize
 			out.writeNByteString(name, 80);
 			if (position.length % 3 != 0) {
 				throw new IllegalArgumentException(
@@ -112,7 +112,7 @@ public class CameraChunk {
 			if (cameraRotation != null) {
 				cameraRotation.save(out);
 			}
-
+			out.endInclusiveSize(inclusiveSizePosition);
 		}
 
 		public int getSize() {
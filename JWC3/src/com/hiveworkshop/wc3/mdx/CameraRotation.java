@@ -2,8 +2,8 @@ package com.hiveworkshop.wc3.mdx;
 
 import java.io.IOException;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class CameraRotation {
 	public int interpolationType;
@@ -12,7 +12,7 @@ public class CameraRotation {
 
 	public static final String key = "KCRL";
 
-	public void load(BlizzardDataInputStream in) throws IOException {
+	public void load(BlizzardDataInputBuffer in) throws IOException {
 		MdxUtils.checkId(in, "KCRL");
 		int nrOfTracks = in.readInt();
 		interpolationType = in.readInt();
@@ -24,7 +24,7 @@ public class CameraRotation {
 		}
 	}
 
-	public void save(BlizzardDataOutputStream out) throws IOException {
+	public void save(BlizzardDataOutputBuffer out) throws IOException {
 		int nrOfTracks = translationTrack.length;
 		out.writeNByteString("KCRL", 4);
 		out.writeInt(nrOfTracks);
@@ -55,7 +55,7 @@ public class CameraRotation {
 		public float inTan;
 		public float outTan;
 
-		public void load(BlizzardDataInputStream in) throws IOException {
+		public void load(BlizzardDataInputBuffer in) throws IOException {
 			time = in.readInt();
 			rotation = in.readFloat();
 			if (interpolationType > 1) {
@@ -64,7 +64,7 @@ public class CameraRotation {
 			}
 		}
 
-		public void save(BlizzardDataOutputStream out) throws IOException {
+		public void save(BlizzardDataOutputBuffer out) throws IOException {
 			out.writeInt(time);
 			out.writeFloat(rotation);
 			if (interpolationType > 1) {
@@ -6,15 +6,15 @@ import java.util.List;
 
 import com.hiveworkshop.wc3.mdl.Vertex;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class CollisionShapeChunk {
 	public CollisionShape[] collisionShape = new CollisionShape[0];
 
 	public static final String key = "CLID";
 
-	public void load(BlizzardDataInputStream in) throws IOException {
+	public void load(BlizzardDataInputBuffer in) throws IOException {
 		MdxUtils.checkId(in, "CLID");
 		int chunkSize = in.readInt();
 		List<CollisionShape> collisionShapeList = new ArrayList();
@@ -29,14 +29,14 @@ public class CollisionShapeChunk {
 				.toArray(new CollisionShape[collisionShapeList.size()]);
 	}
 
-	public void save(BlizzardDataOutputStream out) throws IOException {
+	public void save(BlizzardDataOutputBuffer out) throws IOException {
 		int nrOfCollisionShapes = collisionShape.length;
 		out.writeNByteString("CLID", 4);
-		out.writeInt(getSize() - 8);// ChunkSize
+		final int chunkSizePosition = out.beginSize();// ChunkSize
 		for (int i = 0; i < collisionShape.length; i++) {
 			collisionShape[i].save(out);
 		}
-
+		out.endChunkSize(chunkSizePosition);
 	}
 
 	public int getSize() {
@@ -56,7 +56,7 @@ public class CollisionShapeChunk {
 		public float[] vertexs = new float[0];
 		public float boundsRadius;
 
-		public void load(BlizzardDataInputStream in) throws IOException {
+		public void load(BlizzardDataInputBuffer in) throws IOException {
 			node = new Node();
 			node.load(in);
 			type = in.readInt();
@@ -66,7 +66,7 @@ public class CollisionShapeChunk {
 			}
 		}
 
-		public void save(BlizzardDataOutputStream out) throws IOException {
+		public void save(BlizzardDataOutputBuffer out) throws IOException {
 			int nrOfVertices = vertexs.length / 3;
 			node.save(out);
 			out.writeInt(type);
@@ -4,15 +4,15 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class EventObjectChunk {
 	public EventObject[] eventObject = new EventObject[0];
 
 	public static final String key = "EVTS";
 
-	public void load(BlizzardDataInputStream in) throws IOException {
+	public void load(BlizzardDataInputBuffer in) throws IOException {
 		MdxUtils.checkId(in, "EVTS");
 		int chunkSize = in.readInt();
 		List<EventObject> eventObjectList = new ArrayList();
@@ -27,14 +27,14 @@ public class EventObjectChunk {
 				.size()]);
 	}
 
-	public void save(BlizzardDataOutputStream out) throws IOException {
+	public void save(BlizzardDataOutputBuffer out) throws IOException {
 		int nrOfEventObjects = eventObject.length;
 		out.writeNByteString("EVTS", 4);
-		out.writeInt(getSize() - 8);// ChunkSize
+		final int chunkSizePosition = out.beginSize();// ChunkSize
 		for (int i = 0; i < eventObject.length; i++) {
 			eventObject[i].save(out);
 		}
-
+		out.endChunkSize(chunkSizePosition);
 	}
 
 	public int getSize() {
@@ -52,7 +52,7 @@ public class EventObjectChunk {
 		public Node node = new Node();
 		public Tracks tracks;
 
-		public void load(BlizzardDataInputStream in) throws IOException {
+		public void load(BlizzardDataInputBuffer in) throws IOException {
 			node = new Node();
 			node.load(in);
 			if (MdxUtils.checkOptionalId(in, Tracks.key)) {
@@ -62,7 +62,7 @@ public class EventObjectChunk {
 
 		}
 
-		public void save(BlizzardDataOutputStream out) throws IOException {
+		public void save(BlizzardDataOutputBuffer out) throws IOException {
 			node.save(out);
 			if (tracks != null) {
 				tracks.save(out);
@@ -2,8 +2,8 @@ package com.hiveworkshop.wc3.mdx;
 
 import java.io.IOException;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class GeosetAlpha {
 	public int interpolationType;
@@ -12,7 +12,7 @@ public class GeosetAlpha {
 
 	public static final String key = "KGAO";
 
-	public void load(BlizzardDataInputStream in) throws IOException {
+	public void load(BlizzardDataInputBuffer in) throws IOException {
 		MdxUtils.checkId(in, "KGAO");
 		int nrOfTracks = in.readInt();
 		interpolationType = in.readInt();
@@ -24,7 +24,7 @@ public class GeosetAlpha {
 		}
 	}
 
-	public void save(BlizzardDataOutputStream out) throws IOException {
+	public void save(BlizzardDataOutputBuffer out) throws IOException {
 		int nrOfTracks = scalingTrack.length;
 		out.writeNByteString("KGAO", 4);
 		out.writeInt(nrOfTracks);
@@ -55,7 +55,7 @@ public class GeosetAlpha {
 		public float inTan;
 		public float outTan;
 
-		public void load(BlizzardDataInputStream in) throws IOException {
+		public void load(BlizzardDataInputBuffer in) throws IOException {
 			time = in.readInt();
 			alpha = in.readFloat();
 			if (interpolationType > 1) {
@@ -64,7 +64,7 @@ public class GeosetAlpha {
 			}
 		}
 
-		public void save(BlizzardDataOutputStream out) throws IOException {
+		public void save(BlizzardDataOutputBuffer out) throws IOException {
 			out.writeInt(time);
 			out.writeFloat(alpha);
 			if (interpolationType > 1) {
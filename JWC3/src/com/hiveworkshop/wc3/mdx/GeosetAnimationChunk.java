@@ -8,15 +8,15 @@ import com.hiveworkshop.wc3.mdl.AnimFlag;
 import com.hiveworkshop.wc3.mdl.GeosetAnim;
 import com.hiveworkshop.wc3.mdl.Vertex;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class GeosetAnimationChunk {
 	public GeosetAnimation[] geosetAnimation = new GeosetAnimation[0];
 
 	public static final String key = "GEOA";
 
-	public void load(final BlizzardDataInputStream in) throws IOException {
+	public void load(final BlizzardDataInputBuffer in) throws IOException {
 		MdxUtils.checkId(in, "GEOA");
 		final int chunkSize = in.readInt();
 		final List<GeosetAnimation> geosetAnimationList = new ArrayList();
@@ -30,14 +30,14 @@ public class GeosetAnimationChunk {
 		geosetAnimation = geosetAnimationList.toArray(new GeosetAnimation[geosetAnimationList.size()]);
 	}
 
-	public void save(final BlizzardDataOutputStream out) throws IOException {
+	public void save(final BlizzardDataOutputBuffer out) throws IOException {
 		final int nrOfGeosetAnimations = geosetAnimation.length;
 		out.writeNByteString("GEOA", 4);
-		out.writeInt(getSize() - 8);// ChunkSize
+		final int chunkSizePosition = out.beginSize();// ChunkSize
 		for (int i = 0; i < geosetAnimation.length; i++) {
 			geosetAnimation[i].save(out);
 		}
-
+		out.endChunkSize(chunkSizePosition);
 	}
 
 	public int getSize() {
@@ -59,7 +59,7 @@ public class GeosetAnimationChunk {
 		public GeosetAlpha geosetAlpha;
 		public GeosetColor geosetColor;
 
-		public void load(final BlizzardDataInputStream in) throws IOException {
+		public void load(final BlizzardDataInputBuffer in) throws IOException {
 			final int inclusiveSize = in.readInt();
 			alpha = in.readFloat();
 			flags = in.readInt();
@@ -77,8 +77,8 @@ public class GeosetAnimationChunk {
 			}
 		}
 
-		public void save(final BlizzardDataOutputStream out) throws IOException {
-			out.writeInt(getSize());// InclusiveSize
+		public void save(final BlizzardDataOutputBuffer out) throws IOException {
+			final int inclusiveSizePosition = out.beginSize();// InclusiveSize
 			out.writeFloat(alpha);
 			out.writeInt(flags);
 			if (color.length % 3 != 0) {
@@ -94,7 +94,7 @@ public class GeosetAnimationChunk {
 			if (geosetColor != null) {
 				geosetColor.save(out);
 			}
-
+			out.endInclusiveSize(inclusiveSizePosition);
 		}
 
 		public int getSize() {
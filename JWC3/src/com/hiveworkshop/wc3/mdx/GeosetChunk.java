@@ -9,15 +9,15 @@ import com.hiveworkshop.wc3.mdl.GeosetVertex;
 import com.hiveworkshop.wc3.mdl.Matrix;
 import com.hiveworkshop.wc3.mdl.Triangle;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class GeosetChunk {
 	public Geoset[] geoset = new Geoset[0];
 
 	public static final String key = "GEOS";
 
-	public void load(final BlizzardDataInputStream in) throws IOException {
+	public void load(final BlizzardDataInputBuffer in) throws IOException {
 		MdxUtils.checkId(in, "GEOS");
 		final int chunkSize = in.readInt();
 		final List<Geoset> geosetList = new ArrayList();
@@ -31,14 +31,14 @@ public class GeosetChunk {
 		geoset = geosetList.toArray(new Geoset[geosetList.size()]);
 	}
 
-	public void save(final BlizzardDataOutputStream out) throws IOException {
+	public void save(final BlizzardDataOutputBuffer out) throws IOException {
 		final int nrOfGeosets = geoset.length;
 		out.writeNByteString("GEOS", 4);
-		out.writeInt(getSize() - 8);// ChunkSize
+		final int chunkSizePosition = out.beginSize();// ChunkSize
 		for (int i = 0; i < geoset.length; i++) {
 			geoset[i].save(out);
 		}
-
+		out.endChunkSize(chunkSizePosition);
 	}
 
 	public int getSize() {
@@ -73,7 +73,7 @@ public class GeosetChunk {
 
 		public static final String key = "VRTX";
 
-		public void load(final BlizzardDataInputStream in) throws IOException {
+		public void load(final BlizzardDataInputBuffer in) throws IOException {
 			final int inclusiveSize = in.readInt();
 			MdxUtils.checkId(in, "VRTX");
 			final int nrOfVertexPositions = in.readInt();
@@ -121,7 +121,7 @@ public class GeosetChunk {
 			}
 		}
 
-		public void save(final BlizzardDataOutputStream out) throws IOException {
+		public void save(final BlizzardDataOutputBuffer out) throws IOException {
 			int nrOfVertexTexturePositions = vertexTexturePositions.length / 2;
 			final int nrOfExtents = extent.length;
 			final int nrOfMatrixIndexes = matrixIndexs.length;
@@ -132,7 +132,7 @@ public class GeosetChunk {
 			final int nrOfFaceTypeGroups = faceTypeGroups.length;
 			final int nrOfVertexNormals = vertexNormals.length / 3;
 			final int nrOfVertexPositions = vertexPositions.length / 3;
-			out.writeInt(getSize());// InclusiveSize
+			final int inclusiveSizePosition = out.beginSize();// InclusiveSize
 			out.writeNByteString("VRTX", 4);
 			out.writeInt(nrOfVertexPositions);
 			if (vertexPositions.length % 3 != 0) {
@@ -200,7 +200,7 @@ public class GeosetChunk {
 				}
 				MdxUtils.saveFloatArray(out, vertexTexturePositions[i]);
 			}
-
+			out.endInclusiveSize(inclusiveSizePosition);
 		}
 
 		public int getSize() {
@@ -256,13 +256,13 @@ public class GeosetChunk {
 			public float[] maximumExtent = new float[3];
 			public float bounds;
 
-			public void load(final BlizzardDataInputStream in) throws IOException {
+			public void load(final BlizzardDataInputBuffer in) throws IOException {
 				bounds = in.readFloat();
 				minimumExtent = MdxUtils.loadFloatArray(in, 3);
 				maximumExtent = MdxUtils.loadFloatArray(in, 3);
 			}
 
-			public void save(final BlizzardDataOutputStream out) throws IOException {
+			public void save(final BlizzardDataOutputBuffer out) throws IOException {
 				if (minimumExtent.length % 3 != 0) {
 					throw new IllegalArgumentException(
 							"The array minimumExtent needs either the length 3 or a multiple of this number. (got "
@@ -2,8 +2,8 @@ package com.hiveworkshop.wc3.mdx;
 
 import java.io.IOException;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class GeosetColor {
 	public int interpolationType;
@@ -12,7 +12,7 @@ public class GeosetColor {
 
 	public static final String key = "KGAC";
 
-	public void load(BlizzardDataInputStream in) throws IOException {
+	public void load(BlizzardDataInputBuffer in) throws IOException {
 		MdxUtils.checkId(in, "KGAC");
 		int nrOfTracks = in.readInt();
 		interpolationType = in.readInt();
@@ -24,7 +24,7 @@ public class GeosetColor {
 		}
 	}
 
-	public void save(BlizzardDataOutputStream out) throws IOException {
+	public void save(BlizzardDataOutputBuffer out) throws IOException {
 		int nrOfTracks = scalingTrack.length;
 		out.writeNByteString("KGAC", 4);
 		out.writeInt(nrOfTracks);
@@ -55,7 +55,7 @@ public class GeosetColor {
 		public float[] inTan = new float[3];
 		public float[] outTan = new float[3];
 
-		public void load(BlizzardDataInputStream in) throws IOException {
+		public void load(BlizzardDataInputBuffer in) throws IOException {
 			time = in.readInt();
 			color = MdxUtils.loadFloatArray(in, 3);
 			if (interpolationType > 1) {
@@ -64,7 +64,7 @@ public class GeosetColor {
 			}
 		}
 
-		public void save(BlizzardDataOutputStream out) throws IOException {
+		public void save(BlizzardDataOutputBuffer out) throws IOException {
 			out.writeInt(time);
 			if (color.length % 3 != 0) {
 				throw new IllegalArgumentException(
@@ -2,8 +2,8 @@ package com.hiveworkshop.wc3.mdx;
 
 import java.io.IOException;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class GeosetScaling {
 	public int interpolationType;
@@ -12,7 +12,7 @@ public class GeosetScaling {
 
 	public static final String key = "KGSC";
 
-	public void load(BlizzardDataInputStream in) throws IOException {
+	public void load(BlizzardDataInputBuffer in) throws IOException {
 		MdxUtils.checkId(in, "KGSC");
 		int nrOfTracks = in.readInt();
 		interpolationType = in.readInt();
@@ -24,7 +24,7 @@ public class GeosetScaling {
 		}
 	}
 
-	public void save(BlizzardDataOutputStream out) throws IOException {
+	public void save(BlizzardDataOutputBuffer out) throws IOException {
 		int nrOfTracks = scalingTrack.length;
 		out.writeNByteString("KGSC", 4);
 		out.writeInt(nrOfTracks);
@@ -55,7 +55,7 @@ public class GeosetScaling {
 		public float[] inTan = new float[3];
 		public float[] outTan = new float[3];
 
-		public void load(BlizzardDataInputStream in) throws IOException {
+		public void load(BlizzardDataInputBuffer in) throws IOException {
 			time = in.readInt();
 			scaling = MdxUtils.loadFloatArray(in, 3);
 			if (interpolationType > 1) {
@@ -64,7 +64,7 @@ public class GeosetScaling {
 			}
 		}
 
-		public void save(BlizzardDataOutputStream out) throws IOException {
+		public void save(BlizzardDataOutputBuffer out) throws IOException {
 			out.writeInt(time);
 			if (scaling.length % 3 != 0) {
 				throw new IllegalArgumentException(
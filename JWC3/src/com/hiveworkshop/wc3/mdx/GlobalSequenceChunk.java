@@ -2,26 +2,26 @@ package com.hiveworkshop.wc3.mdx;
 
 import java.io.IOException;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class GlobalSequenceChunk {
 	public int[] globalSequences = new int[0];
 
 	public static final String key = "GLBS";
 
-	public void load(BlizzardDataInputStream in) throws IOException {
+	public void load(BlizzardDataInputBuffer in) throws IOException {
 		MdxUtils.checkId(in, "GLBS");
 		int chunkSize = in.readInt();
 		globalSequences = MdxUtils.loadIntArray(in, chunkSize / 4);
 	}
 
-	public void save(BlizzardDataOutputStream out) throws IOException {
+	public void save(BlizzardDataOutputBuffer out) throws IOException {
 		int nrOfGlobalSequences = globalSequences.length;
 		out.writeNByteString("GLBS", 4);
-		out.writeInt(getSize() - 8);// ChunkSize
+		final int chunkSizePosition = out.beginSize();// ChunkSize
 		MdxUtils.saveIntArray(out, globalSequences);
-
+		out.endChunkSize(chunkSizePosition);
 	}
 
 	public int getSize() {
@@ -4,15 +4,15 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class HelperChunk {
 	public Helper[] helper = new Helper[0];
 
 	public static final String key = "HELP";
 
-	public void load(BlizzardDataInputStream in) throws IOException {
+	public void load(BlizzardDataInputBuffer in) throws IOException {
 		MdxUtils.checkId(in, "HELP");
 		int chunkSize = in.readInt();
 		List<Helper> helperList = new ArrayList();
@@ -26,14 +26,14 @@ public class HelperChunk {
 		helper = helperList.toArray(new Helper[helperList.size()]);
 	}
 
-	public void save(BlizzardDataOutputStream out) throws IOException {
+	public void save(BlizzardDataOutputBuffer out) throws IOException {
 		int nrOfHelpers = helper.length;
 		out.writeNByteString("HELP", 4);
-		out.writeInt(getSize() - 8);// ChunkSize
+		final int chunkSizePosition = out.beginSize();// ChunkSize
 		for (int i = 0; i < helper.length; i++) {
 			helper[i].save(out);
 		}
-
+		out.endChunkSize(chunkSizePosition);
 	}
 
 	public int getSize() {
@@ -50,12 +50,12 @@ public class HelperChunk {
 	public class Helper {
 		public Node node = new Node();
 
-		public void load(BlizzardDataInputStream in) throws IOException {
+		public void load(BlizzardDataInputBuffer in) throws IOException {
 			node = new Node();
 			node.load(in);
 		}
 
-		public void save(BlizzardDataOutputStream out) throws IOException {
+		public void save(BlizzardDataOutputBuffer out) throws IOException {
 			node.save(out);
 
 		}
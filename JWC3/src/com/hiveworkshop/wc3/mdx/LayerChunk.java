@@ -4,15 +4,15 @@ import java.io.IOException;
 
 import com.hiveworkshop.wc3.mdl.AnimFlag;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class LayerChunk {
 	public Layer[] layer = new Layer[0];
 
 	public static final String key = "LAYS";
 
-	public void load(final BlizzardDataInputStream in) throws IOException {
+	public void load(final BlizzardDataInputBuffer in) throws IOException {
 		MdxUtils.checkId(in, "LAYS");
 		final int nrOfLayers = in.readInt();
 		layer = new Layer[nrOfLayers];
@@ -22,7 +22,7 @@ public class LayerChunk {
 		}
 	}
 
-	public void save(final BlizzardDataOutputStream out) throws IOException {
+	public void save(final BlizzardDataOutputBuffer out) throws IOException {
 		final int nrOfLayers = layer.length;
 		out.writeNByteString("LAYS", 4);
 		out.writeInt(nrOfLayers);
@@ -53,7 +53,7 @@ public class LayerChunk {
 		public MaterialAlpha materialAlpha;
 		public MaterialTextureId materialTextureId;
 
-		public void load(final BlizzardDataInputStream in) throws IOException {
+		public void load(final BlizzardDataInputBuffer in) throws IOException {
 			final int inclusiveSize = in.readInt();
 			filterMode = in.readInt();
 			shadingFlags = in.readInt();
@@ -73,8 +73,8 @@ public class LayerChunk {
 			}
 		}
 
-		public void save(final BlizzardDataOutputStream out) throws IOException {
-			out.writeInt(getSize());// InclusiveSize
+		public void save(final BlizzardDataOutputBuffer out) throws IOException {
+			final int inclusiveSizePosition = out.beginSize();// InclusiveSize
 			out.writeInt(filterMode);
 			out.writeInt(shadingFlags);
 			out.writeInt(textureId);
@@ -87,7 +87,7 @@ public class LayerChunk {
 			if (materialTextureId != null) {
 				materialTextureId.save(out);
 			}
-
+			out.endInclusiveSize(inclusiveSizePosition);
 		}
 
 		public int getSize() {
@@ -0,0 +1,278 @@
+package com.hiveworkshop.wc3.mdx;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import de.wc3data.stream.BlizzardDataInputBuffer;
+
+/**
+ * An MDX model whose chunks are only decoded when they are first asked for.
+ *
+ * Opening the model only reads the tag and size of every top level chunk into a directory. Callers that
+ * need a few chunks, such as the textures or sequences of many models, never pay for decoding geosets,
+ * nodes and their animation tracks. The data must not change while chunks may still be decoded.
+ *
+ * The chunk getters return null for chunks the model does not have.
+ */
+public class LazyMdxModel {
+	private final ByteBuffer data;
+	private final Map<String, Integer> chunkOffsets = new LinkedHashMap<>();
+	private final MdxModel model = new MdxModel();
+
+	/**
+	 * @param data
+	 *            the model from its position to its limit, such as a mapped file or a buffer from a codebase
+	 * @throws IOException
+	 *             if the data is not a model or a chunk runs past the end
+	 */
+	public LazyMdxModel(final ByteBuffer data) throws IOException {
+		this.data = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		final BlizzardDataInputBuffer in = new BlizzardDataInputBuffer(data);
+		MdxUtils.checkId(in, MdxModel.key);
+		while (in.remaining() >= 8) {
+			final int offset = (int) in.getOffset();
+			final String tag = in.readCharsAsString(4);
+			final int chunkSize = in.readInt();
+			if ((chunkSize < 0) || (chunkSize > in.remaining())) {
+				throw new IOException("Error loading model: chunk " + tag + " at " + offset + " has size "
+						+ chunkSize + " but only " + in.remaining() + " bytes are left");
+			}
+			// a repeated chunk replaces the earlier one, as it does when loading eagerly
+			chunkOffsets.put(tag, offset);
+			in.skip(chunkSize);
+		}
+	}
+
+	/**
+	 * @return tags of the top level chunks in the model
+	 */
+	public Set<String> getChunkTags() {
+		return Collections.unmodifiableSet(chunkOffsets.keySet());
+	}
+
+	public boolean hasChunk(final String tag) {
+		return chunkOffsets.containsKey(tag);
+	}
+
+	/**
+	 * Decodes every chunk not decoded yet.
+	 *
+	 * @return the whole model, shared with this object
+	 */
+	public MdxModel getModel() throws IOException {
+		getVersionChunk();
+		getModelChunk();
+		getSequenceChunk();
+		getGlobalSequenceChunk();
+		getMaterialChunk();
+		getTextureChunk();
+		getTextureAnimationChunk();
+		getGeosetChunk();
+		getGeosetAnimationChunk();
+		getBoneChunk();
+		getLightChunk();
+		getHelperChunk();
+		getAttachmentChunk();
+		getPivotPointChunk();
+		getParticleEmitterChunk();
+		getParticleEmitter2Chunk();
+		getRibbonEmitterChunk();
+		getEventObjectChunk();
+		getCameraChunk();
+		getCollisionShapeChunk();
+		return model;
+	}
+
+	public VersionChunk getVersionChunk() throws IOException {
+		if ((model.versionChunk == null) && hasChunk(VersionChunk.key)) {
+			final VersionChunk chunk = new VersionChunk();
+			chunk.load(open(VersionChunk.key));
+			model.versionChunk = chunk;
+		}
+		return model.versionChunk;
+	}
+
+	public ModelChunk getModelChunk() throws IOException {
+		if ((model.modelChunk == null) && hasChunk(ModelChunk.key)) {
+			final ModelChunk chunk = new ModelChunk();
+			chunk.load(open(ModelChunk.key));
+			model.modelChunk = chunk;
+		}
+		return model.modelChunk;
+	}
+
+	public SequenceChunk getSequenceChunk() throws IOException {
+		if ((model.sequenceChunk == null) && hasChunk(SequenceChunk.key)) {
+			final SequenceChunk chunk = new SequenceChunk();
+			chunk.load(open(SequenceChunk.key));
+			model.sequenceChunk = chunk;
+		}
+		return model.sequenceChunk;
+	}
+
+	public GlobalSequenceChunk getGlobalSequenceChunk() throws IOException {
+		if ((model.globalSequenceChunk == null) && hasChunk(GlobalSequenceChunk.key)) {
+			final GlobalSequenceChunk chunk = new GlobalSequenceChunk();
+			chunk.load(open(GlobalSequenceChunk.key));
+			model.globalSequenceChunk = chunk;
+		}
+		return model.globalSequenceChunk;
+	}
+
+	public MaterialChunk getMaterialChunk() throws IOException {
+		if ((model.materialChunk == null) && hasChunk(MaterialChunk.key)) {
+			final MaterialChunk chunk = new MaterialChunk();
+			chunk.load(open(MaterialChunk.key));
+			model.materialChunk = chunk;
+		}
+		return model.materialChunk;
+	}
+
+	public TextureChunk getTextureChunk() throws IOException {
+		if ((model.textureChunk == null) && hasChunk(TextureChunk.key)) {
+			final TextureChunk chunk = new TextureChunk();
+			chunk.load(open(TextureChunk.key));
+			model.textureChunk = chunk;
+		}
+		return model.textureChunk;
+	}
+
+	public TextureAnimationChunk getTextureAnimationChunk() throws IOException {
+		if ((model.textureAnimationChunk == null) && hasChunk(TextureAnimationChunk.key)) {
+			final TextureAnimationChunk chunk = new TextureAnimationChunk();
+			chunk.load(open(TextureAnimationChunk.key));
+			model.textureAnimationChunk = chunk;
+		}
+		return model.textureAnimationChunk;
+	}
+
+	public GeosetChunk getGeosetChunk() throws IOException {
+		if ((model.geosetChunk == null) && hasChunk(GeosetChunk.key)) {
+			final GeosetChunk chunk = new GeosetChunk();
+			chunk.load(open(GeosetChunk.key));
+			model.geosetChunk = chunk;
+		}
+		return model.geosetChunk;
+	}
+
+	public GeosetAnimationChunk getGeosetAnimationChunk() throws IOException {
+		if ((model.geosetAnimationChunk == null) && hasChunk(GeosetAnimationChunk.key)) {
+			final GeosetAnimationChunk chunk = new GeosetAnimationChunk();
+			chunk.load(open(GeosetAnimationChunk.key));
+			model.geosetAnimationChunk = chunk;
+		}
+		return model.geosetAnimationChunk;
+	}
+
+	public BoneChunk getBoneChunk() throws IOException {
+		if ((model.boneChunk == null) && hasChunk(BoneChunk.key)) {
+			final BoneChunk chunk = new BoneChunk();
+			chunk.load(open(BoneChunk.key));
+			model.boneChunk = chunk;
+		}
+		return model.boneChunk;
+	}
+
+	public LightChunk getLightChunk() throws IOException {
+		if ((model.lightChunk == null) && hasChunk(LightChunk.key)) {
+			final LightChunk chunk = new LightChunk();
+			chunk.load(open(LightChunk.key));
+			model.lightChunk = chunk;
+		}
+		return model.lightChunk;
+	}
+
+	public HelperChunk getHelperChunk() throws IOException {
+		if ((model.helperChunk == null) && hasChunk(HelperChunk.key)) {
+			final HelperChunk chunk = new HelperChunk();
+			chunk.load(open(HelperChunk.key));
+			model.helperChunk = chunk;
+		}
+		return model.helperChunk;
+	}
+
+	public AttachmentChunk getAttachmentChunk() throws IOException {
+		if ((model.attachmentChunk == null) && hasChunk(AttachmentChunk.key)) {
+			final AttachmentChunk chunk = new AttachmentChunk();
+			chunk.load(open(AttachmentChunk.key));
+			model.attachmentChunk = chunk;
+		}
+		return model.attachmentChunk;
+	}
+
+	public PivotPointChunk getPivotPointChunk() throws IOException {
+		if ((model.pivotPointChunk == null) && hasChunk(PivotPointChunk.key)) {
+			final PivotPointChunk chunk = new PivotPointChunk();
+			chunk.load(open(PivotPointChunk.key));
+			model.pivotPointChunk = chunk;
+		}
+		return model.pivotPointChunk;
+	}
+
+	public ParticleEmitterChunk getParticleEmitterChunk() throws IOException {
+		if ((model.particleEmitterChunk == null) && hasChunk(ParticleEmitterChunk.key)) {
+			final ParticleEmitterChunk chunk = new ParticleEmitterChunk();
+			chunk.load(open(ParticleEmitterChunk.key));
+			model.particleEmitterChunk = chunk;
+		}
+		return model.particleEmitterChunk;
+	}
+
+	public ParticleEmitter2Chunk getParticleEmitter2Chunk() throws IOException {
+		if ((model.particleEmitter2Chunk == null) && hasChunk(ParticleEmitter2Chunk.key)) {
+			final ParticleEmitter2Chunk chunk = new ParticleEmitter2Chunk();
+			chunk.load(open(ParticleEmitter2Chunk.key));
+			model.particleEmitter2Chunk = chunk;
+		}
+		return model.particleEmitter2Chunk;
+	}
+
+	public RibbonEmitterChunk getRibbonEmitterChunk() throws IOException {
+		if ((model.ribbonEmitterChunk == null) && hasChunk(RibbonEmitterChunk.key)) {
+			final RibbonEmitterChunk chunk = new RibbonEmitterChunk();
+			chunk.load(open(RibbonEmitterChunk.key));
+			model.ribbonEmitterChunk = chunk;
+		}
+		return model.ribbonEmitterChunk;
+	}
+
+	public EventObjectChunk getEventObjectChunk() throws IOException {
+		if ((model.eventObjectChunk == null) && hasChunk(EventObjectChunk.key)) {
+			final EventObjectChunk chunk = new EventObjectChunk();
+			chunk.load(open(EventObjectChunk.key));
+			model.eventObjectChunk = chunk;
+		}
+		return model.eventObjectChunk;
+	}
+
+	public CameraChunk getCameraChunk() throws IOException {
+		if ((model.cameraChunk == null) && hasChunk(CameraChunk.key)) {
+			final CameraChunk chunk = new CameraChunk();
+			chunk.load(open(CameraChunk.key));
+			model.cameraChunk = chunk;
+		}
+		return model.cameraChunk;
+	}
+
+	public CollisionShapeChunk getCollisionShapeChunk() throws IOException {
+		if ((model.collisionShapeChunk == null) && hasChunk(CollisionShapeChunk.key)) {
+			final CollisionShapeChunk chunk = new CollisionShapeChunk();
+			chunk.load(open(CollisionShapeChunk.key));
+			model.collisionShapeChunk = chunk;
+		}
+		return model.collisionShapeChunk;
+	}
+
+	private BlizzardDataInputBuffer open(final String tag) {
+		final int offset = chunkOffsets.get(tag);
+		final ByteBuffer chunk = data.duplicate();
+		chunk.limit(offset + 8 + data.getInt(offset + 4));
+		chunk.position(offset);
+		return new BlizzardDataInputBuffer(chunk);
+	}
+}
@@ -7,15 +7,15 @@ import java.util.List;
 import com.hiveworkshop.wc3.mdl.AnimFlag;
 import com.hiveworkshop.wc3.mdl.Vertex;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class LightChunk {
 	public Light[] light = new Light[0];
 
 	public static final String key = "LITE";
 
-	public void load(final BlizzardDataInputStream in) throws IOException {
+	public void load(final BlizzardDataInputBuffer in) throws IOException {
 		MdxUtils.checkId(in, "LITE");
 		final int chunkSize = in.readInt();
 		final List<Light> lightList = new ArrayList();
@@ -29,14 +29,14 @@ public class LightChunk {
 		light = lightList.toArray(new Light[lightList.size()]);
 	}
 
-	public void save(final BlizzardDataOutputStream out) throws IOException {
+	public void save(final BlizzardDataOutputBuffer out) throws IOException {
 		final int nrOfLights = light.length;
 		out.writeNByteString("LITE", 4);
-		out.writeInt(getSize() - 8);// ChunkSize
+		final int chunkSizePosition = out.beginSize();// ChunkSize
 		for (int i = 0; i < light.length; i++) {
 			light[i].save(out);
 		}
-
+		out.endChunkSize(chunkSizePosition);
 	}
 
 	public int getSize() {
@@ -65,7 +65,7 @@ public class LightChunk {
 		public LightAmbientColor lightAmbientColor;
 		public LightAmbientIntensity lightAmbientIntensity;
 
-		public void load(final BlizzardDataInputStream in) throws IOException {
+		public void load(final BlizzardDataInputBuffer in) throws IOException {
 			final int inclusiveSize = in.readInt();
 			node = new Node();
 			node.load(in);
@@ -97,8 +97,8 @@ public class LightChunk {
 			}
 		}
 
-		public void save(final BlizzardDataOutputStream out) throws IOException {
-			out.writeInt(getSize());// InclusiveSize
+		public void save(final BlizzardDataOutputBuffer out) throws IOException {
+			final int inclusiveSizePosition = out.beginSize();// InclusiveSize
 			node.save(out);
 			out.writeInt(type);
 			out.writeInt(attenuationStart);
@@ -132,7 +132,7 @@ public class LightChunk {
 			if (lightAmbientIntensity != null) {
 				lightAmbientIntensity.save(out);
 			}
-
+			out.endInclusiveSize(inclusiveSizePosition);
 		}
 
 		public int getSize() {
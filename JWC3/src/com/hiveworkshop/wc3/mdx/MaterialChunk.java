@@ -4,15 +4,15 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class MaterialChunk {
 	public Material[] material = new Material[0];
 
 	public static final String key = "MTLS";
 
-	public void load(BlizzardDataInputStream in) throws IOException {
+	public void load(BlizzardDataInputBuffer in) throws IOException {
 		MdxUtils.checkId(in, "MTLS");
 		int chunkSize = in.readInt();
 		List<Material> materialList = new ArrayList();
@@ -26,14 +26,14 @@ public class MaterialChunk {
 		material = materialList.toArray(new Material[materialList.size()]);
 	}
 
-	public void save(BlizzardDataOutputStream out) throws IOException {
+	public void save(BlizzardDataOutputBuffer out) throws IOException {
 		int nrOfMaterials = material.length;
 		out.writeNByteString("MTLS", 4);
-		out.writeInt(getSize() - 8);// ChunkSize
+		final int chunkSizePosition = out.beginSize();// ChunkSize
 		for (int i = 0; i < material.length; i++) {
 			material[i].save(out);
 		}
-
+		out.endChunkSize(chunkSizePosition);
 	}
 
 	public int getSize() {
@@ -52,7 +52,7 @@ public class MaterialChunk {
 		public int flags;
 		public LayerChunk layerChunk;
 
-		public void load(BlizzardDataInputStream in) throws IOException {
+		public void load(BlizzardDataInputBuffer in) throws IOException {
 			int inclusiveSize = in.readInt();
 			priorityPlane = in.readInt();
 			flags = in.readInt();
@@ -63,14 +63,14 @@ public class MaterialChunk {
 
 		}
 
-		public void save(BlizzardDataOutputStream out) throws IOException {
-			out.writeInt(getSize());// InclusiveSize
+		public void save(BlizzardDataOutputBuffer out) throws IOException {
+			final int inclusiveSizePosition = out.beginSize();// InclusiveSize
 			out.writeInt(priorityPlane);
 			out.writeInt(flags);
 			if (layerChunk != null) {
 				layerChunk.save(out);
 			}
-
+			out.endInclusiveSize(inclusiveSizePosition);
 		}
 
 		public int getSize() {
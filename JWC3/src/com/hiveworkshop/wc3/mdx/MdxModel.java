@@ -22,7 +22,8 @@ import com.hiveworkshop.wc3.mdl.RibbonEmitter;
 import com.hiveworkshop.wc3.mdl.Vertex;
 import com.hiveworkshop.wc3.mdx.SequenceChunk.Sequence;
 
-import de.wc3data.stream.BlizzardDataInputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 import de.wc3data.stream.BlizzardDataOutputStream;
 
 public class MdxModel {
@@ -1080,7 +1081,7 @@ public class MdxModel {
 		}
 	}
 
-	public void load(final BlizzardDataInputStream in) throws IOException {
+	public void load(final BlizzardDataInputBuffer in) throws IOException {
 		MdxUtils.checkId(in, "MDLX");
 		for (int i = 0; i < 20; i++) {
 			if (MdxUtils.checkOptionalId(in, VersionChunk.key)) {
@@ -1148,7 +1149,18 @@ public class MdxModel {
 		}
 	}
 
+	/**
+	 * Saves into a buffer and copies the result to the stream, dropping float
+	 * precision if the stream does.
+	 */
 	public void save(final BlizzardDataOutputStream out) throws IOException {
+		final BlizzardDataOutputBuffer buffer = new BlizzardDataOutputBuffer();
+		buffer.setFloatBitMask(out.getFloatBitMask());
+		save(buffer);
+		buffer.writeTo(out);
+	}
+
+	public void save(final BlizzardDataOutputBuffer out) throws IOException {
 		out.writeNByteString("MDLX", 4);
 		if (versionChunk != null) {
 			versionChunk.save(out);
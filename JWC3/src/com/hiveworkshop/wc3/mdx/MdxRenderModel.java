@@ -0,0 +1,264 @@
+package com.hiveworkshop.wc3.mdx;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Read-only render data of an MDX model for previews and thumbnails, built straight from the geoset,
+ * material and texture chunks without creating the editable {@link com.hiveworkshop.wc3.mdl.MDL}.
+ *
+ * Geometry stays in the packed arrays the file stores it in, so building this costs little more than
+ * reading those chunks. Nodes, animations and emitters are never decoded. The arrays are shared, not
+ * copied, and must not be modified.
+ */
+public class MdxRenderModel {
+	private static final int FACE_TYPE_TRIANGLES = 4;
+
+	private final Geoset[] geosets;
+	private final float boundsRadius;
+	private final float[] minimumExtent;
+	private final float[] maximumExtent;
+
+	public static MdxRenderModel load(final ByteBuffer data) throws IOException {
+		return new MdxRenderModel(new LazyMdxModel(data));
+	}
+
+	public MdxRenderModel(final LazyMdxModel model) throws IOException {
+		final ModelChunk modelChunk = model.getModelChunk();
+		if (modelChunk != null) {
+			boundsRadius = modelChunk.boundsRadius;
+			minimumExtent = modelChunk.minimumExtent;
+			maximumExtent = modelChunk.maximumExtent;
+		} else {
+			boundsRadius = 0;
+			minimumExtent = new float[3];
+			maximumExtent = new float[3];
+		}
+
+		final TextureChunk textureChunk = model.getTextureChunk();
+		final TextureChunk.Texture[] textures = textureChunk == null ? new TextureChunk.Texture[0]
+				: textureChunk.texture;
+		final MaterialChunk materialChunk = model.getMaterialChunk();
+		final MaterialChunk.Material[] materials = materialChunk == null ? new MaterialChunk.Material[0]
+				: materialChunk.material;
+		final GeosetChunk geosetChunk = model.getGeosetChunk();
+		final GeosetChunk.Geoset[] mdxGeosets = geosetChunk == null ? new GeosetChunk.Geoset[0]
+				: geosetChunk.geoset;
+
+		geosets = new Geoset[mdxGeosets.length];
+		for (int i = 0; i < mdxGeosets.length; i++) {
+			final GeosetChunk.Geoset mdxGeoset = mdxGeosets[i];
+			Layer[] layers = new Layer[0];
+			if ((mdxGeoset.materialId >= 0) && (mdxGeoset.materialId < materials.length)
+					&& (materials[mdxGeoset.materialId].layerChunk != null)) {
+				final LayerChunk.Layer[] mdxLayers = materials[mdxGeoset.materialId].layerChunk.layer;
+				layers = new Layer[mdxLayers.length];
+				for (int j = 0; j < mdxLayers.length; j++) {
+					final LayerChunk.Layer mdxLayer = mdxLayers[j];
+					TextureChunk.Texture texture = null;
+					if ((mdxLayer.textureId >= 0) && (mdxLayer.textureId < textures.length)) {
+						texture = textures[mdxLayer.textureId];
+					}
+					layers[j] = new Layer(mdxLayer, texture);
+				}
+			}
+			geosets[i] = new Geoset(mdxGeoset, triangles(mdxGeoset), layers);
+		}
+	}
+
+	/**
+	 * @return the face indices of the geoset that form triangles, skipping any other face types
+	 */
+	private static short[] triangles(final GeosetChunk.Geoset geoset) {
+		boolean onlyTriangles = true;
+		int triangleIndexCount = 0;
+		for (int i = 0; (i < geoset.faceTypeGroups.length) && (i < geoset.faceGroups.length); i++) {
+			if (geoset.faceTypeGroups[i] == FACE_TYPE_TRIANGLES) {
+				triangleIndexCount += geoset.faceGroups[i];
+			} else {
+				onlyTriangles = false;
+			}
+		}
+		if (onlyTriangles) {
+			return geoset.faces;
+		}
+		final short[] indices = new short[Math.min(triangleIndexCount, geoset.faces.length)];
+		int from = 0;
+		int to = 0;
+		for (int i = 0; (i < geoset.faceTypeGroups.length) && (i < geoset.faceGroups.length); i++) {
+			final int count = Math.min(geoset.faceGroups[i], geoset.faces.length - from);
+			if (geoset.faceTypeGroups[i] == FACE_TYPE_TRIANGLES) {
+				System.arraycopy(geoset.faces, from, indices, to, count);
+				to += count;
+			}
+			from += count;
+		}
+		return indices;
+	}
+
+	public Geoset[] getGeosets() {
+		return geosets;
+	}
+
+	public float getBoundsRadius() {
+		return boundsRadius;
+	}
+
+	public float[] getMinimumExtent() {
+		return minimumExtent;
+	}
+
+	public float[] getMaximumExtent() {
+		return maximumExtent;
+	}
+
+	public static final class Geoset {
+		private final float[] positions;
+		private final float[] normals;
+		private final float[][] uvSets;
+		private final short[] indices;
+		private final Layer[] layers;
+		private final float boundsRadius;
+		private final float[] minimumExtent;
+		private final float[] maximumExtent;
+
+		private Geoset(final GeosetChunk.Geoset geoset, final short[] indices, final Layer[] layers) {
+			positions = geoset.vertexPositions;
+			normals = geoset.vertexNormals;
+			uvSets = geoset.vertexTexturePositions;
+			this.indices = indices;
+			this.layers = layers;
+			boundsRadius = geoset.boundsRadius;
+			minimumExtent = geoset.minimumExtent;
+			maximumExtent = geoset.maximumExtent;
+		}
+
+		public int getVertexCount() {
+			return positions.length / 3;
+		}
+
+		/**
+		 * @return x, y and z of every vertex
+		 */
+		public float[] getPositions() {
+			return positions;
+		}
+
+		/**
+		 * @return x, y and z of the normal of every vertex, empty if the geoset has none
+		 */
+		public float[] getNormals() {
+			return normals;
+		}
+
+		/**
+		 * @return u and v of every vertex in the given texture coordinate set, or null if the geoset has no
+		 *         texture coordinates
+		 */
+		public float[] getUVs(final int coordId) {
+			if (uvSets.length == 0) {
+				return null;
+			}
+			return uvSets[Math.max(0, Math.min(coordId, uvSets.length - 1))];
+		}
+
+		/**
+		 * @return three vertex indices per triangle, read them unsigned with {@link #getIndex(int)}
+		 */
+		public short[] getIndices() {
+			return indices;
+		}
+
+		public int getIndex(final int i) {
+			return indices[i] & 0xFFFF;
+		}
+
+		public int getTriangleCount() {
+			return indices.length / 3;
+		}
+
+		/**
+		 * @return layers of the material of the geoset in the order they are drawn
+		 */
+		public Layer[] getLayers() {
+			return layers;
+		}
+
+		/**
+		 * @return true if every layer adds to what is behind it, as glows and effects do
+		 */
+		public boolean isOnlyAdditive() {
+			for (final Layer layer : layers) {
+				if (!layer.isAdditive()) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		public float getBoundsRadius() {
+			return boundsRadius;
+		}
+
+		public float[] getMinimumExtent() {
+			return minimumExtent;
+		}
+
+		public float[] getMaximumExtent() {
+			return maximumExtent;
+		}
+	}
+
+	public static final class Layer {
+		private final int filterMode;
+		private final int shadingFlags;
+		private final int coordId;
+		private final float alpha;
+		private final String texturePath;
+		private final int replaceableId;
+
+		private Layer(final LayerChunk.Layer layer, final TextureChunk.Texture texture) {
+			filterMode = layer.filterMode;
+			shadingFlags = layer.shadingFlags;
+			coordId = layer.unknownNull_CoordID;
+			alpha = layer.alpha;
+			texturePath = texture == null ? "" : texture.fileName;
+			replaceableId = texture == null ? 0 : texture.replaceableId;
+		}
+
+		/**
+		 * @return filter mode id, as in {@link com.hiveworkshop.wc3.mdl.Layer.FilterMode#fromId(int)}
+		 */
+		public int getFilterMode() {
+			return filterMode;
+		}
+
+		public boolean isAdditive() {
+			return (filterMode == com.hiveworkshop.wc3.mdl.Layer.FilterMode.ADDITIVE.ordinal())
+					|| (filterMode == com.hiveworkshop.wc3.mdl.Layer.FilterMode.ADDALPHA.ordinal());
+		}
+
+		public int getShadingFlags() {
+			return shadingFlags;
+		}
+
+		public int getCoordId() {
+			return coordId;
+		}
+
+		public float getAlpha() {
+			return alpha;
+		}
+
+		/**
+		 * @return path of the texture, empty for replaceable textures such as team color
+		 */
+		public String getTexturePath() {
+			return texturePath;
+		}
+
+		public int getReplaceableId() {
+			return replaceableId;
+		}
+	}
+}
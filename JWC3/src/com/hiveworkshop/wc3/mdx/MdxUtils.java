@@ -1,9 +1,11 @@
 package com.hiveworkshop.wc3.mdx;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
+import de.wc3data.stream.BlizzardDataInputBuffer;
 import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class MdxUtils {
 
@@ -19,17 +21,33 @@ public class MdxUtils {
 	 * }
 	 */
 
-	public static MdxModel loadModel(BlizzardDataInputStream in)
+	public static MdxModel loadModel(BlizzardDataInputBuffer in)
 			throws IOException {
 		MdxModel model = new MdxModel();
 		model.load(in);
 		return model;
 	}
 
-	public static boolean checkOptionalId(BlizzardDataInputStream in,
+	public static MdxModel loadModel(ByteBuffer data) throws IOException {
+		return loadModel(new BlizzardDataInputBuffer(data));
+	}
+
+	/**
+	 * Reads the rest of the stream into memory and loads the model from
+	 * there, kept for callers that only have a stream.
+	 */
+	public static MdxModel loadModel(BlizzardDataInputStream in)
+			throws IOException {
+		return loadModel(BlizzardDataInputBuffer.readAll(in));
+	}
+
+	public static boolean checkOptionalId(BlizzardDataInputBuffer in,
 			String name) throws IOException {
+		if (in.remaining() < 4) {
+			return false;
+		}
 
-		in.mark(8);
+		in.mark();
 
 		if (name.equals(in.readCharsAsString(4))) {
 			in.reset();
@@ -40,7 +58,7 @@ public class MdxUtils {
 		return false;
 	}
 
-	public static void checkId(BlizzardDataInputStream in, String name)
+	public static void checkId(BlizzardDataInputBuffer in, String name)
 			throws IOException {
 		String found = in.readCharsAsString(4);
 		if (!found.equals(name)) {
@@ -51,13 +69,13 @@ public class MdxUtils {
 	}
 
 	/*
-	 * public static boolean checkOptionalId(BlizzardDataInputStream in, String
+	 * public static boolean checkOptionalId(BlizzardDataInputBuffer in, String
 	 * name) throws IOException { if(lastCheck == null){ lastCheck =
 	 * in.readCharsAsString(4); }
 	 * 
 	 * return lastCheck.equals(name); }
 	 * 
-	 * public static void checkId(BlizzardDataInputStream in, String name)
+	 * public static void checkId(BlizzardDataInputBuffer in, String name)
 	 * throws IOException {
 	 * 
 	 * if(lastCheck != null){
@@ -75,49 +93,41 @@ public class MdxUtils {
 	 * " found " + found); } } }
 	 */
 
-	public static float[] loadFloatArray(BlizzardDataInputStream in, int size)
+	public static float[] loadFloatArray(BlizzardDataInputBuffer in, int size)
 			throws IOException {
 		float array[] = new float[size];
 
-		for (int i = 0; i < size; i++) {
-			array[i] = in.readFloat();
-		}
+		in.readFloats(array);
 		return array;
 	}
 
-	public static int[] loadIntArray(BlizzardDataInputStream in, int size)
+	public static int[] loadIntArray(BlizzardDataInputBuffer in, int size)
 			throws IOException {
 		int array[] = new int[size];
 
-		for (int i = 0; i < size; i++) {
-			array[i] = in.readInt();
-		}
+		in.readInts(array);
 
 		return array;
 	}
 
-	public static short[] loadShortArray(BlizzardDataInputStream in, int size)
+	public static short[] loadShortArray(BlizzardDataInputBuffer in, int size)
 			throws IOException {
 		short array[] = new short[size];
 
-		for (int i = 0; i < size; i++) {
-			array[i] = (short) (in.readShort() & 0xFFFF);
-		}
+		in.readShorts(array);
 
 		return array;
 	}
 
-	public static byte[] loadByteArray(BlizzardDataInputStream in, int size)
+	public static byte[] loadByteArray(BlizzardDataInputBuffer in, int size)
 			throws IOException {
 		byte array[] = new byte[size];
 
-		for (int i = 0; i < size; i++) {
-			array[i] = in.readByte();
-		}
+		in.readBytes(array);
 		return array;
 	}
 
-	public static char[] loadCharArray(BlizzardDataInputStream in, int size)
+	public static char[] loadCharArray(BlizzardDataInputBuffer in, int size)
 			throws IOException {
 		char array[] = new char[size];
 
@@ -127,35 +137,27 @@ public class MdxUtils {
 		return array;
 	}
 
-	public static void saveFloatArray(BlizzardDataOutputStream out,
+	public static void saveFloatArray(BlizzardDataOutputBuffer out,
 			float[] array) throws IOException {
-		for (int i = 0; i < array.length; i++) {
-			out.writeFloat(array[i]);
-		}
+		out.writeFloats(array);
 	}
 
-	public static void saveIntArray(BlizzardDataOutputStream out, int[] array)
+	public static void saveIntArray(BlizzardDataOutputBuffer out, int[] array)
 			throws IOException {
-		for (int i = 0; i < array.length; i++) {
-			out.writeInt(array[i]);
-		}
+		out.writeInts(array);
 	}
 
-	public static void saveShortArray(BlizzardDataOutputStream out,
+	public static void saveShortArray(BlizzardDataOutputBuffer out,
 			short[] array) throws IOException {
-		for (int i = 0; i < array.length; i++) {
-			out.writeNByteInt(array[i], 2);
-		}
+		out.writeShorts(array);
 	}
 
-	public static void saveByteArray(BlizzardDataOutputStream out, byte[] array)
+	public static void saveByteArray(BlizzardDataOutputBuffer out, byte[] array)
 			throws IOException {
-		for (int i = 0; i < array.length; i++) {
-			out.writeByte(array[i]);
-		}
+		out.writeBytes(array);
 	}
 
-	public static void saveCharArray(BlizzardDataOutputStream out, char[] array)
+	public static void saveCharArray(BlizzardDataOutputBuffer out, char[] array)
 			throws IOException {
 		out.writeChars(array);
 	}
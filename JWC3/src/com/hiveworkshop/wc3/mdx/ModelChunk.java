@@ -2,8 +2,8 @@ package com.hiveworkshop.wc3.mdx;
 
 import java.io.IOException;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class ModelChunk {
 	public String name = "";
@@ -15,7 +15,7 @@ public class ModelChunk {
 
 	public static final String key = "MODL";
 
-	public void load(final BlizzardDataInputStream in) throws IOException {
+	public void load(final BlizzardDataInputBuffer in) throws IOException {
 		MdxUtils.checkId(in, "MODL");
 		final int chunkSize = in.readInt();
 		name = in.readCharsAsString(336);
@@ -30,9 +30,9 @@ public class ModelChunk {
 		blendTime = in.readInt();
 	}
 
-	public void save(final BlizzardDataOutputStream out) throws IOException {
+	public void save(final BlizzardDataOutputBuffer out) throws IOException {
 		out.writeNByteString("MODL", 4);
-		out.writeInt(getSize() - 8);// ChunkSize
+		final int chunkSizePosition = out.beginSize();// ChunkSize
 		out.writeNByteString(name, 336);
 		out.writeInt(unknownNull);
 		out.writeFloat(boundsRadius);
@@ -49,7 +49,7 @@ public class ModelChunk {
 		}
 		MdxUtils.saveFloatArray(out, maximumExtent);
 		out.writeInt(blendTime);
-
+		out.endChunkSize(chunkSizePosition);
 	}
 
 	public int getSize() {
@@ -7,8 +7,8 @@ import com.hiveworkshop.wc3.mdl.IdObject;
 import com.hiveworkshop.wc3.mdl.QuaternionRotation;
 import com.hiveworkshop.wc3.mdl.Vertex;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class Node {
 	public static final boolean LOG_DISCARDED_FLAGS = false;
@@ -21,7 +21,7 @@ public class Node {
 	public GeosetRotation geosetRotation;
 	public GeosetScaling geosetScaling;
 
-	public void load(final BlizzardDataInputStream in) throws IOException {
+	public void load(final BlizzardDataInputBuffer in) throws IOException {
 		final int inclusiveSize = in.readInt();
 		name = in.readCharsAsString(80);
 		objectId = in.readInt();
@@ -42,8 +42,8 @@ public class Node {
 		}
 	}
 
-	public void save(final BlizzardDataOutputStream out) throws IOException {
-		out.writeInt(getSize());// InclusiveSize
+	public void save(final BlizzardDataOutputBuffer out) throws IOException {
+		final int inclusiveSizePosition = out.beginSize();// InclusiveSize
 		out.writeNByteString(name, 80);
 		out.writeInt(objectId);
 		out.writeInt(parentId);
@@ -57,7 +57,7 @@ public class Node {
 		if (geosetScaling != null) {
 			geosetScaling.save(out);
 		}
-
+		out.endInclusiveSize(inclusiveSizePosition);
 	}
 
 	public int getSize() {
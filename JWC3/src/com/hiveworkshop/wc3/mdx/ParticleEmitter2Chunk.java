@@ -7,15 +7,15 @@ import java.util.List;
 import com.hiveworkshop.wc3.mdl.AnimFlag;
 import com.hiveworkshop.wc3.mdl.Vertex;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class ParticleEmitter2Chunk {
 	public ParticleEmitter2[] particleEmitter2 = new ParticleEmitter2[0];
 
 	public static final String key = "PRE2";
 
-	public void load(final BlizzardDataInputStream in) throws IOException {
+	public void load(final BlizzardDataInputBuffer in) throws IOException {
 		MdxUtils.checkId(in, "PRE2");
 		final int chunkSize = in.readInt();
 		final List<ParticleEmitter2> particleEmitter2List = new ArrayList();
@@ -29,14 +29,14 @@ public class ParticleEmitter2Chunk {
 		particleEmitter2 = particleEmitter2List.toArray(new ParticleEmitter2[particleEmitter2List.size()]);
 	}
 
-	public void save(final BlizzardDataOutputStream out) throws IOException {
+	public void save(final BlizzardDataOutputBuffer out) throws IOException {
 		final int nrOfParticleEmitters2 = particleEmitter2.length;
 		out.writeNByteString("PRE2", 4);
-		out.writeInt(getSize() - 8);// ChunkSize
+		final int chunkSizePosition = out.beginSize();// ChunkSize
 		for (int i = 0; i < particleEmitter2.length; i++) {
 			particleEmitter2[i].save(out);
 		}
-
+		out.endChunkSize(chunkSizePosition);
 	}
 
 	public int getSize() {
@@ -92,7 +92,7 @@ public class ParticleEmitter2Chunk {
 		public ParticleEmitter2Speed particleEmitter2Speed;
 		public ParticleEmitter2Latitude particleEmitter2Latitude;
 
-		public void load(final BlizzardDataInputStream in) throws IOException {
+		public void load(final BlizzardDataInputBuffer in) throws IOException {
 			final int inclusiveSize = in.readInt();
 			node = new Node();
 			node.load(in);
@@ -153,8 +153,8 @@ public class ParticleEmitter2Chunk {
 			}
 		}
 
-		public void save(final BlizzardDataOutputStream out) throws IOException {
-			out.writeInt(getSize());// InclusiveSize
+		public void save(final BlizzardDataOutputBuffer out) throws IOException {
+			final int inclusiveSizePosition = out.beginSize();// InclusiveSize
 			node.save(out);
 			out.writeFloat(speed);
 			out.writeFloat(variation);
@@ -222,7 +222,7 @@ public class ParticleEmitter2Chunk {
 			if (particleEmitter2Latitude != null) {
 				particleEmitter2Latitude.save(out);
 			}
-
+			out.endInclusiveSize(inclusiveSizePosition);
 		}
 
 		public int getSize() {
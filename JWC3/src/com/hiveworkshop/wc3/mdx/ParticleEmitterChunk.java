@@ -6,15 +6,15 @@ import java.util.List;
 
 import com.hiveworkshop.wc3.mdl.AnimFlag;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class ParticleEmitterChunk {
 	public ParticleEmitter[] particleEmitter = new ParticleEmitter[0];
 
 	public static final String key = "PREM";
 
-	public void load(final BlizzardDataInputStream in) throws IOException {
+	public void load(final BlizzardDataInputBuffer in) throws IOException {
 		MdxUtils.checkId(in, "PREM");
 		final int chunkSize = in.readInt();
 		final List<ParticleEmitter> particleEmitterList = new ArrayList();
@@ -28,14 +28,14 @@ public class ParticleEmitterChunk {
 		particleEmitter = particleEmitterList.toArray(new ParticleEmitter[particleEmitterList.size()]);
 	}
 
-	public void save(final BlizzardDataOutputStream out) throws IOException {
+	public void save(final BlizzardDataOutputBuffer out) throws IOException {
 		final int nrOfParticleEmitters = particleEmitter.length;
 		out.writeNByteString("PREM", 4);
-		out.writeInt(getSize() - 8);// ChunkSize
+		final int chunkSizePosition = out.beginSize();// ChunkSize
 		for (int i = 0; i < particleEmitter.length; i++) {
 			particleEmitter[i].save(out);
 		}
-
+		out.endChunkSize(chunkSizePosition);
 	}
 
 	public int getSize() {
@@ -61,7 +61,7 @@ public class ParticleEmitterChunk {
 		public float initialVelocity;
 		public ParticleEmitterVisibility particleEmitterVisibility;
 
-		public void load(final BlizzardDataInputStream in) throws IOException {
+		public void load(final BlizzardDataInputBuffer in) throws IOException {
 			final int inclusiveSize = in.readInt();
 			node = new Node();
 			node.load(in);
@@ -80,8 +80,8 @@ public class ParticleEmitterChunk {
 
 		}
 
-		public void save(final BlizzardDataOutputStream out) throws IOException {
-			out.writeInt(getSize());// InclusiveSize
+		public void save(final BlizzardDataOutputBuffer out) throws IOException {
+			final int inclusiveSizePosition = out.beginSize();// InclusiveSize
 			node.save(out);
 			out.writeFloat(emissionRate);
 			out.writeFloat(gravity);
@@ -94,7 +94,7 @@ public class ParticleEmitterChunk {
 			if (particleEmitterVisibility != null) {
 				particleEmitterVisibility.save(out);
 			}
-
+			out.endInclusiveSize(inclusiveSizePosition);
 		}
 
 		public int getSize() {
@@ -7,15 +7,15 @@ import java.util.List;
 import com.hiveworkshop.wc3.mdl.AnimFlag;
 import com.hiveworkshop.wc3.mdl.MdlxUtils;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class RibbonEmitterChunk {
 	public RibbonEmitter[] ribbonEmitter = new RibbonEmitter[0];
 
 	public static final String key = "RIBB";
 
-	public void load(final BlizzardDataInputStream in) throws IOException {
+	public void load(final BlizzardDataInputBuffer in) throws IOException {
 		MdxUtils.checkId(in, "RIBB");
 		final int chunkSize = in.readInt();
 		final List<RibbonEmitter> ribbonEmitterList = new ArrayList();
@@ -29,14 +29,14 @@ public class RibbonEmitterChunk {
 		ribbonEmitter = ribbonEmitterList.toArray(new RibbonEmitter[ribbonEmitterList.size()]);
 	}
 
-	public void save(final BlizzardDataOutputStream out) throws IOException {
+	public void save(final BlizzardDataOutputBuffer out) throws IOException {
 		final int nrOfRibbonEmitters = ribbonEmitter.length;
 		out.writeNByteString("RIBB", 4);
-		out.writeInt(getSize() - 8);// ChunkSize
+		final int chunkSizePosition = out.beginSize();// ChunkSize
 		for (int i = 0; i < ribbonEmitter.length; i++) {
 			ribbonEmitter[i].save(out);
 		}
-
+		out.endChunkSize(chunkSizePosition);
 	}
 
 	public int getSize() {
@@ -67,7 +67,7 @@ public class RibbonEmitterChunk {
 		public RibbonEmitterHeightAbove ribbonEmitterHeightAbove;
 		public RibbonEmitterHeightBelow ribbonEmitterHeightBelow;
 
-		public void load(final BlizzardDataInputStream in) throws IOException {
+		public void load(final BlizzardDataInputBuffer in) throws IOException {
 			final int inclusiveSize = in.readInt();
 			node = new Node();
 			node.load(in);
@@ -97,8 +97,8 @@ public class RibbonEmitterChunk {
 			}
 		}
 
-		public void save(final BlizzardDataOutputStream out) throws IOException {
-			out.writeInt(getSize());// InclusiveSize
+		public void save(final BlizzardDataOutputBuffer out) throws IOException {
+			final int inclusiveSizePosition = out.beginSize();// InclusiveSize
 			node.save(out);
 			out.writeFloat(heightAbove);
 			out.writeFloat(heightBelow);
@@ -125,7 +125,7 @@ public class RibbonEmitterChunk {
 			if (ribbonEmitterHeightBelow != null) {
 				ribbonEmitterHeightBelow.save(out);
 			}
-
+			out.endInclusiveSize(inclusiveSizePosition);
 		}
 
 		public int getSize() {
@@ -6,15 +6,15 @@ import java.util.List;
 
 import com.hiveworkshop.wc3.mdl.Animation;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class SequenceChunk {
 	public Sequence[] sequence = new Sequence[0];
 
 	public static final String key = "SEQS";
 
-	public void load(final BlizzardDataInputStream in) throws IOException {
+	public void load(final BlizzardDataInputBuffer in) throws IOException {
 		MdxUtils.checkId(in, "SEQS");
 		final int chunkSize = in.readInt();
 		final List<Sequence> sequenceList = new ArrayList();
@@ -28,14 +28,14 @@ public class SequenceChunk {
 		sequence = sequenceList.toArray(new Sequence[sequenceList.size()]);
 	}
 
-	public void save(final BlizzardDataOutputStream out) throws IOException {
+	public void save(final BlizzardDataOutputBuffer out) throws IOException {
 		final int nrOfSequences = sequence.length;
 		out.writeNByteString("SEQS", 4);
-		out.writeInt(getSize() - 8);// ChunkSize
+		final int chunkSizePosition = out.beginSize();// ChunkSize
 		for (int i = 0; i < sequence.length; i++) {
 			sequence[i].save(out);
 		}
-
+		out.endChunkSize(chunkSizePosition);
 	}
 
 	public int getSize() {
@@ -61,7 +61,7 @@ public class SequenceChunk {
 		public float[] minimumExtent = new float[3];
 		public float[] maximumExtent = new float[3];
 
-		public void load(final BlizzardDataInputStream in) throws IOException {
+		public void load(final BlizzardDataInputBuffer in) throws IOException {
 			name = in.readCharsAsString(80);
 			intervalStart = in.readInt();
 			intervalEnd = in.readInt();
@@ -74,7 +74,7 @@ public class SequenceChunk {
 			maximumExtent = MdxUtils.loadFloatArray(in, 3);
 		}
 
-		public void save(final BlizzardDataOutputStream out) throws IOException {
+		public void save(final BlizzardDataOutputBuffer out) throws IOException {
 			out.writeNByteString(name, 80);
 			out.writeInt(intervalStart);
 			out.writeInt(intervalEnd);
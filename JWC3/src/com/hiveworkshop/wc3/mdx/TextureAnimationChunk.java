@@ -9,15 +9,15 @@ import com.hiveworkshop.wc3.mdl.QuaternionRotation;
 import com.hiveworkshop.wc3.mdl.TextureAnim;
 import com.hiveworkshop.wc3.mdl.Vertex;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class TextureAnimationChunk {
 	public TextureAnimation[] textureAnimation = new TextureAnimation[0];
 
 	public static final String key = "TXAN";
 
-	public void load(BlizzardDataInputStream in) throws IOException {
+	public void load(BlizzardDataInputBuffer in) throws IOException {
 		MdxUtils.checkId(in, "TXAN");
 		int chunkSize = in.readInt();
 		List<TextureAnimation> textureAnimationList = new ArrayList();
@@ -32,14 +32,14 @@ public class TextureAnimationChunk {
 				.toArray(new TextureAnimation[textureAnimationList.size()]);
 	}
 
-	public void save(BlizzardDataOutputStream out) throws IOException {
+	public void save(BlizzardDataOutputBuffer out) throws IOException {
 		int nrOfTextureAnimations = textureAnimation.length;
 		out.writeNByteString("TXAN", 4);
-		out.writeInt(getSize() - 8);// ChunkSize
+		final int chunkSizePosition = out.beginSize();// ChunkSize
 		for (int i = 0; i < textureAnimation.length; i++) {
 			textureAnimation[i].save(out);
 		}
-
+		out.endChunkSize(chunkSizePosition);
 	}
 
 	public int getSize() {
@@ -58,7 +58,7 @@ public class TextureAnimationChunk {
 		public TextureRotation textureRotation;
 		public TextureScaling textureScaling;
 
-		public void load(BlizzardDataInputStream in) throws IOException {
+		public void load(BlizzardDataInputBuffer in) throws IOException {
 			int inclusiveSize = in.readInt();
 			for (int i = 0; i < 3; i++) {
 				if (MdxUtils.checkOptionalId(in, TextureTranslation.key)) {
@@ -75,8 +75,8 @@ public class TextureAnimationChunk {
 			}
 		}
 
-		public void save(BlizzardDataOutputStream out) throws IOException {
-			out.writeInt(getSize());// InclusiveSize
+		public void save(BlizzardDataOutputBuffer out) throws IOException {
+			final int inclusiveSizePosition = out.beginSize();// InclusiveSize
 			if (textureTranslation != null) {
 				textureTranslation.save(out);
 			}
@@ -86,7 +86,7 @@ public class TextureAnimationChunk {
 			if (textureScaling != null) {
 				textureScaling.save(out);
 			}
-
+			out.endInclusiveSize(inclusiveSizePosition);
 		}
 
 		public int getSize() {
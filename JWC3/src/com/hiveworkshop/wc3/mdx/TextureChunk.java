@@ -6,15 +6,15 @@ import java.util.List;
 
 import com.hiveworkshop.wc3.mdl.Bitmap;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class TextureChunk {
 	public Texture[] texture = new Texture[0];
 
 	public static final String key = "TEXS";
 
-	public void load(BlizzardDataInputStream in) throws IOException {
+	public void load(BlizzardDataInputBuffer in) throws IOException {
 		MdxUtils.checkId(in, "TEXS");
 		int chunkSize = in.readInt();
 		List<Texture> textureList = new ArrayList();
@@ -28,14 +28,14 @@ public class TextureChunk {
 		texture = textureList.toArray(new Texture[textureList.size()]);
 	}
 
-	public void save(BlizzardDataOutputStream out) throws IOException {
+	public void save(BlizzardDataOutputBuffer out) throws IOException {
 		int nrOfTextures = texture.length;
 		out.writeNByteString("TEXS", 4);
-		out.writeInt(getSize() - 8);// ChunkSize
+		final int chunkSizePosition = out.beginSize();// ChunkSize
 		for (int i = 0; i < texture.length; i++) {
 			texture[i].save(out);
 		}
-
+		out.endChunkSize(chunkSizePosition);
 	}
 
 	public int getSize() {
@@ -55,14 +55,14 @@ public class TextureChunk {
 		public int unknownNull;
 		public int flags;
 
-		public void load(BlizzardDataInputStream in) throws IOException {
+		public void load(BlizzardDataInputBuffer in) throws IOException {
 			replaceableId = in.readInt();
 			fileName = in.readCharsAsString(256);
 			unknownNull = in.readInt();
 			flags = in.readInt();
 		}
 
-		public void save(BlizzardDataOutputStream out) throws IOException {
+		public void save(BlizzardDataOutputBuffer out) throws IOException {
 			out.writeInt(replaceableId);
 			out.writeNByteString(fileName, 256);
 			out.writeInt(unknownNull);
@@ -2,8 +2,8 @@ package com.hiveworkshop.wc3.mdx;
 
 import java.io.IOException;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class TextureRotation {
 	public int interpolationType;
@@ -12,7 +12,7 @@ public class TextureRotation {
 
 	public static final String key = "KTAR";
 
-	public void load(BlizzardDataInputStream in) throws IOException {
+	public void load(BlizzardDataInputBuffer in) throws IOException {
 		MdxUtils.checkId(in, "KTAR");
 		int nrOfTracks = in.readInt();
 		interpolationType = in.readInt();
@@ -24,7 +24,7 @@ public class TextureRotation {
 		}
 	}
 
-	public void save(BlizzardDataOutputStream out) throws IOException {
+	public void save(BlizzardDataOutputBuffer out) throws IOException {
 		int nrOfTracks = translationTrack.length;
 		out.writeNByteString("KTAR", 4);
 		out.writeInt(nrOfTracks);
@@ -55,7 +55,7 @@ public class TextureRotation {
 		public float[] inTan = new float[4];
 		public float[] outTan = new float[4];
 
-		public void load(BlizzardDataInputStream in) throws IOException {
+		public void load(BlizzardDataInputBuffer in) throws IOException {
 			time = in.readInt();
 			rotation = MdxUtils.loadFloatArray(in, 4);
 			if (interpolationType > 1) {
@@ -64,7 +64,7 @@ public class TextureRotation {
 			}
 		}
 
-		public void save(BlizzardDataOutputStream out) throws IOException {
+		public void save(BlizzardDataOutputBuffer out) throws IOException {
 			out.writeInt(time);
 			if (rotation.length % 4 != 0) {
 				throw new IllegalArgumentException(
@@ -2,8 +2,8 @@ package com.hiveworkshop.wc3.mdx;
 
 import java.io.IOException;
 
-import de.wc3data.stream.BlizzardDataInputStream;
-import de.wc3data.stream.BlizzardDataOutputStream;
+import de.wc3data.stream.BlizzardDataInputBuffer;
+import de.wc3data.stream.BlizzardDataOutputBuffer;
 
 public class Tracks {
 	public int globalSequenceId;
@@ -11,14 +11,14 @@ public class Tracks {
 
 	public static final String key = "KEVT";
 
-	public void load(BlizzardDataInputStream in) throws IOException {
+	public void load(BlizzardDataInputBuffer in) throws IOException {
 		MdxUtils.checkId(in, "KEVT");
 		int nrOfTracks = in.readInt();
 		globalSequenceId = in.readInt();
 		tracks = MdxUtils.loadIntArray(in, nrOfTracks);
 	}
 
-	public void save(BlizzardDataOutputStream out) throws IOException {
+	public void save(BlizzardDataOutputBuffer out) throws IOException {
 		int nrOfTracks = tracks.length;
 		out.writeNByteString("KEVT", 4);
 		out.writeInt(nrOfTracks);
@@ -0,0 +1,148 @@
+package com.hiveworkshop.wc3.mpq;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import mpq.ArchivedFileExtractor;
+import mpq.ArchivedFileStream;
+import mpq.HashLookup;
+import mpq.MPQArchive;
+import mpq.MPQException;
+import mpq.MappedArchiveChannel;
+
+/**
+ * The files of a single archive, such as a map being edited, independent of the installation archives
+ * loaded by {@link MpqCodebase}.
+ */
+public class ArchiveCodebase implements Codebase, Closeable {
+	private final Path path;
+	private final MappedArchiveChannel channel;
+	private final MPQArchive archive;
+	private final ArchivedFileExtractor extractor = new ArchivedFileExtractor();
+	private final Map<String, File> extracted = new ConcurrentHashMap<>();
+
+	public ArchiveCodebase(final Path path) throws IOException, MPQException {
+		this.path = path;
+		channel = MappedArchiveChannel.open(path);
+		try {
+			archive = new MPQArchive(channel);
+		} catch (IOException | MPQException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * @return stream over the file, or null if the archive does not have it
+	 */
+	private ArchivedFileStream openStream(final String filepath) {
+		final HashLookup lookup = new HashLookup(filepath);
+		if (!archive.hasPath(lookup)) {
+			return null;
+		}
+		try {
+			return new ArchivedFileStream(channel, extractor, archive.lookupHash2(lookup));
+		} catch (final MPQException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	@Override
+	public InputStream getResourceAsStream(final String filepath) {
+		final ArchivedFileStream stream = openStream(filepath);
+		return stream == null ? null : Channels.newInputStream(stream);
+	}
+
+	@Override
+	public SeekableByteChannel getResourceAsChannel(final String filepath) {
+		return openStream(filepath);
+	}
+
+	@Override
+	public ByteBuffer getResourceAsBuffer(final String filepath) {
+		final ArchivedFileStream stream = openStream(filepath);
+		if (stream == null) {
+			return null;
+		}
+		try {
+			return stream.readFully();
+		} catch (final IOException e) {
+			e.printStackTrace();
+		} finally {
+			try {
+				stream.close();
+			} catch (final IOException e) {
+				// nothing is held open by file streams
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public File getFile(final String filepath) {
+		final String key = LayeredCodebase.normalize(filepath).toLowerCase();
+		final File cached = extracted.get(key);
+		if (cached != null) {
+			return cached;
+		}
+		final InputStream stream = getResourceAsStream(filepath);
+		if (stream == null) {
+			return null;
+		}
+		try (InputStream in = stream) {
+			final String name = new File(filepath.replace('\\', '/')).getName();
+			final Path target = Files.createTempFile("MatrixEaterExtract", "_" + name);
+			Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+			final File file = target.toFile();
+			file.deleteOnExit();
+			extracted.put(key, file);
+			return file;
+		} catch (final IOException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	@Override
+	public CompletableFuture<ByteBuffer> fetch(final String filepath) {
+		// reads are served out of the mapping so are already cheap
+		return CompletableFuture.completedFuture(getResourceAsBuffer(filepath));
+	}
+
+	@Override
+	public CompletableFuture<Void> prefetch(final Collection<String> filepaths) {
+		return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public boolean has(final String filepath) {
+		return archive.hasPath(new HashLookup(filepath));
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	@Override
+	public String toString() {
+		return path.toString();
+	}
+}
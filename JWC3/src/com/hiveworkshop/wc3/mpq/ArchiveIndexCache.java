@@ -0,0 +1,293 @@
+package com.hiveworkshop.wc3.mpq;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import mpq.ArchivedFileExtractor;
+import mpq.BlockTable;
+import mpq.HashTable;
+import mpq.MPQArchive;
+import mpq.MPQException;
+
+/**
+ * On disk cache of the decrypted hash and block tables and listfile of the installation archives, so that
+ * later launches can skip reading, decrypting and parsing them.
+ *
+ * Each archive has its own cache file keyed by its absolute path, size and modification time. A cache
+ * file that does not match the archive it is loaded for is ignored and rewritten, so replacing or patching
+ * an archive invalidates its cache automatically.
+ *
+ * The cache file is a flat array dump so that loading is a memory mapping followed by bulk copies.
+ */
+final class ArchiveIndexCache {
+	private static final int MAGIC = 0x4A574958; // JWIX
+	private static final int FORMAT_VERSION = 1;
+	// size of the fixed part of the header before the path
+	private static final int KEY_SIZE = 4 + 4 + 8 + 8 + 4;
+
+	private final Path directory;
+
+	ArchiveIndexCache(final Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * @return cache in the profile folder that also holds the user profile
+	 */
+	static ArchiveIndexCache getDefault() {
+		final String homeProfile = System.getProperty("user.home");
+		String profilePath = "\\AppData\\Roaming\\JWC3\\mpqindex";
+		if (!System.getProperty("os.name").toLowerCase().contains("win")) {
+			profilePath = "/.jwc3/mpqindex";
+		}
+		return new ArchiveIndexCache(Paths.get(homeProfile + profilePath));
+	}
+
+	/**
+	 * An archive along with its listfile.
+	 */
+	static final class Entry {
+		private final MPQArchive archive;
+		private final String[] listfile;
+
+		Entry(final MPQArchive archive, final String[] listfile) {
+			this.archive = archive;
+			this.listfile = listfile;
+		}
+
+		MPQArchive getArchive() {
+			return archive;
+		}
+
+		/**
+		 * @return lines of the listfile, or null if the archive has none
+		 */
+		String[] getListfile() {
+			return listfile;
+		}
+	}
+
+	/**
+	 * Loads an archive from its cache file, or reads it from the channel and writes a new cache file when
+	 * there is no usable cache. Failing to use or write the cache is not an error since the archive can
+	 * always be read directly.
+	 *
+	 * @param path
+	 *            file the archive is in
+	 * @param channel
+	 *            open channel over the file, used when the cache cannot be
+	 * @param extractor
+	 *            used to read the listfile when the cache cannot be
+	 * @return the archive and listfile
+	 */
+	Entry load(final Path path, final SeekableByteChannel channel, final ArchivedFileExtractor extractor)
+			throws MPQException, IOException {
+		final Path absolutePath = path.toAbsolutePath();
+		final BasicFileAttributes attributes = Files.readAttributes(absolutePath, BasicFileAttributes.class);
+		final long size = attributes.size();
+		final long lastModified = attributes.lastModifiedTime().toMillis();
+		final Path cacheFile = cacheFileOf(absolutePath);
+
+		try {
+			final Entry cached = read(cacheFile, absolutePath, size, lastModified);
+			if (cached != null) {
+				return cached;
+			}
+		} catch (final IOException | RuntimeException e) {
+			System.err.println("Ignoring unreadable archive index " + cacheFile + ": " + e);
+		}
+
+		final MPQArchive archive = new MPQArchive(channel);
+		final String[] listfile = MpqCodebase.MpqGuy.readListfile(archive, channel, extractor);
+		try {
+			write(cacheFile, absolutePath, size, lastModified, archive, listfile);
+		} catch (final IOException e) {
+			System.err.println("Unable to write archive index " + cacheFile + ": " + e);
+		}
+		return new Entry(archive, listfile);
+	}
+
+	private Path cacheFileOf(final Path absolutePath) {
+		// 64 bit FNV-1a of the path, collisions are caught by the path stored in the file
+		long hash = 0xCBF29CE484222325L;
+		for (final byte b : absolutePath.toString().getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b & 0xFF;
+			hash *= 0x100000001B3L;
+		}
+		return directory.resolve(absolutePath.getFileName() + "." + Long.toHexString(hash) + ".idx");
+	}
+
+	private static Entry read(final Path cacheFile, final Path absolutePath, final long size,
+			final long lastModified) throws IOException {
+		if (!Files.isRegularFile(cacheFile)) {
+			return null;
+		}
+		final byte[] pathBytes = absolutePath.toString().getBytes(StandardCharsets.UTF_8);
+		try (FileChannel in = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+			// check the key with a plain read, the file is only mapped when it is current
+			final ByteBuffer key = ByteBuffer.allocate(KEY_SIZE + pathBytes.length);
+			while (key.hasRemaining()) {
+				if (in.read(key) == -1) {
+					return null;
+				}
+			}
+			key.flip();
+			if ((key.getInt() != MAGIC) || (key.getInt() != FORMAT_VERSION) || (key.getLong() != size)
+					|| (key.getLong() != lastModified) || (key.getInt() != pathBytes.length)) {
+				return null;
+			}
+			for (final byte b : pathBytes) {
+				if (key.get() != b) {
+					return null;
+				}
+			}
+
+			final ByteBuffer data = in.map(FileChannel.MapMode.READ_ONLY, key.capacity(), in.size() - key.capacity());
+			final long archiveOffset = data.getLong();
+			final short blockShift = data.getShort();
+			final short version = data.getShort();
+			final long archiveSize = data.getLong();
+
+			HashTable hashTable = null;
+			final int hashCount = data.getInt();
+			if (hashCount >= 0) {
+				final long[] hashes = new long[hashCount];
+				final short[] locales = new short[hashCount];
+				final short[] platforms = new short[hashCount];
+				final int[] blockIndices = new int[hashCount];
+				data.asLongBuffer().get(hashes);
+				data.position(data.position() + (hashCount * 8));
+				data.asShortBuffer().get(locales);
+				data.position(data.position() + (hashCount * 2));
+				data.asShortBuffer().get(platforms);
+				data.position(data.position() + (hashCount * 2));
+				data.asIntBuffer().get(blockIndices);
+				data.position(data.position() + (hashCount * 4));
+				hashTable = new HashTable(hashes, locales, platforms, blockIndices);
+			}
+
+			BlockTable blockTable = null;
+			final int blockCount = data.getInt();
+			if (blockCount >= 0) {
+				final long[] positions = new long[blockCount];
+				final int[] compressedSizes = new int[blockCount];
+				final int[] fileSizes = new int[blockCount];
+				final int[] flags = new int[blockCount];
+				data.asLongBuffer().get(positions);
+				data.position(data.position() + (blockCount * 8));
+				data.asIntBuffer().get(compressedSizes);
+				data.position(data.position() + (blockCount * 4));
+				data.asIntBuffer().get(fileSizes);
+				data.position(data.position() + (blockCount * 4));
+				data.asIntBuffer().get(flags);
+				data.position(data.position() + (blockCount * 4));
+				blockTable = new BlockTable(positions, compressedSizes, fileSizes, flags);
+			}
+
+			String[] listfile = null;
+			final int listfileLength = data.getInt();
+			if (listfileLength >= 0) {
+				final byte[] listfileBytes = new byte[listfileLength];
+				data.get(listfileBytes);
+				listfile = splitLines(new String(listfileBytes, StandardCharsets.UTF_8));
+			}
+
+			return new Entry(new MPQArchive(archiveOffset, blockShift, version, archiveSize, hashTable, blockTable),
+					listfile);
+		}
+	}
+
+	private void write(final Path cacheFile, final Path absolutePath, final long size, final long lastModified,
+			final MPQArchive archive, final String[] listfile) throws IOException {
+		final byte[] pathBytes = absolutePath.toString().getBytes(StandardCharsets.UTF_8);
+		final HashTable hashTable = archive.getHashTable();
+		final BlockTable blockTable = archive.getBlockTable();
+		final int hashCount = hashTable == null ? -1 : hashTable.size();
+		final int blockCount = blockTable == null ? -1 : blockTable.size();
+		byte[] listfileBytes = null;
+		if (listfile != null) {
+			final StringBuilder builder = new StringBuilder();
+			for (final String line : listfile) {
+				builder.append(line).append('\n');
+			}
+			listfileBytes = builder.toString().getBytes(StandardCharsets.UTF_8);
+		}
+
+		final ByteBuffer data = ByteBuffer.allocate(KEY_SIZE + pathBytes.length + 8 + 2 + 2 + 8 + 4
+				+ (Math.max(hashCount, 0) * 16) + 4 + (Math.max(blockCount, 0) * 20) + 4
+				+ (listfileBytes == null ? 0 : listfileBytes.length));
+		data.putInt(MAGIC);
+		data.putInt(FORMAT_VERSION);
+		data.putLong(size);
+		data.putLong(lastModified);
+		data.putInt(pathBytes.length);
+		data.put(pathBytes);
+		data.putLong(archive.getArchiveOffset());
+		data.putShort(archive.getBlockShift());
+		data.putShort(archive.getVersion());
+		data.putLong(archive.getArchiveSize());
+
+		data.putInt(hashCount);
+		for (int i = 0; i < hashCount; i++) {
+			data.putLong(hashTable.getHash(i));
+		}
+		for (int i = 0; i < hashCount; i++) {
+			data.putShort(hashTable.getLocale(i));
+		}
+		for (int i = 0; i < hashCount; i++) {
+			data.putShort(hashTable.getPlatform(i));
+		}
+		for (int i = 0; i < hashCount; i++) {
+			data.putInt(hashTable.getBlockIndex(i));
+		}
+
+		data.putInt(blockCount);
+		for (int i = 0; i < blockCount; i++) {
+			data.putLong(blockTable.getFilePosition(i));
+		}
+		for (int i = 0; i < blockCount; i++) {
+			data.putInt(blockTable.getCompressedSize(i));
+		}
+		for (int i = 0; i < blockCount; i++) {
+			data.putInt(blockTable.getFileSize(i));
+		}
+		for (int i = 0; i < blockCount; i++) {
+			data.putInt(blockTable.getFlags(i));
+		}
+
+		if (listfileBytes == null) {
+			data.putInt(-1);
+		} else {
+			data.putInt(listfileBytes.length);
+			data.put(listfileBytes);
+		}
+		data.flip();
+
+		// write beside the cache file and move over it so that readers never see a partial file
+		Files.createDirectories(directory);
+		final Path temporary = Files.createTempFile(directory, cacheFile.getFileName().toString(), ".tmp");
+		try {
+			try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+				while (data.hasRemaining()) {
+					out.write(data);
+				}
+			}
+			Files.move(temporary, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	static String[] splitLines(final String text) {
+		return text.split("\r\n|\r|\n");
+	}
+}
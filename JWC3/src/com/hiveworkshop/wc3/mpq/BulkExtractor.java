@@ -0,0 +1,399 @@
+package com.hiveworkshop.wc3.mpq;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import mpq.ArchivedFileStream;
+import mpq.HashLookup;
+
+/**
+ * Extracts many files from an {@link MpqCodebase} at once.
+ *
+ * Requested files are resolved to the archive that wins for them and sorted by archive and block offset
+ * so that reads move through each archive front to back. A pool of workers reads and decompresses the
+ * files in that order and hands them to the calling thread through a bounded queue, where they are passed
+ * to a {@link Sink} one at a time. The queue bound keeps memory use in check when the sink is slower than
+ * the workers.
+ *
+ * Files that cannot be found, read or written are reported as failures without stopping extraction.
+ *
+ * Large files, such as sounds, can instead be streamed to a {@link Target} so that no file is ever held
+ * in memory whole.
+ */
+public final class BulkExtractor {
+	private final MpqCodebase codebase;
+	private int threadCount = Runtime.getRuntime().availableProcessors();
+	private int queueCapacity = 64;
+
+	/**
+	 * Receives extracted files. Only ever called from the thread running the extraction, in the order
+	 * files finish.
+	 */
+	public interface Sink {
+		/**
+		 * @param path
+		 *            path the file was requested with
+		 * @param contents
+		 *            read-only file contents, only valid for the duration of the call
+		 */
+		void accept(String path, ByteBuffer contents) throws IOException;
+	}
+
+	/**
+	 * Opens channels for files that are streamed. Called from worker threads, so must be thread safe.
+	 */
+	public interface Target {
+		/**
+		 * @param path
+		 *            path the file was requested with
+		 * @return channel to write the file to, closed by the extractor when the file is done
+		 */
+		WritableByteChannel open(String path) throws IOException;
+	}
+
+	public BulkExtractor(final MpqCodebase codebase) {
+		this.codebase = codebase;
+	}
+
+	public void setThreadCount(final int threadCount) {
+		this.threadCount = Math.max(1, threadCount);
+	}
+
+	/**
+	 * @param queueCapacity
+	 *            most extracted files waiting for the sink at once
+	 */
+	public void setQueueCapacity(final int queueCapacity) {
+		this.queueCapacity = Math.max(1, queueCapacity);
+	}
+
+	/**
+	 * @return sink writing files below a directory, creating folders as needed and replacing existing
+	 *         files
+	 */
+	public static Sink toDirectory(final Path root) {
+		return new Sink() {
+			@Override
+			public void accept(final String path, final ByteBuffer contents) throws IOException {
+				final Path target = resolveBelow(root, path);
+				Files.createDirectories(target.getParent());
+				try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING)) {
+					while (contents.hasRemaining()) {
+						out.write(contents);
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * @return target writing files below a directory, creating folders as needed and replacing existing
+	 *         files
+	 */
+	public static Target streamToDirectory(final Path root) {
+		return new Target() {
+			@Override
+			public WritableByteChannel open(final String path) throws IOException {
+				final Path target = resolveBelow(root, path);
+				Files.createDirectories(target.getParent());
+				return FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING);
+			}
+		};
+	}
+
+	/**
+	 * @return where a file goes below a directory
+	 * @throws IOException
+	 *             if the path leads outside the directory, as listfiles of maps cannot be trusted to not
+	 *             contain absolute paths or parent folders
+	 */
+	private static Path resolveBelow(final Path root, final String path) throws IOException {
+		final Path base = root.toAbsolutePath().normalize();
+		final Path target;
+		try {
+			target = base.resolve(path.replace('\\', File.separatorChar)).normalize();
+		} catch (final InvalidPathException e) {
+			throw new IOException("invalid path " + path, e);
+		}
+		if (!target.startsWith(base) || target.equals(base)) {
+			throw new IOException("path leads outside the output directory: " + path);
+		}
+		return target;
+	}
+
+	/**
+	 * Extracts the given files, blocking until all are done.
+	 *
+	 * @param paths
+	 *            files to extract, duplicates are extracted once
+	 * @param sink
+	 *            receives every file that was extracted
+	 * @return statistics and failures of the extraction
+	 * @throws InterruptedException
+	 *             when the calling thread is interrupted, workers are stopped before returning
+	 */
+	public Result extract(final Collection<String> paths, final Sink sink) throws InterruptedException {
+		final long start = System.nanoTime();
+		final Map<String, Throwable> failures = Collections
+				.synchronizedMap(new LinkedHashMap<String, Throwable>());
+		final List<Job> jobs = resolve(paths, failures);
+
+		// *** read on workers, taking jobs in order so reads stay close together
+		final BlockingQueue<Extracted> queue = new ArrayBlockingQueue<>(queueCapacity);
+		final AtomicInteger nextJob = new AtomicInteger(0);
+		final int workers = Math.min(threadCount, Math.max(1, jobs.size()));
+		final AtomicInteger runningWorkers = new AtomicInteger(workers);
+		final ExecutorService executor = Executors.newFixedThreadPool(workers);
+		for (int i = 0; i < workers; i++) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						int index;
+						while ((index = nextJob.getAndIncrement()) < jobs.size()) {
+							final Job job = jobs.get(index);
+							final ByteBuffer contents;
+							try (ArchivedFileStream stream = job.located.openStream()) {
+								// every file is read once so sharing its sectors would only evict others
+								stream.setSectorCaching(false);
+								contents = stream.readFully();
+							} catch (final Exception e) {
+								failures.put(job.path, e);
+								continue;
+							}
+							queue.put(new Extracted(job.path, contents));
+						}
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} finally {
+						runningWorkers.decrementAndGet();
+					}
+				}
+			});
+		}
+		executor.shutdown();
+
+		// *** write on this thread
+		long byteCount = 0;
+		int fileCount = 0;
+		try {
+			while (true) {
+				final Extracted extracted = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (extracted == null) {
+					if ((runningWorkers.get() == 0) && queue.isEmpty()) {
+						break;
+					}
+					continue;
+				}
+				final int size = extracted.contents.remaining();
+				try {
+					sink.accept(extracted.path, extracted.contents);
+					byteCount += size;
+					fileCount++;
+				} catch (final Exception e) {
+					failures.put(extracted.path, e);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+
+		return new Result(fileCount, byteCount, System.nanoTime() - start, new LinkedHashMap<>(failures));
+	}
+
+	/**
+	 * Extracts the given files by streaming them sector by sector to channels, blocking until all are
+	 * done. Each worker decodes and writes whole files by itself while the next sector of its file is
+	 * decoded ahead on a second pool, so memory use stays at a few sectors per worker whatever the file
+	 * sizes.
+	 *
+	 * @param paths
+	 *            files to extract, duplicates are extracted once
+	 * @param target
+	 *            opens the channel each file is written to
+	 * @return statistics and failures of the extraction
+	 * @throws InterruptedException
+	 *             when the calling thread is interrupted, workers are stopped before returning
+	 */
+	public Result extractStreaming(final Collection<String> paths, final Target target)
+			throws InterruptedException {
+		final long start = System.nanoTime();
+		final Map<String, Throwable> failures = Collections
+				.synchronizedMap(new LinkedHashMap<String, Throwable>());
+		final List<Job> jobs = resolve(paths, failures);
+
+		final AtomicInteger nextJob = new AtomicInteger(0);
+		final AtomicInteger fileCount = new AtomicInteger(0);
+		final AtomicLong byteCount = new AtomicLong(0);
+		final int workers = Math.min(threadCount, Math.max(1, jobs.size()));
+		final ExecutorService executor = Executors.newFixedThreadPool(workers);
+		final ExecutorService readAhead = Executors.newFixedThreadPool(workers);
+		for (int i = 0; i < workers; i++) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					int index;
+					while (!Thread.currentThread().isInterrupted()
+							&& ((index = nextJob.getAndIncrement()) < jobs.size())) {
+						final Job job = jobs.get(index);
+						try (ArchivedFileStream stream = job.located.openStream();
+								WritableByteChannel out = target.open(job.path)) {
+							stream.setSectorCaching(false);
+							stream.setReadAhead(readAhead);
+							byteCount.addAndGet(stream.transferTo(out));
+							fileCount.incrementAndGet();
+						} catch (final Exception e) {
+							failures.put(job.path, e);
+						}
+					}
+				}
+			});
+		}
+		executor.shutdown();
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				// keep waiting, there is no limit on how long extraction takes
+			}
+		} finally {
+			executor.shutdownNow();
+			readAhead.shutdownNow();
+		}
+
+		return new Result(fileCount.get(), byteCount.get(), System.nanoTime() - start,
+				new LinkedHashMap<>(failures));
+	}
+
+	/**
+	 * @return a job for every distinct requested file that was found, ordered by location
+	 */
+	private List<Job> resolve(final Collection<String> paths, final Map<String, Throwable> failures) {
+		final Map<Long, Job> unique = new LinkedHashMap<>();
+		for (final String path : paths) {
+			final HashLookup lookup = new HashLookup(path);
+			if (unique.containsKey(lookup.hash)) {
+				continue;
+			}
+			try {
+				final MpqCodebase.LocatedFile located = codebase.locate(lookup);
+				if (located == null) {
+					failures.put(path, new IOException("file not found"));
+				} else {
+					unique.put(lookup.hash, new Job(path, located));
+				}
+			} catch (final IOException e) {
+				failures.put(path, e);
+			}
+		}
+		final List<Job> jobs = new ArrayList<>(unique.values());
+		Collections.sort(jobs, new Comparator<Job>() {
+			@Override
+			public int compare(final Job a, final Job b) {
+				return MpqCodebase.LOCATION_ORDER.compare(a.located, b.located);
+			}
+		});
+		return jobs;
+	}
+
+	private static final class Job {
+		private final String path;
+		private final MpqCodebase.LocatedFile located;
+
+		public Job(final String path, final MpqCodebase.LocatedFile located) {
+			this.path = path;
+			this.located = located;
+		}
+	}
+
+	private static final class Extracted {
+		private final String path;
+		private final ByteBuffer contents;
+
+		public Extracted(final String path, final ByteBuffer contents) {
+			this.path = path;
+			this.contents = contents;
+		}
+	}
+
+	public static final class Result {
+		private final int fileCount;
+		private final long byteCount;
+		private final long elapsedNanos;
+		private final Map<String, Throwable> failures;
+
+		public Result(final int fileCount, final long byteCount, final long elapsedNanos,
+				final Map<String, Throwable> failures) {
+			this.fileCount = fileCount;
+			this.byteCount = byteCount;
+			this.elapsedNanos = elapsedNanos;
+			this.failures = Collections.unmodifiableMap(failures);
+		}
+
+		/**
+		 * @return number of files passed to the sink without error
+		 */
+		public int getFileCount() {
+			return fileCount;
+		}
+
+		/**
+		 * @return total uncompressed size of the files passed to the sink without error
+		 */
+		public long getByteCount() {
+			return byteCount;
+		}
+
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		public double getMegabytesPerSecond() {
+			return (byteCount / (1024.0 * 1024.0)) / seconds();
+		}
+
+		public double getFilesPerSecond() {
+			return fileCount / seconds();
+		}
+
+		/**
+		 * @return the cause of every failed file keyed by requested path, in the order they failed
+		 */
+		public Map<String, Throwable> getFailures() {
+			return failures;
+		}
+
+		private double seconds() {
+			return Math.max(elapsedNanos, 1) / 1e9;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d files, %.1f MB in %.2f s (%.1f MB/s, %.0f files/s), %d failed", fileCount,
+					byteCount / (1024.0 * 1024.0), seconds(), getMegabytesPerSecond(), getFilesPerSecond(),
+					failures.size());
+		}
+	}
+}
@@ -2,9 +2,50 @@ package com.hiveworkshop.wc3.mpq;
 
 import java.io.File;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
 
 public interface Codebase {
 	InputStream getResourceAsStream(String filepath);
+
+	/**
+	 * Opens a seekable handle over a file without extracting it to disk.
+	 *
+	 * @return read-only channel, or null if the file does not exist
+	 */
+	SeekableByteChannel getResourceAsChannel(String filepath);
+
+	/**
+	 * Reads an entire file into memory, or returns a view of it if it is already in memory.
+	 *
+	 * @return read-only buffer positioned at 0 holding the whole file, or null if the file does not exist
+	 */
+	ByteBuffer getResourceAsBuffer(String filepath);
+
+	/**
+	 * Extracts a file to disk. Only for callers that need a real file, as this costs a full disk write.
+	 * Prefer {@link #getResourceAsChannel(String)} or {@link #getResourceAsBuffer(String)}.
+	 */
 	File getFile(String filepath);
+
+	/**
+	 * Reads an entire file in the background, as {@link #getResourceAsBuffer(String)} would.
+	 *
+	 * @return future completed with a read-only buffer positioned at 0 holding the whole file, with null if
+	 *         the file does not exist, or exceptionally if it could not be read
+	 */
+	CompletableFuture<ByteBuffer> fetch(String filepath);
+
+	/**
+	 * Starts reading files in the background so that later reads of them are served from memory. Files
+	 * are read in the order they are stored in rather than the order given.
+	 *
+	 * @return future completed once every file was read or failed to read, failures are left for the later
+	 *         read of the file to report
+	 */
+	CompletableFuture<Void> prefetch(Collection<String> filepaths);
+
 	boolean has(String filepath);
 }
@@ -0,0 +1,18 @@
+package com.hiveworkshop.wc3.mpq;
+
+import java.util.Set;
+
+/**
+ * Told when files of a codebase are created, modified or deleted.
+ */
+public interface CodebaseChangeListener {
+	/**
+	 * Called from a background thread, so views must hand any work over to their own thread.
+	 *
+	 * @param source
+	 *            codebase the files changed in
+	 * @param filepaths
+	 *            archive style paths of the files that changed, with backslashes
+	 */
+	void filesChanged(Codebase source, Set<String> filepaths);
+}
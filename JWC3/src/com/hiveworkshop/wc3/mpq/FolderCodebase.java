@@ -0,0 +1,113 @@
+package com.hiveworkshop.wc3.mpq;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Loose files in a folder, such as the folder of a model being edited or an extracted project. Archive
+ * style paths are resolved relative to the folder.
+ */
+public class FolderCodebase implements Codebase {
+	private final Path root;
+
+	public FolderCodebase(final Path root) {
+		this.root = root;
+	}
+
+	public Path getRoot() {
+		return root;
+	}
+
+	/**
+	 * @return where the file would be in the folder, or null if the path cannot be a file
+	 */
+	public Path resolve(final String filepath) {
+		try {
+			return root.resolve(LayeredCodebase.normalize(filepath).replace('\\', File.separatorChar));
+		} catch (final InvalidPathException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public InputStream getResourceAsStream(final String filepath) {
+		final Path path = resolve(filepath);
+		if ((path == null) || !Files.isRegularFile(path)) {
+			return null;
+		}
+		try {
+			return Files.newInputStream(path);
+		} catch (final IOException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	@Override
+	public SeekableByteChannel getResourceAsChannel(final String filepath) {
+		final Path path = resolve(filepath);
+		if ((path == null) || !Files.isRegularFile(path)) {
+			return null;
+		}
+		try {
+			return Files.newByteChannel(path, StandardOpenOption.READ);
+		} catch (final IOException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	@Override
+	public ByteBuffer getResourceAsBuffer(final String filepath) {
+		final Path path = resolve(filepath);
+		if ((path == null) || !Files.isRegularFile(path)) {
+			return null;
+		}
+		try {
+			return ByteBuffer.wrap(Files.readAllBytes(path)).asReadOnlyBuffer();
+		} catch (final IOException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	@Override
+	public File getFile(final String filepath) {
+		final Path path = resolve(filepath);
+		if ((path == null) || !Files.isRegularFile(path)) {
+			return null;
+		}
+		return path.toFile();
+	}
+
+	@Override
+	public CompletableFuture<ByteBuffer> fetch(final String filepath) {
+		// loose files are read directly, there is nothing to gain from reading them in the background
+		return CompletableFuture.completedFuture(getResourceAsBuffer(filepath));
+	}
+
+	@Override
+	public CompletableFuture<Void> prefetch(final Collection<String> filepaths) {
+		return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public boolean has(final String filepath) {
+		final Path path = resolve(filepath);
+		return (path != null) && Files.isRegularFile(path);
+	}
+
+	@Override
+	public String toString() {
+		return root.toString();
+	}
+}
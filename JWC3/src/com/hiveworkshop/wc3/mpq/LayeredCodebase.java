@@ -0,0 +1,275 @@
+package com.hiveworkshop.wc3.mpq;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Stack of codebases searched from highest to lowest priority, such as a project folder over a map over
+ * the installation archives. A file is served by the highest priority layer that has it.
+ *
+ * Paths are normalized to backslashes once on entry. Layers can remember the paths they were asked for
+ * and did not have, so repeated lookups that fall through to lower layers, as happens for every game
+ * texture of a model in a project folder, cost a set lookup rather than a file system or archive probe.
+ * Layers whose contents change must be invalidated for remembered misses to be forgotten, which
+ * happens by itself for {@link WatchedFolderCodebase} layers. Their changes are passed on to the
+ * listeners of the stack.
+ */
+public class LayeredCodebase implements Codebase {
+	// remembered misses per layer before they are forgotten, to bound memory use
+	private static final int MAX_MISSES = 1 << 16;
+
+	// descending priority, layers of equal priority in the order they were added
+	private final List<Layer> layers = new CopyOnWriteArrayList<>();
+	private final List<CodebaseChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Adds a layer that remembers misses.
+	 *
+	 * @param priority
+	 *            layers with higher priority are searched first
+	 */
+	public void addLayer(final Codebase codebase, final int priority) {
+		addLayer(codebase, priority, true);
+	}
+
+	/**
+	 * @param priority
+	 *            layers with higher priority are searched first
+	 * @param cacheMisses
+	 *            true to remember paths the layer does not have, only for layers whose contents do not
+	 *            change or that are invalidated when they do
+	 */
+	public synchronized void addLayer(final Codebase codebase, final int priority, final boolean cacheMisses) {
+		int index = 0;
+		while ((index < layers.size()) && (layers.get(index).priority >= priority)) {
+			index++;
+		}
+		final Layer layer = new Layer(codebase, priority, cacheMisses);
+		layers.add(index, layer);
+		if (codebase instanceof WatchedFolderCodebase) {
+			((WatchedFolderCodebase) codebase).addChangeListener(layer);
+		}
+	}
+
+	/**
+	 * @return true if the codebase was a layer
+	 */
+	public synchronized boolean removeLayer(final Codebase codebase) {
+		for (final Layer layer : layers) {
+			if (layer.codebase == codebase) {
+				if (codebase instanceof WatchedFolderCodebase) {
+					((WatchedFolderCodebase) codebase).removeChangeListener(layer);
+				}
+				return layers.remove(layer);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the layers from highest to lowest priority
+	 */
+	public List<Codebase> getLayers() {
+		final List<Codebase> codebases = new ArrayList<>();
+		for (final Layer layer : layers) {
+			codebases.add(layer.codebase);
+		}
+		return codebases;
+	}
+
+	/**
+	 * Forgets the misses of a layer, for when files were added to it.
+	 */
+	public void invalidate(final Codebase codebase) {
+		for (final Layer layer : layers) {
+			if (layer.codebase == codebase) {
+				layer.misses.clear();
+			}
+		}
+	}
+
+	/**
+	 * Forgets the misses of some files in a layer, for when they were added to it.
+	 */
+	public void invalidate(final Codebase codebase, final Collection<String> filepaths) {
+		for (final Layer layer : layers) {
+			if (layer.codebase == codebase) {
+				for (final String filepath : filepaths) {
+					layer.misses.remove(normalize(filepath).toLowerCase(Locale.ROOT));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Forgets the misses of every layer.
+	 */
+	public void invalidate() {
+		for (final Layer layer : layers) {
+			layer.misses.clear();
+		}
+	}
+
+	/**
+	 * @param listener
+	 *            told of changes to files in any layer that reports them, with this as the source
+	 */
+	public void addChangeListener(final CodebaseChangeListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeChangeListener(final CodebaseChangeListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * @return the highest priority layer that has the file, or null if none do
+	 */
+	public Codebase findLayer(final String filepath) {
+		final Layer layer = find(normalize(filepath));
+		return layer == null ? null : layer.codebase;
+	}
+
+	/**
+	 * @return the path with forward slashes replaced by the backslashes archives use and no leading
+	 *         separator
+	 */
+	public static String normalize(final String filepath) {
+		final String path = filepath.replace('/', '\\');
+		int start = 0;
+		while ((start < path.length()) && (path.charAt(start) == '\\')) {
+			start++;
+		}
+		return path.substring(start);
+	}
+
+	private Layer find(final String path) {
+		final String key = path.toLowerCase(Locale.ROOT);
+		for (final Layer layer : layers) {
+			if (layer.has(path, key)) {
+				return layer;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public InputStream getResourceAsStream(final String filepath) {
+		final String path = normalize(filepath);
+		final Layer layer = find(path);
+		return layer == null ? null : layer.codebase.getResourceAsStream(path);
+	}
+
+	@Override
+	public SeekableByteChannel getResourceAsChannel(final String filepath) {
+		final String path = normalize(filepath);
+		final Layer layer = find(path);
+		return layer == null ? null : layer.codebase.getResourceAsChannel(path);
+	}
+
+	@Override
+	public ByteBuffer getResourceAsBuffer(final String filepath) {
+		final String path = normalize(filepath);
+		final Layer layer = find(path);
+		return layer == null ? null : layer.codebase.getResourceAsBuffer(path);
+	}
+
+	@Override
+	public File getFile(final String filepath) {
+		final String path = normalize(filepath);
+		final Layer layer = find(path);
+		return layer == null ? null : layer.codebase.getFile(path);
+	}
+
+	@Override
+	public CompletableFuture<ByteBuffer> fetch(final String filepath) {
+		final String path = normalize(filepath);
+		final Layer layer = find(path);
+		if (layer == null) {
+			return CompletableFuture.completedFuture(null);
+		}
+		return layer.codebase.fetch(path);
+	}
+
+	@Override
+	public CompletableFuture<Void> prefetch(final Collection<String> filepaths) {
+		// hand each layer the files it will serve in one batch so it can order its own reads
+		final Map<Layer, List<String>> byLayer = new LinkedHashMap<>();
+		for (final String filepath : filepaths) {
+			final String path = normalize(filepath);
+			final Layer layer = find(path);
+			if (layer == null) {
+				continue;
+			}
+			List<String> paths = byLayer.get(layer);
+			if (paths == null) {
+				paths = new ArrayList<>();
+				byLayer.put(layer, paths);
+			}
+			paths.add(path);
+		}
+		final List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (final Map.Entry<Layer, List<String>> entry : byLayer.entrySet()) {
+			futures.add(entry.getKey().codebase.prefetch(entry.getValue()));
+		}
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
+	}
+
+	@Override
+	public boolean has(final String filepath) {
+		return find(normalize(filepath)) != null;
+	}
+
+	private final class Layer implements CodebaseChangeListener {
+		private final Codebase codebase;
+		private final int priority;
+		private final boolean cacheMisses;
+		// lower case paths known to not be in the layer
+		private final Set<String> misses = ConcurrentHashMap.newKeySet();
+
+		public Layer(final Codebase codebase, final int priority, final boolean cacheMisses) {
+			this.codebase = codebase;
+			this.priority = priority;
+			this.cacheMisses = cacheMisses;
+		}
+
+		public boolean has(final String path, final String key) {
+			if (!cacheMisses) {
+				return codebase.has(path);
+			}
+			if (misses.contains(key)) {
+				return false;
+			}
+			final boolean found = codebase.has(path);
+			if (!found) {
+				if (misses.size() >= MAX_MISSES) {
+					misses.clear();
+				}
+				misses.add(key);
+			}
+			return found;
+		}
+
+		@Override
+		public void filesChanged(final Codebase source, final Set<String> filepaths) {
+			for (final String filepath : filepaths) {
+				misses.remove(normalize(filepath).toLowerCase(Locale.ROOT));
+			}
+			for (final CodebaseChangeListener listener : listeners) {
+				listener.filesChanged(LayeredCodebase.this, filepaths);
+			}
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package com.hiveworkshop.wc3.mpq;
+
+import java.util.Arrays;
+import java.util.List;
+
+import mpq.BlockTable;
+import mpq.HashLookup;
+import mpq.HashTable;
+import mpq.MPQArchive;
+
+/**
+ * Index of every file in a stack of archives, mapping the name hash of a file straight to the archive
+ * that wins for it and the block holding it. Built once whenever the stack changes so that a lookup is
+ * a single probe, and a miss needs no exceptions or walking of the archives.
+ *
+ * Immutable once built, so can be read from any number of threads.
+ */
+final class MergedHashIndex {
+	/**
+	 * Block value for hashes that occur more than once in the winning archive (different locales of
+	 * the same file). Those are resolved by the hash table of the archive itself so that the result
+	 * matches its probe order.
+	 */
+	static final int BLOCK_AMBIGUOUS = -1;
+
+	private final List<MpqCodebase.MpqGuy> archives;
+	private final long[] hashes;
+	private final int[] archiveIndices;
+	private final int[] blocks;
+	private final int mask;
+
+	private MergedHashIndex(final List<MpqCodebase.MpqGuy> archives, final int capacity) {
+		this.archives = archives;
+		hashes = new long[capacity];
+		archiveIndices = new int[capacity];
+		blocks = new int[capacity];
+		mask = capacity - 1;
+		Arrays.fill(archiveIndices, -1);
+	}
+
+	/**
+	 * @param archives
+	 *            archives to index, later archives override earlier ones
+	 */
+	static MergedHashIndex build(final List<MpqCodebase.MpqGuy> archives) {
+		int total = 0;
+		for (final MpqCodebase.MpqGuy archive : archives) {
+			final MPQArchive table = archive.getArchive();
+			if ((table != null) && (table.getHashTable() != null)) {
+				total += table.getHashTable().size();
+			}
+		}
+		// keep the load factor at or below one half
+		int capacity = 16;
+		while (capacity < (total * 2)) {
+			capacity <<= 1;
+		}
+
+		final MergedHashIndex index = new MergedHashIndex(archives, capacity);
+		for (int archiveIndex = 0; archiveIndex < archives.size(); archiveIndex++) {
+			final MPQArchive table = archives.get(archiveIndex).getArchive();
+			if ((table == null) || (table.getHashTable() == null) || (table.getBlockTable() == null)) {
+				continue;
+			}
+			final HashTable hashTable = table.getHashTable();
+			final BlockTable blockTable = table.getBlockTable();
+			for (int bucket = 0; bucket < hashTable.size(); bucket++) {
+				final int block = hashTable.getBlockIndex(bucket);
+				if ((block == HashTable.BLOCK_EMPTY_ALWAYS) || (block == HashTable.BLOCK_EMPTY_NOW)
+						|| (block < 0) || (block >= blockTable.size())) {
+					continue;
+				}
+				index.put(hashTable.getHash(bucket), archiveIndex, block);
+			}
+		}
+		return index;
+	}
+
+	private void put(final long hash, final int archiveIndex, final int block) {
+		int slot = slotOf(hash);
+		while (archiveIndices[slot] != -1) {
+			if (hashes[slot] == hash) {
+				if (archiveIndices[slot] == archiveIndex) {
+					blocks[slot] = BLOCK_AMBIGUOUS;
+				} else {
+					archiveIndices[slot] = archiveIndex;
+					blocks[slot] = block;
+				}
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		hashes[slot] = hash;
+		archiveIndices[slot] = archiveIndex;
+		blocks[slot] = block;
+	}
+
+	private int slotOf(final long hash) {
+		// name hashes are already well distributed
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+	/**
+	 * @return slot of the file in this index, or -1 if no archive has it
+	 */
+	int find(final HashLookup lookup) {
+		final long hash = lookup.hash;
+		int slot = slotOf(hash);
+		while (archiveIndices[slot] != -1) {
+			if (hashes[slot] == hash) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	MpqCodebase.MpqGuy getArchive(final int slot) {
+		return archives.get(archiveIndices[slot]);
+	}
+
+	/**
+	 * @return position of the winning archive in the stack the index was built from
+	 */
+	int getArchiveIndex(final int slot) {
+		return archiveIndices[slot];
+	}
+
+	/**
+	 * @return block table index of the file, or {@link #BLOCK_AMBIGUOUS}
+	 */
+	int getBlock(final int slot) {
+		return blocks[slot];
+	}
+}
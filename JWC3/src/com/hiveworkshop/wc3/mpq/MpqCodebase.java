@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
@@ -12,9 +13,22 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.EnumSet;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import com.etheller.collections.HashSet;
 import com.etheller.collections.Set;
@@ -28,6 +42,8 @@ import mpq.ArchivedFileStream;
 import mpq.HashLookup;
 import mpq.MPQArchive;
 import mpq.MPQException;
+import mpq.MappedArchiveChannel;
+import mpq.SectorCache;
 
 public class MpqCodebase implements Codebase {
 	private final boolean isDebugMode = false;
@@ -36,18 +52,34 @@ public class MpqCodebase implements Codebase {
 	MpqGuy war3xlocal;
 	MpqGuy war3patch;
 	MpqGuy hfmd;
-	ArrayList<MpqGuy> mpqList = new ArrayList<>();
+	// readers walk the list from many threads while archives are loaded and unloaded
+	List<MpqGuy> mpqList = new CopyOnWriteArrayList<>();
+	// extraction is thread safe, channels are read positionally
 	ArchivedFileExtractor extractor = new ArchivedFileExtractor();
+	// maps every file to the archive that wins for it, rebuilt whenever mpqList changes
+	private volatile MergedHashIndex index = MergedHashIndex.build(new ArrayList<MpqGuy>());
+	// tables and listfiles of the installation archives from previous launches
+	ArchiveIndexCache indexCache = ArchiveIndexCache.getDefault();
 
-	private static final class MpqGuy {
+	static final class MpqGuy {
 		private final MPQArchive archive;
 		private final SeekableByteChannel inputChannel;
+		// lines of the (listfile), read on first use unless they came from the index cache
+		private String[] listfile;
+		private boolean listfileRead;
 
 		public MpqGuy(final MPQArchive archive, final SeekableByteChannel inputChannel) {
 			this.archive = archive;
 			this.inputChannel = inputChannel;
 		}
 
+		public MpqGuy(final ArchiveIndexCache.Entry cached, final SeekableByteChannel inputChannel) {
+			this.archive = cached.getArchive();
+			this.inputChannel = inputChannel;
+			this.listfile = cached.getListfile();
+			this.listfileRead = true;
+		}
+
 		public MPQArchive getArchive() {
 			return archive;
 		}
@@ -57,16 +89,44 @@ public class MpqCodebase implements Codebase {
 		}
 
 		public boolean has(final String file) {
+			return archive.hasPath(new HashLookup(file));
+		}
+
+		/**
+		 * @return lines of the listfile, or null if the archive has none
+		 */
+		public synchronized String[] getListfile(final ArchivedFileExtractor extractor) {
+			if (!listfileRead) {
+				try {
+					listfile = readListfile(archive, inputChannel, extractor);
+				} catch (final MPQException | IOException exc) {
+					throw new RuntimeException(exc);
+				}
+				listfileRead = true;
+			}
+			return listfile;
+		}
+
+		static String[] readListfile(final MPQArchive archive, final SeekableByteChannel inputChannel,
+				final ArchivedFileExtractor extractor) throws MPQException, IOException {
+			final ArchivedFile listfileContents;
 			try {
-				archive.lookupPath(file);
-				return true;
+				listfileContents = archive.lookupHash2(new HashLookup("(listfile)"));
 			} catch (final MPQException exc) {
 				if (exc.getMessage().equals("lookup not found")) {
-					return false;
-				} else {
-					throw new RuntimeException(exc);
+					return null;
 				}
+				throw exc;
 			}
+			final List<String> lines = new ArrayList<>();
+			final ArchivedFileStream stream = new ArchivedFileStream(inputChannel, extractor, listfileContents);
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(stream)))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					lines.add(line);
+				}
+			}
+			return lines.toArray(new String[lines.size()]);
 		}
 	}
 
@@ -78,32 +138,70 @@ public class MpqCodebase implements Codebase {
 		if (isDebugMode) {
 			hfmd = loadMPQ("hfmd.exe");
 		}
+		rebuildIndex();
 	}
 
-	Map<String, File> cache = new HashMap<>();
+	// most extracted files remembered at once, the least recently used are forgotten past this. Their files
+	// stay on disk until exit since callers may still hold them, and are extracted again if asked for
+	private static final int EXTRACTED_FILE_LIMIT = 256;
+	// total size of whole files kept in memory for getResourceAsBuffer
+	private static final long BUFFER_CACHE_CAPACITY = 32L << 20;
+
+	Map<String, File> cache = Collections.synchronizedMap(new LinkedHashMap<String, File>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, File> eldest) {
+			return size() > EXTRACTED_FILE_LIMIT;
+		}
+	});
+
+	// keyed by name hash so that differences in case do not matter
+	private final LinkedHashMap<Long, ByteBuffer> bufferCache = new LinkedHashMap<>(16, 0.75f, true);
+	private long bufferCacheSize = 0;
+
+	// reads for fetch and prefetch, a few threads are enough to keep decompression and the disk busy
+	private static final int IO_THREAD_COUNT = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+	private final ExecutorService ioExecutor = Executors.newFixedThreadPool(IO_THREAD_COUNT, new ThreadFactory() {
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			final Thread thread = new Thread(runnable, "MpqCodebase-IO-" + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	// reads in progress by name hash, so that a file requested again before it is read is read once
+	private final ConcurrentHashMap<Long, CompletableFuture<ByteBuffer>> pendingReads = new ConcurrentHashMap<>();
+
+	private static final Function<ByteBuffer, ByteBuffer> DUPLICATE = new Function<ByteBuffer, ByteBuffer>() {
+		@Override
+		public ByteBuffer apply(final ByteBuffer contents) {
+			return contents == null ? null : contents.duplicate();
+		}
+	};
+
+	/**
+	 * Orders files by archive and then by position in the archive, so that reading in this order moves
+	 * through each archive front to back.
+	 */
+	static final Comparator<LocatedFile> LOCATION_ORDER = new Comparator<LocatedFile>() {
+		@Override
+		public int compare(final LocatedFile a, final LocatedFile b) {
+			if (a.getArchiveIndex() != b.getArchiveIndex()) {
+				return Integer.compare(a.getArchiveIndex(), b.getArchiveIndex());
+			}
+			return Long.compare(a.getFile().fileOffset, b.getFile().fileOffset);
+		}
+	};
 
 	@Override
-	public File getFile(final String filepath) {
+	public synchronized File getFile(final String filepath) {
 		if (cache.containsKey(filepath)) {
 			return cache.get(filepath);
 		}
 		try {
-			for (int i = mpqList.size() - 1; i >= 0; i--) {
-				final MpqGuy mpqGuy = mpqList.get(i);
-				final MPQArchive mpq = mpqGuy.getArchive();
-				// System.out.println("getting it from the outside: " +
-				// filepath);
-				ArchivedFile file = null;
-				try {
-					file = mpq.lookupHash2(new HashLookup(filepath));
-				} catch (final MPQException exc) {
-					if (exc.getMessage().equals("lookup not found")) {
-						continue;
-					} else {
-						throw new IOException(exc);
-					}
-				}
-				final ArchivedFileStream stream = new ArchivedFileStream(mpqGuy.getInputChannel(), extractor, file);
+			final ArchivedFileStream stream = openStream(new HashLookup(filepath));
+			if (stream != null) {
 				final InputStream newInputStream = Channels.newInputStream(stream);
 				String tmpdir = System.getProperty("java.io.tmpdir");
 				if (!tmpdir.endsWith(File.separator)) {
@@ -119,7 +217,6 @@ public class MpqCodebase implements Codebase {
 				return tempProduct;
 			}
 		} catch (final IOException e) {
-			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
 		return null;
@@ -127,43 +224,270 @@ public class MpqCodebase implements Codebase {
 
 	@Override
 	public InputStream getResourceAsStream(final String filepath) {
+		final HashLookup lookup = new HashLookup(filepath);
+		final ByteBuffer cached = getCachedBuffer(lookup);
+		if (cached != null) {
+			return Channels.newInputStream(new MappedArchiveChannel(cached));
+		}
 		try {
-			for (int i = mpqList.size() - 1; i >= 0; i--) {
-				final MpqGuy mpqGuy = mpqList.get(i);
-				final MPQArchive mpq = mpqGuy.getArchive();
-				ArchivedFile file = null;
-				try {
-					file = mpq.lookupHash2(new HashLookup(filepath));
-				} catch (final MPQException exc) {
-					if (exc.getMessage().equals("lookup not found")) {
-						continue;
-					} else {
-						throw new IOException(exc);
-					}
-				}
-				final ArchivedFileStream stream = new ArchivedFileStream(mpqGuy.getInputChannel(), extractor, file);
+			final ArchivedFileStream stream = openStream(lookup);
+			if (stream != null) {
 				final InputStream newInputStream = Channels.newInputStream(stream);
 				return newInputStream;
 			}
 		} catch (final IOException e) {
-			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
 		return null;
 	}
 
+	@Override
+	public SeekableByteChannel getResourceAsChannel(final String filepath) {
+		final HashLookup lookup = new HashLookup(filepath);
+		final ByteBuffer cached = getCachedBuffer(lookup);
+		if (cached != null) {
+			return new MappedArchiveChannel(cached);
+		}
+		try {
+			return openStream(lookup);
+		} catch (final IOException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	@Override
+	public ByteBuffer getResourceAsBuffer(final String filepath) {
+		final HashLookup lookup = new HashLookup(filepath);
+		final ByteBuffer cached = getCachedBuffer(lookup);
+		if (cached != null) {
+			return cached;
+		}
+		try {
+			final LocatedFile located = locate(lookup);
+			if (located == null) {
+				return null;
+			}
+			return readBuffer(lookup, located).duplicate();
+		} catch (final IOException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	@Override
+	public CompletableFuture<ByteBuffer> fetch(final String filepath) {
+		final HashLookup lookup = new HashLookup(filepath);
+		final ByteBuffer cached = getCachedBuffer(lookup);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached);
+		}
+		try {
+			final LocatedFile located = locate(lookup);
+			if (located == null) {
+				return CompletableFuture.completedFuture(null);
+			}
+			return readAsync(lookup, located).thenApply(DUPLICATE);
+		} catch (final IOException e) {
+			final CompletableFuture<ByteBuffer> failed = new CompletableFuture<>();
+			failed.completeExceptionally(e);
+			return failed;
+		}
+	}
+
+	@Override
+	public CompletableFuture<Void> prefetch(final Collection<String> filepaths) {
+		final Map<Long, LocatedFile> located = new LinkedHashMap<>();
+		final Map<LocatedFile, HashLookup> lookups = new LinkedHashMap<>();
+		for (final String filepath : filepaths) {
+			final HashLookup lookup = new HashLookup(filepath);
+			if (located.containsKey(lookup.hash) || (getCachedBuffer(lookup) != null)) {
+				continue;
+			}
+			try {
+				final LocatedFile file = locate(lookup);
+				if (file != null) {
+					located.put(lookup.hash, file);
+					lookups.put(file, lookup);
+				}
+			} catch (final IOException e) {
+				// left for the later read to report
+			}
+		}
+		final List<LocatedFile> ordered = new ArrayList<>(located.values());
+		Collections.sort(ordered, LOCATION_ORDER);
+
+		// the executor queue is first in first out, so reads are started in this order
+		final CompletableFuture<?>[] reads = new CompletableFuture<?>[ordered.size()];
+		for (int i = 0; i < reads.length; i++) {
+			final LocatedFile file = ordered.get(i);
+			reads[i] = readAsync(lookups.get(file), file).exceptionally(new Function<Throwable, ByteBuffer>() {
+				@Override
+				public ByteBuffer apply(final Throwable exc) {
+					return null;
+				}
+			});
+		}
+		return CompletableFuture.allOf(reads);
+	}
+
+	/**
+	 * Reads a file on the I/O threads, or joins the read of it already in progress.
+	 *
+	 * @return future completed with the whole file, shared so must not be read from without duplicating
+	 */
+	private CompletableFuture<ByteBuffer> readAsync(final HashLookup lookup, final LocatedFile located) {
+		final CompletableFuture<ByteBuffer> future = new CompletableFuture<>();
+		final CompletableFuture<ByteBuffer> existing = pendingReads.putIfAbsent(lookup.hash, future);
+		if (existing != null) {
+			return existing;
+		}
+		ioExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					future.complete(readBuffer(lookup, located));
+				} catch (final Throwable exc) {
+					future.completeExceptionally(exc);
+				} finally {
+					pendingReads.remove(lookup.hash, future);
+				}
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Reads a whole file and keeps it in memory for later reads.
+	 *
+	 * @return the file contents, shared with the cache so must not be read from without duplicating
+	 */
+	private ByteBuffer readBuffer(final HashLookup lookup, final LocatedFile located) throws IOException {
+		final ByteBuffer contents;
+		try (ArchivedFileStream stream = located.openStream()) {
+			contents = stream.readFully();
+		}
+		// views of mapped archives cost nothing to recreate so are not worth holding on to
+		if (!contents.isDirect()) {
+			putCachedBuffer(lookup, contents);
+		}
+		return contents;
+	}
+
+	private ByteBuffer getCachedBuffer(final HashLookup lookup) {
+		synchronized (bufferCache) {
+			final ByteBuffer cached = bufferCache.get(lookup.hash);
+			return cached == null ? null : cached.duplicate();
+		}
+	}
+
+	private void putCachedBuffer(final HashLookup lookup, final ByteBuffer contents) {
+		// a single file may take at most a quarter of the cache
+		if (contents.capacity() > (BUFFER_CACHE_CAPACITY / 4)) {
+			return;
+		}
+		synchronized (bufferCache) {
+			final ByteBuffer old = bufferCache.put(lookup.hash, contents);
+			if (old != null) {
+				bufferCacheSize -= old.capacity();
+			}
+			bufferCacheSize += contents.capacity();
+			final Iterator<ByteBuffer> iterator = bufferCache.values().iterator();
+			while ((bufferCacheSize > BUFFER_CACHE_CAPACITY) && iterator.hasNext()) {
+				bufferCacheSize -= iterator.next().capacity();
+				iterator.remove();
+			}
+		}
+	}
+
+	private void clearCaches() {
+		cache.clear();
+		synchronized (bufferCache) {
+			bufferCache.clear();
+			bufferCacheSize = 0;
+		}
+	}
+
+	/**
+	 * @return stream over the copy of the file in the highest priority archive that has it, or null if no
+	 *         archive has it
+	 */
+	private ArchivedFileStream openStream(final HashLookup lookup) throws IOException {
+		final LocatedFile located = locate(lookup);
+		if (located == null) {
+			return null;
+		}
+		return located.openStream();
+	}
+
+	/**
+	 * @return the copy of the file in the highest priority archive that has it, or null if no archive has
+	 *         it
+	 */
+	LocatedFile locate(final HashLookup lookup) throws IOException {
+		final MergedHashIndex currentIndex = index;
+		final int slot = currentIndex.find(lookup);
+		if (slot == -1) {
+			return null;
+		}
+		final MpqGuy mpqGuy = currentIndex.getArchive(slot);
+		final int block = currentIndex.getBlock(slot);
+		try {
+			final ArchivedFile file;
+			if (block == MergedHashIndex.BLOCK_AMBIGUOUS) {
+				file = mpqGuy.getArchive().lookupHash2(lookup);
+			} else {
+				file = mpqGuy.getArchive().lookupBlock2(lookup, block);
+			}
+			return new LocatedFile(mpqGuy, currentIndex.getArchiveIndex(slot), file);
+		} catch (final MPQException exc) {
+			throw new IOException(exc);
+		}
+	}
+
+	/**
+	 * A file resolved to the archive it is read from.
+	 */
+	final class LocatedFile {
+		private final MpqGuy archive;
+		private final int archiveIndex;
+		private final ArchivedFile file;
+
+		private LocatedFile(final MpqGuy archive, final int archiveIndex, final ArchivedFile file) {
+			this.archive = archive;
+			this.archiveIndex = archiveIndex;
+			this.file = file;
+		}
+
+		/**
+		 * @return position of the archive in the load order
+		 */
+		int getArchiveIndex() {
+			return archiveIndex;
+		}
+
+		ArchivedFile getFile() {
+			return file;
+		}
+
+		ArchivedFileStream openStream() {
+			return new ArchivedFileStream(archive.getInputChannel(), extractor, file);
+		}
+	}
+
+	/**
+	 * Rebuilds the merged index from the current archive list. Needed after every change to the list.
+	 */
+	private synchronized void rebuildIndex() {
+		index = MergedHashIndex.build(new ArrayList<>(mpqList));
+	}
+
 	@Override
 	public boolean has(final String filepath) {
 		if (cache.containsKey(filepath)) {
 			return true;
 		}
-		for (int i = mpqList.size() - 1; i >= 0; i--) {
-			final MpqGuy mpqGuy = mpqList.get(i);
-			if (mpqGuy.has(filepath)) {
-				return true;
-			}
-		}
-		return false;
+		return index.find(new HashLookup(filepath)) != -1;
 	}
 
 	public void refresh() {
@@ -219,7 +543,11 @@ public class MpqCodebase implements Codebase {
 				e.printStackTrace();
 			}
 		}
+		for (final MpqGuy mpqGuy : mpqList) {
+			SectorCache.get().invalidate(mpqGuy.getInputChannel());
+		}
 		mpqList.clear();
+		clearCaches();
 		war3 = loadMPQ("war3.mpq");
 		war3x = loadMPQ("war3x.mpq");
 		war3xlocal = loadMPQ("war3xlocal.mpq");
@@ -227,30 +555,18 @@ public class MpqCodebase implements Codebase {
 		if (isDebugMode) {
 			hfmd = loadMPQ("hfmd.exe");
 		}
+		rebuildIndex();
 	}
 
 	public SetView<String> getMergedListfile() {
 		final Set<String> listfile = new HashSet<>();
 		for (final MpqGuy mpqGuy : mpqList) {
-			try {
-				final ArchivedFile listfileContents = mpqGuy.getArchive().lookupHash2(new HashLookup("(listfile)"));
-				final ArchivedFileStream stream = new ArchivedFileStream(mpqGuy.getInputChannel(), extractor,
-						listfileContents);
-				final InputStream newInputStream = Channels.newInputStream(stream);
-				try (BufferedReader reader = new BufferedReader(new InputStreamReader(newInputStream))) {
-					String line;
-					while ((line = reader.readLine()) != null) {
-						listfile.add(line);
-					}
-				} catch (final IOException exc) {
-					throw new RuntimeException(exc);
-				}
-			} catch (final MPQException exc) {
-				if (exc.getMessage().equals("lookup not found")) {
-					continue;
-				} else {
-					throw new RuntimeException(exc);
-				}
+			final String[] lines = mpqGuy.getListfile(extractor);
+			if (lines == null) {
+				continue;
+			}
+			for (final String line : lines) {
+				listfile.add(line);
 			}
 		}
 		return listfile;
@@ -260,9 +576,9 @@ public class MpqCodebase implements Codebase {
 		MpqGuy temp;
 		// try {
 		try {
-			final SeekableByteChannel sbc = Files.newByteChannel(Paths.get(getWarcraftDirectory(), mpq),
-					EnumSet.of(StandardOpenOption.READ));
-			temp = new MpqGuy(new MPQArchive(sbc), sbc);
+			final Path path = Paths.get(getWarcraftDirectory(), mpq);
+			final SeekableByteChannel sbc = openMappedChannel(path);
+			temp = new MpqGuy(indexCache.load(path, sbc, extractor), sbc);
 			mpqList.add(temp);
 			return temp;
 		} catch (final MPQException e) {
@@ -288,39 +604,42 @@ public class MpqCodebase implements Codebase {
 		return null;
 	}
 
-	public boolean isBaseGameFile(final String filepath) {
+	/**
+	 * Opens an installation archive, preferring a memory mapping so that sector reads avoid system calls
+	 * and stored files are served without copying. Falls back to a regular channel when the archive
+	 * cannot be mapped (such as on a 32 bit VM without enough address space).
+	 *
+	 * Mapped files stay locked on some platforms until collected, so this is only used for the read-only
+	 * installation archives and not for maps being edited.
+	 */
+	private static SeekableByteChannel openMappedChannel(final Path path) throws IOException {
 		try {
-			for (int i = mpqList.size() - 1; i >= 0; i--) {
-				final MpqGuy mpqGuy = mpqList.get(i);
-				final MPQArchive mpq = mpqGuy.getArchive();
-				try {
-					mpq.lookupPath(filepath);
-					return i <= 3;
-				} catch (final MPQException exc) {
-					if (exc.getMessage().equals("lookup not found")) {
-						continue;
-					} else {
-						throw new IOException(exc);
-					}
-				}
-			}
+			return MappedArchiveChannel.open(path);
 		} catch (final IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			System.err.println("Unable to map " + path + ", using regular reads: " + e.getMessage());
+			return Files.newByteChannel(path, EnumSet.of(StandardOpenOption.READ));
 		}
-		return false;
+	}
+
+	public boolean isBaseGameFile(final String filepath) {
+		final MergedHashIndex currentIndex = index;
+		final int slot = currentIndex.find(new HashLookup(filepath));
+		return (slot != -1) && (currentIndex.getArchiveIndex(slot) <= 3);
 	}
 
 	public LoadedMPQ loadMPQ(final Path path) throws MPQException, IOException {
 		final SeekableByteChannel sbc = Files.newByteChannel(path, EnumSet.of(StandardOpenOption.READ));
 		final MpqGuy temp = new MpqGuy(new MPQArchive(sbc), sbc);
 		mpqList.add(temp);
-		cache.clear();
+		rebuildIndex();
+		clearCaches();
 		return new LoadedMPQ() {
 			@Override
 			public void unload() {
 				mpqList.remove(temp);
-				cache.clear();
+				rebuildIndex();
+				SectorCache.get().invalidate(temp.getInputChannel());
+				clearCaches();
 			}
 
 			@Override
@@ -345,7 +664,7 @@ public class MpqCodebase implements Codebase {
 
 	private static MpqCodebase current;
 
-	public static MpqCodebase get() {
+	public static synchronized MpqCodebase get() {
 		if (current == null) {
 			current = new MpqCodebase();
 		}
@@ -0,0 +1,171 @@
+package com.hiveworkshop.wc3.mpq;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link FolderCodebase} that watches its folder and every folder below it for changes, so that what
+ * was loaded from changed files can be dropped and loaded again rather than refreshing everything.
+ *
+ * Changes are collected on a daemon thread and reported to listeners once no more have arrived for a
+ * moment, since programs often save a file in several steps.
+ */
+public class WatchedFolderCodebase extends FolderCodebase implements Closeable {
+	private static final long SETTLE_MILLIS = 100;
+
+	private final WatchService watchService;
+	private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+	private final List<CodebaseChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+	public WatchedFolderCodebase(final Path root) throws IOException {
+		super(root);
+		watchService = root.getFileSystem().newWatchService();
+		// folders are registered on the watching thread as large trees take a while to walk
+		final Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				watch();
+			}
+		}, "FolderWatcher " + root);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public void addChangeListener(final CodebaseChangeListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeChangeListener(final CodebaseChangeListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Stops watching the folder. Files can still be read.
+	 */
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+	}
+
+	private void watch() {
+		try {
+			register(getRoot());
+			while (true) {
+				WatchKey key = watchService.take();
+				final Set<String> changed = new LinkedHashSet<>();
+				while (key != null) {
+					collect(key, changed);
+					key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+				}
+				if (!changed.isEmpty()) {
+					publish(Collections.unmodifiableSet(changed));
+				}
+			}
+		} catch (final InterruptedException | ClosedWatchServiceException e) {
+			// stopped watching
+		}
+	}
+
+	private void collect(final WatchKey key, final Set<String> changed) {
+		final Path directory = directories.get(key);
+		for (final WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				// events were lost, so anything may have changed
+				addFiles(getRoot(), changed);
+				continue;
+			}
+			if (directory == null) {
+				continue;
+			}
+			final Path path = directory.resolve((Path) event.context());
+			if ((event.kind() == StandardWatchEventKinds.ENTRY_CREATE)
+					&& Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+				// files can be added before the new folder is registered
+				register(path);
+				addFiles(path, changed);
+			} else {
+				changed.add(toFilepath(path));
+			}
+		}
+		if (!key.reset()) {
+			directories.remove(key);
+		}
+	}
+
+	private void publish(final Set<String> changed) {
+		for (final CodebaseChangeListener listener : listeners) {
+			try {
+				listener.filesChanged(this, changed);
+			} catch (final RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private String toFilepath(final Path path) {
+		return getRoot().relativize(path).toString().replace(File.separatorChar, '\\');
+	}
+
+	private void register(final Path directory) {
+		try {
+			Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) {
+					try {
+						directories.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+								StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), dir);
+					} catch (final IOException e) {
+						return FileVisitResult.SKIP_SUBTREE;
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(final Path file, final IOException exc) {
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (final IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void addFiles(final Path directory, final Set<String> changed) {
+		try {
+			Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+					changed.add(toFilepath(file));
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(final Path file, final IOException exc) {
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (final IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
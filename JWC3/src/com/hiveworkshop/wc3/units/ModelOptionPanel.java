@@ -1171,7 +1171,9 @@ public class ModelOptionPanel extends JPanel {
 		});
 
 		groupBox.setMaximumRowCount(11);
-		modelBox.setMaximumRowCount(36);
+		modelBox.setRenderer(new ModelThumbnailListCellRenderer());
+		// rows are taller with thumbnails, keep the list within the screen
+		modelBox.setMaximumRowCount(24);
 
 		groupBox.setMaximumSize(new Dimension(140, 25));
 		modelBox.setMaximumSize(new Dimension(10000, 25));
@@ -0,0 +1,114 @@
+package com.hiveworkshop.wc3.units;
+
+import java.awt.Component;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.ImageIcon;
+import javax.swing.JList;
+import javax.swing.SwingUtilities;
+
+import com.hiveworkshop.wc3.gui.modeledit.MdxPreviewSnapshot;
+import com.hiveworkshop.wc3.mdx.MdxRenderModel;
+import com.hiveworkshop.wc3.mpq.MpqCodebase;
+
+/**
+ * Shows a small snapshot of each model in the model list. Models are read and parsed in the background
+ * into the render-only form, only for rows that are on screen, and the list is repainted as each
+ * snapshot is ready.
+ */
+class ModelThumbnailListCellRenderer extends DefaultListCellRenderer {
+	private static final int SIZE = 32;
+
+	private final ImageIcon blankIcon = new ImageIcon(new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB));
+	private final Map<String, ImageIcon> filepathToIcon = new HashMap<>();
+	private final Set<String> pending = new HashSet<>();
+
+	@Override
+	public Component getListCellRendererComponent(final JList<?> list, final Object value, final int index,
+			final boolean iss, final boolean chf) {
+		super.getListCellRendererComponent(list, value, index, iss, chf);
+		// index -1 is the closed combo box, which has no room for a thumbnail
+		if ((index >= 0) && (value instanceof ModelOptionPanel.Model)) {
+			final String filepath = ((ModelOptionPanel.Model) value).filepath;
+			final ImageIcon icon = filepathToIcon.get(filepath);
+			if (icon != null) {
+				setIcon(icon);
+			} else {
+				setIcon(blankIcon);
+				// the list sizes every row through here, so only fetch the rows being shown
+				if ((index >= list.getFirstVisibleIndex()) && (index <= list.getLastVisibleIndex())) {
+					request(list, filepath);
+				}
+			}
+		}
+		return this;
+	}
+
+	private void request(final JList<?> list, final String filepath) {
+		if (!pending.add(filepath)) {
+			return;
+		}
+		MpqCodebase.get().fetch(modelPath(filepath)).thenApply(new Function<ByteBuffer, MdxRenderModel>() {
+			@Override
+			public MdxRenderModel apply(final ByteBuffer buffer) {
+				if (buffer == null) {
+					return null;
+				}
+				try {
+					return MdxRenderModel.load(buffer);
+				} catch (final Exception exc) {
+					throw new RuntimeException(exc);
+				}
+			}
+		}).whenComplete(new BiConsumer<MdxRenderModel, Throwable>() {
+			@Override
+			public void accept(final MdxRenderModel model, final Throwable failure) {
+				if (failure != null) {
+					failure.printStackTrace();
+				}
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						// the snapshot needs a GL context, so it is taken on the event thread like the other
+						// snapshotting renderers
+						filepathToIcon.put(filepath, model == null ? blankIcon : snapshot(model));
+						pending.remove(filepath);
+						list.repaint();
+					}
+				});
+			}
+		});
+	}
+
+	private ImageIcon snapshot(final MdxRenderModel model) {
+		try {
+			final MdxPreviewSnapshot snapshot = new MdxPreviewSnapshot(model, SIZE, SIZE);
+			snapshot.zoomToFit();
+			return new ImageIcon(snapshot.getBufferedImage());
+		} catch (final Exception exc) {
+			exc.printStackTrace();
+			return blankIcon;
+		}
+	}
+
+	/**
+	 * @return the path of the binary model, as the model list stores some entries as .mdl or without an
+	 *         extension
+	 */
+	private static String modelPath(final String filepath) {
+		if (filepath.endsWith(".mdl")) {
+			return filepath.replace(".mdl", ".mdx");
+		} else if (!filepath.endsWith(".mdx")) {
+			return filepath.concat(".mdx");
+		}
+		return filepath;
+	}
+}
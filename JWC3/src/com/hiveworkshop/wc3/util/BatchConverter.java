@@ -0,0 +1,560 @@
+package com.hiveworkshop.wc3.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Converts every matching file below a directory, such as all models of a mod, using all processors.
+ *
+ * The tree is walked first, then files go through three stages. One thread reads and hashes them, a
+ * work stealing pool runs the {@link Conversion} on them, which parses, transforms and serializes, and
+ * the calling thread writes the results. The stages are joined by bounded queues, so at most a few files
+ * per stage are held in memory however large the tree is.
+ *
+ * With a manifest, the content hash of every converted source is recorded as soon as its output is
+ * written. Sources whose hash matches the record and whose output exists are skipped, so an interrupted
+ * run resumes where it stopped and a repeated run only converts what changed. Outputs are written to a
+ * temporary file and moved into place, so an existing output is always complete.
+ *
+ * Files that cannot be read, converted or written are reported as failures without stopping the batch.
+ */
+public final class BatchConverter {
+	private int threadCount = Runtime.getRuntime().availableProcessors();
+	private int queueCapacity = 32;
+	private Path manifest;
+	private boolean deleteSources;
+
+	/**
+	 * Converts one kind of file.
+	 */
+	public interface Conversion {
+		/**
+		 * @return whether a file found in the tree is converted, called while walking it
+		 */
+		boolean accepts(Path file);
+
+		/**
+		 * @return file the output of a source is written to, may be the source itself
+		 */
+		Path getTarget(Path source);
+
+		/**
+		 * Parses, transforms and serializes one file. Called from pool threads for many files at once, so
+		 * must not share state between calls.
+		 *
+		 * @param contents
+		 *            contents of the source, read-only
+		 * @return output to write to the target, or null if the conversion wrote the target itself
+		 */
+		ByteBuffer convert(Path source, ByteBuffer contents) throws Exception;
+	}
+
+	public void setThreadCount(final int threadCount) {
+		this.threadCount = Math.max(1, threadCount);
+	}
+
+	/**
+	 * @param queueCapacity
+	 *            most files read but not yet written at once
+	 */
+	public void setQueueCapacity(final int queueCapacity) {
+		this.queueCapacity = Math.max(1, queueCapacity);
+	}
+
+	/**
+	 * @param manifest
+	 *            file recording the content hash of every converted source, created if missing, or null to
+	 *            convert every file
+	 */
+	public void setManifest(final Path manifest) {
+		this.manifest = manifest;
+	}
+
+	/**
+	 * @param deleteSources
+	 *            whether sources are deleted once their output is written, unless the output replaced them
+	 */
+	public void setDeleteSources(final boolean deleteSources) {
+		this.deleteSources = deleteSources;
+	}
+
+	/**
+	 * Converts every accepted file below a directory, blocking until all are done.
+	 *
+	 * @return statistics and failures of the batch
+	 * @throws IOException
+	 *             if the manifest cannot be read or written
+	 * @throws InterruptedException
+	 *             when the calling thread is interrupted, other threads are stopped before returning
+	 */
+	public Result convert(final Path root, final Conversion conversion) throws IOException, InterruptedException {
+		final long start = System.nanoTime();
+		final Map<Path, Throwable> failures = Collections.synchronizedMap(new LinkedHashMap<Path, Throwable>());
+		final List<Path> sources = find(root, conversion, failures);
+		final Map<String, Recorded> recorded = manifest == null ? new HashMap<String, Recorded>()
+				: readManifest(manifest);
+
+		// *** read and hash on one thread, handing files to the pool while fewer than the capacity are
+		// waiting in it or for the writer
+		final Semaphore waiting = new Semaphore(queueCapacity);
+		final BlockingQueue<Converted> converted = new ArrayBlockingQueue<>(queueCapacity);
+		final ForkJoinPool pool = new ForkJoinPool(threadCount);
+		final AtomicInteger submitted = new AtomicInteger(0);
+		final AtomicInteger skipped = new AtomicInteger(0);
+		final AtomicBoolean readingDone = new AtomicBoolean(false);
+		final ExecutorService reader = Executors.newSingleThreadExecutor();
+		reader.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					final MessageDigest digest = newDigest();
+					for (final Path source : sources) {
+						final ByteBuffer contents;
+						final String hash;
+						try {
+							contents = ByteBuffer.wrap(Files.readAllBytes(source));
+							hash = hash(digest, contents.duplicate());
+						} catch (final Exception e) {
+							failures.put(source, e);
+							continue;
+						}
+						final Path target = conversion.getTarget(source);
+						if (isUnchanged(recorded.get(relativize(root, source)), hash, source, target)) {
+							skipped.incrementAndGet();
+							continue;
+						}
+						waiting.acquire();
+						submitted.incrementAndGet();
+						pool.execute(new Runnable() {
+							@Override
+							public void run() {
+								final long convertStart = System.nanoTime();
+								ByteBuffer output = null;
+								Throwable failure = null;
+								try {
+									output = conversion.convert(source, contents.asReadOnlyBuffer());
+								} catch (final Throwable e) {
+									// errors such as overflowing the stack on a broken file fail that file only
+									failure = e;
+								}
+								// never blocks, there are at most as many conversions as the queue holds
+								converted.add(new Converted(source, target, hash, contents.capacity(), output,
+										failure, System.nanoTime() - convertStart));
+							}
+						});
+					}
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					readingDone.set(true);
+				}
+			}
+		});
+		reader.shutdown();
+
+		// *** write on this thread
+		final long[] fileNanos = new long[sources.size()];
+		int fileCount = 0;
+		int handled = 0;
+		long readByteCount = 0;
+		long writtenByteCount = 0;
+		final MessageDigest digest = newDigest();
+		try (BufferedWriter manifestWriter = manifest == null ? null
+				: Files.newBufferedWriter(manifest, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+						StandardOpenOption.APPEND)) {
+			while (true) {
+				final Converted result = converted.poll(100, TimeUnit.MILLISECONDS);
+				if (result == null) {
+					if (readingDone.get() && (handled == submitted.get())) {
+						break;
+					}
+					continue;
+				}
+				handled++;
+				waiting.release();
+				if (result.failure != null) {
+					failures.put(result.source, result.failure);
+					continue;
+				}
+				final long writeStart = System.nanoTime();
+				try {
+					String outputHash = "-";
+					if (result.output != null) {
+						outputHash = hash(digest, result.output.duplicate());
+						writtenByteCount += write(result.target, result.output);
+					} else if (Files.isRegularFile(result.target)) {
+						// the conversion wrote the target itself, which is hashed so that an in place
+						// conversion is recognized as done on the next run
+						final ByteBuffer written = ByteBuffer.wrap(Files.readAllBytes(result.target));
+						outputHash = hash(digest, written.duplicate());
+						writtenByteCount += written.capacity();
+					}
+					if (deleteSources && !result.source.equals(result.target)) {
+						Files.deleteIfExists(result.source);
+					}
+					if (manifestWriter != null) {
+						final String path = relativize(root, result.source);
+						recorded.put(path, new Recorded(result.hash, outputHash));
+						manifestWriter.write(result.hash + " " + outputHash + " " + path);
+						manifestWriter.newLine();
+						manifestWriter.flush();
+					}
+					readByteCount += result.size;
+					fileNanos[fileCount++] = result.convertNanos + (System.nanoTime() - writeStart);
+				} catch (final IOException e) {
+					failures.put(result.source, e);
+				}
+			}
+		} finally {
+			reader.shutdownNow();
+			pool.shutdownNow();
+		}
+		reader.awaitTermination(1, TimeUnit.MINUTES);
+		pool.awaitTermination(1, TimeUnit.MINUTES);
+		if (manifest != null) {
+			writeManifest(manifest, recorded);
+		}
+
+		return new Result(sources.size(), fileCount, skipped.get(), readByteCount, writtenByteCount,
+				System.nanoTime() - start, Arrays.copyOf(fileNanos, fileCount), new LinkedHashMap<>(failures));
+	}
+
+	/**
+	 * @return every accepted file below the root, in the order the tree is walked
+	 */
+	private static List<Path> find(final Path root, final Conversion conversion, final Map<Path, Throwable> failures)
+			throws IOException {
+		final List<Path> sources = new ArrayList<>();
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+				if (attrs.isRegularFile() && conversion.accepts(file)) {
+					sources.add(file);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(final Path file, final IOException exc) {
+				failures.put(file, exc);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return sources;
+	}
+
+	private static boolean isUnchanged(final Recorded recorded, final String hash, final Path source,
+			final Path target) {
+		if (recorded == null) {
+			return false;
+		}
+		if (source.equals(target)) {
+			// converted in place, the source now holds the output
+			return hash.equals(recorded.outputHash);
+		}
+		return hash.equals(recorded.sourceHash) && Files.exists(target);
+	}
+
+	/**
+	 * Writes next to the target and moves it into place, so the target is never left half written.
+	 *
+	 * @return number of bytes written
+	 */
+	private static long write(final Path target, final ByteBuffer output) throws IOException {
+		final Path parent = target.toAbsolutePath().getParent();
+		Files.createDirectories(parent);
+		final Path temporary = Files.createTempFile(parent, target.getFileName().toString(), ".tmp");
+		long size = 0;
+		try {
+			try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				while (output.hasRemaining()) {
+					size += out.write(output);
+				}
+			}
+			try {
+				Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (final AtomicMoveNotSupportedException e) {
+				Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+		return size;
+	}
+
+	private static String relativize(final Path root, final Path source) {
+		return root.relativize(source).toString().replace('\\', '/');
+	}
+
+	private static Map<String, Recorded> readManifest(final Path manifest) throws IOException {
+		final Map<String, Recorded> recorded = new HashMap<>();
+		if (!Files.exists(manifest)) {
+			return recorded;
+		}
+		for (final String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+			final String[] parts = line.split(" ", 3);
+			if (parts.length == 3) {
+				// later lines are from later runs and win
+				recorded.put(parts[2], new Recorded(parts[0], parts[1]));
+			}
+		}
+		return recorded;
+	}
+
+	/**
+	 * Replaces the manifest, which grows by a line for every file converted, with one line per source.
+	 */
+	private static void writeManifest(final Path manifest, final Map<String, Recorded> recorded)
+			throws IOException {
+		final List<String> paths = new ArrayList<>(recorded.keySet());
+		Collections.sort(paths);
+		final StringBuilder lines = new StringBuilder(paths.size() * 128);
+		for (final String path : paths) {
+			final Recorded entry = recorded.get(path);
+			lines.append(entry.sourceHash).append(' ').append(entry.outputHash).append(' ').append(path)
+					.append(System.lineSeparator());
+		}
+		write(manifest, ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * @return SHA-1 of the remaining bytes of the buffer in hexadecimal, identifying the contents of a file
+	 */
+	public static String hash(final ByteBuffer contents) {
+		return hash(newDigest(), contents.duplicate());
+	}
+
+	private static String hash(final MessageDigest digest, final ByteBuffer contents) {
+		digest.reset();
+		digest.update(contents);
+		final byte[] hash = digest.digest();
+		final char[] hex = new char[hash.length * 2];
+		for (int i = 0; i < hash.length; i++) {
+			hex[i * 2] = Character.forDigit((hash[i] >> 4) & 0xF, 16);
+			hex[(i * 2) + 1] = Character.forDigit(hash[i] & 0xF, 16);
+		}
+		return new String(hex);
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (final NoSuchAlgorithmException e) {
+			// every java platform is required to support SHA-1
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static final class Recorded {
+		private final String sourceHash;
+		private final String outputHash;
+
+		public Recorded(final String sourceHash, final String outputHash) {
+			this.sourceHash = sourceHash;
+			this.outputHash = outputHash;
+		}
+	}
+
+	private static final class Converted {
+		private final Path source;
+		private final Path target;
+		private final String hash;
+		private final int size;
+		private final ByteBuffer output;
+		private final Throwable failure;
+		private final long convertNanos;
+
+		public Converted(final Path source, final Path target, final String hash, final int size,
+				final ByteBuffer output, final Throwable failure, final long convertNanos) {
+			this.source = source;
+			this.target = target;
+			this.hash = hash;
+			this.size = size;
+			this.output = output;
+			this.failure = failure;
+			this.convertNanos = convertNanos;
+		}
+	}
+
+	public static final class Result {
+		private final int foundCount;
+		private final int fileCount;
+		private final int skippedCount;
+		private final long readByteCount;
+		private final long writtenByteCount;
+		private final long elapsedNanos;
+		private final long[] sortedFileNanos;
+		private final Map<Path, Throwable> failures;
+
+		public Result(final int foundCount, final int fileCount, final int skippedCount, final long readByteCount,
+				final long writtenByteCount, final long elapsedNanos, final long[] fileNanos,
+				final Map<Path, Throwable> failures) {
+			this.foundCount = foundCount;
+			this.fileCount = fileCount;
+			this.skippedCount = skippedCount;
+			this.readByteCount = readByteCount;
+			this.writtenByteCount = writtenByteCount;
+			this.elapsedNanos = elapsedNanos;
+			sortedFileNanos = fileNanos.clone();
+			Arrays.sort(sortedFileNanos);
+			this.failures = Collections.unmodifiableMap(failures);
+		}
+
+		/**
+		 * @return number of accepted files found in the tree
+		 */
+		public int getFoundCount() {
+			return foundCount;
+		}
+
+		/**
+		 * @return number of files converted and written without error
+		 */
+		public int getFileCount() {
+			return fileCount;
+		}
+
+		/**
+		 * @return number of files skipped because the manifest shows they are unchanged
+		 */
+		public int getSkippedCount() {
+			return skippedCount;
+		}
+
+		/**
+		 * @return total size of the sources converted without error
+		 */
+		public long getReadByteCount() {
+			return readByteCount;
+		}
+
+		/**
+		 * @return total size of the outputs written
+		 */
+		public long getWrittenByteCount() {
+			return writtenByteCount;
+		}
+
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		public double getFilesPerSecond() {
+			return fileCount / seconds();
+		}
+
+		public double getReadMegabytesPerSecond() {
+			return (readByteCount / (1024.0 * 1024.0)) / seconds();
+		}
+
+		public double getWrittenMegabytesPerSecond() {
+			return (writtenByteCount / (1024.0 * 1024.0)) / seconds();
+		}
+
+		/**
+		 * @param percentile
+		 *            between 0 and 100
+		 * @return time to convert and write a file that this percentage of files took at most, 0 if none
+		 *         were converted
+		 */
+		public long getFileNanos(final double percentile) {
+			if (sortedFileNanos.length == 0) {
+				return 0;
+			}
+			final int index = (int) Math.ceil((percentile / 100) * sortedFileNanos.length) - 1;
+			return sortedFileNanos[Math.max(0, Math.min(index, sortedFileNanos.length - 1))];
+		}
+
+		/**
+		 * @return the cause of every failed file, in the order they failed
+		 */
+		public Map<Path, Throwable> getFailures() {
+			return failures;
+		}
+
+		/**
+		 * @return number of failed files for each distinct cause, most common first
+		 */
+		public Map<String, Integer> getFailureReasons() {
+			final Map<String, Integer> counts = new HashMap<>();
+			for (final Throwable failure : failures.values()) {
+				final String reason = reason(failure);
+				final Integer count = counts.get(reason);
+				counts.put(reason, count == null ? 1 : count + 1);
+			}
+			final List<Map.Entry<String, Integer>> entries = new ArrayList<>(counts.entrySet());
+			Collections.sort(entries, new Comparator<Map.Entry<String, Integer>>() {
+				@Override
+				public int compare(final Map.Entry<String, Integer> a, final Map.Entry<String, Integer> b) {
+					return b.getValue().compareTo(a.getValue());
+				}
+			});
+			final Map<String, Integer> reasons = new LinkedHashMap<>();
+			for (final Map.Entry<String, Integer> entry : entries) {
+				reasons.put(entry.getKey(), entry.getValue());
+			}
+			return reasons;
+		}
+
+		/**
+		 * @return the innermost cause, which names what actually went wrong
+		 */
+		public static String reason(final Throwable failure) {
+			Throwable cause = failure;
+			while ((cause.getCause() != null) && (cause.getCause() != cause)) {
+				cause = cause.getCause();
+			}
+			return cause.toString();
+		}
+
+		private double seconds() {
+			return Math.max(elapsedNanos, 1) / 1e9;
+		}
+
+		@Override
+		public String toString() {
+			final StringBuilder report = new StringBuilder();
+			report.append(String.format("%d files found: %d converted, %d unchanged, %d failed in %.2f s%n",
+					foundCount, fileCount, skippedCount, failures.size(), seconds()));
+			report.append(String.format("%.1f files/s, %.1f MB/s read, %.1f MB/s written%n", getFilesPerSecond(),
+					getReadMegabytesPerSecond(), getWrittenMegabytesPerSecond()));
+			report.append(String.format("per file: median %.1f ms, p95 %.1f ms, max %.1f ms", getFileNanos(50) / 1e6,
+					getFileNanos(95) / 1e6, getFileNanos(100) / 1e6));
+			for (final Map.Entry<String, Integer> reason : getFailureReasons().entrySet()) {
+				report.append(String.format("%n%6d x %s", reason.getValue(), reason.getKey()));
+			}
+			return report.toString();
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package de.wc3data.stream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Reads little endian Blizzard data from a {@link ByteBuffer}, with the same methods as
+ * {@link BlizzardDataInputStream}.
+ *
+ * Values are read straight from the buffer without allocating, and arrays are copied in bulk through
+ * typed views of the buffer, which makes this much faster than the stream for large chunks such as
+ * vertex data. Reading past the end throws an {@link EOFException}.
+ */
+public class BlizzardDataInputBuffer {
+	private final ByteBuffer buffer;
+	private int mark = -1;
+
+	/**
+	 * @param buffer
+	 *            data from its position to its limit, the buffer itself is left untouched
+	 */
+	public BlizzardDataInputBuffer(final ByteBuffer buffer) {
+		this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	public BlizzardDataInputBuffer(final byte[] data) {
+		this(ByteBuffer.wrap(data));
+	}
+
+	/**
+	 * Reads a stream to its end, so that it can be read through a buffer.
+	 */
+	public static ByteBuffer readAll(final InputStream in) throws IOException {
+		byte[] data = new byte[Math.max(in.available(), 8192)];
+		int size = 0;
+		int read;
+		while ((read = in.read(data, size, data.length - size)) != -1) {
+			size += read;
+			if (size == data.length) {
+				data = Arrays.copyOf(data, data.length * 2);
+			}
+		}
+		return ByteBuffer.wrap(data, 0, size);
+	}
+
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	public long getOffset() {
+		return buffer.position();
+	}
+
+	public int remaining() {
+		return buffer.remaining();
+	}
+
+	public void mark() {
+		mark = buffer.position();
+	}
+
+	public void reset() throws IOException {
+		if (mark < 0) {
+			throw new IOException("Resetting to invalid mark");
+		}
+		buffer.position(mark);
+	}
+
+	public void skip(final int count) throws IOException {
+		require(count);
+		buffer.position(buffer.position() + count);
+	}
+
+	public byte readByte() throws IOException {
+		require(1);
+		return buffer.get();
+	}
+
+	public short readShort() throws IOException {
+		require(2);
+		return buffer.getShort();
+	}
+
+	public int readInt() throws IOException {
+		require(4);
+		return buffer.getInt();
+	}
+
+	public int readNByteInt(final int numBytes) throws IOException {
+		require(numBytes);
+		int result = 0;
+		for (int i = 0; i < numBytes; i++) {
+			result |= (buffer.get() & 0xFF) << (i * 8);
+		}
+		return result;
+	}
+
+	public boolean readBool() throws IOException {
+		return readInt() == 1;
+	}
+
+	public float readFloat() throws IOException {
+		require(4);
+		return buffer.getFloat();
+	}
+
+	public double readDouble() throws IOException {
+		require(8);
+		return buffer.getDouble();
+	}
+
+	public char readChar() throws IOException {
+		require(1);
+		return (char) (buffer.get() & 0xFF);
+	}
+
+	public char[] readChars(final int charCount) throws IOException {
+		require(charCount);
+		final char[] c = new char[charCount];
+		for (int i = 0; i < charCount; i++) {
+			c[i] = (char) (buffer.get() & 0xFF);
+		}
+		return c;
+	}
+
+	/**
+	 * @return the characters up to the first zero
+	 */
+	public String readCharsAsString(final int charCount) throws IOException {
+		final char[] c = readChars(charCount);
+		for (int i = 0; i < charCount; i++) {
+			if (c[i] == 0) {
+				return String.valueOf(c, 0, i);
+			}
+		}
+		return String.valueOf(c);
+	}
+
+	/**
+	 * @return the characters, or null if all of them are zero
+	 */
+	public String readCharsAsStringCheckNull(final int charCount) throws IOException {
+		final char[] c = readChars(charCount);
+		for (int i = 0; i < charCount; i++) {
+			if (c[i] != 0) {
+				return String.valueOf(c);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return characters up to a terminating zero, or null if the data ends first
+	 */
+	public String readString() {
+		final StringBuilder sb = new StringBuilder(16);
+		while (buffer.hasRemaining()) {
+			final int value = buffer.get() & 0xFF;
+			if (value == 0) {
+				return sb.toString();
+			}
+			sb.append((char) value);
+		}
+		return null;
+	}
+
+	public void readBytes(final byte[] array) throws IOException {
+		require(array.length);
+		buffer.get(array);
+	}
+
+	public void readShorts(final short[] array) throws IOException {
+		require(array.length * 2);
+		buffer.asShortBuffer().get(array);
+		buffer.position(buffer.position() + (array.length * 2));
+	}
+
+	public void readInts(final int[] array) throws IOException {
+		require(array.length * 4);
+		buffer.asIntBuffer().get(array);
+		buffer.position(buffer.position() + (array.length * 4));
+	}
+
+	public void readFloats(final float[] array) throws IOException {
+		require(array.length * 4);
+		buffer.asFloatBuffer().get(array);
+		buffer.position(buffer.position() + (array.length * 4));
+	}
+
+	public void readDoubles(final double[] array) throws IOException {
+		require(array.length * 8);
+		buffer.asDoubleBuffer().get(array);
+		buffer.position(buffer.position() + (array.length * 8));
+	}
+
+	private void require(final int count) throws EOFException {
+		if ((count < 0) || (count > buffer.remaining())) {
+			throw new EOFException("Unexpected end of data at offset " + buffer.position() + " reading " + count
+					+ " bytes, " + buffer.remaining() + " left");
+		}
+	}
+}
@@ -0,0 +1,211 @@
+package de.wc3data.stream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes little endian Blizzard data into a growable direct {@link ByteBuffer}, with the same methods as
+ * {@link BlizzardDataOutputStream}.
+ *
+ * Values are put straight into the buffer without allocating and arrays are put in bulk. Sizes that come
+ * before the data they measure are written as a placeholder and filled in once that data is written, so
+ * nothing has to be measured before it is written.
+ */
+public class BlizzardDataOutputBuffer {
+	private ByteBuffer buffer;
+	private int floatBitMask = 0xFFFFFFFF;
+
+	public BlizzardDataOutputBuffer() {
+		this(64 * 1024);
+	}
+
+	public BlizzardDataOutputBuffer(final int initialCapacity) {
+		buffer = ByteBuffer.allocateDirect(Math.max(initialCapacity, 16)).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * @param floatBitMask
+	 *            mask applied to the bits of every float written, see
+	 *            {@link BlizzardDataOutputStream#getFloatBitMask()}
+	 */
+	public void setFloatBitMask(final int floatBitMask) {
+		this.floatBitMask = floatBitMask;
+	}
+
+	/**
+	 * @return number of bytes written so far
+	 */
+	public int size() {
+		return buffer.position();
+	}
+
+	/**
+	 * @return read-only view of the bytes written so far
+	 */
+	public ByteBuffer getData() {
+		final ByteBuffer data = buffer.duplicate();
+		data.flip();
+		return data.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	public void writeTo(final WritableByteChannel channel) throws IOException {
+		final ByteBuffer data = getData();
+		while (data.hasRemaining()) {
+			channel.write(data);
+		}
+	}
+
+	public void writeTo(final OutputStream out) throws IOException {
+		final ByteBuffer data = getData();
+		final byte[] chunk = new byte[Math.min(data.remaining(), 64 * 1024)];
+		while (data.hasRemaining()) {
+			final int length = Math.min(chunk.length, data.remaining());
+			data.get(chunk, 0, length);
+			out.write(chunk, 0, length);
+		}
+	}
+
+	/**
+	 * Writes a placeholder for a size that is only known once the data after it is written.
+	 *
+	 * @return position to pass to {@link #endChunkSize(int)} or {@link #endInclusiveSize(int)}
+	 */
+	public int beginSize() {
+		final int position = buffer.position();
+		writeInt(0);
+		return position;
+	}
+
+	/**
+	 * Fills in a size begun with {@link #beginSize()} with the number of bytes written after it.
+	 */
+	public void endChunkSize(final int position) {
+		buffer.putInt(position, buffer.position() - position - 4);
+	}
+
+	/**
+	 * Fills in a size begun with {@link #beginSize()} with the number of bytes written since, counting the
+	 * size itself.
+	 */
+	public void endInclusiveSize(final int position) {
+		buffer.putInt(position, buffer.position() - position);
+	}
+
+	public void write(final byte[] b) {
+		ensureRemaining(b.length);
+		buffer.put(b);
+	}
+
+	public void writeChars(final char[] toWrite) {
+		ensureRemaining(toWrite.length);
+		for (int i = 0; i < toWrite.length; i++) {
+			buffer.put((byte) toWrite[i]);
+		}
+	}
+
+	public void writeInt(final int toWrite) {
+		ensureRemaining(4);
+		buffer.putInt(toWrite);
+	}
+
+	public void writeNByteInt(final int toWrite, final int numBytes) {
+		ensureRemaining(numBytes);
+		for (int i = 0; i < numBytes; i++) {
+			buffer.put((byte) (i < 4 ? toWrite >>> (i * 8) : 0));
+		}
+	}
+
+	public void writeBool(final boolean toWrite) {
+		writeInt(toWrite ? 1 : 0);
+	}
+
+	public void writeByte(final int toWrite) {
+		ensureRemaining(1);
+		buffer.put((byte) toWrite);
+	}
+
+	public void writeFloat(final float toWrite) {
+		writeInt(Float.floatToIntBits(toWrite) & floatBitMask);
+	}
+
+	public void writeDouble(final double toWrite) {
+		ensureRemaining(8);
+		buffer.putDouble(toWrite);
+	}
+
+	public void writeFourByteString(final String toWrite) {
+		writeNByteString(toWrite, 4);
+	}
+
+	public void writeNByteString(final String toWrite, final int charCount) {
+		ensureRemaining(charCount);
+		final int length = toWrite == null ? 0 : Math.min(toWrite.length(), charCount);
+		for (int i = 0; i < length; i++) {
+			buffer.put((byte) toWrite.charAt(i));
+		}
+		for (int i = length; i < charCount; i++) {
+			buffer.put((byte) 0);
+		}
+	}
+
+	public void writeString(final String toWrite) {
+		final int length = toWrite == null ? 0 : toWrite.length();
+		ensureRemaining(length + 1);
+		for (int i = 0; i < length; i++) {
+			buffer.put((byte) toWrite.charAt(i));
+		}
+		buffer.put((byte) 0);
+	}
+
+	public void writeBytes(final byte[] array) {
+		write(array);
+	}
+
+	public void writeShorts(final short[] array) {
+		ensureRemaining(array.length * 2);
+		buffer.asShortBuffer().put(array);
+		buffer.position(buffer.position() + (array.length * 2));
+	}
+
+	public void writeInts(final int[] array) {
+		ensureRemaining(array.length * 4);
+		buffer.asIntBuffer().put(array);
+		buffer.position(buffer.position() + (array.length * 4));
+	}
+
+	public void writeFloats(final float[] array) {
+		if (floatBitMask != 0xFFFFFFFF) {
+			for (int i = 0; i < array.length; i++) {
+				writeFloat(array[i]);
+			}
+			return;
+		}
+		ensureRemaining(array.length * 4);
+		buffer.asFloatBuffer().put(array);
+		buffer.position(buffer.position() + (array.length * 4));
+	}
+
+	public void writeDoubles(final double[] array) {
+		ensureRemaining(array.length * 8);
+		buffer.asDoubleBuffer().put(array);
+		buffer.position(buffer.position() + (array.length * 8));
+	}
+
+	private void ensureRemaining(final int count) {
+		if (buffer.remaining() >= count) {
+			return;
+		}
+		final long needed = (long) buffer.position() + count;
+		if (needed > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Cannot write more than 2 GB");
+		}
+		final int capacity = (int) Math.min(Math.max(needed, (long) buffer.capacity() * 2), Integer.MAX_VALUE);
+		final ByteBuffer grown = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.flip();
+		grown.put(buffer);
+		buffer = grown;
+	}
+}
@@ -66,7 +66,14 @@ public class BlizzardDataOutputStream extends BufferedOutputStream {
 	}
 
 	public void writeFloat(final float toWrite) throws IOException {
-		writeInt(Float.floatToIntBits(toWrite));
+		writeInt(Float.floatToIntBits(toWrite) & getFloatBitMask());
+	}
+
+	/**
+	 * @return mask applied to the bits of every float written, all ones unless precision is dropped
+	 */
+	public int getFloatBitMask() {
+		return 0xFFFFFFFF;
 	}
 
 	public void writeFourByteString(final String toWrite) throws IOException {
@@ -5,6 +5,10 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 
 public class SquishingBlizzardDataOutputStream extends BlizzardDataOutputStream {
+	/**
+	 * Keeps the upper half of every float, so that squished models compress better.
+	 */
+	public static final int FLOAT_BIT_MASK = 0xFFFF0000;
 
 	public SquishingBlizzardDataOutputStream(final File file, final boolean append) throws FileNotFoundException {
 		super(file, append);
@@ -15,8 +19,8 @@ public class SquishingBlizzardDataOutputStream extends BlizzardDataOutputStream
 	}
 
 	@Override
-	public void writeFloat(final float toWrite) throws IOException {
-		writeInt(Float.floatToIntBits(toWrite) & 0xFFFF0000);
+	public int getFloatBitMask() {
+		return FLOAT_BIT_MASK;
 	}
 
 }
@@ -3,6 +3,7 @@ package de.wc3data.stream;
 import java.io.IOException;
 
 import com.hiveworkshop.wc3.mdx.MdxModel;
+import com.hiveworkshop.wc3.mdx.MdxUtils;
 
 public class StreamUtils {
 
@@ -20,9 +21,7 @@ public class StreamUtils {
 
 	public static MdxModel loadModel(final BlizzardDataInputStream in)
 			throws IOException {
-		final MdxModel model = new MdxModel();
-		model.load(in);
-		return model;
+		return MdxUtils.loadModel(in);
 	}
 
         public static boolean checkOptionalId(final BlizzardDataInputStream in,
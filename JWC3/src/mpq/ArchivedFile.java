@@ -6,6 +6,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
 
 import mpq.data.RawArrays;
+import mpq.util.ChannelIO;
 import mpq.util.Cryption;
 
 public class ArchivedFile implements Serializable {
@@ -17,7 +18,7 @@ public class ArchivedFile implements Serializable {
 	// Specification is unclear when [(file is single unit) equals TRUE AND (file uses CRC) equals TRUE]. Assuming flag is ignored.
 	// Single Unit requires version safety check.
 	
-	public boolean ready;
+	public volatile boolean ready;
 	public final int blockShift;
 	public final int compressedSize;
 	public final int fileSize;
@@ -85,13 +86,13 @@ public class ArchivedFile implements Serializable {
 		}
 	}
 	
-	public void loadOffsets( SeekableByteChannel in ) throws IOException, MPQException{
+	public synchronized void loadOffsets( SeekableByteChannel in ) throws IOException, MPQException{
+		// another thread may have loaded the table while this one waited
+		if( ready ) return;
+		
 		// read sector table from file
 		ByteBuffer temp = ByteBuffer.allocate(blockOffsets.length * 4);
-		in.position( fileOffset );
-		while( temp.hasRemaining() )
-			if( in.read(temp) == -1 )
-				break;
+		ChannelIO.readFully(in, temp, fileOffset);
 		temp.rewind();
 		
 		// decrypt if required
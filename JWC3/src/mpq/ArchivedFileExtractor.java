@@ -5,11 +5,22 @@ import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
 
 import mpq.compression.Compression;
+import mpq.util.ChannelIO;
 import mpq.util.Cryption;
 
 public class ArchivedFileExtractor {
-	private Compression decompress = new Compression();
+	// decompressors cache buffers so each thread needs its own
+	private final ThreadLocal<Compression> decompressors = new ThreadLocal<Compression>(){
+		@Override
+		protected Compression initialValue() {
+			return new Compression();
+		}
+	};
 	
+	/**
+	 * Reads, decrypts and decompresses a block sector of a file. Reads are positional so the same channel
+	 * and extractor can be used by many threads at once as long as each uses its own buffer.
+	 */
 	public ByteBuffer readBlock(ByteBuffer bufferold, SeekableByteChannel in, ArchivedFile file, int block) throws IOException, MPQException{
 		// *** calculate the current block size
 		int currentSize;
@@ -19,21 +30,20 @@ public class ArchivedFileExtractor {
 			currentSize = bufferold.capacity();
 		
 		// *** read block
+		long sectorPosition;
 		if( file.blockOffsets != null ){
 			// use block offset table
 			if( !file.ready ){
 				file.loadOffsets(in);
 			}
 			bufferold.limit(file.blockOffsets[block+1] - file.blockOffsets[block]);
-			in.position(file.fileOffset + file.blockOffsets[block]);
+			sectorPosition = file.fileOffset + file.blockOffsets[block];
 		}else{
 			// compute offset
 			bufferold.limit(currentSize);
-			in.position(file.fileOffset + bufferold.capacity() * block);
+			sectorPosition = file.fileOffset + (long) bufferold.capacity() * block;
 		}
-		while( bufferold.hasRemaining() )
-			if( in.read(bufferold) == -1 )
-				break;
+		ChannelIO.readFully(in, bufferold, sectorPosition);
 		bufferold.rewind();
 		
 		// *** decrypt if required
@@ -49,6 +59,7 @@ public class ArchivedFileExtractor {
 				
 		// *** decompress if required
 		if( file.compression > 0 ){
+			Compression decompress = decompressors.get();
 			// only decompress if block is compressed
 			if( bufferold.limit() < currentSize ){				
 				// decompress block
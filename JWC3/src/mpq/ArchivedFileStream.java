@@ -1,28 +1,63 @@
 package mpq;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.NonWritableChannelException;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 public class ArchivedFileStream implements SeekableByteChannel{
 	private boolean open;
 	private SeekableByteChannel from;
+	// sector currently being served
 	private ByteBuffer buffer;
+	// buffer handed to the extractor, not used when sectors come from the cache or mapping
+	private ByteBuffer scratch;
+	private int blockSize;
 	private ArchivedFile file;
 	private ArchivedFileExtractor extractor;
 	private long position;
 	private int currentBlock;
+	// true when the buffer is a view of mapped archive memory covering the entire file
+	private boolean direct;
+	// true when sectors need decrypting or decompressing so are worth sharing through the sector cache
+	private boolean cacheable;
+	// decodes the sector after the current one in the background, null when not reading ahead
+	private Executor readAhead;
+	private FutureTask<ByteBuffer> ahead;
+	private int aheadBlock;
+	// buffer the sector read ahead is decoded into, swapped with scratch when it is used
+	private ByteBuffer aheadScratch;
 	
 	public ArchivedFileStream(SeekableByteChannel in, ArchivedFileExtractor extractor, ArchivedFile file){
 		from = in;
 		this.extractor = extractor;
 		this.file = file;
-		if( file.hasFlag(BlockTable.FLAG_SINGLE_UNIT) ){
-			buffer = ByteBuffer.allocate(file.fileSize);
+		if( in instanceof MappedArchiveChannel && file.compression == 0 && file.key == 0 && file.fileSize > 0 ){
+			// stored files can be served straight out of the mapping with no copy
+			try {
+				buffer = ((MappedArchiveChannel) in).slice(file.fileOffset, file.fileSize);
+				direct = true;
+			} catch (IOException e) {
+				// fall back to reading, the problem will be reported when the block is read
+			}
+		}
+		if( direct ){
+			blockSize = file.fileSize;
 		}else{
-			buffer = ByteBuffer.allocate(512 << file.blockShift);
+			if( file.hasFlag(BlockTable.FLAG_SINGLE_UNIT) ){
+				blockSize = file.fileSize;
+			}else{
+				blockSize = 512 << file.blockShift;
+			}
+			cacheable = file.compression > 0 || file.key != 0;
 		}
 		position = 0;
 		currentBlock = -1;
@@ -31,11 +66,37 @@ public class ArchivedFileStream implements SeekableByteChannel{
 
 	@Override
 	public void close() throws IOException {
+		discardAhead();
 		from = null;
 		buffer = null;
+		scratch = null;
 		open = false;
 	}
 
+	/**
+	 * Controls whether sectors read by this stream go through the sector cache. Streams that read many
+	 * files once, such as bulk extraction, should not use it so they do not push out sectors that are
+	 * used repeatedly.
+	 * 
+	 * @param enabled false to always read sectors from the archive
+	 */
+	public void setSectorCaching(boolean enabled){
+		cacheable = enabled && !direct && (file.compression > 0 || file.key != 0);
+	}
+	
+	/**
+	 * Decodes the next sector in the background while the current one is being consumed, so that reading
+	 * and decompressing overlap with whatever is done with the data. Sectors read ahead are decoded when
+	 * needed on the reading thread if the executor has not got to them yet, so the executor can be shared
+	 * with the readers without risk of deadlock.
+	 * 
+	 * @param executor runs sector decoding, or null to stop reading ahead
+	 */
+	public void setReadAhead(Executor executor){
+		readAhead = direct ? null : executor;
+		if( readAhead == null ) discardAhead();
+	}
+
 	@Override
 	public boolean isOpen() {
 		return open;
@@ -56,10 +117,10 @@ public class ArchivedFileStream implements SeekableByteChannel{
 		position = newPosition;
 		// try and update the buffer position of loaded sectors
 		if( currentBlock != -1 ){		
-			if( currentBlock != newPosition / buffer.capacity() )
+			if( currentBlock != newPosition / blockSize || newPosition >= file.fileSize )
 				currentBlock = -1;
 			else
-				buffer.position((int) (newPosition % buffer.capacity()));
+				buffer.position((int) (newPosition % blockSize));
 		}
 		
 		// *** return value as described by SeekableByteChannel interface
@@ -73,17 +134,16 @@ public class ArchivedFileStream implements SeekableByteChannel{
 		// end of stream
 		if( position >= file.fileSize ) return -1;
 		
+		// mapped views contain the entire file so only need repositioning
+		if( direct && currentBlock == -1 ){
+			currentBlock = 0;
+			buffer.position((int) position);
+		}
+		
 		// load current block if no block is currently loaded
 		if( currentBlock == -1 ){
-			currentBlock = (int) (position / buffer.capacity());
-			buffer.clear();
-			try {
-				buffer = extractor.readBlock(buffer, from, file, currentBlock);
-			} catch (MPQException e) {
-				throw new IOException(e);
-			}
-			buffer.position((int) (position % buffer.capacity()));
-			
+			loadBlock((int) (position / blockSize));
+			buffer.position((int) (position % blockSize));
 		}
 		
 		long positionstart = position;
@@ -98,13 +158,7 @@ public class ArchivedFileStream implements SeekableByteChannel{
 				position+= buffer.remaining();
 				dst.put(buffer);
 				if(position < file.fileSize){
-					currentBlock = (int) (position / buffer.capacity());
-					buffer.clear();
-					try {
-						buffer = extractor.readBlock(buffer, from, file, currentBlock);
-					} catch (MPQException e) {
-						throw new IOException(e);
-					}
+					loadBlock((int) (position / blockSize));
 				}else{
 					break;
 				}
@@ -114,6 +168,147 @@ public class ArchivedFileStream implements SeekableByteChannel{
 		return (int) (position - positionstart);
 	}
 
+	/**
+	 * Writes the rest of the file from the current position to a channel one sector at a time, so no more
+	 * than a sector or two of the file is ever held in memory. Leaves the position at the end of the file.
+	 * 
+	 * @param target channel to write to
+	 * @return number of bytes written
+	 * @throws IOException when reading or writing fails
+	 */
+	public long transferTo(WritableByteChannel target) throws IOException{
+		if( !open ) throw new ClosedChannelException();
+		if( position >= file.fileSize ) return 0;
+		
+		if( direct && currentBlock == -1 ){
+			currentBlock = 0;
+			buffer.position((int) position);
+		}
+		if( currentBlock == -1 ){
+			loadBlock((int) (position / blockSize));
+			buffer.position((int) (position % blockSize));
+		}
+		
+		long positionstart = position;
+		for(;;){
+			int count = buffer.remaining();
+			while( buffer.hasRemaining() ) target.write(buffer);
+			position+= count;
+			if( position >= file.fileSize ) break;
+			loadBlock((int) (position / blockSize));
+		}
+		
+		return position - positionstart;
+	}
+
+	/**
+	 * Reads the entire file regardless of the current position, leaving the position at the end of the
+	 * file. Stored files in mapped archives are returned as a view of the mapping without copying,
+	 * otherwise a new buffer is filled.
+	 * 
+	 * @return read-only buffer positioned at 0 containing the whole file
+	 * @throws IOException when reading fails
+	 */
+	public ByteBuffer readFully() throws IOException{
+		if( !open ) throw new ClosedChannelException();
+		
+		ByteBuffer contents;
+		if( direct ){
+			contents = buffer.duplicate();
+			contents.clear();
+		}else{
+			contents = ByteBuffer.allocate(file.fileSize);
+			position(0);
+			while( contents.hasRemaining() )
+				if( read(contents) == -1 )
+					break;
+			contents.flip();
+		}
+		position(file.fileSize);
+		return contents.asReadOnlyBuffer();
+	}
+	
+	// makes the given block current, from the sector cache when possible
+	private void loadBlock(int block) throws IOException{
+		currentBlock = block;
+		SectorCache cache = SectorCache.get();
+		if( cacheable ){
+			ByteBuffer cached = cache.get(from, file.fileOffset, block);
+			if( cached != null ){
+				buffer = cached;
+				return;
+			}
+		}
+		
+		if( ahead != null && aheadBlock == block ){
+			// use the sector read ahead, the buffer it replaces is used for the next one
+			ByteBuffer loaded = awaitAhead();
+			aheadScratch = scratch;
+			scratch = loaded;
+		}else{
+			discardAhead();
+			if( scratch == null ) scratch = ByteBuffer.allocate(blockSize);
+			scratch.clear();
+			try {
+				scratch = extractor.readBlock(scratch, from, file, block);
+			} catch (MPQException e) {
+				throw new IOException(e);
+			}
+		}
+		buffer = scratch;
+		if( cacheable ) cache.put(from, file.fileOffset, block, buffer);
+		
+		// *** start on the next sector
+		if( readAhead != null && (long) (block + 1) * blockSize < file.fileSize ){
+			if( aheadScratch == null ) aheadScratch = ByteBuffer.allocate(blockSize);
+			final ByteBuffer target = aheadScratch;
+			final SeekableByteChannel source = from;
+			final int next = block + 1;
+			aheadScratch = null;
+			ahead = new FutureTask<ByteBuffer>(new Callable<ByteBuffer>(){
+				@Override
+				public ByteBuffer call() throws Exception {
+					target.clear();
+					return extractor.readBlock(target, source, file, next);
+				}
+			});
+			aheadBlock = next;
+			try {
+				readAhead.execute(ahead);
+			} catch (RejectedExecutionException e) {
+				// decoded on this thread when needed instead
+			}
+		}
+	}
+	
+	// waits for the sector read ahead to be decoded, decoding it here if it has not been started
+	private ByteBuffer awaitAhead() throws IOException{
+		FutureTask<ByteBuffer> task = ahead;
+		ahead = null;
+		task.run();
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for sector");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if( cause instanceof IOException ) throw (IOException) cause;
+			if( cause instanceof RuntimeException ) throw (RuntimeException) cause;
+			throw new IOException(cause);
+		}
+	}
+	
+	// drops the sector read ahead, recovering its buffer
+	private void discardAhead(){
+		if( ahead == null ) return;
+		try {
+			aheadScratch = awaitAhead();
+		} catch (IOException | RuntimeException e) {
+			// only matters if the sector is read again
+		}
+	}
+
 	@Override
 	public long size() throws IOException {
 		return file.fileSize;
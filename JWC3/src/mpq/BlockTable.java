@@ -13,15 +13,59 @@ public class BlockTable {
 	public static final int FLAG_SECTOR_CRC = 0x04000000;
 	public static final int FLAG_EXISTS = 0x80000000;
 	
-	private Entry[] tableArray;
+	// one array per field rather than an object per block
+	private final long[] filePositions;
+	private final int[] compressedSizes;
+	private final int[] fileSizes;
+	private final int[] flags;
+	
+	// raw constructor, takes ownership of the arrays which must be the same length
+	public BlockTable(long[] filePositions, int[] compressedSizes, int[] fileSizes, int[] flags){
+		this.filePositions = filePositions;
+		this.compressedSizes = compressedSizes;
+		this.fileSizes = fileSizes;
+		this.flags = flags;
+	}
 	
 	// raw constructor, expects all entries to be non-null.
 	public BlockTable(Entry[] entries){
-		tableArray = entries;
+		this(new long[entries.length], new int[entries.length], new int[entries.length], new int[entries.length]);
+		for( int i = 0 ; i < entries.length ; i+= 1 ){
+			filePositions[i] = entries[i].filePosition;
+			compressedSizes[i] = entries[i].compressedSize;
+			fileSizes[i] = entries[i].fileSize;
+			flags[i] = entries[i].flags;
+		}
 	}
 	
+	// copy of a block, changes to it are not written back to the table
 	public Entry lookupEntry(int entry){
-		return tableArray[entry];
+		Entry result = new Entry();
+		result.filePosition = filePositions[entry];
+		result.compressedSize = compressedSizes[entry];
+		result.fileSize = fileSizes[entry];
+		result.flags = flags[entry];
+		return result;
+	}
+	
+	public long getFilePosition(int entry){
+		return filePositions[entry];
+	}
+	
+	public int getCompressedSize(int entry){
+		return compressedSizes[entry];
+	}
+	
+	public int getFileSize(int entry){
+		return fileSizes[entry];
+	}
+	
+	public int getFlags(int entry){
+		return flags[entry];
+	}
+	
+	public int size(){
+		return filePositions.length;
 	}
 		
 	public static String flagsToString(int source){
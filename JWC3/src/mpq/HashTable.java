@@ -5,24 +5,94 @@ import mpq.data.HashTableEntry;
 public class HashTable {
 	public static final int BLOCK_EMPTY_ALWAYS = 0xFFFFFFFF;
 	public static final int BLOCK_EMPTY_NOW = 0xFFFFFFFE;
-	private Entry[] bucketArray;
+	public static final short LOCALE_NEUTRAL = 0;
+	
+	// one array per field so that probing only touches the hashes and block indices
+	private final long[] hashes;
+	private final short[] locales;
+	private final short[] platforms;
+	private final int[] blockIndices;
+	
+	// raw constructor, takes ownership of the arrays which must be the same power of 2 length
+	public HashTable(long[] hashes, short[] locales, short[] platforms, int[] blockIndices){
+		this.hashes = hashes;
+		this.locales = locales;
+		this.platforms = platforms;
+		this.blockIndices = blockIndices;
+	}
 	
 	// raw constructor, assumes every entry is not null and the array is a power of 2
 	public HashTable(Entry[] entries){
-		bucketArray = entries;
+		this(new long[entries.length], new short[entries.length], new short[entries.length], new int[entries.length]);
+		for( int i = 0 ; i < entries.length ; i+= 1 ){
+			hashes[i] = entries[i].hash;
+			locales[i] = entries[i].locale;
+			platforms[i] = entries[i].platform;
+			blockIndices[i] = entries[i].blockIndex;
+		}
 	}
 	
 	public int lookupBlock(HashLookup what) throws MPQException{
-		int mask = bucketArray.length-1;
+		int block = findBlock(what);
+		if(block == BLOCK_EMPTY_ALWAYS) throw new MPQException("lookup not found");
+		return block;
+	}
+	
+	// same as lookupBlock but returns BLOCK_EMPTY_ALWAYS when not found, for callers that expect misses
+	public int findBlock(HashLookup what){
+		return findBlock(what, LOCALE_NEUTRAL);
+	}
+	
+	// prefers the entry of the locale, then the neutral entry, then the first entry found for the file
+	public int findBlock(HashLookup what, short locale){
+		int mask = hashes.length-1;
 		int index = what.index & mask;
+		int neutral = BLOCK_EMPTY_ALWAYS;
+		int first = BLOCK_EMPTY_ALWAYS;
 		for(int pos = index ; ; ){
-			Entry temp = bucketArray[pos];
-			if(temp.blockIndex == BLOCK_EMPTY_ALWAYS) break;
-			if(temp.getHash() == what.hash) return temp.blockIndex;
+			int block = blockIndices[pos];
+			if(block == BLOCK_EMPTY_ALWAYS) break;
+			// deleted entries keep probing going but never match
+			if(block != BLOCK_EMPTY_NOW && hashes[pos] == what.hash){
+				if(locales[pos] == locale) return block;
+				if(locales[pos] == LOCALE_NEUTRAL && neutral == BLOCK_EMPTY_ALWAYS) neutral = block;
+				if(first == BLOCK_EMPTY_ALWAYS) first = block;
+			}
 			pos = ( pos + 1 ) & mask;
 			if(pos == index) break;
 		}
-		throw new MPQException("lookup not found");
+		return neutral != BLOCK_EMPTY_ALWAYS ? neutral : first;
+	}
+	
+	// number of buckets, for walking every entry
+	public int size(){
+		return hashes.length;
+	}
+	
+	public long getHash(int bucket){
+		return hashes[bucket];
+	}
+	
+	public short getLocale(int bucket){
+		return locales[bucket];
+	}
+	
+	public short getPlatform(int bucket){
+		return platforms[bucket];
+	}
+	
+	public int getBlockIndex(int bucket){
+		return blockIndices[bucket];
+	}
+	
+	// copy of a bucket, changes to it are not written back to the table
+	public Entry getEntry(int bucket){
+		Entry entry = new Entry();
+		entry.hash = hashes[bucket];
+		entry.locale = locales[bucket];
+		entry.platform = platforms[bucket];
+		entry.blockIndex = blockIndices[bucket];
+		return entry;
 	}
 	
 	/*public static int lookupBlock(Entry[] hashtable, byte[] file) throws FileNotFoundException{
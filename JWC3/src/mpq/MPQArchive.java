@@ -120,19 +120,20 @@ public class MPQArchive {
 		}
 		
 		// *** deserialize hashtable
-		HashTable.Entry[] entries = new HashTable.Entry[htsize];
+		long[] hashes = new long[htsize];
+		short[] locales = new short[htsize];
+		short[] platforms = new short[htsize];
+		int[] blockIndices = new int[htsize];
 		HashTableEntry htentry = new HashTableEntry();
 		for( int i = 0 ; i < htsize ; i+= 1 ){
 			htentry.move(buffer);
-			HashTable.Entry tempentry = new HashTable.Entry();
-			tempentry.hash = htentry.getHash();
-			tempentry.locale = htentry.getLocale();
-			tempentry.platform = htentry.getPlatform();
-			tempentry.blockIndex = htentry.getBlockIndex();
-			entries[i] = tempentry;
+			hashes[i] = htentry.getHash();
+			locales[i] = htentry.getLocale();
+			platforms[i] = htentry.getPlatform();
+			blockIndices[i] = htentry.getBlockIndex();
 			buffer.position(buffer.position() + HashTableEntry.STRUCT_SIZE);
 		}
-		hashTable = new HashTable(entries);
+		hashTable = new HashTable(hashes, locales, platforms, blockIndices);
 	}
 	
 	private void deserializeBlockTable(SeekableByteChannel in, ArchiveHeader archiveheader) throws IOException, MPQException{
@@ -193,16 +194,17 @@ public class MPQArchive {
 		}
 		
 		// *** deserialize blocktable
-		BlockTable.Entry[] entries = new BlockTable.Entry[btsize];
+		long[] filePositions = new long[btsize];
+		int[] compressedSizes = new int[btsize];
+		int[] fileSizes = new int[btsize];
+		int[] flags = new int[btsize];
 		BlockTableEntry btentry = new BlockTableEntry();
 		for( int i = 0 ; i < btsize ; i+= 1 ){
 			btentry.move(buffer);
-			BlockTable.Entry tempentry = new BlockTable.Entry();
-			tempentry.filePosition = (long) btentry.getFilePosition() & 0xFFFFFFFFL;
-			tempentry.compressedSize = btentry.getCompressedSize();
-			tempentry.fileSize = btentry.getFileSize();
-			tempentry.flags = btentry.getFlags();
-			entries[i] = tempentry;
+			filePositions[i] = (long) btentry.getFilePosition() & 0xFFFFFFFFL;
+			compressedSizes[i] = btentry.getCompressedSize();
+			fileSizes[i] = btentry.getFileSize();
+			flags[i] = btentry.getFlags();
 			buffer.position(buffer.position() + BlockTableEntry.STRUCT_SIZE);
 		}
 		
@@ -226,10 +228,10 @@ public class MPQArchive {
 			// deserialize high blocktable
 			short[] highposarray = RawArrays.getShortArray(buffer);
 			for( int i = 0 ; i < btsize ; i+= 1 ){
-				entries[i].filePosition|= ((long) highposarray[i] & 0xFFFFL) << 32;
+				filePositions[i]|= ((long) highposarray[i] & 0xFFFFL) << 32;
 			}
 		}
-		blockTable = new BlockTable(entries);
+		blockTable = new BlockTable(filePositions, compressedSizes, fileSizes, flags);
 	}
 	
 	public void loadArchive(SeekableByteChannel in, boolean fold) throws IOException, MPQException{
@@ -257,6 +259,20 @@ public class MPQArchive {
 	public MPQArchive(){
 	}
 	
+	/**
+	 * Creates an archive from tables that were already read, such as from a cache of a previous load.
+	 * No validation is performed so the tables must have come from the archive in the channel that
+	 * files will be read from.
+	 */
+	public MPQArchive(long archiveOffset, short blockShift, short version, long archiveSize, HashTable hashTable, BlockTable blockTable){
+		this.archiveOffset = archiveOffset;
+		this.blockShift = blockShift;
+		this.version = version;
+		this.archiveSize = archiveSize;
+		this.hashTable = hashTable;
+		this.blockTable = blockTable;
+	}
+	
 	public long getArchiveOffset() {
 		return archiveOffset;
 	}
@@ -268,6 +284,10 @@ public class MPQArchive {
 	public short getVersion() {
 		return version;
 	}
+	
+	public long getArchiveSize() {
+		return archiveSize;
+	}
 
 	public boolean isOffsetInArchive(long offset){
 		return offset >= 0 && offset <= archiveSize;
@@ -277,6 +297,14 @@ public class MPQArchive {
 		return isOffsetInArchive(position - archiveOffset);
 	}
 	
+	public HashTable getHashTable() {
+		return hashTable;
+	}
+
+	public BlockTable getBlockTable() {
+		return blockTable;
+	}
+	
 	public int lookupPath(String path) throws MPQException{
 		return hashTable.lookupBlock(new HashLookup(path));
 	}
@@ -288,4 +316,13 @@ public class MPQArchive {
 	public ArchivedFile lookupHash2(HashLookup hash) throws MPQException{
 		return new ArchivedFile(this, hash, blockTable.lookupEntry(hashTable.lookupBlock(hash)));
 	}
+	
+	// for when the block was already found, such as from an index of several archives
+	public ArchivedFile lookupBlock2(HashLookup hash, int block) throws MPQException{
+		return new ArchivedFile(this, hash, blockTable.lookupEntry(block));
+	}
+	
+	public boolean hasPath(HashLookup hash){
+		return hashTable != null && hashTable.findBlock(hash) != HashTable.BLOCK_EMPTY_ALWAYS;
+	}
 }
@@ -0,0 +1,502 @@
+package mpq;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import mpq.data.FileHeader;
+import mpq.util.Cryption;
+
+/**
+ * Builds version 1 MPQ archives as read by Warcraft III.
+ *
+ * Files are added in memory and the archive is produced in one go by write. Sectors of every file are
+ * compressed and encrypted by a fork join pool so many files, and the many sectors of large files, are
+ * processed at once. Once every sector is known the archive is laid out and written front to back, so the
+ * output only has to be a sequential channel.
+ *
+ * A (listfile) naming every added file and an (attributes) file with a CRC32 and time stamp for every
+ * block are generated by default.
+ *
+ * Adding files is thread safe, but files may not be added while the archive is being written.
+ */
+public class MPQArchiveWriter {
+	public static final String LISTFILE = "(listfile)";
+	public static final String ATTRIBUTES = "(attributes)";
+
+	// version 100 with crc32 and file time
+	private static final int ATTRIBUTES_VERSION = 100;
+	private static final int ATTRIBUTE_CRC32 = 0x00000001;
+	private static final int ATTRIBUTE_FILETIME = 0x00000002;
+
+	private static final int HEADER_SIZE = 32;
+	private static final byte COMPRESSION_DEFLATE = 0x02;
+	// difference between the windows and java epochs in milliseconds
+	private static final long FILETIME_EPOCH_OFFSET = 11644473600000L;
+
+	private static final int SUPPORTED_FLAGS = BlockTable.FLAG_COMPRESS | BlockTable.FLAG_ENCRYPTED | BlockTable.FLAG_FIX_KEY;
+
+	private final LinkedHashMap<Long, PendingFile> files = new LinkedHashMap<Long, PendingFile>();
+	private int blockShift = 3;
+	private int compressionLevel = Deflater.BEST_COMPRESSION;
+	private int minimumHashTableSize = 16;
+	private boolean generateListfile = true;
+	private boolean generateAttributes = true;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	// idle deflaters of the write in progress, each is ended once the write is done
+	private final ConcurrentLinkedQueue<Deflater> deflaters = new ConcurrentLinkedQueue<Deflater>();
+
+	/**
+	 * Adds a file that will be compressed. A file already added with the same path is replaced.
+	 *
+	 * @param path archive path of the file
+	 * @param data file contents from position to limit, must not be changed until the archive is written
+	 */
+	public void add(String path, ByteBuffer data){
+		add(path, data, BlockTable.FLAG_COMPRESS);
+	}
+
+	/**
+	 * Adds a file. A file already added with the same path is replaced.
+	 *
+	 * @param path archive path of the file
+	 * @param data file contents from position to limit, must not be changed until the archive is written
+	 * @param flags combination of BlockTable.FLAG_COMPRESS, FLAG_ENCRYPTED and FLAG_FIX_KEY
+	 */
+	public void add(String path, ByteBuffer data, int flags){
+		if( (flags & ~SUPPORTED_FLAGS) != 0 ) throw new IllegalArgumentException("unsupported block flags: " + BlockTable.flagsToString(flags & ~SUPPORTED_FLAGS));
+		if( (flags & BlockTable.FLAG_FIX_KEY) != 0 && (flags & BlockTable.FLAG_ENCRYPTED) == 0 ) throw new IllegalArgumentException("fix key flag requires encryption");
+		String normalized = path.replace('/', '\\');
+		HashLookup lookup = new HashLookup(normalized);
+		synchronized( files ){
+			// re-adding moves the file to the end like a new file
+			files.remove(lookup.hash);
+			files.put(lookup.hash, new PendingFile(normalized, lookup, data.slice(), flags));
+		}
+	}
+
+	public boolean remove(String path){
+		synchronized( files ){
+			return files.remove(new HashLookup(path.replace('/', '\\')).hash) != null;
+		}
+	}
+
+	/**
+	 * @param blockShift sector size as a shift of 512 bytes, Warcraft III uses 3 for 4 KB sectors
+	 */
+	public void setBlockShift(int blockShift){
+		if( blockShift < 0 || blockShift > 20 ) throw new IllegalArgumentException("block shift out of range: " + blockShift);
+		this.blockShift = blockShift;
+	}
+
+	/**
+	 * @param level deflate level, from Deflater.NO_COMPRESSION to Deflater.BEST_COMPRESSION
+	 */
+	public void setCompressionLevel(int level){
+		compressionLevel = level;
+	}
+
+	/**
+	 * @param size least number of hash table entries, rounded up to a power of two
+	 */
+	public void setMinimumHashTableSize(int size){
+		minimumHashTableSize = size;
+	}
+
+	public void setGenerateListfile(boolean generate){
+		generateListfile = generate;
+	}
+
+	public void setGenerateAttributes(boolean generate){
+		generateAttributes = generate;
+	}
+
+	/**
+	 * @param pool pool that compresses and encrypts sectors, the common pool by default
+	 */
+	public void setPool(ForkJoinPool pool){
+		this.pool = pool;
+	}
+
+	/**
+	 * Writes the archive to a file, replacing it if it exists.
+	 *
+	 * @param path file to write
+	 * @throws IOException when writing fails
+	 */
+	public void write(Path path) throws IOException{
+		try( FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING) ){
+			write(out);
+		}
+	}
+
+	/**
+	 * Writes the archive to a channel starting at its current position. A Warcraft III map header can be
+	 * written before the archive as long as it is a multiple of 512 bytes.
+	 *
+	 * @param out channel to write to, only written sequentially
+	 * @throws IOException when writing fails or the archive would be larger than 4 GB
+	 */
+	public void write(WritableByteChannel out) throws IOException{
+		try{
+			writeArchive(out);
+		}finally{
+			// deflaters hold native memory until ended
+			Deflater deflater;
+			while( (deflater = deflaters.poll()) != null ) deflater.end();
+		}
+	}
+
+	private void writeArchive(WritableByteChannel out) throws IOException{
+		// *** gather files
+		List<PendingFile> blocks;
+		synchronized( files ){
+			blocks = new ArrayList<PendingFile>(files.values());
+			// generated files replace added ones
+			if( generateListfile ) blocks.remove(files.get(new HashLookup(LISTFILE).hash));
+			if( generateAttributes ) blocks.remove(files.get(new HashLookup(ATTRIBUTES).hash));
+		}
+		if( generateListfile ) blocks.add(createListfile(blocks));
+		PendingFile attributes = null;
+		if( generateAttributes ){
+			// placeholder so the block count is known, filled in once crcs are computed
+			attributes = new PendingFile(ATTRIBUTES, new HashLookup(ATTRIBUTES), ByteBuffer.allocate(0), BlockTable.FLAG_COMPRESS | BlockTable.FLAG_ENCRYPTED | BlockTable.FLAG_FIX_KEY);
+			blocks.add(attributes);
+		}
+
+		// *** compress every sector in parallel
+		pool.invoke(new CompressFiles(blocks, 0, blocks.size()));
+		if( attributes != null ){
+			int index = blocks.size() - 1;
+			attributes = new PendingFile(ATTRIBUTES, attributes.lookup, createAttributes(blocks, attributes), attributes.flags);
+			blocks.set(index, attributes);
+			pool.invoke(new CompressFiles(blocks, index, index + 1));
+		}
+
+		// *** lay out files after the header, followed by the hash and block tables
+		long position = HEADER_SIZE;
+		for( PendingFile file : blocks ){
+			file.position = position;
+			position+= file.compressedSize;
+		}
+		int hashTableSize = Integer.highestOneBit(Math.max(minimumHashTableSize, 1));
+		if( hashTableSize < minimumHashTableSize ) hashTableSize<<= 1;
+		// keep the hash table at most three quarters full
+		while( hashTableSize * 3 < blocks.size() * 4 ) hashTableSize<<= 1;
+		long hashTablePosition = position;
+		long blockTablePosition = hashTablePosition + (long) hashTableSize * 16;
+		long archiveSize = blockTablePosition + (long) blocks.size() * 16;
+		if( archiveSize > 0xFFFFFFFFL ) throw new IOException("archive too large for version 1 ( " + archiveSize + " bytes )");
+
+		// *** encrypting depends on positions with fixed keys, so happens once laid out
+		pool.invoke(new EncryptFiles(blocks, 0, blocks.size()));
+
+		// *** write
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		header.put(FileHeader.ARCHIVE_IDENTIFIER_BYTES);
+		header.putInt(HEADER_SIZE);
+		header.putInt((int) archiveSize);
+		header.putShort((short) 0);
+		header.putShort((short) blockShift);
+		header.putInt((int) hashTablePosition);
+		header.putInt((int) blockTablePosition);
+		header.putInt(hashTableSize);
+		header.putInt(blocks.size());
+		header.flip();
+		writeFully(out, header);
+
+		for( PendingFile file : blocks ){
+			if( file.sectorTable != null ) writeFully(out, ByteBuffer.wrap(file.sectorTable));
+			for( byte[] sector : file.sectors ) writeFully(out, ByteBuffer.wrap(sector));
+			// release the compressed data as soon as it is written
+			file.sectorTable = null;
+			file.sectors = null;
+		}
+
+		writeFully(out, createHashTable(blocks, hashTableSize));
+		writeFully(out, createBlockTable(blocks));
+	}
+
+	private static void writeFully(WritableByteChannel out, ByteBuffer data) throws IOException{
+		while( data.hasRemaining() ) out.write(data);
+	}
+
+	private PendingFile createListfile(List<PendingFile> blocks){
+		StringBuilder builder = new StringBuilder();
+		for( PendingFile file : blocks ) builder.append(file.path).append("\r\n");
+		ByteBuffer data = ByteBuffer.wrap(builder.toString().getBytes(StandardCharsets.UTF_8));
+		return new PendingFile(LISTFILE, new HashLookup(LISTFILE), data, BlockTable.FLAG_COMPRESS | BlockTable.FLAG_ENCRYPTED | BlockTable.FLAG_FIX_KEY);
+	}
+
+	private static ByteBuffer createAttributes(List<PendingFile> blocks, PendingFile self){
+		long filetime = (System.currentTimeMillis() + FILETIME_EPOCH_OFFSET) * 10000;
+		ByteBuffer data = ByteBuffer.allocate(8 + blocks.size() * 12).order(ByteOrder.LITTLE_ENDIAN);
+		data.putInt(ATTRIBUTES_VERSION);
+		data.putInt(ATTRIBUTE_CRC32 | ATTRIBUTE_FILETIME);
+		// the attributes file describes itself with zeroes
+		for( PendingFile file : blocks ) data.putInt(file == self ? 0 : file.crc);
+		for( PendingFile file : blocks ) data.putLong(file == self ? 0 : filetime);
+		data.flip();
+		return data;
+	}
+
+	private static ByteBuffer createHashTable(List<PendingFile> blocks, int size){
+		long[] hashes = new long[size];
+		short[] locales = new short[size];
+		short[] platforms = new short[size];
+		int[] indices = new int[size];
+		for( int i = 0 ; i < size ; i+= 1 ){
+			hashes[i] = -1;
+			locales[i] = -1;
+			platforms[i] = -1;
+			indices[i] = HashTable.BLOCK_EMPTY_ALWAYS;
+		}
+
+		// linear probing from the table offset hash, as done when reading
+		int mask = size - 1;
+		for( int block = 0 ; block < blocks.size() ; block+= 1 ){
+			HashLookup lookup = blocks.get(block).lookup;
+			int index = lookup.index & mask;
+			while( indices[index] != HashTable.BLOCK_EMPTY_ALWAYS ) index = (index + 1) & mask;
+			hashes[index] = lookup.hash;
+			locales[index] = 0;
+			platforms[index] = 0;
+			indices[index] = block;
+		}
+
+		ByteBuffer table = ByteBuffer.allocate(size * 16).order(ByteOrder.LITTLE_ENDIAN);
+		for( int i = 0 ; i < size ; i+= 1 ){
+			table.putLong(hashes[i]);
+			table.putShort(locales[i]);
+			table.putShort(platforms[i]);
+			table.putInt(indices[i]);
+		}
+		table.flip();
+		Cryption.encryptData(table, table, Cryption.KEY_HASH_TABLE);
+		return table;
+	}
+
+	private static ByteBuffer createBlockTable(List<PendingFile> blocks){
+		ByteBuffer table = ByteBuffer.allocate(blocks.size() * 16).order(ByteOrder.LITTLE_ENDIAN);
+		for( PendingFile file : blocks ){
+			table.putInt((int) file.position);
+			table.putInt(file.compressedSize);
+			table.putInt(file.data.remaining());
+			table.putInt(file.blockFlags());
+		}
+		table.flip();
+		Cryption.encryptData(table, table, Cryption.KEY_BLOCK_TABLE);
+		return table;
+	}
+
+	// compresses a sector, returning it stored when compression does not make it smaller
+	private byte[] compressSector(ByteBuffer data, int offset, int length){
+		byte[] source = new byte[length];
+		ByteBuffer view = data.duplicate();
+		view.position(offset);
+		view.get(source);
+
+		// a compressed sector must be smaller than the sector to be recognised as compressed
+		byte[] compressed = new byte[length];
+		compressed[0] = COMPRESSION_DEFLATE;
+		int size = 1;
+		boolean finished;
+		Deflater deflater = deflaters.poll();
+		if( deflater == null ) deflater = new Deflater(compressionLevel);
+		try{
+			deflater.reset();
+			deflater.setLevel(compressionLevel);
+			deflater.setInput(source);
+			deflater.finish();
+			while( !deflater.finished() && size < compressed.length ) size+= deflater.deflate(compressed, size, compressed.length - size);
+			finished = deflater.finished();
+		}finally{
+			deflaters.offer(deflater);
+		}
+		if( !finished || size >= length ) return source;
+
+		byte[] result = new byte[size];
+		System.arraycopy(compressed, 0, result, 0, size);
+		return result;
+	}
+
+	private final class PendingFile{
+		private final String path;
+		private final HashLookup lookup;
+		private final ByteBuffer data;
+		private final int flags;
+		private int crc;
+		private byte[] sectorTable;
+		private byte[][] sectors;
+		private int compressedSize;
+		private long position;
+
+		public PendingFile(String path, HashLookup lookup, ByteBuffer data, int flags){
+			this.path = path;
+			this.lookup = lookup;
+			this.data = data;
+			this.flags = flags;
+		}
+
+		public int sectorCount(){
+			int sectorSize = 512 << blockShift;
+			return (data.remaining() + sectorSize - 1) / sectorSize;
+		}
+
+		// compressing an empty file has no sectors and so no sector table
+		public boolean compressed(){
+			return (flags & BlockTable.FLAG_COMPRESS) != 0 && data.hasRemaining();
+		}
+
+		public int blockFlags(){
+			int result = flags | BlockTable.FLAG_EXISTS;
+			if( !compressed() ) result&= ~BlockTable.FLAG_COMPRESS;
+			return result;
+		}
+
+		public int key(){
+			int key = Cryption.HashString(lookup.lookup, Cryption.MPQ_HASH_FILE_KEY);
+			if( (flags & BlockTable.FLAG_FIX_KEY) != 0 ) key = Cryption.adjustFileDecryptKey(key, (int) position, data.remaining());
+			return key;
+		}
+	}
+
+	// compresses a range of files, splitting until a single file remains
+	private final class CompressFiles extends RecursiveAction{
+		private static final long serialVersionUID = 1L;
+		private final List<PendingFile> blocks;
+		private final int from;
+		private final int to;
+
+		public CompressFiles(List<PendingFile> blocks, int from, int to){
+			this.blocks = blocks;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if( from >= to ) return;
+			if( to - from > 1 ){
+				int middle = (from + to) >>> 1;
+				invokeAll(new CompressFiles(blocks, from, middle), new CompressFiles(blocks, middle, to));
+				return;
+			}
+
+			PendingFile file = blocks.get(from);
+			CRC32 crc = new CRC32();
+			crc.update(file.data.duplicate());
+			file.crc = (int) crc.getValue();
+
+			file.sectors = new byte[file.sectorCount()][];
+			new CompressSectors(file, 0, file.sectors.length).compute();
+
+			// *** sector table
+			int size = 0;
+			if( file.compressed() ){
+				ByteBuffer table = ByteBuffer.allocate((file.sectors.length + 1) * 4).order(ByteOrder.LITTLE_ENDIAN);
+				int offset = table.capacity();
+				table.putInt(offset);
+				for( byte[] sector : file.sectors ){
+					offset+= sector.length;
+					table.putInt(offset);
+				}
+				file.sectorTable = table.array();
+				size = offset;
+			}else for( byte[] sector : file.sectors ) size+= sector.length;
+			file.compressedSize = size;
+		}
+	}
+
+	// compresses or copies a range of sectors of a file, splitting large files between threads
+	private final class CompressSectors extends RecursiveAction{
+		private static final long serialVersionUID = 1L;
+		// sectors handled without splitting further, 64 KB with the usual sector size
+		private static final int THRESHOLD = 16;
+		private final PendingFile file;
+		private final int from;
+		private final int to;
+
+		public CompressSectors(PendingFile file, int from, int to){
+			this.file = file;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if( to - from > THRESHOLD ){
+				int middle = (from + to) >>> 1;
+				invokeAll(new CompressSectors(file, from, middle), new CompressSectors(file, middle, to));
+				return;
+			}
+
+			int sectorSize = 512 << blockShift;
+			int fileSize = file.data.remaining();
+			boolean compress = file.compressed();
+			for( int i = from ; i < to ; i+= 1 ){
+				int offset = i * sectorSize;
+				int length = Math.min(sectorSize, fileSize - offset);
+				if( compress ){
+					file.sectors[i] = compressSector(file.data, offset, length);
+				}else{
+					byte[] sector = new byte[length];
+					ByteBuffer view = file.data.duplicate();
+					view.position(offset);
+					view.get(sector);
+					file.sectors[i] = sector;
+				}
+			}
+		}
+	}
+
+	// encrypts the sector tables and sectors of a range of files
+	private static final class EncryptFiles extends RecursiveAction{
+		private static final long serialVersionUID = 1L;
+		private final List<PendingFile> blocks;
+		private final int from;
+		private final int to;
+
+		public EncryptFiles(List<PendingFile> blocks, int from, int to){
+			this.blocks = blocks;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if( from >= to ) return;
+			if( to - from > 1 ){
+				int middle = (from + to) >>> 1;
+				invokeAll(new EncryptFiles(blocks, from, middle), new EncryptFiles(blocks, middle, to));
+				return;
+			}
+
+			PendingFile file = blocks.get(from);
+			if( (file.flags & BlockTable.FLAG_ENCRYPTED) == 0 ) return;
+			int key = file.key();
+			if( file.sectorTable != null ){
+				ByteBuffer table = ByteBuffer.wrap(file.sectorTable);
+				Cryption.encryptData(table, table, key - 1);
+			}
+			for( int i = 0 ; i < file.sectors.length ; i+= 1 ){
+				ByteBuffer sector = ByteBuffer.wrap(file.sectors[i]);
+				Cryption.encryptData(sector, sector, key + i);
+			}
+		}
+	}
+}
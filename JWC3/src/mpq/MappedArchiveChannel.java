@@ -0,0 +1,144 @@
+package mpq;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only SeekableByteChannel backed by a memory mapping of an entire archive file, or by any other
+ * buffer that already holds a file in memory.
+ *
+ * Reading through the channel is a memory copy rather than a system call. Callers that understand the
+ * mapping can also request read-only slices of the archive which share the mapped memory, allowing
+ * uncompressed sectors to be served with no copy at all.
+ *
+ * Positional reads and slices do not depend on the channel position so can be used from many threads.
+ */
+public class MappedArchiveChannel implements SeekableByteChannel {
+	private volatile ByteBuffer mapped;
+	private long position;
+
+	// the channel covers the buffer from its position to its limit
+	public MappedArchiveChannel(ByteBuffer mapped){
+		this.mapped = mapped.slice().asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+		position = 0;
+	}
+
+	/**
+	 * Maps the file at the given path in its entirety.
+	 *
+	 * @param path archive file to map
+	 * @return channel over the mapped file
+	 * @throws IOException when the file cannot be opened, is too large to map or mapping fails
+	 */
+	public static MappedArchiveChannel open(Path path) throws IOException{
+		try( FileChannel fc = FileChannel.open(path, StandardOpenOption.READ) ){
+			long size = fc.size();
+			// a single mapping is limited to the range of an int
+			if( size > Integer.MAX_VALUE ) throw new IOException("file too large to map ( " + size + " bytes )");
+			// the mapping remains valid after the file channel is closed
+			return new MappedArchiveChannel(fc.map(FileChannel.MapMode.READ_ONLY, 0, size));
+		}
+	}
+
+	/**
+	 * Returns a read-only view of part of the mapped file. The view shares the mapped memory so no
+	 * bytes are copied. The view is positioned at 0 with capacity and limit of length.
+	 *
+	 * @param offset absolute file offset of the first byte
+	 * @param length number of bytes in the view
+	 * @return read-only little endian view
+	 * @throws IOException when the requested range lies outside the file
+	 */
+	public ByteBuffer slice(long offset, int length) throws IOException{
+		ByteBuffer source = mappedBuffer();
+		if( offset < 0 || length < 0 || offset + length > source.capacity() ) throw new IOException("slice located outside channel");
+		ByteBuffer view = source.duplicate();
+		view.limit((int) offset + length);
+		view.position((int) offset);
+		return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private ByteBuffer mappedBuffer() throws ClosedChannelException{
+		ByteBuffer source = mapped;
+		if( source == null ) throw new ClosedChannelException();
+		return source;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return mapped != null;
+	}
+
+	@Override
+	public void close() throws IOException {
+		// the mapping is released once it becomes unreachable
+		mapped = null;
+	}
+
+	@Override
+	public int read(ByteBuffer dst) throws IOException {
+		int count = read(dst, position);
+		if( count > 0 ) position+= count;
+		return count;
+	}
+
+	/**
+	 * Reads bytes starting at the given position without changing the position of the channel. Safe to
+	 * call from any number of threads at once.
+	 *
+	 * @param dst buffer to copy into
+	 * @param position absolute position of the first byte
+	 * @return number of bytes read, or -1 if position is at or past the end of the channel
+	 * @throws IOException when the channel is closed
+	 */
+	public int read(ByteBuffer dst, long position) throws IOException {
+		ByteBuffer source = mappedBuffer();
+		if( position < 0 ) throw new IllegalArgumentException("channels cannot have a negative positon");
+		if( position >= source.capacity() ) return -1;
+
+		// copy as much as possible from position
+		int count = (int) Math.min(dst.remaining(), source.capacity() - position);
+		ByteBuffer view = source.duplicate();
+		view.limit((int) position + count);
+		view.position((int) position);
+		dst.put(view);
+		return count;
+	}
+
+	@Override
+	public int write(ByteBuffer src) throws IOException {
+		throw new NonWritableChannelException();
+	}
+
+	@Override
+	public long position() throws IOException {
+		mappedBuffer();
+		return position;
+	}
+
+	@Override
+	public SeekableByteChannel position(long newPosition) throws IOException {
+		// *** argument validation as described by SeekableByteChannel interface
+		if( newPosition < 0 ) throw new IllegalArgumentException("channels cannot have a negative positon");
+		mappedBuffer();
+		position = newPosition;
+		return this;
+	}
+
+	@Override
+	public long size() throws IOException {
+		return mappedBuffer().capacity();
+	}
+
+	@Override
+	public SeekableByteChannel truncate(long size) throws IOException {
+		throw new NonWritableChannelException();
+	}
+}
@@ -0,0 +1,176 @@
+package mpq;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A process wide, size bounded cache of decrypted and decompressed block sectors.
+ *
+ * Sectors are keyed by the channel they were read from, the offset of their block within it and their
+ * sector number. The least recently used sectors are dropped once the total size of cached sectors goes
+ * over the capacity. Cached sectors are shared as read-only views so one copy serves every stream.
+ *
+ * All methods are thread safe.
+ */
+public class SectorCache {
+	// default capacity in bytes
+	public static final long DEFAULT_CAPACITY = 64L << 20;
+
+	private static final SectorCache INSTANCE = new SectorCache(DEFAULT_CAPACITY);
+
+	private final LinkedHashMap<Key, ByteBuffer> sectors = new LinkedHashMap<Key, ByteBuffer>(1024, 0.75f, true);
+	private long capacity;
+	private long size;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public SectorCache(long capacity){
+		this.capacity = capacity;
+	}
+
+	public static SectorCache get(){
+		return INSTANCE;
+	}
+
+	/**
+	 * Looks up a sector.
+	 *
+	 * @param source channel the sector belongs to
+	 * @param blockOffset absolute offset of the block in the channel
+	 * @param sector sector number within the block
+	 * @return read-only view of the sector positioned at 0, or null if not cached
+	 */
+	public synchronized ByteBuffer get(Object source, long blockOffset, int sector){
+		ByteBuffer cached = sectors.get(new Key(source, blockOffset, sector));
+		if( cached == null ){
+			misses+= 1;
+			return null;
+		}
+		hits+= 1;
+		return cached.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Adds a sector to the cache. The bytes from the position to the limit of the buffer are copied so
+	 * the buffer remains owned by the caller.
+	 *
+	 * @param source channel the sector belongs to
+	 * @param blockOffset absolute offset of the block in the channel
+	 * @param sector sector number within the block
+	 * @param data decompressed sector
+	 */
+	public void put(Object source, long blockOffset, int sector, ByteBuffer data){
+		int length = data.remaining();
+		synchronized( this ){
+			if( length > capacity ) return;
+		}
+
+		// copy outside of the lock
+		ByteBuffer copy = ByteBuffer.allocate(length);
+		copy.put(data.duplicate());
+		copy.flip();
+
+		synchronized( this ){
+			ByteBuffer old = sectors.put(new Key(source, blockOffset, sector), copy);
+			if( old != null ) size-= old.capacity();
+			size+= length;
+			trim();
+		}
+	}
+
+	/**
+	 * Drops every sector read from the given channel. Should be called when an archive is closed or
+	 * unloaded so that its sectors do not occupy the cache.
+	 *
+	 * @param source channel the sectors belong to
+	 */
+	public synchronized void invalidate(Object source){
+		Iterator<Map.Entry<Key, ByteBuffer>> iterator = sectors.entrySet().iterator();
+		while( iterator.hasNext() ){
+			Map.Entry<Key, ByteBuffer> entry = iterator.next();
+			if( entry.getKey().source == source ){
+				size-= entry.getValue().capacity();
+				iterator.remove();
+			}
+		}
+	}
+
+	public synchronized void clear(){
+		sectors.clear();
+		size = 0;
+	}
+
+	/**
+	 * Changes the capacity, dropping sectors if the cache is now over capacity. A capacity of 0 disables
+	 * caching.
+	 *
+	 * @param capacity maximum total size of cached sectors in bytes
+	 */
+	public synchronized void setCapacity(long capacity){
+		this.capacity = capacity;
+		trim();
+	}
+
+	public synchronized long getCapacity(){
+		return capacity;
+	}
+
+	public synchronized long getSize(){
+		return size;
+	}
+
+	public synchronized long getHitCount(){
+		return hits;
+	}
+
+	public synchronized long getMissCount(){
+		return misses;
+	}
+
+	public synchronized long getEvictionCount(){
+		return evictions;
+	}
+
+	@Override
+	public synchronized String toString(){
+		return "SectorCache[sectors=" + sectors.size() + ", size=" + size + ", capacity=" + capacity
+				+ ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "]";
+	}
+
+	// must be called with the lock held
+	private void trim(){
+		Iterator<ByteBuffer> iterator = sectors.values().iterator();
+		while( size > capacity && iterator.hasNext() ){
+			size-= iterator.next().capacity();
+			iterator.remove();
+			evictions+= 1;
+		}
+	}
+
+	private static final class Key{
+		private final Object source;
+		private final long blockOffset;
+		private final int sector;
+
+		public Key(Object source, long blockOffset, int sector){
+			this.source = source;
+			this.blockOffset = blockOffset;
+			this.sector = sector;
+		}
+
+		@Override
+		public int hashCode(){
+			return System.identityHashCode(source) * 31 + (int) (blockOffset ^ blockOffset >>> 32) * 17 + sector;
+		}
+
+		@Override
+		public boolean equals(Object obj){
+			if( !(obj instanceof Key) ) return false;
+			Key other = (Key) obj;
+			return source == other.source && blockOffset == other.blockOffset && sector == other.sector;
+		}
+	}
+}
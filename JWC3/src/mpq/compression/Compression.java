@@ -5,9 +5,14 @@ import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
 
 import mpq.compression.adpcm.ADPCM;
+import mpq.compression.bzip2.BZip2Decompressor;
+import mpq.compression.bzip2.BZip2Exception;
 import mpq.compression.huffman.Huffman;
+import mpq.compression.lzma.LZMADecoder;
+import mpq.compression.lzma.LZMAException;
 import mpq.compression.pkware.PKException;
 import mpq.compression.pkware.PKExploder;
+import mpq.compression.sparse.SparseExpander;
 
 public class Compression {	
 	/*static TDecompressTable dcmp_table[] =
@@ -28,7 +33,12 @@ public class Compression {
 	private WritableByteChannel zlibDecompressWriter = Channels.newChannel(zlibInflater);*/
 	private PKExploder pkexploderDecompress = new PKExploder();
 	private Huffman huffmanDecompress = new Huffman();
+	// reset before every use, creating one per sector costs native memory that is only freed on finalization
+	private Inflater zlibInflater = new Inflater();
 	private ADPCM adpcmDecompress = new ADPCM(2);
+	private BZip2Decompressor bzip2Decompress = new BZip2Decompressor();
+	private LZMADecoder lzmaDecompress = new LZMADecoder();
+	private SparseExpander sparseDecompress = new SparseExpander();
 	
 	// an array used to cache buffers of various regular sizes to reduce allocation overhead
 	private final ByteBuffer[] bufferCache = new ByteBuffer[22];
@@ -87,20 +97,27 @@ public class Compression {
 			sectorExplode(in, out);
 			break;
 		case FLAG_BZIP2:
-			// TODO add support
-			throw new DecompressionException(in, "unsupported compression type: BZIP2");
+			sectorBZip2Decompress(in, out);
+			break;
 		case FLAG_SPARSE:
-			// TODO add support
-			throw new DecompressionException(in, "unsupported compression type: SPARSE");
+			sectorSparseExpand(in, out);
+			break;
 		case FLAG_LZMA:
-			// TODO add support
-			throw new DecompressionException(in, "unsupported compression type: LZMA");
+			sectorLZMADecompress(in, out);
+			break;
 		case FLAG_SPARSE_DEFLATE:
-			// TODO add support
-			throw new DecompressionException(in, "unsupported compression type: SPARSE");
+			// sparse is applied first when compressing so is undone last
+			sectorInflate(in, out);
+			in.clear();
+			sectorSparseExpand(out, in);
+			flip = false;
+			break;
 		case FLAG_SPARSE_BZIP2:
-			// TODO add support
-			throw new DecompressionException(in, "unsupported compression type: SPARSE");
+			sectorBZip2Decompress(in, out);
+			in.clear();
+			sectorSparseExpand(out, in);
+			flip = false;
+			break;
 		default:
 			throw new DecompressionException(in, "sector has unknown compression");
 		}
@@ -137,8 +154,9 @@ public class Compression {
 		
 		// apply decompression flag at a time
 		if( (mask & FLAG_BZIP2) != 0 ){
-			// TODO add support
-			throw new DecompressionException(in, "unsupported compression type: BZIP2");
+			sectorBZip2Decompress(flip ? out : in, flip ? in : out);
+			(flip ? out : in).clear();
+			flip = !flip;
 		}
 		if( (mask & FLAG_IMPLODE) != 0 ){
 			sectorExplode(flip ? out : in, flip ? in : out);
@@ -165,7 +183,11 @@ public class Compression {
 			(flip ? out : in).clear();
 			flip = !flip;
 		}
-		if( (mask & FLAG_SPARSE) != 0 )	System.err.println("sparse compression flag present in mpq version that lacked support");
+		if( (mask & FLAG_SPARSE) != 0 ){
+			sectorSparseExpand(flip ? out : in, flip ? in : out);
+			(flip ? out : in).clear();
+			flip = !flip;
+		}
 		
 		if( flip ){
 			bufferCache[size] = in;
@@ -203,8 +225,7 @@ public class Compression {
 	
 	private void sectorInflate(ByteBuffer in, ByteBuffer out) throws DecompressionException{
 		try {
-			// a new inflater is needed for each sector as they cannot be recycled
-			Inflater zlibInflater = new Inflater();
+			zlibInflater.reset();
 			zlibInflater.setInput(in.array(), in.position(), in.remaining());
 			out.position(zlibInflater.inflate(out.array()));
 		} catch ( DataFormatException e ) {
@@ -214,6 +235,36 @@ public class Compression {
 		out.flip();
 	}
 	
+	private void sectorBZip2Decompress(ByteBuffer in, ByteBuffer out) throws DecompressionException{
+		try {
+			bzip2Decompress.decompress(in, out);
+		} catch (BZip2Exception e) {
+			throw new DecompressionException(in, "sector bzip2 exception", e);
+		}
+		
+		out.flip();
+	}
+	
+	private void sectorLZMADecompress(ByteBuffer in, ByteBuffer out) throws DecompressionException{
+		try {
+			lzmaDecompress.decompressSector(in, out);
+		} catch (LZMAException e) {
+			throw new DecompressionException(in, "sector lzma exception", e);
+		}
+		
+		out.flip();
+	}
+	
+	private void sectorSparseExpand(ByteBuffer in, ByteBuffer out) throws DecompressionException{
+		try {
+			sparseDecompress.expand(in, out);
+		} catch ( Exception e ) {
+			throw new DecompressionException(in, "sector sparse expand exception", e);
+		}
+		
+		out.flip();
+	}
+	
 	private void sectorHuffmanExpand(ByteBuffer in, ByteBuffer out) throws DecompressionException{
 		try {
 			huffmanDecompress.Decompress(in, out);
@@ -292,8 +343,20 @@ public class Compression {
 		
 		// BZIP2
 		if( (mask & 0x10) > 0 ){
-			// TODO add support
-			throw new DecompressionException(block, "unsupported compression type: BZIP2");
+			try {
+				bzip2Decompress.decompress(block, extra);
+			} catch (BZip2Exception e) {
+				throw new DecompressionException(block, "failed BZIP2 decompression", e);
+			}
+			block.rewind();
+			block.limit(extra.limit());
+			extra.flip();
+			
+			ByteBuffer temp = extra;
+			extra = block;
+			block = temp;
+			
+			swap = !swap;
 		}
 		
 		// PKWARE
@@ -317,7 +380,7 @@ public class Compression {
 		// ZLIB
 		if( (mask & 0x02) > 0 ){			
 			try {
-				Inflater zlibInflater = new Inflater();
+				zlibInflater.reset();
 				zlibInflater.setInput(block.array(), block.position(), block.remaining());
 				extra.position(zlibInflater.inflate(extra.array()));
 			} catch ( DataFormatException e ) {
@@ -381,8 +444,20 @@ public class Compression {
 		
 		// SPARSE
 		if( (mask & 0x20) > 0 ){
-			// TODO add support
-			throw new DecompressionException(block, "unsupported compression type: SPARSE");
+			try {
+				sparseDecompress.expand(block, extra);
+			} catch (RuntimeException e) {
+				throw new DecompressionException(block, "failed SPARSE decompression", e);
+			}
+			block.rewind();
+			block.limit(extra.limit());
+			extra.flip();
+			
+			ByteBuffer temp = extra;
+			extra = block;
+			block = temp;
+			
+			swap = !swap;
 		}
 		
 		if( block.limit() != extra.limit() ){
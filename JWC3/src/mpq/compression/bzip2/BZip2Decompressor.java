@@ -0,0 +1,312 @@
+package mpq.compression.bzip2;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * A bzip2 decompressor for MPQ sectors.
+ *
+ * Sectors are complete bzip2 streams that are decompressed in one call from one buffer into another. All
+ * tables are kept between calls so after the first few sectors decompression allocates nothing. The
+ * block array grows with the largest block seen, which for sectors is bounded by the sector size rather
+ * than the block size of the stream.
+ *
+ * Instances are not thread safe.
+ */
+public class BZip2Decompressor {
+	private static final int MAX_GROUPS = 6;
+	private static final int MAX_ALPHA_SIZE = 258;
+	private static final int MAX_CODE_LEN = 23;
+	private static final int MAX_SELECTORS = 18002;
+	private static final int GROUP_SIZE = 50;
+	private static final int RUNA = 0;
+	private static final int RUNB = 1;
+
+	private static final int[] CRC_TABLE = new int[256];
+	static {
+		for( int i = 0 ; i < CRC_TABLE.length ; i+= 1 ){
+			int c = i << 24;
+			for( int j = 0 ; j < 8 ; j+= 1 )
+				c = (c & 0x80000000) != 0 ? (c << 1) ^ 0x04C11DB7 : c << 1;
+			CRC_TABLE[i] = c;
+		}
+	}
+
+	private ByteBuffer in;
+	private int bitBuffer;
+	private int bitCount;
+
+	// tables reused between blocks and sectors
+	private final byte[] seqToUnseq = new byte[256];
+	private final byte[] mtf = new byte[256];
+	private final byte[] selectorPositions = new byte[MAX_GROUPS];
+	private final byte[] selectors = new byte[MAX_SELECTORS];
+	private final byte[][] lengths = new byte[MAX_GROUPS][MAX_ALPHA_SIZE];
+	private final int[][] limit = new int[MAX_GROUPS][MAX_CODE_LEN];
+	private final int[][] base = new int[MAX_GROUPS][MAX_CODE_LEN];
+	private final int[][] perm = new int[MAX_GROUPS][MAX_ALPHA_SIZE];
+	private final int[] minLens = new int[MAX_GROUPS];
+	private final int[] unzftab = new int[256];
+	private final int[] cftab = new int[257];
+	private int[] tt = new int[0];
+
+	/**
+	 * Decompresses a bzip2 stream. Decompression stops at the end of the stream or when the output
+	 * buffer is full.
+	 *
+	 * @param in buffer with the stream from position to limit
+	 * @param out buffer to decompress into from its position
+	 * @throws BZip2Exception when the stream is malformed or fails its checksum
+	 */
+	public void decompress(ByteBuffer in, ByteBuffer out) throws BZip2Exception{
+		this.in = in;
+		bitBuffer = 0;
+		bitCount = 0;
+		try{
+			if( getBits(8) != 'B' || getBits(8) != 'Z' || getBits(8) != 'h' ) throw new BZip2Exception("bad stream signature");
+			int level = getBits(8) - '0';
+			if( level < 1 || level > 9 ) throw new BZip2Exception("bad block size");
+
+			int combinedCRC = 0;
+			for(;;){
+				int magic1 = getBits(24);
+				int magic2 = getBits(24);
+				if( magic1 == 0x314159 && magic2 == 0x265359 ){
+					int blockCRC = getBits(16) << 16 | getBits(16);
+					if( decodeBlock(level * 100000, out) != blockCRC ) throw new BZip2Exception("block checksum mismatch");
+					combinedCRC = (combinedCRC << 1 | combinedCRC >>> 31) ^ blockCRC;
+					if( !out.hasRemaining() ) break;
+				}else if( magic1 == 0x177245 && magic2 == 0x385090 ){
+					int streamCRC = getBits(16) << 16 | getBits(16);
+					if( streamCRC != combinedCRC ) throw new BZip2Exception("stream checksum mismatch");
+					break;
+				}else throw new BZip2Exception("bad block signature");
+			}
+		}catch( BufferUnderflowException e ){
+			throw new BZip2Exception("unexpected end of stream");
+		}catch( BufferOverflowException e ){
+			throw new BZip2Exception("decompressed data larger than buffer");
+		}finally{
+			this.in = null;
+		}
+	}
+
+	private int getBits(int n){
+		while( bitCount < n ){
+			bitBuffer = bitBuffer << 8 | (in.get() & 0xFF);
+			bitCount+= 8;
+		}
+		bitCount-= n;
+		return (bitBuffer >>> bitCount) & ((1 << n) - 1);
+	}
+
+	private int getBit(){
+		if( bitCount == 0 ){
+			bitBuffer = in.get() & 0xFF;
+			bitCount = 8;
+		}
+		bitCount-= 1;
+		return (bitBuffer >>> bitCount) & 1;
+	}
+
+	// decodes one block into out and returns its crc
+	private int decodeBlock(int maxBlockSize, ByteBuffer out) throws BZip2Exception{
+		if( getBit() != 0 ) throw new BZip2Exception("randomised blocks are not supported");
+		int origPtr = getBits(24);
+
+		// *** symbol map
+		int inUse16 = getBits(16);
+		int inUseCount = 0;
+		for( int i = 0 ; i < 16 ; i+= 1 ){
+			if( (inUse16 & (0x8000 >>> i)) != 0 ){
+				int inUse = getBits(16);
+				for( int j = 0 ; j < 16 ; j+= 1 )
+					if( (inUse & (0x8000 >>> j)) != 0 ) seqToUnseq[inUseCount++] = (byte) (i * 16 + j);
+			}
+		}
+		if( inUseCount == 0 ) throw new BZip2Exception("block uses no symbols");
+		int alphaSize = inUseCount + 2;
+
+		// *** selectors
+		int groupCount = getBits(3);
+		if( groupCount < 2 || groupCount > MAX_GROUPS ) throw new BZip2Exception("bad huffman group count");
+		int selectorCount = getBits(15);
+		if( selectorCount < 1 ) throw new BZip2Exception("bad selector count");
+		for( int i = 0 ; i < groupCount ; i+= 1 ) selectorPositions[i] = (byte) i;
+		for( int i = 0 ; i < selectorCount ; i+= 1 ){
+			int j = 0;
+			while( getBit() != 0 ){
+				j+= 1;
+				if( j >= groupCount ) throw new BZip2Exception("bad selector");
+			}
+			// undo move to front, selectors past the limit are read but ignored
+			byte selector = selectorPositions[j];
+			for( ; j > 0 ; j-= 1 ) selectorPositions[j] = selectorPositions[j - 1];
+			selectorPositions[0] = selector;
+			if( i < MAX_SELECTORS ) selectors[i] = selector;
+		}
+		if( selectorCount > MAX_SELECTORS ) selectorCount = MAX_SELECTORS;
+
+		// *** huffman tables
+		for( int t = 0 ; t < groupCount ; t+= 1 ){
+			byte[] length = lengths[t];
+			int current = getBits(5);
+			int minLen = 32;
+			int maxLen = 0;
+			for( int i = 0 ; i < alphaSize ; i+= 1 ){
+				for(;;){
+					if( current < 1 || current > 20 ) throw new BZip2Exception("bad code length");
+					if( getBit() == 0 ) break;
+					current+= getBit() == 0 ? 1 : -1;
+				}
+				length[i] = (byte) current;
+				if( current < minLen ) minLen = current;
+				if( current > maxLen ) maxLen = current;
+			}
+			createDecodeTables(limit[t], base[t], perm[t], length, minLen, maxLen, alphaSize);
+			minLens[t] = minLen;
+		}
+
+		// *** move to front and run length decoding of symbols
+		int endOfBlock = inUseCount + 1;
+		for( int i = 0 ; i < 256 ; i+= 1 ){
+			mtf[i] = (byte) i;
+			unzftab[i] = 0;
+		}
+
+		int blockSize = 0;
+		int groupIndex = -1;
+		int groupPosition = 0;
+		int[] groupLimit = null;
+		int[] groupBase = null;
+		int[] groupPerm = null;
+		int groupMinLen = 0;
+		int runLength = 0;
+		int runWeight = 1;
+
+		for(;;){
+			// *** next symbol
+			if( groupPosition == 0 ){
+				groupIndex+= 1;
+				if( groupIndex >= selectorCount ) throw new BZip2Exception("ran out of selectors");
+				groupPosition = GROUP_SIZE;
+				int selector = selectors[groupIndex];
+				groupLimit = limit[selector];
+				groupBase = base[selector];
+				groupPerm = perm[selector];
+				groupMinLen = minLens[selector];
+			}
+			groupPosition-= 1;
+			int codeLength = groupMinLen;
+			int code = getBits(codeLength);
+			while( code > groupLimit[codeLength] ){
+				codeLength+= 1;
+				if( codeLength > 20 ) throw new BZip2Exception("bad huffman code");
+				code = code << 1 | getBit();
+			}
+			int index = code - groupBase[codeLength];
+			if( index < 0 || index >= MAX_ALPHA_SIZE ) throw new BZip2Exception("bad huffman code");
+			int symbol = groupPerm[index];
+
+			if( symbol == RUNA || symbol == RUNB ){
+				if( runWeight >= 2 * 1024 * 1024 ) throw new BZip2Exception("run too long");
+				runLength+= (symbol + 1) * runWeight;
+				runWeight<<= 1;
+				continue;
+			}
+
+			// *** flush a pending run of the front symbol
+			if( runLength > 0 ){
+				if( blockSize + runLength > maxBlockSize ) throw new BZip2Exception("block too large");
+				ensureBlockCapacity(blockSize + runLength, maxBlockSize);
+				int value = seqToUnseq[mtf[0] & 0xFF] & 0xFF;
+				unzftab[value]+= runLength;
+				for( int end = blockSize + runLength ; blockSize < end ; blockSize+= 1 ) tt[blockSize] = value;
+				runLength = 0;
+				runWeight = 1;
+			}
+
+			if( symbol == endOfBlock ) break;
+
+			if( blockSize >= maxBlockSize ) throw new BZip2Exception("block too large");
+			ensureBlockCapacity(blockSize + 1, maxBlockSize);
+			int position = symbol - 1;
+			byte front = mtf[position];
+			System.arraycopy(mtf, 0, mtf, 1, position);
+			mtf[0] = front;
+			int value = seqToUnseq[front & 0xFF] & 0xFF;
+			unzftab[value]+= 1;
+			tt[blockSize++] = value;
+		}
+
+		if( origPtr < 0 || origPtr >= blockSize ) throw new BZip2Exception("bad block origin");
+
+		// *** inverse burrows wheeler transform
+		cftab[0] = 0;
+		for( int i = 0 ; i < 256 ; i+= 1 ) cftab[i + 1] = cftab[i] + unzftab[i];
+		for( int i = 0 ; i < blockSize ; i+= 1 ){
+			int value = tt[i] & 0xFF;
+			tt[cftab[value]++]|= i << 8;
+		}
+
+		// *** initial run length decoding while writing out
+		int crc = 0xFFFFFFFF;
+		int tPos = tt[origPtr] >>> 8;
+		int last = -1;
+		int run = 0;
+		for( int i = 0 ; i < blockSize ; i+= 1 ){
+			tPos = tt[tPos];
+			int value = tPos & 0xFF;
+			tPos>>>= 8;
+
+			if( run == 4 ){
+				for( int j = 0 ; j < value ; j+= 1 ){
+					out.put((byte) last);
+					crc = crc << 8 ^ CRC_TABLE[(crc >>> 24 ^ last) & 0xFF];
+				}
+				run = 0;
+				continue;
+			}
+			if( value == last ) run+= 1;
+			else{
+				last = value;
+				run = 1;
+			}
+			out.put((byte) value);
+			crc = crc << 8 ^ CRC_TABLE[(crc >>> 24 ^ value) & 0xFF];
+		}
+		return ~crc;
+	}
+
+	private void ensureBlockCapacity(int size, int maxBlockSize){
+		if( size > tt.length ){
+			int[] grown = new int[Math.min(Math.max(size, tt.length * 2), maxBlockSize)];
+			System.arraycopy(tt, 0, grown, 0, tt.length);
+			tt = grown;
+		}
+	}
+
+	private static void createDecodeTables(int[] limit, int[] base, int[] perm, byte[] length, int minLen, int maxLen, int alphaSize){
+		int pp = 0;
+		for( int i = minLen ; i <= maxLen ; i+= 1 )
+			for( int j = 0 ; j < alphaSize ; j+= 1 )
+				if( length[j] == i ) perm[pp++] = j;
+
+		for( int i = 0 ; i < MAX_CODE_LEN ; i+= 1 ){
+			base[i] = 0;
+			limit[i] = 0;
+		}
+		for( int i = 0 ; i < alphaSize ; i+= 1 ) base[length[i] + 1]+= 1;
+		for( int i = 1 ; i < MAX_CODE_LEN ; i+= 1 ) base[i]+= base[i - 1];
+
+		int vec = 0;
+		for( int i = minLen ; i <= maxLen ; i+= 1 ){
+			vec+= base[i + 1] - base[i];
+			limit[i] = vec - 1;
+			vec<<= 1;
+		}
+		for( int i = minLen + 1 ; i <= maxLen ; i+= 1 )
+			base[i] = ((limit[i - 1] + 1) << 1) - base[i];
+	}
+}
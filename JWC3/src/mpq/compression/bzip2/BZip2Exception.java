@@ -0,0 +1,11 @@
+package mpq.compression.bzip2;
+
+public class BZip2Exception extends Exception {
+
+	private static final long serialVersionUID = -2318824170556393406L;
+
+	public BZip2Exception(String arg0) {
+		super(arg0);
+	}
+
+}
@@ -1,125 +1,66 @@
 package mpq.compression.huffman;
 
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.Map.Entry;
-import java.util.TreeMap;
 
 public class Huffman {
-	private static class Node {
-		public Node parent;
-		public final Node[] child = new Node[2];
-		public Node next;
-		public Node prev;
-		public int value;
-		public int probability;
-		
-		public void treeSwap(Node with){
-			Node temp;
-			
-			if( parent == with.parent ){
-				temp = parent.child[0];
-				parent.child[0] = parent.child[1];
-				parent.child[1] = temp;
-			}else{
-				if( with.parent.child[0] == with ) with.parent.child[0] = this;
-				else with.parent.child[1] = this;
-				if( this.parent.child[0] == this ) this.parent.child[0] = with;
-				else this.parent.child[1] = with;
-			}
-
-			temp = parent;
-			parent = with.parent;
-			with.parent = temp;
-		}
-		
-		public void insertAfter(Node where){
-			prev = where;
-			next = where.next;
-			where.next = this;
-			next.prev = this;
-		}
-		
-		public void listSwap(Node with){
-			if( next == with ){
-				next = with.next;
-				with.next = this;
-				with.prev = prev;
-				prev = with;
-				
-				with.prev.next = with;
-				next.prev = this;
-			}else if( prev == with ){
-				prev = with.prev;
-				with.prev = this;
-				with.next = next;
-				next = with;
-				
-				with.next.prev = with;
-				prev.next = this;
-			}else{
-				Node temp = prev;
-				prev = with.prev;
-				with.prev = temp;
-				
-				temp = next;
-				next = with.next;
-				with.next = temp;
-				
-				prev.next = this;
-				next.prev = this;
-				
-				with.prev.next = with;
-				with.next.prev = with;
-			}			
-		}
-		
-		public void newList(){
-			prev = next = this;
-		}
-		
-		public Node removeFromList(){
-			if( this == next ) return null;
-			
-			prev.next = next;
-			next.prev = prev;
-			
-			return next;
-		}
-		
-		public void joinList(Node list){
-			Node tail = prev;
-			
-			prev = list.prev;
-			prev.next = this;
-			
-			list.prev = tail;
-			tail.next = list;
-		}
-	}
-		
-	private boolean adjustProbability;
+	private static final int NONE = -1;
+	private static final int BRANCH = -1;
+	// a leaf for each of the 0x102 values and the branches joining them, only bad data adds more
+	private static final int MAX_NODES = 0x102 * 2 - 1;
+	
+	// nodes are indices into these arrays so that trees are rebuilt for every sector without allocating
+	private int[] parent = new int[MAX_NODES];
+	private int[] child0 = new int[MAX_NODES];
+	private int[] child1 = new int[MAX_NODES];
+	// circular list of all nodes by descending probability with root at the head
+	private int[] next = new int[MAX_NODES];
+	private int[] prev = new int[MAX_NODES];
+	private int[] value = new int[MAX_NODES];
+	private int[] probability = new int[MAX_NODES];
+	private int nodeCount;
+	private int root;
 	
-	private Node nodes = null;
-	private TreeMap<Integer, Node> sorted2 = new TreeMap<Integer, Node>();
+	// nodes of equal probability are next to each other in the list, this finds the first and last of them
+	// by probability using open addressing, with room for 4 slots per node
+	private int runBits = 11;
+	private int[] runProbability = new int[1 << runBits];
+	private int[] runFirst = new int[1 << runBits];
+	private int[] runLast = new int[1 << runBits];
 	
-	private Node root = null;
-	private Node[] valueToNode = new Node[0x102];
+	// probabilities in ascending order and the last node of each, only used while building a tree
+	private int[] sortedProbability = new int[MAX_NODES];
+	private int[] sortedLast = new int[MAX_NODES];
+	private int sortedCount;
 	
+	// node reached by the next 8 bits and how many of those bits it took, valid until the tree changes
+	private final int[] tableNode = new int[0x100];
+	private final int[] tableBits = new int[0x100];
+	private boolean tableValid;
+	
+	// input and output are worked on as arrays, these hold copies when a buffer has no accessible array
+	private byte[] inScratch = new byte[0];
+	private byte[] outScratch = new byte[0];
+	
+	private byte[] src;
+	private int srcPos;
+	private int srcEnd;
 	private int bitBuffer;
-	private byte bitNumber;
-	private ByteBuffer source;
+	private int bitNumber;
 	
-	private void setSource(ByteBuffer source){
-		this.source = source;
-		bitBuffer = 0;
-		bitNumber = 0;
+	private void fillBits(){
+		while( bitNumber <= 24 && srcPos < srcEnd ){
+			bitBuffer|= (src[srcPos++] & 0xFF) << bitNumber;
+			bitNumber+= 8;
+		}
 	}
 	
 	private int getBits(int bits){
-		while( bitNumber < bits ){
-			bitBuffer|= ((int) source.get() & 0xFF) << bitNumber;
-			bitNumber+= 8;
+		if( bitNumber < bits ){
+			fillBits();
+			if( bitNumber < bits ) throw new BufferUnderflowException();
 		}
 		
 		int result = bitBuffer & ((1 << bits) - 1);
@@ -129,114 +70,247 @@ public class Huffman {
 		return result;
 	}
 	
-	private Node getNode(){
-		Node node;
-		if( nodes == null ) node = new Node();
-		else{
-			node = nodes;
-			nodes = nodes.removeFromList();
-		}
+	private int newNode(int nodeValue, int nodeProbability){
+		if( nodeCount == value.length ) growNodes();
+		int node = nodeCount++;
+		value[node] = nodeValue;
+		probability[node] = nodeProbability;
+		child0[node] = NONE;
+		child1[node] = NONE;
 		return node;
 	}
 	
-	private void destroyTree(Node root){
-		if( nodes == null ) nodes = root;
-		else nodes.joinList(root);
-		this.root = null;
-		sorted2.clear();
-		Arrays.fill(valueToNode, null);
+	private void growNodes(){
+		int capacity = value.length * 2;
+		parent = Arrays.copyOf(parent, capacity);
+		child0 = Arrays.copyOf(child0, capacity);
+		child1 = Arrays.copyOf(child1, capacity);
+		next = Arrays.copyOf(next, capacity);
+		prev = Arrays.copyOf(prev, capacity);
+		value = Arrays.copyOf(value, capacity);
+		probability = Arrays.copyOf(probability, capacity);
+		sortedProbability = Arrays.copyOf(sortedProbability, capacity);
+		sortedLast = Arrays.copyOf(sortedLast, capacity);
+		
+		int[] oldProbability = runProbability;
+		int[] oldFirst = runFirst;
+		int[] oldLast = runLast;
+		runBits+= 1;
+		runProbability = new int[1 << runBits];
+		runFirst = new int[1 << runBits];
+		runLast = new int[1 << runBits];
+		Arrays.fill(runProbability, NONE);
+		for( int i = 0 ; i < oldProbability.length ; i+= 1 ){
+			if( oldProbability[i] != NONE ) addRun(oldProbability[i], oldFirst[i], oldLast[i]);
+		}
+	}
+	
+	private void insertAfter(int node, int where){
+		prev[node] = where;
+		next[node] = next[where];
+		next[where] = node;
+		prev[next[node]] = node;
 	}
 	
-	private void insertNode( Node node ){
-		Entry<Integer, Node> test2 = sorted2.ceilingEntry(node.probability);
-		Node current;
+	private void listSwap(int node, int with){
+		if( next[node] == with ){
+			next[node] = next[with];
+			next[with] = node;
+			prev[with] = prev[node];
+			prev[node] = with;
+			
+			next[prev[with]] = with;
+			prev[next[node]] = node;
+		}else if( prev[node] == with ){
+			prev[node] = prev[with];
+			prev[with] = node;
+			next[with] = next[node];
+			next[node] = with;
+			
+			prev[next[with]] = with;
+			next[prev[node]] = node;
+		}else{
+			int temp = prev[node];
+			prev[node] = prev[with];
+			prev[with] = temp;
+			
+			temp = next[node];
+			next[node] = next[with];
+			next[with] = temp;
+			
+			next[prev[node]] = node;
+			prev[next[node]] = node;
+			
+			next[prev[with]] = with;
+			prev[next[with]] = with;
+		}
+	}
+	
+	private void treeSwap(int node, int with){
+		int temp;
+		
+		if( parent[node] == parent[with] ){
+			int both = parent[node];
+			temp = child0[both];
+			child0[both] = child1[both];
+			child1[both] = temp;
+		}else{
+			int withParent = parent[with];
+			if( child0[withParent] == with ) child0[withParent] = node;
+			else child1[withParent] = node;
+			int nodeParent = parent[node];
+			if( child0[nodeParent] == node ) child0[nodeParent] = with;
+			else child1[nodeParent] = with;
+		}
 		
+		temp = parent[node];
+		parent[node] = parent[with];
+		parent[with] = temp;
+		tableValid = false;
+	}
+	
+	private int runSlot(int probability){
+		return (probability * 0x9E3779B1) >>> (32 - runBits);
+	}
+	
+	private int findRun(int probability){
+		int mask = runProbability.length - 1;
+		for( int slot = runSlot(probability) ; ; slot = (slot + 1) & mask ){
+			if( runProbability[slot] == probability ) return slot;
+			if( runProbability[slot] == NONE ) return NONE;
+		}
+	}
+	
+	private void addRun(int probability, int first, int last){
+		int slot = runSlot(probability);
+		while( runProbability[slot] != NONE ) slot = (slot + 1) & (runProbability.length - 1);
+		runProbability[slot] = probability;
+		runFirst[slot] = first;
+		runLast[slot] = last;
+	}
+	
+	private void removeRun(int slot){
+		// move back later entries that would no longer be found past the hole
+		int mask = runProbability.length - 1;
+		int hole = slot;
+		for( int i = (slot + 1) & mask ; runProbability[i] != NONE ; i = (i + 1) & mask ){
+			int home = runSlot(runProbability[i]);
+			if( ((i - home) & mask) >= ((i - hole) & mask) ){
+				runProbability[hole] = runProbability[i];
+				runFirst[hole] = runFirst[i];
+				runLast[hole] = runLast[i];
+				hole = i;
+			}
+		}
+		runProbability[hole] = NONE;
+	}
+	
+	// inserts after the last node of equal or higher probability
+	private void insertSorted(int node){
+		int nodeProbability = probability[node];
+		int low = 0;
+		int high = sortedCount;
+		while( low < high ){
+			int mid = (low + high) >>> 1;
+			if( sortedProbability[mid] < nodeProbability ) low = mid + 1;
+			else high = mid;
+		}
 		
-		if( test2 != null ){
-			current = test2.getValue();
-			node.insertAfter(current);
+		if( low < sortedCount ){
+			insertAfter(node, sortedLast[low]);
+			if( sortedProbability[low] == nodeProbability ){
+				sortedLast[low] = node;
+				return;
+			}
 		}else{
-			current = root;			
-			if( root != null ){
-				node.insertAfter(root.prev);
+			if( root != NONE ){
+				insertAfter(node, prev[root]);
 			}else{
-				node.newList();
+				prev[node] = node;
+				next[node] = node;
 			}
 			root = node;
 		}
 		
-		sorted2.put(node.probability, node);
+		System.arraycopy(sortedProbability, low, sortedProbability, low + 1, sortedCount - low);
+		System.arraycopy(sortedLast, low, sortedLast, low + 1, sortedCount - low);
+		sortedProbability[low] = nodeProbability;
+		sortedLast[low] = node;
+		sortedCount+= 1;
 	}
 	
-	private Node addValueToTree( int value ){
-		// create leaf node
-		Node node = getNode();
-		node.value = value;
-		node.probability = 0;
-		node.child[0] = null;
-		node.child[1] = null;
-
-		valueToNode[value] = node;
-		insertNode( node );
+	private int addValueToTree( int nodeValue ){
+		// create leaf node, nothing is less probable so it goes last
+		int node = newNode(nodeValue, 0);
+		insertAfter(node, prev[root]);
+		int run = findRun(0);
+		if( run == NONE ) addRun(0, node, node);
+		else runLast[run] = node;
 		
 		// create branch node
-		Node node2 = getNode();
-		Node child1 = root.prev;
-		Node child2 = child1.prev;
+		int node2 = newNode(BRANCH, 0);
+		int child1 = prev[root];
+		int child2 = prev[child1];
 		
-		node2.value = -1;
-		node2.probability = child1.probability + child2.probability;
-		node2.child[0] = child1;
-		node2.child[1] = child2;
-		node2.parent = child2.parent;
+		probability[node2] = probability[child1] + probability[child2];
+		child0[node2] = child1;
+		this.child1[node2] = child2;
+		parent[node2] = parent[child2];
 		
-		node2.insertAfter(child2.prev);
+		// the branch is as probable as child2 so joins its run
+		insertAfter(node2, prev[child2]);
+		run = findRun(probability[node2]);
+		if( runFirst[run] == child2 ) runFirst[run] = node2;
 		
 		// insert into tree
-		if( node2.parent.child[0] == child2 ) node2.parent.child[0] = node2;
-		else node2.parent.child[1] = node2;
+		if( child0[parent[node2]] == child2 ) child0[parent[node2]] = node2;
+		else this.child1[parent[node2]] = node2;
 		
-		child1.parent = node2;
-		child2.parent = node2;
+		parent[child1] = node2;
+		parent[child2] = node2;
+		tableValid = false;
 		
 		return node;
 	}
 	
-	private void incrementProbability( Node node ){
-		while( node != null ){
-			// possible optimization here. Is all this really nescescary to enforce order?
-			if( sorted2.get(node.probability) == node ){
-				if( node.probability == node.prev.probability )
-					sorted2.put(node.probability, node.prev);
-				else
-					sorted2.remove(node.probability);
-			}
-			node.probability+= 1;
+	private void incrementProbability( int node ){
+		while( node != NONE ){
+			int nodeProbability = probability[node];
+			int run = findRun(nodeProbability);
+			int first = runFirst[run];
+			int last = runLast[run];
 			
-			Entry<Integer, Node> test2 = sorted2.ceilingEntry(node.probability);
-			Node where;
-			if( test2 != null ) where = test2.getValue().next;
-			else where = root;
+			// the first node of the run takes the place of this one so the list stays in order
+			if( first != node ){
+				listSwap(node, first);
+				treeSwap(node, first);
+			}
+			probability[node]+= 1;
 			
-			if( where != node ){
-				node.listSwap(where);
-				node.treeSwap(where);
-				
-				if( where.probability != where.next.probability ){
-					sorted2.put(where.probability, where);
-				}
+			// leave the old run
+			if( first == last ){
+				removeRun(run);
+			}else{
+				runFirst[run] = next[node];
+				if( last == node ) runLast[run] = first;
 			}
-			sorted2.put(node.probability, node);
 			
-			node = node.parent;
+			// join the new run, which comes just before
+			run = findRun(nodeProbability + 1);
+			if( run == NONE ) addRun(nodeProbability + 1, node, node);
+			else runLast[run] = node;
+			
+			node = parent[node];
 		}
 	}
 	
-	private void buildTree( byte tree ){
+	private void buildTree( int tree ){
 		byte[] probabilities = PROBABILITY_TABLES[tree];
 		
-		// destroy any existing tree
-		if( root != null ) destroyTree(root);
+		// discard any existing tree
+		nodeCount = 0;
+		sortedCount = 0;
+		root = NONE;
 		
 		// generate leaves
 		for( int i = 0 ; i < 0x102 ; i++ ){
@@ -244,66 +318,147 @@ public class Huffman {
 			
 			if( prob == 0 ) continue;
 			
-			Node node = getNode();
-			node.value = i;
-			node.probability = prob;
-			node.child[0] = null;
-			node.child[1] = null;
-			
-			insertNode( node );
-			valueToNode[i] = node;
+			insertSorted(newNode(i, prob));
 		}
-
+		
 		// generate tree
-		Node current = root.prev;
+		int current = prev[root];
 		while( current != root ){
-			Node node = getNode();
-			Node child1 = current;
-			Node child2 = current = current.prev;
+			int node = newNode(BRANCH, 0);
+			int child1 = current;
+			int child2 = current = prev[current];
 			
-			child1.parent = node;
-			child2.parent = node;
+			parent[child1] = node;
+			parent[child2] = node;
 			
-			node.value = -1;
-			node.probability = child1.probability + child2.probability;
-			node.child[0] = child1;
-			node.child[1] = child2;
-			insertNode( node );
+			probability[node] = probability[child1] + probability[child2];
+			child0[node] = child1;
+			this.child1[node] = child2;
+			insertSorted(node);
 			
-			current = current.prev;
+			current = prev[current];
 		}
 		
-		root.parent = null;
+		parent[root] = NONE;
+		
+		// find runs of equal probability
+		Arrays.fill(runProbability, NONE);
+		int node = root;
+		do{
+			int run = findRun(probability[node]);
+			if( run == NONE ) addRun(probability[node], node, node);
+			else runLast[run] = node;
+			node = next[node];
+		}while( node != root );
+		
+		tableValid = false;
 	}
 	
-	public void Decompress( ByteBuffer in, ByteBuffer out ){
-		setSource(in);
-		byte type = (byte) getBits(8);
+	private void fillTable( int node, int code, int depth ){
+		if( value[node] != BRANCH || depth == 8 ){
+			// bits are read lowest first so the bits after the code can be anything
+			for( int i = code ; i < 0x100 ; i+= 1 << depth ){
+				tableNode[i] = node;
+				tableBits[i] = depth;
+			}
+			return;
+		}
+		fillTable(child0[node], code, depth + 1);
+		fillTable(child1[node], code | (1 << depth), depth + 1);
+	}
+	
+	// returns the end of the output
+	private int expand( byte[] dst, int dstPos, int dstEnd ){
+		int type = getBits(8);
 		buildTree(type);
 		
-		adjustProbability = type == 0;
+		// only type 0 trees change as values are decoded, others only when a value is added
+		boolean adjustProbability = type == 0;
 		
 		for(;;){
-			Node current = root;
-			while( current.value == -1 )
-				current = current.child[getBits(1)];
+			int current = root;
+			if( !adjustProbability ){
+				if( bitNumber < 8 ) fillBits();
+				// near the end of data there may not be 8 bits left
+				if( bitNumber >= 8 ){
+					if( !tableValid ){
+						fillTable(root, 0, 0);
+						tableValid = true;
+					}
+					int bits = bitBuffer & 0xFF;
+					current = tableNode[bits];
+					bitBuffer>>>= tableBits[bits];
+					bitNumber-= tableBits[bits];
+				}
+			}
+			while( value[current] == BRANCH )
+				current = getBits(1) == 0 ? child0[current] : child1[current];
 			
-			if( current.value == 0x101 ){
-				int value = getBits(8);
-				current = addValueToTree(value);
+			if( value[current] == 0x101 ){
+				current = addValueToTree(getBits(8));
 				incrementProbability(current);
 				if( !adjustProbability ) incrementProbability(current);
-			}else if( current.value == 0x100 ){
+			}else if( value[current] == 0x100 ){
 				break;
 			}
 			
-			out.put((byte) current.value);
+			if( dstPos == dstEnd ) throw new BufferOverflowException();
+			dst[dstPos++] = (byte) value[current];
 			
 			if( adjustProbability ){
 				 incrementProbability(current);
 			}
 		}
-
+		
+		return dstPos;
+	}
+	
+	public void Decompress( ByteBuffer in, ByteBuffer out ){
+		// *** locate input
+		int inStart = in.position();
+		if( in.hasArray() ){
+			src = in.array();
+			srcPos = in.arrayOffset() + inStart;
+			srcEnd = in.arrayOffset() + in.limit();
+		}else{
+			if( inScratch.length < in.remaining() ) inScratch = new byte[in.remaining()];
+			src = inScratch;
+			srcPos = 0;
+			srcEnd = in.remaining();
+			in.get(src, 0, srcEnd);
+		}
+		int srcStart = srcPos;
+		bitBuffer = 0;
+		bitNumber = 0;
+		
+		// *** locate output
+		boolean direct = out.hasArray() && !out.isReadOnly();
+		byte[] dst;
+		int dstPos;
+		int dstEnd;
+		if( direct ){
+			dst = out.array();
+			dstPos = out.arrayOffset() + out.position();
+			dstEnd = out.arrayOffset() + out.limit();
+		}else{
+			if( outScratch.length < out.remaining() ) outScratch = new byte[out.remaining()];
+			dst = outScratch;
+			dstPos = 0;
+			dstEnd = out.remaining();
+		}
+		
+		// *** decompress
+		int end;
+		try{
+			end = expand(dst, dstPos, dstEnd);
+		}finally{
+			// whole bytes read ahead were not used
+			in.position(inStart + srcPos - srcStart - (bitNumber >> 3));
+			src = null;
+		}
+		
+		if( direct ) out.position(end - out.arrayOffset());
+		else out.put(dst, 0, end);
 	}
 	
 	private static final byte[][] PROBABILITY_TABLES = {
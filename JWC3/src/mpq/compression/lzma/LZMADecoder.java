@@ -0,0 +1,264 @@
+package mpq.compression.lzma;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A raw LZMA decoder for MPQ sectors.
+ *
+ * The output buffer doubles as the dictionary since a sector is always decoded whole, so no window is
+ * allocated and matches are plain array copies. The probability model is kept between calls and only
+ * grows when a sector uses more literal context bits than any before it.
+ *
+ * Instances are not thread safe.
+ */
+public class LZMADecoder {
+	private static final int BIT_MODEL_TOTAL = 1 << 11;
+	private static final int MOVE_BITS = 5;
+
+	private static final int NUM_STATES = 12;
+	private static final int POS_BITS_MAX = 4;
+	private static final int LEN_TO_POS_STATES = 4;
+	private static final int END_POS_MODEL_INDEX = 14;
+	private static final int FULL_DISTANCES = 1 << (END_POS_MODEL_INDEX >>> 1);
+	private static final int ALIGN_BITS = 4;
+	private static final int MATCH_MIN_LEN = 2;
+
+	// *** layout of the length decoder probabilities
+	private static final int LEN_CHOICE = 0;
+	private static final int LEN_CHOICE2 = 1;
+	private static final int LEN_LOW = 2;
+	private static final int LEN_MID = LEN_LOW + (1 << POS_BITS_MAX << 3);
+	private static final int LEN_HIGH = LEN_MID + (1 << POS_BITS_MAX << 3);
+	private static final int LEN_SIZE = LEN_HIGH + 256;
+
+	// *** layout of all probabilities
+	private static final int IS_MATCH = 0;
+	private static final int IS_REP = IS_MATCH + (NUM_STATES << POS_BITS_MAX);
+	private static final int IS_REP_G0 = IS_REP + NUM_STATES;
+	private static final int IS_REP_G1 = IS_REP_G0 + NUM_STATES;
+	private static final int IS_REP_G2 = IS_REP_G1 + NUM_STATES;
+	private static final int IS_REP0_LONG = IS_REP_G2 + NUM_STATES;
+	private static final int POS_SLOT = IS_REP0_LONG + (NUM_STATES << POS_BITS_MAX);
+	private static final int SPEC_POS = POS_SLOT + (LEN_TO_POS_STATES << 6);
+	private static final int ALIGN = SPEC_POS + FULL_DISTANCES - END_POS_MODEL_INDEX + 1;
+	private static final int LEN_CODER = ALIGN + (1 << ALIGN_BITS);
+	private static final int REP_LEN_CODER = LEN_CODER + LEN_SIZE;
+	private static final int LITERAL = REP_LEN_CODER + LEN_SIZE;
+
+	private short[] probs = new short[LITERAL + (0x300 << 3)];
+
+	private ByteBuffer in;
+	private int range;
+	private int code;
+
+	/**
+	 * Decodes a sector in the layout written by StormLib. The sector begins with a filter byte that must
+	 * be 0, then the 5 byte LZMA properties and an 8 byte uncompressed size, followed by the raw stream.
+	 *
+	 * @param in buffer with the sector from position to limit
+	 * @param out heap buffer to decode into from its position, decoding stops once it is full
+	 * @throws LZMAException when the sector is malformed
+	 */
+	public void decompressSector(ByteBuffer in, ByteBuffer out) throws LZMAException{
+		if( in.remaining() < 14 ) throw new LZMAException("sector too small");
+		if( in.get() != 0 ) throw new LZMAException("unsupported filter");
+		int properties = in.get() & 0xFF;
+		// dictionary size, the whole sector is available as dictionary anyway
+		in.position(in.position() + 4);
+		long size = 0;
+		for( int i = 0 ; i < 8 ; i+= 1 ) size|= (long) (in.get() & 0xFF) << (i * 8);
+		int length = size < 0 || size > out.remaining() ? out.remaining() : (int) size;
+		decode(in, out, properties, length);
+	}
+
+	/**
+	 * Decodes a raw LZMA stream.
+	 *
+	 * @param in buffer with the stream from position to limit
+	 * @param out heap buffer to decode into from its position
+	 * @param properties lc, lp and pb packed into a byte as in the LZMA header
+	 * @param length number of bytes to decode unless an end marker comes first
+	 * @throws LZMAException when the stream is malformed
+	 */
+	public void decode(ByteBuffer in, ByteBuffer out, int properties, int length) throws LZMAException{
+		if( properties >= 9 * 5 * 5 ) throw new LZMAException("bad properties");
+		int lc = properties % 9;
+		int lp = properties / 9 % 5;
+		int pb = properties / 45;
+		int probCount = LITERAL + (0x300 << (lc + lp));
+		if( probs.length < probCount ) probs = new short[probCount];
+		Arrays.fill(probs, 0, probCount, (short) (BIT_MODEL_TOTAL >>> 1));
+
+		this.in = in;
+		try{
+			if( in.get() != 0 ) throw new LZMAException("bad range coder start");
+			range = 0xFFFFFFFF;
+			code = 0;
+			for( int i = 0 ; i < 4 ; i+= 1 ) code = code << 8 | (in.get() & 0xFF);
+			if( code == range ) throw new LZMAException("bad range coder start");
+
+			byte[] dict = out.array();
+			int start = out.arrayOffset() + out.position();
+			int pos = start;
+			int end = start + length;
+			int pbMask = (1 << pb) - 1;
+			int lpMask = (1 << lp) - 1;
+			int state = 0;
+			int rep0 = 0;
+			int rep1 = 0;
+			int rep2 = 0;
+			int rep3 = 0;
+
+			while( pos < end ){
+				int posState = (pos - start) & pbMask;
+
+				if( decodeBit(IS_MATCH + (state << POS_BITS_MAX) + posState) == 0 ){
+					// *** literal
+					int prevByte = pos > start ? dict[pos - 1] & 0xFF : 0;
+					int base = LITERAL + 0x300 * ((((pos - start) & lpMask) << lc) + (prevByte >>> (8 - lc)));
+					int symbol = 1;
+					if( state >= 7 ){
+						int matchByte = dict[pos - rep0 - 1] & 0xFF;
+						do{
+							int matchBit = (matchByte >>> 7) & 1;
+							matchByte<<= 1;
+							int bit = decodeBit(base + ((1 + matchBit) << 8) + symbol);
+							symbol = symbol << 1 | bit;
+							if( matchBit != bit ) break;
+						}while( symbol < 0x100 );
+					}
+					while( symbol < 0x100 ) symbol = symbol << 1 | decodeBit(base + symbol);
+					dict[pos++] = (byte) symbol;
+					state = state < 4 ? 0 : state < 10 ? state - 3 : state - 6;
+					continue;
+				}
+
+				int len;
+				if( decodeBit(IS_REP + state) != 0 ){
+					// *** repeated match
+					if( pos == start ) throw new LZMAException("repeated match at start of stream");
+					if( decodeBit(IS_REP_G0 + state) == 0 ){
+						if( decodeBit(IS_REP0_LONG + (state << POS_BITS_MAX) + posState) == 0 ){
+							state = state < 7 ? 9 : 11;
+							dict[pos] = dict[pos - rep0 - 1];
+							pos+= 1;
+							continue;
+						}
+					}else{
+						int distance;
+						if( decodeBit(IS_REP_G1 + state) == 0 ) distance = rep1;
+						else{
+							if( decodeBit(IS_REP_G2 + state) == 0 ) distance = rep2;
+							else{
+								distance = rep3;
+								rep3 = rep2;
+							}
+							rep2 = rep1;
+						}
+						rep1 = rep0;
+						rep0 = distance;
+					}
+					len = decodeLength(REP_LEN_CODER, posState);
+					state = state < 7 ? 8 : 11;
+				}else{
+					// *** new match
+					rep3 = rep2;
+					rep2 = rep1;
+					rep1 = rep0;
+					len = decodeLength(LEN_CODER, posState);
+					state = state < 7 ? 7 : 10;
+					rep0 = decodeDistance(len);
+					if( rep0 == -1 ) break; // end marker
+					if( rep0 < 0 || rep0 >= pos - start ) throw new LZMAException("match distance out of range");
+				}
+
+				len+= MATCH_MIN_LEN;
+				if( len > end - pos ) throw new LZMAException("match runs past end of data");
+				int from = pos - rep0 - 1;
+				if( rep0 + 1 >= len ) System.arraycopy(dict, from, dict, pos, len);
+				else for( int i = 0 ; i < len ; i+= 1 ) dict[pos + i] = dict[from + i];
+				pos+= len;
+			}
+
+			out.position(pos - out.arrayOffset());
+		}catch( BufferUnderflowException e ){
+			throw new LZMAException("unexpected end of stream");
+		}finally{
+			this.in = null;
+		}
+	}
+
+	private int decodeBit(int index){
+		int prob = probs[index];
+		int bound = (range >>> 11) * prob;
+		int bit;
+		if( (code ^ 0x80000000) < (bound ^ 0x80000000) ){
+			range = bound;
+			probs[index] = (short) (prob + ((BIT_MODEL_TOTAL - prob) >>> MOVE_BITS));
+			bit = 0;
+		}else{
+			range-= bound;
+			code-= bound;
+			probs[index] = (short) (prob - (prob >>> MOVE_BITS));
+			bit = 1;
+		}
+		if( (range & 0xFF000000) == 0 ){
+			range<<= 8;
+			code = code << 8 | (in.get() & 0xFF);
+		}
+		return bit;
+	}
+
+	private int decodeDirectBits(int count){
+		int result = 0;
+		for( ; count > 0 ; count-= 1 ){
+			range>>>= 1;
+			code-= range;
+			int t = 0 - (code >>> 31);
+			code+= range & t;
+			result = (result << 1) + (t + 1);
+			if( (range & 0xFF000000) == 0 ){
+				range<<= 8;
+				code = code << 8 | (in.get() & 0xFF);
+			}
+		}
+		return result;
+	}
+
+	private int decodeTree(int base, int bits){
+		int m = 1;
+		for( int i = 0 ; i < bits ; i+= 1 ) m = m << 1 | decodeBit(base + m);
+		return m - (1 << bits);
+	}
+
+	private int decodeReverseTree(int base, int bits){
+		int m = 1;
+		int symbol = 0;
+		for( int i = 0 ; i < bits ; i+= 1 ){
+			int bit = decodeBit(base + m);
+			m = m << 1 | bit;
+			symbol|= bit << i;
+		}
+		return symbol;
+	}
+
+	private int decodeLength(int coder, int posState){
+		if( decodeBit(coder + LEN_CHOICE) == 0 ) return decodeTree(coder + LEN_LOW + (posState << 3), 3);
+		if( decodeBit(coder + LEN_CHOICE2) == 0 ) return 8 + decodeTree(coder + LEN_MID + (posState << 3), 3);
+		return 16 + decodeTree(coder + LEN_HIGH, 8);
+	}
+
+	private int decodeDistance(int len){
+		int lenState = Math.min(len, LEN_TO_POS_STATES - 1);
+		int posSlot = decodeTree(POS_SLOT + (lenState << 6), 6);
+		if( posSlot < 4 ) return posSlot;
+
+		int directBits = (posSlot >>> 1) - 1;
+		int distance = (2 | (posSlot & 1)) << directBits;
+		if( posSlot < END_POS_MODEL_INDEX ) return distance + decodeReverseTree(SPEC_POS + distance - posSlot, directBits);
+		distance+= decodeDirectBits(directBits - ALIGN_BITS) << ALIGN_BITS;
+		return distance + decodeReverseTree(ALIGN, ALIGN_BITS);
+	}
+}
@@ -0,0 +1,11 @@
+package mpq.compression.lzma;
+
+public class LZMAException extends Exception {
+
+	private static final long serialVersionUID = 3260845312840151637L;
+
+	public LZMAException(String arg0) {
+		super(arg0);
+	}
+
+}
@@ -1,6 +1,5 @@
 package mpq.compression.pkware;
 
-import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 
 public class PKExploder {
@@ -58,126 +57,126 @@ public class PKExploder {
 		}
 	}
 	
-	private ByteBuffer in;
-	private ByteBuffer out;
-	private byte ctype;
-	private byte dsize_bits;
-	private short bit_buff;
-	private byte extra_bits;
-	private byte dsize_mask;
+	// input and output are worked on as arrays, these hold copies when a buffer has no accessible array
+	private byte[] inScratch = new byte[0];
+	private byte[] outScratch = new byte[0];
 	
-	private void WasteBits(byte nbits){
-		bit_buff = (short) ((bit_buff & 0xFFFF) >>> nbits);
+	private byte[] src;
+	private int srcPos;
+	private int srcEnd;
+	// holds 8 bits plus extra_bits of input, the lowest bit is the next one
+	private int bit_buff;
+	private int extra_bits;
+	
+	private void WasteBits(int nbits) throws PKException{
+		bit_buff>>>= nbits;
 		if( nbits <= extra_bits ){
-	        extra_bits-= nbits;
+			extra_bits-= nbits;
 		}else{
-			bit_buff = (short) ((bit_buff | ((in.get() & 0xFF ) << (8 - nbits + extra_bits))) & 0xFFFF);
+			if( srcPos == srcEnd ) throw new PKException("unexpected end of data");
+			bit_buff|= (src[srcPos++] & 0xFF) << (8 - nbits + extra_bits);
 			extra_bits-= nbits - 8;
 		}
 	}
 	
-	private void expand() throws PKException{
+	// returns the end of the output
+	private int expand(byte[] dst, int dstStart, int dstPos, int dstEnd, int dsize_bits) throws PKException{
+		int dsize_mask = 0xFFFF >> (0x10 - dsize_bits);
 		for( ; ; ){
 			if( (bit_buff & 0x01) != 0 ){
-				WasteBits((byte) 1);
+				WasteBits(1);
 				
 				// --- repeat bytes
 				
 				// get length
-				short length_code = (short) LENGTH_CODES[bit_buff & 0xFF];
-				WasteBits((byte) LEN_BITS[length_code]);
+				int length_code = LENGTH_CODES[bit_buff & 0xFF];
+				WasteBits(LEN_BITS[length_code]);
+				
+				int extra_length_bits = EX_LEN_BITS[length_code];
+				if( extra_length_bits != 0 ){
+					int extra_length = bit_buff & ((1 << extra_length_bits) - 1);
+					// the longest length with all extra bits set marks the end of data
+					if( length_code + extra_length == 0x10E ) return dstPos;
+					WasteBits(extra_length_bits);
+					length_code = LEN_BASE[length_code] + extra_length;
+				}
+				
+				length_code+= 2;
+				
+				// get distance
+				int dist_pos_code = DIST_POS_CODES[bit_buff & 0xFF];
+				WasteBits(DIST_BITS[dist_pos_code]);
+				
+				int distance;
+				if( length_code == 2 ){
+					// If the repetition is only 2 bytes length,
+					// then take 2 bits from the stream in order to get the distance
+					distance = (dist_pos_code << 2) | (bit_buff & 0x03);
+					WasteBits(2);
+				}else{
+					// If the repetition is more than 2 bytes length,
+					// then take "dsize_bits" bits in order to get the distance
+					distance = (dist_pos_code << dsize_bits) | (bit_buff & dsize_mask);
+					WasteBits(dsize_bits);
+				}
+				distance+= 1;
+				
+				// do the copying
+				int source = dstPos - distance;
+				if( source < dstStart ) throw new PKException("distance pointing before output");
+				if( length_code > dstEnd - dstPos ) throw new PKException("output too small");
+				if( distance >= length_code ){
+					System.arraycopy(dst, source, dst, dstPos, length_code);
+					dstPos+= length_code;
+				}else{
+					// overlapping copies repeat the bytes just written
+					for( int end = dstPos + length_code ; dstPos < end ; ){
+						dst[dstPos++] = dst[source++];
+					}
+				}
 				
-				byte extra_length_bits;
-		        if((extra_length_bits = EX_LEN_BITS[length_code]) != 0)
-		        {
-		            byte extra_length = (byte) (bit_buff & ((1 << extra_length_bits) - 1));
-
-		            try{
-		            	WasteBits(extra_length_bits);
-		            }catch( BufferUnderflowException e ){
-		            	if( (length_code + (extra_length & 0xFF)) == 0x10E ) return;
-		            	else throw e;
-		            }
-		            length_code = (short) (LEN_BASE[length_code] + (extra_length & 0xFF));
-
-		        }
-		        
-		        length_code+= 2;
-		        
-		        // get distance
-		        byte dist_pos_code = DIST_POS_CODES[bit_buff & 0xFF];
-		        byte dist_pos_bits = DIST_BITS[dist_pos_code];
-		        WasteBits(dist_pos_bits);
-		        
-		        short distance;
-		        
-		        if(length_code == 2){
-		            // If the repetition is only 2 bytes length,
-		            // then take 2 bits from the stream in order to get the distance
-		            distance = (short) ((dist_pos_code << 2) | (bit_buff & 0x03));
-		            WasteBits((byte) 2);
-		        }else{
-		            // If the repetition is more than 2 bytes length,
-		            // then take "dsize_bits" bits in order to get the distance
-		            distance = (short) ((dist_pos_code << dsize_bits) | (bit_buff & dsize_mask));
-		            WasteBits(dsize_bits);
-		        }
-		        distance+= 1;
-		        
-		        // do the copying
-		        int target = out.position();
-		        int source = target - distance;
-		        
-		        while( length_code > 0 ){
-		        	if(source >= 0)
-		        		out.put(target++, out.get(source++));
-		        	else{
-		        		throw new PKException("distance pointing before output");
-		        	}
-		        	length_code-= 1;
-		        }
-		        
-		        out.position(target);
-		        
 			}else{
-				WasteBits((byte) 1);
+				WasteBits(1);
 				
 				// --- raw byte
 				
-				switch( ctype ){
-				case CMP_BINARY:
-					// read raw byte
-					byte uncompressed_byte = (byte) (bit_buff & 0xFF);
-					WasteBits((byte) 8);
-
-					// write raw byte
-					out.put(uncompressed_byte);
-					break;
-				case CMP_ASCII:
-					// TODO add ASCII decompression stuff here
-					System.err.println("pkware ascii compression not supported");
-					return;
-				default: throw new PKException("invalid compression mode");
-				}
+				// read raw byte
+				byte uncompressed_byte = (byte) bit_buff;
+				WasteBits(8);
+				
+				// write raw byte
+				if( dstPos == dstEnd ) throw new PKException("output too small");
+				dst[dstPos++] = uncompressed_byte;
 			}
 		}
 	}
 	
 	public void explode(ByteBuffer in, ByteBuffer out) throws PKException{
-		// set in and out buffers
-		this.in = in;
-		this.out = out;
 		if( in.remaining() <= 4 ) throw new PKException("received bad data");
 		
+		// *** locate input
+		int inStart = in.position();
+		if( in.hasArray() ){
+			src = in.array();
+			srcPos = in.arrayOffset() + inStart;
+			srcEnd = in.arrayOffset() + in.limit();
+		}else{
+			if( inScratch.length < in.remaining() ) inScratch = new byte[in.remaining()];
+			src = inScratch;
+			srcPos = 0;
+			srcEnd = in.remaining();
+			in.get(src, 0, srcEnd);
+		}
+		int srcStart = srcPos;
+		
 		// initialize state with compression header
-		ctype = in.get();
-		dsize_bits = in.get();
-		bit_buff = (short) (in.get() & 0xFF);
+		byte ctype = src[srcPos++];
+		byte dsize_bits = src[srcPos++];
+		bit_buff = src[srcPos++] & 0xFF;
 		extra_bits = 0;
 		
 		// dictionary size mask
 		if( dsize_bits < 4 || 6 < dsize_bits  ) throw new PKException("invalid dictionary size");
-		dsize_mask = (byte) (0xFFFF >> (0x10 - dsize_bits));
 		
 		// setup compression type dependent data
 		switch( ctype ){
@@ -189,12 +188,35 @@ public class PKExploder {
 		default: throw new PKException("invalid compression mode");
 		}
 		
+		// *** locate output, earlier output may be referred to so the whole buffer is used
+		boolean direct = out.hasArray() && !out.isReadOnly();
+		byte[] dst;
+		int dstStart;
+		int dstPos;
+		int dstEnd;
+		if( direct ){
+			dst = out.array();
+			dstStart = out.arrayOffset();
+			dstPos = dstStart + out.position();
+			dstEnd = dstStart + out.limit();
+		}else{
+			if( outScratch.length < out.remaining() ) outScratch = new byte[out.remaining()];
+			dst = outScratch;
+			dstStart = 0;
+			dstPos = 0;
+			dstEnd = out.remaining();
+		}
+		
 		// perform explode
-        try{
-        	expand();
-        }catch( BufferUnderflowException e ){
-        	throw new PKException("unexpected end of data");
-        }
+		int end;
+		try{
+			end = expand(dst, dstStart, dstPos, dstEnd, dsize_bits);
+		}finally{
+			in.position(inStart + srcPos - srcStart);
+			src = null;
+		}
 		
+		if( direct ) out.position(end - dstStart);
+		else out.put(dst, 0, end);
 	}
 }
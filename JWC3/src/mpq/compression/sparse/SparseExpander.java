@@ -0,0 +1,35 @@
+package mpq.compression.sparse;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Expands sectors compressed with the sparse (zero run length) method introduced in version 2 MPQs.
+ *
+ * The data starts with the big endian expanded size followed by runs. A run byte with the top bit set is
+ * followed by (run & 0x7F) + 1 literal bytes, otherwise it stands for (run & 0x7F) + 3 zero bytes.
+ */
+public class SparseExpander {
+	public void expand(ByteBuffer in, ByteBuffer out){
+		// size is big endian regardless of buffer order
+		int size = (in.get() & 0xFF) << 24 | (in.get() & 0xFF) << 16 | (in.get() & 0xFF) << 8 | (in.get() & 0xFF);
+		int remaining = Math.min(size, out.remaining());
+
+		while( in.hasRemaining() && remaining > 0 ){
+			int run = in.get() & 0xFF;
+			if( (run & 0x80) != 0 ){
+				int count = Math.min(Math.min((run & 0x7F) + 1, remaining), in.remaining());
+
+				// bulk copy of literals
+				ByteBuffer literals = in.duplicate();
+				literals.limit(literals.position() + count);
+				out.put(literals);
+				in.position(in.position() + count);
+				remaining-= count;
+			}else{
+				int count = Math.min((run & 0x7F) + 3, remaining);
+				for( int i = 0 ; i < count ; i+= 1 ) out.put((byte) 0);
+				remaining-= count;
+			}
+		}
+	}
+}
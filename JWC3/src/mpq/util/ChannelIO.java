@@ -0,0 +1,47 @@
+package mpq.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+
+import mpq.MappedArchiveChannel;
+
+public class ChannelIO {
+	/**
+	 * Reads from a channel at an absolute position until the buffer is full or the end of the channel
+	 * is reached, without depending on the position of the channel.
+	 *
+	 * File and mapped channels are read positionally so any number of threads can read from the same
+	 * channel at once. Other channels are locked for the duration of the read so that concurrent callers
+	 * cannot move the position from under each other.
+	 *
+	 * @param in channel to read from
+	 * @param dst buffer to fill from its position to its limit
+	 * @param position absolute channel position of the first byte
+	 * @return number of bytes read
+	 * @throws IOException when reading fails
+	 */
+	public static int readFully(SeekableByteChannel in, ByteBuffer dst, long position) throws IOException{
+		int start = dst.position();
+		if( in instanceof FileChannel ){
+			FileChannel fc = (FileChannel) in;
+			while( dst.hasRemaining() )
+				if( fc.read(dst, position + dst.position() - start) == -1 )
+					break;
+		}else if( in instanceof MappedArchiveChannel ){
+			MappedArchiveChannel mc = (MappedArchiveChannel) in;
+			while( dst.hasRemaining() )
+				if( mc.read(dst, position + dst.position() - start) == -1 )
+					break;
+		}else{
+			synchronized( in ){
+				in.position(position);
+				while( dst.hasRemaining() )
+					if( in.read(dst) == -1 )
+						break;
+			}
+		}
+		return dst.position() - start;
+	}
+}
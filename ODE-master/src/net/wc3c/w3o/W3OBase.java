@@ -2,6 +2,7 @@ package net.wc3c.w3o;
 
 import java.io.IOException;
 import java.nio.ByteOrder;
+import java.nio.channels.ByteChannel;
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -48,6 +49,24 @@ public abstract class W3OBase<T extends W3Object<?>> {
 		this(source, null);
 	}
 
+	/**
+	 * Creates a new W3O file read from the specified channel and the specified
+	 * WTS file. The channel is read to the end but not closed.
+	 *
+	 * @param source
+	 *            channel positioned at the start of the W3O file
+	 * @param triggerStrings
+	 *            the WTS file
+	 * @throws IOException
+	 *             in case there was a problem reading from the channel
+	 */
+	public W3OBase(final ByteChannel source, final WTSFile triggerStrings) throws IOException {
+		this.source = null;
+		this.triggerStrings = triggerStrings;
+
+		parse(source);
+	}
+
 	/**
 	 * Creates a new W3O file from the specified source and the specified WTS
 	 * file.
@@ -132,14 +151,19 @@ public abstract class W3OBase<T extends W3Object<?>> {
 
 	private void parse() throws IOException {
 		final FileChannel fileChannel = FileChannel.open(this.source);
-		final BufferedDataChannel dc = new BufferedDataChannel(fileChannel, ByteOrder.LITTLE_ENDIAN);
+
+		parse(fileChannel);
+
+		fileChannel.close();
+	}
+
+	private void parse(final ByteChannel channel) throws IOException {
+		final BufferedDataChannel dc = new BufferedDataChannel(channel, ByteOrder.LITTLE_ENDIAN);
 
 		@SuppressWarnings("unused")
 		final int version = dc.readInt();
 
 		parseTable(dc);
 		parseTable(dc);
-
-		fileChannel.close();
 	}
 }
@@ -1,6 +1,7 @@
 package net.wc3c.w3o;
 
 import java.io.IOException;
+import java.nio.channels.ByteChannel;
 import java.nio.file.Path;
 import java.util.Collection;
 
@@ -51,6 +52,27 @@ public class W3UFile extends W3OBase<Unit> {
         super(sourcePath);
     }
     
+    /**
+     * Creates a new W3U file read from the specified channel and the specified WTS file.
+     * 
+     * @param source channel positioned at the start of the W3U file, not closed.
+     * @param trigStrs the WTS file.
+     * @throws IOException in case there was a problem reading from the channel.
+     */
+    public W3UFile(final ByteChannel source, final WTSFile trigStrs) throws IOException {
+        super(source, trigStrs);
+    }
+    
+    /**
+     * Creates a new W3U file read from the specified channel.
+     * 
+     * @param source channel positioned at the start of the W3U file, not closed.
+     * @throws IOException in case there was a problem reading from the channel.
+     */
+    public W3UFile(final ByteChannel source) throws IOException {
+        super(source, null);
+    }
+    
     /**
      * Creates a new W3U file with the specified WTS file backing it.
      * 
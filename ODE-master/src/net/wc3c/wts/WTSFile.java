@@ -27,7 +27,11 @@ public class WTSFile {
     }
     
     private void parse() throws IOException {
-        final String content = StandardCharsets.UTF_8.decode(ByteBuffer.wrap(Files.readAllBytes(source))).toString();
+        parse(ByteBuffer.wrap(Files.readAllBytes(source)));
+    }
+    
+    private void parse(final ByteBuffer contents) throws IOException {
+        final String content = StandardCharsets.UTF_8.decode(contents).toString();
         final BufferedReader sourceReader = new BufferedReader(new StringReader(content));
         ParseState state = ParseState.NEXT_TRIGSTR;
         
@@ -84,6 +88,18 @@ public class WTSFile {
         parse();
     }
     
+    /**
+     * Creates a WTS file from contents already in memory, such as a file read straight out of a map archive.
+     * 
+     * @param contents the contents of the WTS file, read from position to limit without modifying the buffer.
+     * @throws IOException in case there was a problem parsing the contents.
+     */
+    public WTSFile(final ByteBuffer contents) throws IOException {
+        source = null;
+        
+        parse(contents.duplicate());
+    }
+    
     public String get(final int index) {
         return trigStrings.get(index);
     }
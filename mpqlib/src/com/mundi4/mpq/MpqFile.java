@@ -6,8 +6,11 @@ import com.mundi4.mpq.helper.ReadOnlyIterator;
 
 import java.io.*;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
 import java.util.*;
 import java.util.zip.InflaterInputStream;
 
@@ -220,6 +223,30 @@ public class MpqFile implements MpqConstants, Closeable {
         return new MultiBlockMpqFileInputStream(buf, entry);
     }
 
+    /**
+     * Opens a read-only channel over an entry that can be positioned
+     * anywhere. Files stored in blocks are decompressed one block at a time,
+     * found through the block offset table, so reading part of a file only
+     * decompresses the blocks that hold it.
+     */
+    public SeekableByteChannel getChannel(MpqEntry entry) throws IOException {
+        if (entry == null) {
+            throw new NullPointerException("entry");
+        }
+
+        if (entry.isEncrypted()) {
+            throw new MpqException("encrypted MPQ entry not supported yet");
+        }
+
+        ensureOpen();
+        long positon = headerPosition + entry.position;
+        long size = entry.compressedSize;
+        ByteBuffer buf = fc.map(MapMode.READ_ONLY, positon, size).order(
+                LITTLE_ENDIAN);
+
+        return new MpqEntryChannel(buf, entry);
+    }
+
     public String getName() {
         return name;
     }
@@ -439,19 +466,7 @@ public class MpqFile implements MpqConstants, Closeable {
         }
 
         private void loadBlockPositions() throws IOException {
-            positions = new int[blockCount + 1];
-            for (int i = 0; i < positions.length; i++) {
-                positions[i] = buf.getInt();
-            }
-
-            int bytesRead = 4 * positions.length;
-            if (!entry.hasExtra() && positions[0] != bytesRead) {
-                entry.flags |= ENCRYPTED;
-            }
-            if (bytesRead < positions[0]) {
-                buf.position(positions[0]);
-            }
-            assert buf.position() == positions[0];
+            positions = readBlockPositions(buf, entry, blockCount);
         }
 
         private int readNextBlock() throws IOException {
@@ -511,4 +526,165 @@ public class MpqFile implements MpqConstants, Closeable {
 
     }
 
+    private int[] readBlockPositions(ByteBuffer buf, MpqEntry entry,
+                                     int blockCount) throws IOException {
+        int[] positions = new int[blockCount + 1];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = buf.getInt();
+        }
+
+        int bytesRead = 4 * positions.length;
+        if (!entry.hasExtra() && positions[0] != bytesRead) {
+            entry.flags |= ENCRYPTED;
+        }
+        if (bytesRead < positions[0]) {
+            buf.position(positions[0]);
+        }
+        assert buf.position() == positions[0];
+        return positions;
+    }
+
+    class MpqEntryChannel implements SeekableByteChannel {
+
+        private ByteBuffer buf;
+        private MpqEntry entry;
+        private long position;
+        // stored files are read straight from the mapping
+        private boolean stored;
+        // decompressed block, the whole file for single unit entries
+        private byte[] block;
+        private int blockIndex = -1;
+        private int blockLength;
+        private int blockCount;
+        private int unitSize;
+        private int[] positions;
+
+        MpqEntryChannel(ByteBuffer buf, MpqEntry entry) throws IOException {
+            this.buf = buf;
+            this.entry = entry;
+            if (!entry.isCompressed()) {
+                stored = true;
+            } else if (entry.isSingleUnit()) {
+                unitSize = (int) entry.getSize();
+                blockCount = 1;
+            } else {
+                unitSize = blockSize;
+                blockCount = (int) (((blockSize - 1) + entry.getSize()) / blockSize);
+                positions = readBlockPositions(buf, entry, blockCount);
+            }
+        }
+
+        private void loadBlock(int index) throws IOException {
+            if (index == blockIndex) {
+                return;
+            }
+            blockIndex = -1;
+            blockLength = (int) Math.min(entry.getSize() - ((long) index * unitSize),
+                    unitSize);
+            if (block == null || block.length < blockLength) {
+                block = new byte[unitSize];
+            }
+
+            int offset = 0;
+            int length = (int) entry.getCompressedSize();
+            if (positions != null) {
+                offset = positions[index];
+                length = positions[index + 1] - offset;
+            }
+            InputStream in = new MpqFileInputStream(new ByteBufferInputStream(
+                    buf, offset, length), entry, length, blockLength);
+            try {
+                for (int n = 0; n < blockLength;) {
+                    int read = in.read(block, n, blockLength - n);
+                    if (read < 0) {
+                        throw new EOFException("block " + index
+                                + " ended early");
+                    }
+                    n += read;
+                }
+            } finally {
+                in.close();
+            }
+            blockIndex = index;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            ensureChannelOpen();
+            if (position >= entry.getSize()) {
+                return -1;
+            }
+
+            int start = dst.position();
+            while (dst.hasRemaining() && position < entry.getSize()) {
+                if (stored) {
+                    int length = (int) Math.min(dst.remaining(),
+                            entry.getSize() - position);
+                    ByteBuffer src = buf.duplicate();
+                    src.position((int) position);
+                    src.limit((int) position + length);
+                    dst.put(src);
+                    position += length;
+                } else {
+                    loadBlock((int) (position / unitSize));
+                    int offset = (int) (position % unitSize);
+                    int length = Math.min(dst.remaining(), blockLength - offset);
+                    dst.put(block, offset, length);
+                    position += length;
+                }
+            }
+            return dst.position() - start;
+        }
+
+        @Override
+        public long position() throws IOException {
+            ensureChannelOpen();
+            return position;
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            ensureChannelOpen();
+            if (newPosition < 0) {
+                throw new IllegalArgumentException("negative position");
+            }
+            position = newPosition;
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            ensureChannelOpen();
+            return entry.getSize();
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) throws IOException {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return buf != null;
+        }
+
+        @Override
+        public void close() {
+            buf = null;
+            block = null;
+        }
+
+        private void ensureChannelOpen() throws IOException {
+            if (buf == null) {
+                throw new ClosedChannelException();
+            }
+        }
+
+    }
+
 }
@@ -1,9 +1,13 @@
 package com.mundi4.mpq;
 
+import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.fail;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
 import java.util.Iterator;
 import java.util.Random;
 import java.util.concurrent.ExecutorService;
@@ -69,6 +73,60 @@ public class MpqFileTest {
         System.out.println("elapsed:" + (end - start));
     }
 
+    @Test
+    public void testChannelMatchesStream() throws IOException {
+        final MpqFile mpq = new MpqFile(filename);
+        try {
+            final Iterator<MpqEntry> iter = mpq.iterator();
+            while (iter.hasNext()) {
+                final MpqEntry entry = iter.next();
+                if (entry.isEncrypted()) {
+                    continue;
+                }
+                final byte[] expected = readFully(mpq.getInputStream(entry));
+                final SeekableByteChannel channel = mpq.getChannel(entry);
+                try {
+                    assertEquals(expected.length, channel.size());
+                    // jump around, each read only needs the blocks it covers
+                    for (int i = 0; i < 4 && expected.length > 0; i++) {
+                        final int position = random.nextInt(expected.length);
+                        final ByteBuffer buf = ByteBuffer.allocate(Math.min(expected.length - position,
+                                1 + random.nextInt(8192)));
+                        channel.position(position);
+                        while (buf.hasRemaining() && channel.read(buf) > 0) {
+                        }
+                        assertEquals(buf.capacity(), buf.position());
+                        for (int j = 0; j < buf.capacity(); j++) {
+                            if (buf.get(j) != expected[position + j]) {
+                                fail(entry.getName() + " differs at " + (position + j));
+                            }
+                        }
+                    }
+                } finally {
+                    channel.close();
+                }
+            }
+        } finally {
+            try {
+                mpq.close();
+            } catch (final Exception e2) {
+            }
+        }
+    }
+
+    private byte[] readFully(final InputStream is) throws IOException {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] b = new byte[4096];
+            for (int n = is.read(b); n != -1; n = is.read(b)) {
+                out.write(b, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+
     private void readFile(final MpqFile mpq, final MpqEntry entry) {
         InputStream is = null;
         try {